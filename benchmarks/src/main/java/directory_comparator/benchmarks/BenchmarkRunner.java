@@ -0,0 +1,49 @@
+package directory_comparator.benchmarks;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results in the JSON format of JMH,
+ * which keeps the same structure between versions, so results of different
+ * runs can be tracked over time.
+ */
+public class BenchmarkRunner {
+
+	private static final String DEFAULT_RESULTS_FILE = "benchmarks/target/jmh-results.json";
+
+	/**
+	 * The main method.
+	 * @param args Optionally, the file where the results are written,
+	 * followed by any option of JMH, like a regular expression that selects
+	 * the benchmarks to run.
+	 * @throws RunnerException If the benchmarks can't be run.
+	 * @throws CommandLineOptionException If the options of JMH are invalid.
+	 */
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		String resultsFile = DEFAULT_RESULTS_FILE;
+		String[] jmhArgs = args;
+		if (args.length > 0 && !args[0].startsWith("-") && args[0].endsWith(".json")) {
+			resultsFile = args[0];
+			jmhArgs = Arrays.copyOfRange(args, 1, args.length);
+		}
+		File parent = new File(resultsFile).getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		Options options = new OptionsBuilder()
+			.parent(new CommandLineOptions(jmhArgs))
+			.resultFormat(ResultFormatType.JSON)
+			.result(resultsFile)
+			.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,110 @@
+package directory_comparator.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.DirectoryComparison;
+import directory_comparator.logic.enums.ComparisonMode;
+import directory_comparator.logic.enums.ThreadKind;
+import directory_comparator.logic.listeners.ComparisonListener;
+import directory_comparator.logic.models.ComparisonOptions;
+import directory_comparator.logic.models.ComparisonOutcome;
+
+/**
+ * Runs the whole comparison of two generated trees, as the window and the
+ * command line do, writing the report to the results directory. Shortcuts
+ * aren't created, because {@link ShortcutBenchmark} measures them apart and
+ * they can only be created on Windows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ComparisonBenchmark {
+
+	@Param({ "5000" })
+	public int fileCount;
+
+	@Param({ "3" })
+	public int depth;
+
+	@Param({ "65536" })
+	public long maxSize;
+
+	@Param({ "0.1" })
+	public double changeRatio;
+
+	@Param({ "STRICT", "QUICK" })
+	public ComparisonMode mode;
+
+	@Param({ "PLATFORM", "VIRTUAL" })
+	public ThreadKind threadKind;
+
+	private Path directory;
+	private File oldDirectory;
+	private File newDirectory;
+	private File resultsDirectory;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("comparison");
+		TreeGenerator generator = new TreeGenerator(1);
+		generator.setFileCount(this.fileCount);
+		generator.setDepth(this.depth);
+		generator.setSizes(0, this.maxSize);
+		generator.setChangeRatio(this.changeRatio);
+		generator.generate(this.directory.resolve("old"), this.directory.resolve("new"));
+		this.oldDirectory = this.directory.resolve("old").toFile();
+		this.newDirectory = this.directory.resolve("new").toFile();
+		this.resultsDirectory = this.directory.resolve("results").toFile();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		TreeGenerator.delete(this.directory);
+	}
+
+	@Benchmark
+	public int compare() throws FileException {
+		ComparisonOptions options = new ComparisonOptions();
+		options.setComparisonMode(this.mode);
+		options.setThreadKind(this.threadKind);
+		options.setShortcutsEnabled(false);
+		DirectoryComparison comparison = new DirectoryComparison(
+			this.oldDirectory, this.newDirectory, this.resultsDirectory, options
+		);
+		comparison.run(new ComparisonListener() {
+			@Override
+			public void onOutcome(ComparisonOutcome outcome) {
+			}
+			@Override
+			public void onWaiting() {
+			}
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		});
+		return comparison.getProcessedFiles();
+	}
+}
@@ -0,0 +1,70 @@
+package directory_comparator.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import directory_comparator.logic.FileManager;
+
+/**
+ * Counts the files of a generated tree, listing one or several directories
+ * at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CountFilesBenchmark {
+
+	@Param({ "10000" })
+	public int fileCount;
+
+	@Param({ "4" })
+	public int depth;
+
+	@Param({ "1", "8" })
+	public int parallelism;
+
+	private Path directory;
+	private File oldDirectory;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("count-files");
+		TreeGenerator generator = new TreeGenerator(1);
+		generator.setFileCount(this.fileCount);
+		generator.setDepth(this.depth);
+		generator.setSizes(0, 1024);
+		generator.setChangeRatio(0);
+		generator.generate(this.directory.resolve("old"), this.directory.resolve("new"));
+		this.oldDirectory = this.directory.resolve("old").toFile();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		TreeGenerator.delete(this.directory);
+	}
+
+	@Benchmark
+	public int countFiles() {
+		return FileManager.countFiles(this.oldDirectory, this.parallelism);
+	}
+}
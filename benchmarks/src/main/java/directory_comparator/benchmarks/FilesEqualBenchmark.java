@@ -0,0 +1,97 @@
+package directory_comparator.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.FileManager;
+import directory_comparator.logic.models.ComparisonOptions;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+
+/**
+ * Compares a pair of files of the same size, which are equal or differ in
+ * their last byte, so the whole files are always read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilesEqualBenchmark {
+
+	@Param({ "4096", "1048576", "67108864" })
+	public long size;
+
+	@Param({ "true", "false" })
+	public boolean equal;
+
+	private Path directory;
+	private FileManager fileManager;
+	private FileEntry oldEntry;
+	private FileEntry newEntry;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, FileException {
+		this.directory = Files.createTempDirectory("files-equal");
+		Path oldDirectory = Files.createDirectory(this.directory.resolve("old"));
+		Path newDirectory = Files.createDirectory(this.directory.resolve("new"));
+		byte[] contents = new byte[(int) this.size];
+		new Random(1).nextBytes(contents);
+		Files.write(oldDirectory.resolve("file"), contents);
+		if (!this.equal) {
+			contents[contents.length - 1] = (byte) ~contents[contents.length - 1];
+		}
+		Files.write(newDirectory.resolve("file"), contents);
+		this.fileManager = new FileManager(
+			oldDirectory.toFile(), newDirectory.toFile(), this.directory.resolve("results").toFile(), new ComparisonOptions()
+		);
+		this.oldEntry = entry(oldDirectory, this.fileManager.getPathIndex());
+		this.newEntry = entry(newDirectory, this.fileManager.getPathIndex());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		TreeGenerator.delete(this.directory);
+	}
+
+	/**
+	 * The comparison the program does, which reads big files chunk by chunk.
+	 */
+	@Benchmark
+	public boolean filesEqual() throws FileException {
+		return this.fileManager.filesEqual(this.oldEntry, this.newEntry);
+	}
+
+	/**
+	 * The plain comparison of two paths.
+	 */
+	@Benchmark
+	public boolean filesEqualByPath() throws FileException {
+		return FileManager.filesEqual(this.oldEntry.getPath(), this.newEntry.getPath());
+	}
+
+	private static FileEntry entry(Path root, PathIndex pathIndex) throws IOException {
+		Path file = root.resolve("file");
+		return new FileEntry(root, pathIndex, PathIndex.ROOT, "file", Files.readAttributes(file, BasicFileAttributes.class));
+	}
+}
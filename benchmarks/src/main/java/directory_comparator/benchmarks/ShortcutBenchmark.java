@@ -0,0 +1,73 @@
+package directory_comparator.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.FileManager;
+import directory_comparator.logic.enums.ShortcutReason;
+
+/**
+ * Measures how many shortcuts can be created per second. The shortcut
+ * library only works on Windows, so elsewhere this benchmark fails and the
+ * rest go on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShortcutBenchmark {
+
+	private static final int TARGETS = 1000;
+
+	private Path directory;
+	private FileManager fileManager;
+	private String[] targets;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, FileException {
+		this.directory = Files.createTempDirectory("shortcuts");
+		Path newDirectory = Files.createDirectory(this.directory.resolve("new"));
+		this.targets = new String[TARGETS];
+		for (int i = 0; i < TARGETS; i++) {
+			this.targets[i] = Files.createFile(newDirectory.resolve("file-" + i + ".txt")).toAbsolutePath().toString();
+		}
+		this.fileManager = new FileManager(
+			Files.createDirectory(this.directory.resolve("old")).toFile(), newDirectory.toFile(),
+			this.directory.resolve("results").toFile()
+		);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		TreeGenerator.delete(this.directory);
+	}
+
+	/**
+	 * Creates a shortcut, overwriting the one created for the same file
+	 * {@value #TARGETS} calls before.
+	 */
+	@Benchmark
+	public void createShortcut() throws FileException {
+		this.fileManager.createShortcut(this.targets[this.next], ShortcutReason.FILE_CREATED);
+		this.next = (this.next + 1) % TARGETS;
+	}
+}
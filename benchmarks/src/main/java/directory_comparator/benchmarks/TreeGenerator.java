@@ -0,0 +1,185 @@
+package directory_comparator.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a synthetic old directory and a new directory derived from it,
+ * always the same for the same settings and seed, so benchmark runs can be
+ * compared with each other.
+ * <p>
+ * Files are spread over a tree of the given depth, with sizes between a
+ * minimum and a maximum following a log-uniform distribution, so there are
+ * many small files and a few big ones, like in real directories. A fraction
+ * of the files of the new directory differs from the old one: half of them
+ * are changed in a single byte, which is the worst case for a byte
+ * comparison, a quarter are deleted and a quarter are added. The files that
+ * don't change keep their modification time.
+ */
+public class TreeGenerator {
+
+	private final long seed;
+	private int fileCount = 1000;
+	private int depth = 3;
+	private int directoriesPerLevel = 4;
+	private long minSize = 1024;
+	private long maxSize = 1024 * 1024;
+	private double changeRatio = 0.1;
+
+	/**
+	 * Constructor.
+	 * @param seed The seed of the random generator.
+	 */
+	public TreeGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	public void setFileCount(int fileCount) {
+		this.fileCount = fileCount;
+	}
+
+	/**
+	 * Sets how deep the directories are nested.
+	 * @param depth The number of levels below the root.
+	 */
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+
+	public void setDirectoriesPerLevel(int directoriesPerLevel) {
+		this.directoriesPerLevel = directoriesPerLevel;
+	}
+
+	/**
+	 * Sets the range of sizes of the files.
+	 * @param minSize The minimum size in bytes.
+	 * @param maxSize The maximum size in bytes.
+	 */
+	public void setSizes(long minSize, long maxSize) {
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Sets the fraction of the files that differ between the two directories.
+	 * @param changeRatio A number between 0 and 1.
+	 */
+	public void setChangeRatio(double changeRatio) {
+		this.changeRatio = changeRatio;
+	}
+
+	/**
+	 * Generates the two directories, which must not exist.
+	 * @param oldDirectory Where to create the old directory.
+	 * @param newDirectory Where to create the new directory.
+	 * @throws IOException If a file can't be written.
+	 */
+	public void generate(Path oldDirectory, Path newDirectory) throws IOException {
+		Random random = new Random(this.seed);
+		List<Path> directories = new ArrayList<>();
+		this.addDirectories(Path.of(""), 0, directories);
+		for (Path directory : directories) {
+			Files.createDirectories(oldDirectory.resolve(directory));
+			Files.createDirectories(newDirectory.resolve(directory));
+		}
+		for (int i = 0; i < this.fileCount; i++) {
+			Path relativePath = directories.get(random.nextInt(directories.size())).resolve("file-" + i + ".dat");
+			long size = this.nextSize(random);
+			Path oldFile = oldDirectory.resolve(relativePath);
+			Path newFile = newDirectory.resolve(relativePath);
+			double change = random.nextDouble();
+			if (change < this.changeRatio / 4) {
+
+				// Deleted.
+				write(oldFile, size, random.nextLong(), -1);
+			} else if (change < this.changeRatio / 2) {
+
+				// Added.
+				write(newFile, size, random.nextLong(), -1);
+			} else if (change < this.changeRatio) {
+
+				// Changed.
+				long contentSeed = random.nextLong();
+				write(oldFile, size, contentSeed, -1);
+				write(newFile, size, contentSeed, size == 0 ? -1 : (long) (random.nextDouble() * size));
+			} else {
+				write(oldFile, size, random.nextLong(), -1);
+				Files.copy(oldFile, newFile, StandardCopyOption.COPY_ATTRIBUTES);
+			}
+		}
+	}
+
+	/**
+	 * Deletes a directory and all its contents, if it exists.
+	 * @param directory The directory.
+	 * @throws IOException If something can't be deleted.
+	 */
+	public static void delete(Path directory) throws IOException {
+		if (Files.exists(directory)) {
+			Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+					Files.delete(file);
+					return FileVisitResult.CONTINUE;
+				}
+				@Override
+				public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+					Files.delete(dir);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+	}
+
+	private void addDirectories(Path directory, int level, List<Path> directories) {
+		directories.add(directory);
+		if (level < this.depth) {
+			for (int i = 0; i < this.directoriesPerLevel; i++) {
+				this.addDirectories(directory.resolve("dir-" + i), level + 1, directories);
+			}
+		}
+	}
+
+	private long nextSize(Random random) {
+		long result;
+		if (this.minSize >= this.maxSize) {
+			result = this.minSize;
+		} else {
+			double logMin = Math.log(Math.max(1, this.minSize));
+			double logMax = Math.log(this.maxSize);
+			result = Math.max(this.minSize, Math.round(Math.exp(logMin + random.nextDouble() * (logMax - logMin))));
+		}
+		return result;
+	}
+
+	/**
+	 * Writes pseudo-random contents, flipping one byte if the position given
+	 * isn't negative.
+	 */
+	private static void write(Path file, long size, long contentSeed, long flippedByte) throws IOException {
+		Random random = new Random(contentSeed);
+		byte[] buffer = new byte[64 * 1024];
+		try (OutputStream output = Files.newOutputStream(file)) {
+			long position = 0;
+			while (position < size) {
+				random.nextBytes(buffer);
+				int length = (int) Math.min(buffer.length, size - position);
+				if (flippedByte >= position && flippedByte < position + length) {
+					int index = (int) (flippedByte - position);
+					buffer[index] = (byte) ~buffer[index];
+				}
+				output.write(buffer, 0, length);
+				position = position + length;
+			}
+		}
+	}
+}
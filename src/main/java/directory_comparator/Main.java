@@ -1,5 +1,6 @@
 package directory_comparator;
 
+import directory_comparator.cli.CommandLineApp;
 import directory_comparator.ui.AppWindow;
 
 /**
@@ -8,16 +9,22 @@ import directory_comparator.ui.AppWindow;
 public class Main {
 	
 	/**
-	 * The main method.
-	 * @param args Arguments. Not used.
+	 * The main method. Without arguments, it opens the window. With
+	 * arguments, it compares the given directories without a window and
+	 * exits with the status of the comparison.
+	 * @param args Arguments. See {@link directory_comparator.cli.CommandLineArguments#USAGE}.
 	 */
 	public static void main(String[] args) {
-        //Schedule a job for the event-dispatching thread:
-        //creating and showing this application's GUI.
-        javax.swing.SwingUtilities.invokeLater(new Runnable() {
-            public void run() {
-                new AppWindow();
-            }
-        });
+		if (args.length > 0) {
+			System.exit(new CommandLineApp(System.err).run(args));
+		} else {
+	        //Schedule a job for the event-dispatching thread:
+	        //creating and showing this application's GUI.
+	        javax.swing.SwingUtilities.invokeLater(new Runnable() {
+	            public void run() {
+	                new AppWindow();
+	            }
+	        });
+		}
     }
 }
@@ -0,0 +1,448 @@
+package directory_comparator.cli;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.DirectoryComparison;
+import directory_comparator.logic.DirectorySync;
+import directory_comparator.logic.LiveComparison;
+import directory_comparator.logic.SnapshotExporter;
+import directory_comparator.logic.Units;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.enums.SyncAction;
+import directory_comparator.logic.listeners.SnapshotExportListener;
+import directory_comparator.logic.listeners.SyncListener;
+import directory_comparator.logic.listeners.WatchListener;
+import directory_comparator.logic.models.ComparisonOutcome;
+import directory_comparator.logic.results.ComparisonResults;
+import directory_comparator.logic.results.CsvResultSink;
+import directory_comparator.logic.results.JsonResultSink;
+import directory_comparator.logic.results.ResultSink;
+
+/**
+ * Compares two directories without a window, for scripts and servers. The
+ * results are written to the standard output or to a file and the progress
+ * and the summary to the standard error, so they don't mix. When watching,
+ * the changes found after the comparison are shown too, until the program is
+ * stopped with Ctrl+C, which waits for the changes seen to be saved. It can also export a snapshot of a directory, to compare it later,
+ * and sync the old directory with the new one after comparing them.
+ */
+public class CommandLineApp {
+
+	/**
+	 * The exit status when the directories are identical.
+	 */
+	public static final int IDENTICAL = 0;
+
+	/**
+	 * The exit status when the directories differ.
+	 */
+	public static final int DIFFERENT = 1;
+
+	/**
+	 * The exit status when the comparison can't be done or some files can't
+	 * be compared.
+	 */
+	public static final int ERROR = 2;
+
+	private static final long PROGRESS_PERIOD = 500;
+
+	/**
+	 * The seconds that stopping the program waits for watching to end.
+	 */
+	private static final long STOP_TIMEOUT = 30;
+
+	private final PrintStream console;
+
+	/**
+	 * Constructor.
+	 * @param console Where the progress, the summary and the errors are
+	 * shown.
+	 */
+	public CommandLineApp(PrintStream console) {
+		this.console = console;
+	}
+
+	/**
+	 * Runs a comparison.
+	 * @param args The arguments of the program.
+	 * @return The exit status.
+	 */
+	public int run(String[] args) {
+		int result;
+		try {
+			CommandLineArguments arguments = CommandLineArguments.parse(args);
+			if (arguments.isHelp()) {
+				this.console.println(CommandLineArguments.USAGE);
+				result = IDENTICAL;
+			} else if (arguments.getSnapshotFile() != null) {
+				result = this.exportSnapshot(arguments);
+			} else {
+				result = this.compare(arguments);
+			}
+		} catch (IllegalArgumentException e) {
+			this.console.println("Error: " + e.getMessage());
+			this.console.println(CommandLineArguments.USAGE);
+			result = ERROR;
+		} catch (FileException e) {
+			this.console.println("Error: " + e.getMessage());
+			result = ERROR;
+		}
+		return result;
+	}
+
+	private int compare(CommandLineArguments arguments) throws FileException {
+		LiveComparison live = new LiveComparison(
+			arguments.getOldDirectory(), arguments.getNewDirectory(), arguments.getResultsDirectory(),
+			arguments.getOptions()
+		);
+		ProgressListener progress = new ProgressListener(live, arguments.isQuiet());
+		CountDownLatch finished = new CountDownLatch(1);
+		if (arguments.getOptions().isWatchEnabled()) {
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				progress.stop();
+				try {
+					finished.await(STOP_TIMEOUT, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+		}
+		try {
+			live.run(progress, this.createSink(arguments));
+		} finally {
+			finished.countDown();
+		}
+		ComparisonResults results = live.getComparison().getResults();
+		int result;
+		if (results.getCount(ResultKind.ERROR) > 0) {
+			result = ERROR;
+		} else if (results.getCount(ResultKind.CHANGED) + results.getCount(ResultKind.NEW)
+			+ results.getCount(ResultKind.DELETED) + results.getCount(ResultKind.MOVED) > 0) {
+			result = DIFFERENT;
+		} else {
+			result = IDENTICAL;
+		}
+		if (arguments.isSync()) {
+			result = this.sync(arguments, live.getComparison(), result);
+		}
+		return result;
+	}
+
+	/**
+	 * Syncs the old folder with the new one once they have been compared.
+	 * @return The exit status, which is the one of the comparison in a dry
+	 * run.
+	 */
+	private int sync(CommandLineArguments arguments, DirectoryComparison comparison, int comparisonStatus) throws FileException {
+		DirectorySync sync = new DirectorySync(
+			arguments.getOldDirectory(), arguments.getNewDirectory(), comparison.getFileManager().getReportFile(),
+			arguments.getOptions()
+		);
+		sync.setDeletionEnabled(arguments.isDeletionEnabled());
+		sync.setDryRun(arguments.isDryRun());
+		SyncProgressListener progress = new SyncProgressListener(sync, arguments.isQuiet(), arguments.isDryRun());
+		sync.sync(progress);
+		progress.clear();
+		if (!arguments.isQuiet()) {
+			if (arguments.isDryRun()) {
+				this.console.println("Files to copy: " + sync.getCopiedFiles() + ", " + Units.formatBytes(sync.getBytesCopied())
+					+ ". Files to delete: " + sync.getDeletedFiles() + ".");
+			} else {
+				this.console.println("Files copied: " + sync.getCopiedFiles() + ", " + Units.formatBytes(sync.getBytesCopied())
+					+ " at " + Units.formatBytes(sync.getCopyThroughput()) + "/s. Files deleted: " + sync.getDeletedFiles() + ".");
+			}
+			if (sync.getFailedFiles() > 0) {
+				this.console.println("Files that couldn't be synced: " + sync.getFailedFiles() + ".");
+			}
+			if (sync.isDeletionSkipped()) {
+				this.console.println("Nothing has been deleted because some files couldn't be copied.");
+			}
+		}
+		int result;
+		if (arguments.isDryRun()) {
+			result = comparisonStatus;
+		} else if (sync.getFailedFiles() > 0 || comparisonStatus == ERROR) {
+
+			// The files that couldn't be compared haven't been synced either.
+			result = ERROR;
+		} else {
+			result = IDENTICAL;
+		}
+		return result;
+	}
+
+	private int exportSnapshot(CommandLineArguments arguments) throws FileException {
+		SnapshotExporter exporter = new SnapshotExporter(
+			arguments.getNewDirectory(), arguments.getSnapshotFile(), arguments.getOptions()
+		);
+		SnapshotProgressListener progress = new SnapshotProgressListener(exporter, arguments.isQuiet());
+		exporter.export(progress);
+		progress.clear();
+		if (!arguments.isQuiet()) {
+			this.console.println("Files written to the snapshot " + arguments.getSnapshotFile() + ": " + exporter.getFiles() + ".");
+			if (exporter.getSkippedFiles() > 0) {
+				this.console.println("Files that couldn't be read: " + exporter.getSkippedFiles() + ".");
+			}
+			this.console.println("Read " + Units.formatBytes(exporter.getBytesRead()) + ".");
+		}
+		return exporter.getSkippedFiles() > 0 ? ERROR : IDENTICAL;
+	}
+
+	private void printSummary(DirectoryComparison comparison) {
+		ComparisonResults results = comparison.getResults();
+		int errors = results.getCount(ResultKind.ERROR);
+		this.console.println("Files in old folder: " + comparison.getOldFiles() + ".");
+		this.console.println("Files in new folder: " + comparison.getNewFiles() + ".");
+		this.console.println("Files changed: " + results.getCount(ResultKind.CHANGED) + ". Files added: "
+			+ results.getCount(ResultKind.NEW) + ". Files deleted: " + results.getCount(ResultKind.DELETED) + ".");
+		if (results.getCount(ResultKind.MOVED) > 0) {
+			this.console.println("Files moved or renamed: " + results.getCount(ResultKind.MOVED) + ".");
+		}
+		if (comparison.getResumedResults() > 0) {
+			this.console.println("Results restored from an interrupted comparison: " + comparison.getResumedResults() + ".");
+		}
+		if (errors > 0) {
+			this.console.println("Files that couldn't be compared: " + errors + ".");
+		}
+		if (comparison.getFileManager().getFilesInUnchangedDirectories() > 0) {
+			this.console.println("Files skipped in unchanged folders: "
+				+ comparison.getFileManager().getFilesInUnchangedDirectories() + ".");
+		}
+		long probablyEqualFiles = comparison.getFileManager().getProbablyEqualFiles();
+		if (probablyEqualFiles > 0) {
+			this.console.println("Files that are probably equal, compared by sampling: " + probablyEqualFiles
+				+ ". Verified: " + comparison.getVerifiedFiles() + ".");
+		}
+		long failedShortcuts = comparison.getFileManager().getFailedShortcuts();
+		if (failedShortcuts > 0) {
+			this.console.println("Warning: shortcuts that couldn't be created: " + failedShortcuts + ". "
+				+ comparison.getFileManager().getShortcutError().orElse(""));
+		}
+		this.console.println("Read " + Units.formatBytes(comparison.getBytesRead()) + ".");
+		this.console.println(comparison.getFileManager().getMetrics().createSummary());
+	}
+
+	private ResultSink createSink(CommandLineArguments arguments) throws FileException {
+		OutputStream output;
+		if (arguments.getOutputFile() == null) {
+			output = System.out;
+		} else {
+			try {
+				output = new FileOutputStream(arguments.getOutputFile());
+			} catch (IOException e) {
+				throw new FileException("Can't create the file " + arguments.getOutputFile() + ".");
+			}
+		}
+		Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 64 * 1024);
+		ResultSink result;
+		if (arguments.getFormat() == CommandLineArguments.OutputFormat.CSV) {
+			result = new CsvResultSink(writer);
+		} else {
+			result = new JsonResultSink(writer, arguments.getOldDirectory(), arguments.getNewDirectory());
+		}
+		return result;
+	}
+
+	/**
+	 * Shows the progress in a single line that is rewritten at most twice a
+	 * second, so a fast comparison isn't slowed down by the console. Every
+	 * full comparison ends with a summary and every change found while
+	 * watching is shown in a line of its own.
+	 */
+	private class ProgressListener implements WatchListener {
+
+		private final LiveComparison live;
+		private final boolean quiet;
+		private volatile boolean stopped;
+		private long lastUpdate;
+		private boolean shown;
+
+		private ProgressListener(LiveComparison live, boolean quiet) {
+			this.live = live;
+			this.quiet = quiet;
+		}
+
+		@Override
+		public void onOutcome(ComparisonOutcome outcome) {
+			this.update();
+		}
+
+		@Override
+		public void onWaiting() {
+			this.update();
+		}
+
+		@Override
+		public void onVerificationStarted(int files) {
+			this.clear();
+			if (!this.quiet) {
+				ComparisonResults results = this.live.getComparison().getResults();
+				console.println("Sampling finished. Files changed: " + results.getCount(ResultKind.CHANGED)
+					+ ". Files added: " + results.getCount(ResultKind.NEW) + ". Files deleted: "
+					+ results.getCount(ResultKind.DELETED) + ".");
+				console.println("Verifying " + files + " files that are probably equal...");
+			}
+		}
+
+		@Override
+		public void onMoveDetectionStarted(int files) {
+			this.clear();
+			if (!this.quiet) {
+				console.println("Looking for moved files among " + files + " new and deleted files of the same size...");
+			}
+		}
+
+		@Override
+		public void onComparisonFinished() {
+			this.clear();
+			if (!this.quiet) {
+				printSummary(this.live.getComparison());
+			}
+		}
+
+		@Override
+		public void onChange(String relativePath, Set<ResultKind> before, Set<ResultKind> after) {
+			this.clear();
+			console.println(relativePath + ": " + (before.isEmpty() ? "no results" : before) + " -> "
+				+ (after.isEmpty() ? "no results" : after));
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return stopped;
+		}
+
+		private void stop() {
+			this.stopped = true;
+		}
+
+		private void update() {
+			long now = System.currentTimeMillis();
+			if (!this.quiet && now - this.lastUpdate >= PROGRESS_PERIOD) {
+				this.lastUpdate = now;
+				this.shown = true;
+				console.print(String.format("\r%3d%% Processed %d files. Read %s.   ",
+					Math.min((int) (this.live.getComparison().getCompletedFraction() * 100), 100),
+					this.live.getComparison().getProcessedFiles(), Units.formatBytes(this.live.getComparison().getBytesRead())
+				));
+				console.flush();
+			}
+		}
+
+		private void clear() {
+			if (this.shown) {
+				console.println();
+				this.shown = false;
+			}
+		}
+	}
+
+	/**
+	 * Shows the progress of a snapshot export like {@link ProgressListener}
+	 * does for comparisons. Directories are exported from several threads,
+	 * so the line is only written by one of them at a time.
+	 */
+	private class SnapshotProgressListener implements SnapshotExportListener {
+
+		private final SnapshotExporter exporter;
+		private final boolean quiet;
+		private long lastUpdate;
+		private boolean shown;
+
+		private SnapshotProgressListener(SnapshotExporter exporter, boolean quiet) {
+			this.exporter = exporter;
+			this.quiet = quiet;
+		}
+
+		@Override
+		public synchronized void onDirectoryExported(int node, int files) {
+			long now = System.currentTimeMillis();
+			if (!this.quiet && now - this.lastUpdate >= PROGRESS_PERIOD) {
+				this.lastUpdate = now;
+				this.shown = true;
+				console.print(String.format("\r%3d%% Written %d files. Read %s.   ",
+					Math.min((int) (this.exporter.getCompletedFraction() * 100), 100),
+					this.exporter.getFiles(), Units.formatBytes(this.exporter.getBytesRead())
+				));
+				console.flush();
+			}
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		private synchronized void clear() {
+			if (this.shown) {
+				console.println();
+				this.shown = false;
+			}
+		}
+	}
+
+	/**
+	 * Shows the progress of a sync like {@link ProgressListener} does for
+	 * comparisons. In a dry run, every file that would be copied or deleted
+	 * is shown in a line of its own instead, even when quiet.
+	 */
+	private class SyncProgressListener implements SyncListener {
+
+		private final DirectorySync sync;
+		private final boolean quiet;
+		private final boolean dryRun;
+		private long lastUpdate;
+		private boolean shown;
+
+		private SyncProgressListener(DirectorySync sync, boolean quiet, boolean dryRun) {
+			this.sync = sync;
+			this.quiet = quiet;
+			this.dryRun = dryRun;
+		}
+
+		@Override
+		public synchronized void onFileSynced(SyncAction action, String relativePath, long size) {
+			long now = System.currentTimeMillis();
+			if (this.dryRun) {
+				console.println(action + " " + relativePath + " (" + Units.formatBytes(size) + ")");
+			} else if (!this.quiet && now - this.lastUpdate >= PROGRESS_PERIOD) {
+				this.lastUpdate = now;
+				this.shown = true;
+				console.print(String.format("\rCopied %d files, %s. Deleted %d files.   ",
+					this.sync.getCopiedFiles(), Units.formatBytes(this.sync.getBytesCopied()), this.sync.getDeletedFiles()
+				));
+				console.flush();
+			}
+		}
+
+		@Override
+		public synchronized void onFileFailed(SyncAction action, String relativePath, FileException error) {
+			this.clear();
+			console.println("Can't " + action.toString().toLowerCase(Locale.ROOT) + " " + relativePath + ": " + error.getMessage());
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		private synchronized void clear() {
+			if (this.shown) {
+				console.println();
+				this.shown = false;
+			}
+		}
+	}
+}
@@ -0,0 +1,330 @@
+package directory_comparator.cli;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import directory_comparator.logic.PathFilter;
+import directory_comparator.logic.enums.ComparisonMode;
+import directory_comparator.logic.enums.ThreadKind;
+import directory_comparator.logic.models.ComparisonOptions;
+import directory_comparator.logic.strategies.StrategySelector;
+
+/**
+ * The arguments of the program when it runs without a window.
+ */
+public class CommandLineArguments {
+
+	/**
+	 * How the program explains its arguments.
+	 */
+	public static final String USAGE = String.join("\n",
+		"Usage: directory-comparator [options] <old folder> <new folder> <results folder>",
+		"       directory-comparator [options] --export-snapshot <snapshot file> <folder>",
+		"",
+		"The old and new folders can also be ZIP or JAR archives, which are read without extracting them,",
+		"or snapshots of folders, which keep the digests of their files so only the other folder is read.",
+		"",
+		"Options:",
+		"  --format json|csv        Format of the results written to the output (default json).",
+		"  --output <file>          Write the results to a file instead of the standard output.",
+		"  --mode strict|quick|sampled",
+		"                           Compare every byte, trust size and modification time or compare",
+		"                           a few blocks of every file (default strict).",
+		"  --sample-blocks <n>      Blocks compared between the first and the last ones when sampling.",
+		"  --verify                 After sampling, read completely the files that are probably equal.",
+		"  --detect-moves           Report new and deleted files with the same contents as moved.",
+		"  --strategy <name>=<patterns>",
+		"                           Compare the files that match the comma separated patterns with a",
+		"                           strategy: bytes, digest or text, which ignores line endings and",
+		"                           trailing blanks. Repeatable, the first rule that matches wins.",
+		"  --threads <n>            Files compared at once.",
+		"  --listing-threads <n>    Folders listed at once.",
+		"  --virtual-threads        Compare files in virtual threads.",
+		"  --memory-budget <MB>     Memory for folder listings only. Bigger folders are sorted in",
+		"                           temporary files in the results folder. The digest cache isn't",
+		"                           covered.",
+		"  --digest-cache           Remember the digests of the files and folders between runs, so",
+		"                           unchanged folders aren't compared again.",
+		"  --shortcuts              Create shortcuts to the new and changed files in the results folder,",
+		"                           which only works on Windows. Off by default.",
+		"  --include <pattern>      Only compare the files that match a glob or regex: pattern. Repeatable.",
+		"  --exclude <pattern>      Skip the files and folders that match a glob or regex: pattern. Repeatable.",
+		"  --ignore-file <name>     Read ignore files with this name, like .gitignore, in every folder.",
+		"  --resume                 Keep a journal to resume the comparison if it's interrupted.",
+		"  --watch                  Keep watching the new folder and show what changes, until stopped.",
+		"  --watch-old              Watch the old folder too.",
+		"  --sync                   After comparing, copy the new, changed and moved files to the old",
+		"                           folder, so it matches the new one.",
+		"  --delete                 When syncing, delete the files that aren't in the new folder too.",
+		"  --dry-run                Show what --sync would do without changing anything.",
+		"  --export-snapshot <file> Write a snapshot of a folder, with the extension .snapshot, instead of",
+		"                           comparing. --include, --exclude and --ignore-file apply to it.",
+		"  --quiet                  Don't show progress.",
+		"  --help                   Show this help.",
+		"",
+		"Exit status: 0 if the folders are identical, 1 if they differ and 2 if there is an error,",
+		"including files that couldn't be compared. When exporting a snapshot, 0 if every file has been",
+		"written to it and 2 otherwise. When syncing, 0 if the old folder has been brought in line with",
+		"the new one and 2 otherwise."
+	);
+
+	private File oldDirectory;
+	private File newDirectory;
+	private File resultsDirectory;
+	private OutputFormat format = OutputFormat.JSON;
+	private File outputFile;
+	private File snapshotFile;
+	private boolean sync;
+	private boolean deletionEnabled;
+	private boolean dryRun;
+	private boolean quiet;
+	private boolean help;
+	private final ComparisonOptions options = new ComparisonOptions();
+
+	/**
+	 * Parses the arguments of the program.
+	 * @param args The arguments.
+	 * @return The parsed arguments.
+	 * @throws IllegalArgumentException If the arguments aren't valid.
+	 */
+	public static CommandLineArguments parse(String[] args) {
+		CommandLineArguments result = new CommandLineArguments();
+
+		// Shortcuts need Windows, and scripts read the results from the output.
+		result.options.setShortcutsEnabled(false);
+		List<String> directories = new ArrayList<>();
+		List<String> includes = new ArrayList<>();
+		List<String> excludes = new ArrayList<>();
+		List<String> strategies = new ArrayList<>();
+		String ignoreFileName = null;
+		int index = 0;
+		while (index < args.length) {
+			String arg = args[index];
+			switch (arg) {
+			case "--format":
+				index++;
+				result.format = parseEnum(OutputFormat.class, arg, value(args, index));
+				break;
+			case "--output":
+				index++;
+				result.outputFile = new File(value(args, index));
+				break;
+			case "--mode":
+				index++;
+				result.options.setComparisonMode(parseEnum(ComparisonMode.class, arg, value(args, index)));
+				break;
+			case "--sample-blocks":
+				index++;
+				result.options.setSampledBlocks(parseInt(arg, value(args, index)));
+				break;
+			case "--verify":
+				result.options.setVerificationEnabled(true);
+				break;
+			case "--detect-moves":
+				result.options.setMoveDetectionEnabled(true);
+				break;
+			case "--strategy":
+				index++;
+				strategies.add(value(args, index));
+				break;
+			case "--threads":
+				index++;
+				result.options.setComparisonThreads(parseInt(arg, value(args, index)));
+				break;
+			case "--listing-threads":
+				index++;
+				result.options.setListingThreads(parseInt(arg, value(args, index)));
+				break;
+			case "--virtual-threads":
+				result.options.setThreadKind(ThreadKind.VIRTUAL);
+				break;
+			case "--memory-budget":
+				index++;
+				result.options.setMemoryBudget(parseInt(arg, value(args, index)) * 1024L * 1024);
+				break;
+			case "--digest-cache":
+				result.options.setDigestCacheEnabled(true);
+				break;
+			case "--shortcuts":
+				result.options.setShortcutsEnabled(true);
+				break;
+			case "--no-shortcuts":
+				result.options.setShortcutsEnabled(false);
+				break;
+			case "--include":
+				index++;
+				includes.add(value(args, index));
+				break;
+			case "--exclude":
+				index++;
+				excludes.add(value(args, index));
+				break;
+			case "--ignore-file":
+				index++;
+				ignoreFileName = value(args, index);
+				break;
+			case "--resume":
+				result.options.setJournalEnabled(true);
+				break;
+			case "--watch":
+				result.options.setWatchEnabled(true);
+				break;
+			case "--watch-old":
+				result.options.setWatchEnabled(true);
+				result.options.setWatchOldEnabled(true);
+				break;
+			case "--sync":
+				result.sync = true;
+				break;
+			case "--delete":
+				result.deletionEnabled = true;
+				break;
+			case "--dry-run":
+				result.sync = true;
+				result.dryRun = true;
+				break;
+			case "--export-snapshot":
+				index++;
+				result.snapshotFile = new File(value(args, index));
+				break;
+			case "--quiet":
+				result.quiet = true;
+				break;
+			case "--help":
+				result.help = true;
+				break;
+			default:
+				if (arg.startsWith("--")) {
+					throw new IllegalArgumentException("Unknown option " + arg + ".");
+				}
+				directories.add(arg);
+			}
+			index++;
+		}
+		result.options.setFilter(new PathFilter(includes, excludes, ignoreFileName));
+		result.options.setStrategySelector(new StrategySelector(strategies));
+		if (result.deletionEnabled && !result.sync) {
+			throw new IllegalArgumentException("The option --delete only applies when syncing.");
+		}
+		if (result.sync && (result.snapshotFile != null || result.options.isWatchEnabled())) {
+			throw new IllegalArgumentException("The folders can't be synced when exporting a snapshot or watching.");
+		}
+		if (!result.help && result.snapshotFile != null) {
+			if (directories.size() != 1) {
+				throw new IllegalArgumentException("You must give the folder to take a snapshot of.");
+			}
+			result.newDirectory = new File(directories.get(0));
+		} else if (!result.help) {
+			if (directories.size() != 3) {
+				throw new IllegalArgumentException("You must give the old, the new and the results folders.");
+			}
+			result.oldDirectory = new File(directories.get(0));
+			result.newDirectory = new File(directories.get(1));
+			result.resultsDirectory = new File(directories.get(2));
+		}
+		return result;
+	}
+
+	public File getOldDirectory() {
+		return oldDirectory;
+	}
+
+	public File getNewDirectory() {
+		return newDirectory;
+	}
+
+	public File getResultsDirectory() {
+		return resultsDirectory;
+	}
+
+	public OutputFormat getFormat() {
+		return format;
+	}
+
+	/**
+	 * Returns the file where the results are written.
+	 * @return The file or <code>null</code> to write them to the standard
+	 * output.
+	 */
+	public File getOutputFile() {
+		return outputFile;
+	}
+
+	/**
+	 * Returns the file where a snapshot of the new folder is written.
+	 * @return The file or <code>null</code> to compare the folders.
+	 */
+	public File getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	/**
+	 * Tells whether the old folder is synced with the new one after the
+	 * comparison.
+	 * @return <code>true</code> to sync them, even in a dry run.
+	 */
+	public boolean isSync() {
+		return sync;
+	}
+
+	/**
+	 * Tells whether syncing deletes the files that aren't in the new folder.
+	 * @return <code>true</code> to delete them.
+	 */
+	public boolean isDeletionEnabled() {
+		return deletionEnabled;
+	}
+
+	/**
+	 * Tells whether syncing only shows what would be done.
+	 * @return <code>true</code> for a dry run.
+	 */
+	public boolean isDryRun() {
+		return dryRun;
+	}
+
+	public boolean isQuiet() {
+		return quiet;
+	}
+
+	public boolean isHelp() {
+		return help;
+	}
+
+	public ComparisonOptions getOptions() {
+		return options;
+	}
+
+	private static String value(String[] args, int index) {
+		if (index >= args.length) {
+			throw new IllegalArgumentException("The option " + args[index - 1] + " needs a value.");
+		}
+		return args[index];
+	}
+
+	private static int parseInt(String option, String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("The option " + option + " needs a number.");
+		}
+	}
+
+	private static <E extends Enum<E>> E parseEnum(Class<E> type, String option, String value) {
+		try {
+			return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown value " + value + " for the option " + option + ".");
+		}
+	}
+
+	/**
+	 * The formats the results can be written in.
+	 */
+	public enum OutputFormat {
+		JSON,
+		CSV
+	}
+}
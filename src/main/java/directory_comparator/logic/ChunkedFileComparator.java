@@ -0,0 +1,93 @@
+package directory_comparator.logic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+import directory_comparator.exceptions.FileException;
+
+/**
+ * Compares big files chunk by chunk through direct buffers, which the
+ * operating system fills without an extra copy. Between two chunks the bytes
+ * read are added to a counter and the current thread is checked for
+ * interruption, so a comparison of a file of several gigabytes shows progress
+ * and can be stopped. The comparison ends at the first chunk that differs.
+ */
+public class ChunkedFileComparator {
+
+	private final int chunkSize;
+	private final LongAdder bytesRead;
+	private final ThreadLocal<ByteBuffer[]> buffers;
+
+	/**
+	 * Constructor.
+	 * @param chunkSize The number of bytes of each file read at once.
+	 * @param bytesRead The counter where the bytes read are added.
+	 */
+	public ChunkedFileComparator(int chunkSize, LongAdder bytesRead) {
+		this.chunkSize = chunkSize;
+		this.bytesRead = bytesRead;
+		this.buffers = ThreadLocal.withInitial(() -> new ByteBuffer[] {
+			ByteBuffer.allocateDirect(chunkSize), ByteBuffer.allocateDirect(chunkSize)
+		});
+	}
+
+	/**
+	 * Tells whether two files of the same size have the same contents.
+	 * @param path A file.
+	 * @param path2 Another file.
+	 * @param size The size of both files.
+	 * @return <code>true</code> if the files are equal.
+	 * @throws FileException If the files can't be read or the current thread
+	 * is interrupted.
+	 */
+	public boolean filesEqual(Path path, Path path2, long size) throws FileException {
+		ByteBuffer[] chunks = this.buffers.get();
+		boolean result = true;
+		try (
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+			FileChannel channel2 = FileChannel.open(path2, StandardOpenOption.READ)
+		) {
+			long position = 0;
+			while (result && position < size) {
+				if (Thread.currentThread().isInterrupted()) {
+					throw new ClosedByInterruptException();
+				}
+				int length = (int) Math.min(this.chunkSize, size - position);
+				read(channel, chunks[0], position, length);
+				read(channel2, chunks[1], position, length);
+				result = chunks[0].mismatch(chunks[1]) == -1;
+				position = position + length;
+				this.bytesRead.add(2L * length);
+			}
+		} catch (NoSuchFileException e) {
+			throw new FileException("It looks like the file " + e.getFile() + " doesn't exist anymore.");
+		} catch (ClosedByInterruptException e) {
+			throw new FileException("The comparison of " + path + " with " + path2 + " has been stopped.");
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new FileException("I/O error when comparing " + path + " with " + path2 + ".");
+		}
+		return result;
+	}
+
+	/**
+	 * Fills the buffer with the given part of the file. A file that has
+	 * become shorter since it was listed leaves fewer bytes in the buffer,
+	 * so it doesn't match the other file.
+	 */
+	private static void read(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+		buffer.clear();
+		buffer.limit(length);
+		int read = 0;
+		while (buffer.hasRemaining() && read >= 0) {
+			read = channel.read(buffer, position + buffer.position());
+		}
+		buffer.flip();
+	}
+}
@@ -0,0 +1,404 @@
+package directory_comparator.logic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.ComparisonMode;
+import directory_comparator.logic.enums.EntryStatus;
+import directory_comparator.logic.models.ComparisonOutcome;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+import directory_comparator.logic.strategies.StrategySelector;
+import directory_comparator.logic.results.ResultSink;
+
+/**
+ * A journal of a comparison in the results directory, so a comparison that
+ * is stopped or dies can be resumed by a later run instead of starting over.
+ * <p>
+ * The journal records every outcome that produces a result and, once all the
+ * files directly inside a directory have been collected, that the directory
+ * is complete. It's written continuously and forced to the disk every few
+ * seconds, so at most the last seconds of work are lost. A record cut by a
+ * crash is ignored.
+ * <p>
+ * When a run resumes, the results of the complete directories are restored
+ * and their files aren't compared again. The results of the directories
+ * that weren't complete are discarded, because those directories are
+ * compared again. A journal of other directories, another comparison mode,
+ * another filter or other comparison strategies is ignored. The journal is
+ * deleted when a comparison ends.
+ */
+public class ComparisonJournal {
+
+	private static final int MAGIC = 0x434A4E31;
+	private static final int VERSION = 3;
+	private static final byte OUTCOME = 'O';
+	private static final byte DIRECTORY = 'D';
+
+	/**
+	 * How often, in milliseconds, the journal is forced to the disk.
+	 */
+	private static final long CHECKPOINT_PERIOD = 2000;
+
+	private final File journalFile;
+	private final Path oldRoot;
+	private final Path newRoot;
+	private final ComparisonMode comparisonMode;
+	private final PathFilter filter;
+	private final StrategySelector strategySelector;
+	private final PathIndex pathIndex;
+	private final Set<Integer> resumedDirectories = new HashSet<>();
+	private final Map<Integer, AtomicInteger> pendingFiles = new ConcurrentHashMap<>();
+	private FileChannel channel;
+	private DataOutputStream output;
+	private long lastCheckpoint;
+
+	/**
+	 * Constructor.
+	 * @param journalFile The journal file.
+	 * @param oldDirectory The old directory.
+	 * @param newDirectory The new directory.
+	 * @param comparisonMode How the files are compared.
+	 * @param filter Which files and directories are skipped.
+	 * @param strategySelector How every file is compared.
+	 * @param pathIndex The index of the directories of the comparison.
+	 */
+	public ComparisonJournal(
+		File journalFile, File oldDirectory, File newDirectory, ComparisonMode comparisonMode, PathFilter filter,
+		StrategySelector strategySelector, PathIndex pathIndex
+	) {
+		this.journalFile = journalFile;
+		this.oldRoot = oldDirectory.toPath();
+		this.newRoot = newDirectory.toPath();
+		this.comparisonMode = comparisonMode;
+		this.filter = filter;
+		this.strategySelector = strategySelector;
+		this.pathIndex = pathIndex;
+	}
+
+	/**
+	 * Restores the results of the directories that a previous run completed
+	 * and opens the journal for this run.
+	 * @param sink Where the restored outcomes are sent.
+	 * @return The number of outcomes restored.
+	 * @throws FileException If the journal can't be written or the sink
+	 * fails.
+	 */
+	public int open(ResultSink sink) throws FileException {
+		Set<String> completeDirectories = new HashSet<>();
+		int result = 0;
+		Path temporaryFile = this.journalFile.toPath().resolveSibling(this.journalFile.getName() + ".tmp");
+		try {
+			this.readCompleteDirectories(completeDirectories);
+			this.openOutput(temporaryFile, false);
+			for (String directory : completeDirectories) {
+				this.resumedDirectories.add(this.pathIndex.find(directory));
+				this.output.writeByte(DIRECTORY);
+				this.output.writeUTF(directory);
+			}
+			if (!completeDirectories.isEmpty()) {
+				result = this.restoreOutcomes(completeDirectories, sink);
+			}
+			this.closeOutput();
+			try {
+				Files.move(temporaryFile, this.journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, this.journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			this.openOutput(this.journalFile.toPath(), true);
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new FileException("Can't write the journal " + this.journalFile + ".");
+		}
+		return result;
+	}
+
+	/**
+	 * Tells whether a directory was completed by the run that is being
+	 * resumed.
+	 * @param node The node of the directory.
+	 * @return <code>true</code> if its files don't have to be compared.
+	 */
+	public boolean isResumed(int node) {
+		return this.resumedDirectories.contains(node);
+	}
+
+	/**
+	 * Records that all the files directly inside a directory have been
+	 * found. It can be called from any thread.
+	 * @param node The node of the directory.
+	 * @param files The number of files found.
+	 * @throws FileException If the journal can't be written.
+	 */
+	public void directoryWalked(int node, int files) throws FileException {
+		if (!this.isResumed(node) && this.pending(node).addAndGet(-files) == 0) {
+			this.complete(node);
+		}
+	}
+
+	/**
+	 * Records the outcome of a file that has been collected.
+	 * @param outcome The outcome.
+	 * @throws FileException If the journal can't be written.
+	 */
+	public void record(ComparisonOutcome outcome) throws FileException {
+		if (!outcome.isResumed()) {
+			FileEntry entry = outcome.getNewEntry() == null ? outcome.getOldEntry() : outcome.getNewEntry();
+			if (hasResults(outcome)) {
+				this.write(outcome, entry);
+			}
+			if (this.pending(entry.getDirectoryNode()).incrementAndGet() == 0) {
+				this.complete(entry.getDirectoryNode());
+			}
+		}
+		this.checkpoint();
+	}
+
+	/**
+	 * Forces the journal to the disk if it hasn't been done for a while.
+	 * @throws FileException If the journal can't be written.
+	 */
+	public synchronized void checkpoint() throws FileException {
+		long now = System.currentTimeMillis();
+		if (now - this.lastCheckpoint >= CHECKPOINT_PERIOD) {
+			this.lastCheckpoint = now;
+			try {
+				this.output.flush();
+				this.channel.force(false);
+			} catch (IOException e) {
+				throw new FileException("Can't write the journal " + this.journalFile + ".");
+			}
+		}
+	}
+
+	/**
+	 * Closes the journal.
+	 * @param complete <code>true</code> if the comparison has ended, so the
+	 * journal isn't needed anymore and is deleted.
+	 * @throws FileException If the journal can't be written.
+	 */
+	public synchronized void close(boolean complete) throws FileException {
+		try {
+			this.closeOutput();
+			if (complete) {
+				Files.deleteIfExists(this.journalFile.toPath());
+			}
+		} catch (IOException e) {
+			throw new FileException("Can't write the journal " + this.journalFile + ".");
+		}
+	}
+
+	private AtomicInteger pending(int node) {
+		return this.pendingFiles.computeIfAbsent(node, key -> new AtomicInteger());
+	}
+
+	/**
+	 * Records that a directory is complete. The walk can still be going on
+	 * for a while after a stopped comparison has closed the journal, and
+	 * then nothing is recorded.
+	 */
+	private synchronized void complete(int node) throws FileException {
+		this.pendingFiles.remove(node);
+		if (this.output != null) {
+			try {
+				this.output.writeByte(DIRECTORY);
+				this.output.writeUTF(this.pathIndex.getRelativePath(node));
+			} catch (IOException e) {
+				throw new FileException("Can't write the journal " + this.journalFile + ".");
+			}
+		}
+	}
+
+	private synchronized void write(ComparisonOutcome outcome, FileEntry entry) throws FileException {
+		try {
+			this.output.writeByte(OUTCOME);
+			this.output.writeByte(outcome.getStatus().ordinal());
+			this.output.writeBoolean(outcome.isChanged());
+			this.output.writeUTF(entry.getRelativePath());
+			this.output.writeLong(outcome.getOldEntry() == null ? -1 : outcome.getOldEntry().getSize());
+			this.output.writeLong(outcome.getNewEntry() == null ? -1 : outcome.getNewEntry().getSize());
+			this.output.writeBoolean(outcome.getError() != null);
+			if (outcome.getError() != null) {
+				this.output.writeUTF(String.valueOf(outcome.getError().getMessage()));
+			}
+		} catch (IOException e) {
+			throw new FileException("Can't write the journal " + this.journalFile + ".");
+		}
+	}
+
+	/**
+	 * Reads the directories that the previous run completed, if the journal
+	 * belongs to the same comparison.
+	 */
+	private void readCompleteDirectories(Set<String> completeDirectories) {
+		try (DataInputStream input = this.openInput()) {
+			if (input != null) {
+				byte type = this.nextRecord(input);
+				while (type != 0) {
+					if (type == DIRECTORY) {
+						completeDirectories.add(input.readUTF());
+					} else {
+						readOutcome(input);
+					}
+					type = this.nextRecord(input);
+				}
+			}
+		} catch (EOFException e) {
+
+			// The last record was cut by a crash.
+		} catch (IOException e) {
+			completeDirectories.clear();
+			System.err.println("WARNING: ignoring the journal " + this.journalFile + " because it can't be read: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Sends the outcomes of the complete directories to the sink and copies
+	 * them to the new journal.
+	 */
+	private int restoreOutcomes(Set<String> completeDirectories, ResultSink sink) throws IOException, FileException {
+		int result = 0;
+		try (DataInputStream input = this.openInput()) {
+			byte type = this.nextRecord(input);
+			while (type != 0) {
+				if (type == DIRECTORY) {
+					input.readUTF();
+				} else {
+					ComparisonOutcome outcome = this.readOutcome(input);
+					FileEntry entry = outcome.getNewEntry() == null ? outcome.getOldEntry() : outcome.getNewEntry();
+					if (completeDirectories.contains(this.pathIndex.getRelativePath(entry.getDirectoryNode()))) {
+						this.write(outcome, entry);
+						outcome.setResumed(true);
+						sink.accept(outcome);
+						result++;
+					}
+				}
+				type = this.nextRecord(input);
+			}
+		} catch (EOFException e) {
+
+			// The last record was cut by a crash.
+		}
+		return result;
+	}
+
+	/**
+	 * Opens the journal of a previous run and skips its header.
+	 * @return The stream or <code>null</code> if there is no journal or it
+	 * belongs to another comparison.
+	 */
+	private DataInputStream openInput() throws IOException {
+		DataInputStream result;
+		try {
+			result = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.journalFile.toPath())));
+			try {
+				if (result.readInt() != MAGIC || result.readInt() != VERSION
+					|| !result.readUTF().equals(this.oldRoot.toAbsolutePath().toString())
+					|| !result.readUTF().equals(this.newRoot.toAbsolutePath().toString())
+					|| !result.readUTF().equals(this.comparisonMode.name())
+					|| !result.readUTF().equals(this.filter.toString())
+					|| !result.readUTF().equals(this.strategySelector.toString())) {
+					result.close();
+					result = null;
+				}
+			} catch (EOFException e) {
+				result.close();
+				result = null;
+			}
+		} catch (NoSuchFileException e) {
+			result = null;
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the type of the next record.
+	 * @return The type or 0 at the end of the journal.
+	 */
+	private byte nextRecord(DataInputStream input) throws IOException {
+		int result = input.read();
+		if (result > 0 && result != OUTCOME && result != DIRECTORY) {
+			throw new IOException("unknown record");
+		}
+		return result < 0 ? 0 : (byte) result;
+	}
+
+	private ComparisonOutcome readOutcome(DataInputStream input) throws IOException {
+		EntryStatus status = EntryStatus.values()[input.readUnsignedByte()];
+		boolean changed = input.readBoolean();
+		String relativePath = input.readUTF();
+		long oldSize = input.readLong();
+		long newSize = input.readLong();
+		String error = input.readBoolean() ? input.readUTF() : null;
+		int separator = relativePath.lastIndexOf('/');
+		int directory = separator < 0 ? PathIndex.ROOT : this.pathIndex.find(relativePath.substring(0, separator));
+		String name = relativePath.substring(separator + 1);
+		ComparisonOutcome result = new ComparisonOutcome(
+			status,
+			oldSize < 0 ? null : new FileEntry(this.oldRoot, this.pathIndex, directory, name, oldSize),
+			newSize < 0 ? null : new FileEntry(this.newRoot, this.pathIndex, directory, name, newSize)
+		);
+		result.setChanged(changed);
+		if (error != null) {
+			result.setError(new FileException(error));
+		}
+		return result;
+	}
+
+	private void openOutput(Path file, boolean append) throws IOException {
+		if (append) {
+			this.channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		} else {
+			this.channel = FileChannel.open(
+				file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+			);
+		}
+		this.output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(this.channel), 64 * 1024));
+		if (!append) {
+			this.output.writeInt(MAGIC);
+			this.output.writeInt(VERSION);
+			this.output.writeUTF(this.oldRoot.toAbsolutePath().toString());
+			this.output.writeUTF(this.newRoot.toAbsolutePath().toString());
+			this.output.writeUTF(this.comparisonMode.name());
+			this.output.writeUTF(this.filter.toString());
+			this.output.writeUTF(this.strategySelector.toString());
+		}
+	}
+
+	private void closeOutput() throws IOException {
+		if (this.output != null) {
+			this.output.flush();
+			this.channel.force(false);
+			this.output.close();
+			this.output = null;
+		}
+	}
+
+	/**
+	 * Tells whether an outcome produces any result, so it has to be
+	 * restored.
+	 */
+	private static boolean hasResults(ComparisonOutcome outcome) {
+		return outcome.getStatus() != EntryStatus.COMMON || outcome.isChanged() || outcome.getError() != null
+			|| outcome.getNewEntry().getSize() == 0;
+	}
+}
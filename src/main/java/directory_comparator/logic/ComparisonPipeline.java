@@ -0,0 +1,268 @@
+package directory_comparator.logic;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.EntryStatus;
+import directory_comparator.logic.enums.ThreadKind;
+import directory_comparator.logic.listeners.ComparisonListener;
+import directory_comparator.logic.listeners.WalkListener;
+import directory_comparator.logic.models.ComparisonOptions;
+import directory_comparator.logic.models.ComparisonOutcome;
+import directory_comparator.logic.models.FileEntry;
+
+/**
+ * Compares two directories in three stages that run at the same time:
+ * <ol>
+ * <li>A traversal thread walks both directories and classifies files.</li>
+ * <li>A pool of comparison threads compares the contents of the files that
+ * exist in both directories.</li>
+ * <li>The thread that runs the pipeline collects every result and passes it
+ * to a {@link ComparisonListener}.</li>
+ * </ol>
+ * The stages are connected through bounded queues, so a fast stage waits
+ * for a slow one instead of piling up files in memory.
+ * <p>
+ * The files of the directories that the {@link FileManager} knows to be
+ * equal skip the second stage, see
+ * {@link FileManager#directoryListed(int, List, List)}.
+ */
+public class ComparisonPipeline {
+
+	/**
+	 * Tells a comparison thread that there are no more files to compare.
+	 */
+	private static final ComparisonOutcome NO_MORE_CANDIDATES = new ComparisonOutcome(null, null, null);
+
+	/**
+	 * Tells the collector that a comparison thread has finished.
+	 */
+	private static final ComparisonOutcome WORKER_FINISHED = new ComparisonOutcome(null, null, null);
+
+	/**
+	 * How often, in milliseconds, the listener is told that the collector is
+	 * still waiting for results.
+	 */
+	private static final long WAITING_NOTICE_PERIOD = 250;
+
+	private final FileManager fileManager;
+	private final MergeWalker walker;
+	private final ComparisonOptions options;
+	private final BlockingQueue<ComparisonOutcome> candidates;
+	private final BlockingQueue<ComparisonOutcome> outcomes;
+	private final Set<Integer> unchangedDirectories = ConcurrentHashMap.newKeySet();
+	private IntPredicate resumedDirectories = node -> false;
+	private volatile boolean stopped;
+
+	/**
+	 * Constructor.
+	 * @param fileManager The object that knows the directories and how to
+	 * compare files.
+	 * @param options The comparison settings.
+	 */
+	public ComparisonPipeline(FileManager fileManager, ComparisonOptions options) {
+		this.fileManager = fileManager;
+		this.walker = new MergeWalker(
+			fileManager.getOldSource(), fileManager.getNewSource(),
+			fileManager.getPathIndex(), options.getListingThreads(), options.getFilter(), fileManager.getMetrics()
+		);
+		this.walker.setMemoryBudget(new File(fileManager.getResultsDirectory(), "Spill").toPath(), options.getMemoryBudget());
+		this.options = options;
+		this.candidates = new ArrayBlockingQueue<>(options.getQueueCapacity());
+		this.outcomes = new ArrayBlockingQueue<>(options.getQueueCapacity());
+	}
+
+	/**
+	 * Returns how much of the two directories has been walked.
+	 * @return A number between 0 and 1.
+	 * @see MergeWalker#getCompletedFraction()
+	 */
+	public double getCompletedFraction() {
+		return this.walker.getCompletedFraction();
+	}
+
+	/**
+	 * Sets the directories whose files were already compared by an
+	 * interrupted run. Their files are still walked, so they are counted,
+	 * but they are passed to the listener without being compared, marked as
+	 * {@link ComparisonOutcome#isResumed() resumed}.
+	 * @param resumedDirectories Tells whether a directory node is resumed.
+	 */
+	public void setResumedDirectories(IntPredicate resumedDirectories) {
+		this.resumedDirectories = resumedDirectories;
+	}
+
+	/**
+	 * Runs the comparison and blocks until every file has been passed to the
+	 * listener, the listener asks to stop or the current thread is
+	 * interrupted.
+	 * @param listener The listener that collects the results.
+	 * @throws FileException If a directory can't be walked. Files that can't
+	 * be compared are passed to the listener with their errors.
+	 */
+	public void run(ComparisonListener listener) throws FileException {
+		int workers = this.options.getComparisonThreads();
+		ExecutorService executor = createExecutor(this.options.getThreadKind(), workers + 1);
+		try {
+			executor.execute(() -> this.traverse(workers, listener));
+			for (int i = 0; i < workers; i++) {
+				executor.execute(this::compare);
+			}
+			this.collect(listener, workers);
+		} finally {
+			this.stopped = true;
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * The first stage. The walker lists directories in its own fork-join
+	 * pool, whose threads put the files found into the queues.
+	 */
+	private void traverse(int workers, ComparisonListener listener) {
+		try {
+			this.walker.walk(new WalkListener() {
+				@Override
+				public void onEntry(EntryStatus status, FileEntry oldEntry, FileEntry newEntry) {
+					ComparisonOutcome outcome = new ComparisonOutcome(status, oldEntry, newEntry);
+					FileEntry entry = newEntry == null ? oldEntry : newEntry;
+					if (resumedDirectories.test(entry.getDirectoryNode())) {
+						outcome.setResumed(true);
+						put(outcomes, outcome);
+					} else if (status == EntryStatus.COMMON && !unchangedDirectories.contains(entry.getDirectoryNode())) {
+						put(candidates, outcome);
+					} else {
+						put(outcomes, outcome);
+					}
+				}
+				@Override
+				public void onDirectoryListed(int node, List<FileEntry> oldChildren, List<FileEntry> newChildren) {
+					if (fileManager.directoryListed(node, oldChildren, newChildren)) {
+						unchangedDirectories.add(node);
+					}
+				}
+				@Override
+				public void onDirectoryWalked(int node, int files) throws FileException {
+					listener.onDirectoryWalked(node, files);
+				}
+				@Override
+				public boolean isCancelled() {
+					return stopped;
+				}
+			});
+		} catch (FileException e) {
+			this.fail(e);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			this.fail(new FileException("Unexpected error while walking the folders."));
+		} finally {
+			for (int i = 0; i < workers; i++) {
+				this.put(this.candidates, NO_MORE_CANDIDATES);
+			}
+		}
+	}
+
+	/**
+	 * The second stage.
+	 */
+	private void compare() {
+		try {
+			ComparisonOutcome candidate = this.candidates.take();
+			while (candidate != NO_MORE_CANDIDATES) {
+				if (!this.stopped) {
+					try {
+						candidate.setChanged(!this.fileManager.filesEqual(
+							candidate.getOldEntry(), candidate.getNewEntry()
+						));
+					} catch (FileException e) {
+						candidate.setError(e);
+					} catch (RuntimeException e) {
+						e.printStackTrace();
+						candidate.setError(new FileException(
+							"Unexpected error when comparing " + candidate.getNewEntry().getPath() + "."
+						));
+					}
+					this.outcomes.put(candidate);
+				}
+				candidate = this.candidates.take();
+			}
+			this.outcomes.put(WORKER_FINISHED);
+		} catch (InterruptedException e) {
+			this.stopped = true;
+		}
+	}
+
+	/**
+	 * The third stage.
+	 */
+	private void collect(ComparisonListener listener, int workers) throws FileException {
+		int finishedWorkers = 0;
+		try {
+			while (finishedWorkers < workers && !listener.isCancelled()) {
+				ComparisonOutcome outcome = this.outcomes.poll(WAITING_NOTICE_PERIOD, TimeUnit.MILLISECONDS);
+				if (outcome == null) {
+					listener.onWaiting();
+				} else if (outcome == WORKER_FINISHED) {
+					finishedWorkers++;
+				} else if (outcome.getStatus() == null) {
+					throw outcome.getError();
+				} else {
+					listener.onOutcome(outcome);
+				}
+			}
+		} catch (InterruptedException e) {
+
+			// The task has been cancelled.
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Stops the collector with an error that affects the whole comparison,
+	 * which is told apart from the errors of single files because it has no
+	 * status.
+	 */
+	private void fail(FileException error) {
+		ComparisonOutcome failure = new ComparisonOutcome(null, null, null);
+		failure.setError(error);
+		this.put(this.outcomes, failure);
+	}
+
+	/**
+	 * Waits until there is room in the queue. The threads of the walker
+	 * aren't interrupted when the pipeline stops, so they give up waiting
+	 * once the pipeline has stopped.
+	 */
+	private void put(BlockingQueue<ComparisonOutcome> queue, ComparisonOutcome outcome) {
+		try {
+			boolean added = false;
+			while (!added && !this.stopped) {
+				added = queue.offer(outcome, 100, TimeUnit.MILLISECONDS);
+			}
+		} catch (InterruptedException e) {
+			this.stopped = true;
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static ExecutorService createExecutor(ThreadKind threadKind, int threads) {
+		ExecutorService result;
+		if (threadKind == ThreadKind.VIRTUAL) {
+			result = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("comparison-", 0).factory());
+		} else {
+			ThreadFactory threadFactory = Thread.ofPlatform().name("comparison-", 0).daemon().factory();
+			result = Executors.newFixedThreadPool(threads, threadFactory);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,215 @@
+package directory_comparator.logic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+
+/**
+ * A persistent cache of the content digests of the files of a directory. An
+ * entry is only valid while the file keeps the same relative path, size,
+ * modification time and file key it had when its digest was calculated, so
+ * a file that hasn't been touched since the last run can be compared
+ * without being opened.
+ * <p>
+ * In memory, entries are grouped by the node of their directory in the
+ * {@link PathIndex} of the comparison, so the path of a directory isn't
+ * repeated for every file it contains.
+ * <p>
+ * Only the entries used during a run are saved, which evicts the ones of
+ * files that don't exist anymore. The cache is written to a temporary file
+ * that replaces the old one at once, so a crash never leaves a half-written
+ * cache behind.
+ */
+public class DigestCache {
+
+	private static final int MAGIC = 0x44474331;
+	private static final int VERSION = 1;
+
+	private final Path cacheFile;
+	private final PathIndex pathIndex;
+	private final Map<Integer, Map<String, Entry>> entries = new ConcurrentHashMap<>();
+	private final Map<Integer, Map<String, Entry>> usedEntries = new ConcurrentHashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Creates a cache backed by the given file, loading it if it exists. A
+	 * cache file that can't be read is ignored.
+	 * @param cacheFile The file.
+	 * @param pathIndex The index of the directories of the comparison.
+	 */
+	public DigestCache(Path cacheFile, PathIndex pathIndex) {
+		this.cacheFile = cacheFile;
+		this.pathIndex = pathIndex;
+		try {
+			this.load();
+		} catch (IOException e) {
+			this.entries.clear();
+			System.err.println("WARNING: ignoring the digest cache " + cacheFile + " because it can't be read: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the digest of a file if it's known and the file hasn't changed
+	 * since it was calculated.
+	 * @param entry The file.
+	 * @return The digest or <code>null</code> if it isn't known.
+	 */
+	public byte[] lookup(FileEntry entry) {
+		Entry cached = this.entries.getOrDefault(entry.getDirectoryNode(), Map.of()).get(entry.getName());
+		byte[] result;
+		if (cached != null && cached.matches(entry)) {
+			put(this.usedEntries, entry.getDirectoryNode(), entry.getName(), cached);
+			this.hits.increment();
+			result = cached.digest;
+		} else {
+			this.misses.increment();
+			result = null;
+		}
+		return result;
+	}
+
+	/**
+	 * Remembers the digest of a file.
+	 * @param entry The file.
+	 * @param digest The digest of its contents.
+	 */
+	public void put(FileEntry entry, byte[] digest) {
+		Entry cached = new Entry(entry.getSize(), entry.getLastModified(), fileKey(entry), digest);
+		put(this.entries, entry.getDirectoryNode(), entry.getName(), cached);
+		put(this.usedEntries, entry.getDirectoryNode(), entry.getName(), cached);
+	}
+
+	/**
+	 * Keeps the digest of a file that hasn't changed and isn't looked up,
+	 * so it isn't evicted when the cache is saved.
+	 * @param entry The file.
+	 */
+	public void keep(FileEntry entry) {
+		Entry cached = this.entries.getOrDefault(entry.getDirectoryNode(), Map.of()).get(entry.getName());
+		if (cached != null && cached.matches(entry)) {
+			put(this.usedEntries, entry.getDirectoryNode(), entry.getName(), cached);
+		}
+	}
+
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * Writes the cache to its file.
+	 * @param evict <code>true</code> to keep only the entries that have been
+	 * used since the cache was loaded, which should only be done after a
+	 * complete run.
+	 * @throws FileException If the cache can't be written.
+	 */
+	public void save(boolean evict) throws FileException {
+		Map<Integer, Map<String, Entry>> entriesToSave = evict ? this.usedEntries : this.entries;
+		Path temporaryFile = this.cacheFile.resolveSibling(this.cacheFile.getFileName() + ".tmp");
+		try {
+			Files.createDirectories(this.cacheFile.getParent());
+			try (FileChannel channel = FileChannel.open(
+				temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+			)) {
+				DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.writeInt(entriesToSave.values().stream().mapToInt(Map::size).sum());
+				for (Map.Entry<Integer, Map<String, Entry>> directory : entriesToSave.entrySet()) {
+					for (Map.Entry<String, Entry> entry : directory.getValue().entrySet()) {
+						Entry cached = entry.getValue();
+						output.writeUTF(this.pathIndex.getRelativePath(directory.getKey(), entry.getKey()));
+						output.writeLong(cached.size);
+						output.writeLong(cached.lastModified);
+						output.writeUTF(cached.fileKey);
+						output.writeShort(cached.digest.length);
+						output.write(cached.digest);
+					}
+				}
+				output.flush();
+				channel.force(true);
+			}
+			try {
+				Files.move(temporaryFile, this.cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, this.cacheFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new FileException("Can't save the digest cache " + this.cacheFile + ".");
+		}
+	}
+
+	private void load() throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.cacheFile)))) {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				throw new IOException("unknown format");
+			}
+			int count = input.readInt();
+			for (int i = 0; i < count; i++) {
+				String relativePath = input.readUTF();
+				long size = input.readLong();
+				long lastModified = input.readLong();
+				String fileKey = input.readUTF();
+				byte[] digest = new byte[input.readUnsignedShort()];
+				input.readFully(digest);
+				int separator = relativePath.lastIndexOf('/');
+				int directory = separator < 0 ? PathIndex.ROOT : this.pathIndex.find(relativePath.substring(0, separator));
+				put(this.entries, directory, relativePath.substring(separator + 1), new Entry(size, lastModified, fileKey, digest));
+			}
+		} catch (NoSuchFileException e) {
+
+			// The first run with this cache.
+		}
+	}
+
+	private static void put(Map<Integer, Map<String, Entry>> entries, int directory, String name, Entry entry) {
+		entries.computeIfAbsent(directory, key -> new ConcurrentHashMap<>()).put(name, entry);
+	}
+
+	private static String fileKey(FileEntry entry) {
+		return Objects.toString(entry.getFileKey(), "");
+	}
+
+	private static class Entry {
+
+		private final long size;
+		private final long lastModified;
+		private final String fileKey;
+		private final byte[] digest;
+
+		private Entry(long size, long lastModified, String fileKey, byte[] digest) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.fileKey = fileKey;
+			this.digest = digest;
+		}
+
+		private boolean matches(FileEntry entry) {
+			return this.size == entry.getSize() && this.lastModified == entry.getLastModified()
+				&& this.fileKey.equals(fileKey(entry));
+		}
+	}
+}
@@ -0,0 +1,326 @@
+package directory_comparator.logic;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.listeners.ComparisonListener;
+import directory_comparator.logic.models.ComparisonOptions;
+import directory_comparator.logic.models.ComparisonOutcome;
+import directory_comparator.logic.results.ComparisonResults;
+import directory_comparator.logic.results.CompositeResultSink;
+import directory_comparator.logic.results.MoveResultSink;
+import directory_comparator.logic.results.ReportResultSink;
+import directory_comparator.logic.results.ResultSink;
+import directory_comparator.logic.results.ShortcutResultSink;
+
+/**
+ * A complete comparison of two directories: it prepares the results
+ * directory, runs a {@link ComparisonPipeline} and sends every result to the
+ * summary, the report, the shortcuts and any other sink. It doesn't depend
+ * on any user interface.
+ * <p>
+ * When the comparison ends, its metrics are written to the results
+ * directory. Files that can't be compared are reported as errors and don't
+ * stop the comparison. If the journal is enabled, a stopped comparison can
+ * be resumed by the next one, see {@link ComparisonJournal}. Either
+ * directory can be a ZIP or JAR archive, see {@link FileManager}.
+ * <p>
+ * In the sampled mode, if verification is enabled, the files that sampling
+ * found probably equal are read completely once all the files have been
+ * sampled, and the ones that have changed are sent to the sinks then.
+ * <p>
+ * If move detection is enabled, the new and deleted files are sent to the
+ * sinks at the end, once the moved files have been found among them, see
+ * {@link MoveResultSink}.
+ */
+public class DirectoryComparison {
+
+	private final File oldDirectory;
+	private final File newDirectory;
+	private final File resultsDirectory;
+	private final ComparisonOptions options;
+	private final ComparisonResults results = new ComparisonResults();
+	private volatile FileManager fileManager;
+	private volatile ComparisonPipeline pipeline;
+	private volatile MoveResultSink moveSink;
+	private volatile int newFiles;
+	private volatile int oldFiles;
+	private volatile int resumedResults;
+	private volatile int filesToVerify;
+	private volatile int verifiedFiles;
+
+	/**
+	 * Constructor.
+	 * @param oldDirectory The old directory.
+	 * @param newDirectory The new directory.
+	 * @param resultsDirectory Where to store the results.
+	 * @param options The comparison settings.
+	 */
+	public DirectoryComparison(File oldDirectory, File newDirectory, File resultsDirectory, ComparisonOptions options) {
+		this.oldDirectory = oldDirectory;
+		this.newDirectory = newDirectory;
+		this.resultsDirectory = resultsDirectory;
+		this.options = options;
+	}
+
+	/**
+	 * Runs the comparison.
+	 * @param listener A listener that is told about every outcome after it
+	 * has been sent to the sinks. It also decides when the comparison stops.
+	 * @param extraSinks More sinks for the results, besides the ones that
+	 * every comparison has.
+	 * @throws FileException If something goes wrong.
+	 */
+	public void run(ComparisonListener listener, ResultSink... extraSinks) throws FileException {
+		this.newFiles = 0;
+		this.oldFiles = 0;
+		this.resumedResults = 0;
+		this.filesToVerify = 0;
+		this.verifiedFiles = 0;
+		this.fileManager = new FileManager(this.oldDirectory, this.newDirectory, this.resultsDirectory, this.options);
+		List<ResultSink> sinks = new ArrayList<>();
+		sinks.add(this.results);
+		ReportResultSink reportSink = new ReportResultSink(this.fileManager.getReportFile(), this.oldDirectory, this.newDirectory);
+		sinks.add(reportSink);
+		ShortcutResultSink shortcutSink = null;
+		if (this.options.isShortcutsEnabled() && this.fileManager.isNewDirectoryOnDisk()) {
+			this.fileManager.startShortcuts();
+			shortcutSink = new ShortcutResultSink(this.fileManager);
+			sinks.add(shortcutSink);
+		} else {
+
+			// Shortcuts can't point inside an archive or a snapshot, and the ones
+			// of a previous comparison aren't results anymore.
+			this.fileManager.updateShortcuts(true);
+		}
+		sinks.addAll(List.of(extraSinks));
+		ResultSink allSinks = new CompositeResultSink(sinks.toArray(new ResultSink[0]));
+		this.moveSink = this.options.isMoveDetectionEnabled() ? new MoveResultSink(allSinks, this.fileManager) : null;
+		ResultSink resultSink = this.moveSink == null ? allSinks : this.moveSink;
+		this.pipeline = new ComparisonPipeline(this.fileManager, this.options);
+		ComparisonJournal journal = null;
+		boolean complete = false;
+		try {
+			if (this.options.isJournalEnabled()) {
+				journal = new ComparisonJournal(
+					this.fileManager.getJournalFile(), this.oldDirectory, this.newDirectory,
+					this.options.getComparisonMode(), this.options.getFilter(),
+					this.options.getStrategySelector(), this.fileManager.getPathIndex()
+				);
+				this.resumedResults = journal.open(resultSink);
+				this.pipeline.setResumedDirectories(journal::isResumed);
+			}
+			ComparisonJournal currentJournal = journal;
+			this.pipeline.run(new ComparisonListener() {
+				@Override
+				public void onOutcome(ComparisonOutcome outcome) throws FileException {
+					if (!outcome.isResumed()) {
+						resultSink.accept(outcome);
+					}
+					if (currentJournal != null) {
+						currentJournal.record(outcome);
+					}
+					if (outcome.getNewEntry() != null) {
+						newFiles++;
+					}
+					if (outcome.getOldEntry() != null) {
+						oldFiles++;
+					}
+					listener.onOutcome(outcome);
+				}
+				@Override
+				public void onWaiting() {
+					listener.onWaiting();
+				}
+				@Override
+				public void onDirectoryWalked(int node, int files) throws FileException {
+					if (currentJournal != null) {
+						currentJournal.directoryWalked(node, files);
+					}
+				}
+				@Override
+				public boolean isCancelled() {
+					return listener.isCancelled();
+				}
+			});
+			complete = !listener.isCancelled();
+			if (complete) {
+				this.verify(listener, resultSink);
+			}
+			if (this.moveSink != null && complete) {
+				this.moveSink.detectMoves(listener);
+			}
+			if (shortcutSink != null && complete) {
+				shortcutSink.complete();
+			}
+			if (complete && !listener.isCancelled()) {
+
+				// Stopping the verification leaves files that could have changed out.
+				reportSink.complete();
+			}
+		} finally {
+			try {
+				resultSink.close();
+			} finally {
+				try {
+					if (journal != null) {
+						journal.close(complete);
+					}
+				} finally {
+					this.fileManager.close();
+				}
+			}
+		}
+		this.fileManager.saveDigestCaches(complete);
+		this.fileManager.getMetrics().finish(this.getProcessedFiles(), this.getBytesRead());
+		this.fileManager.getMetrics().writeJson(this.fileManager.getMetricsFile());
+	}
+
+	/**
+	 * Returns how much of the two directories has been walked.
+	 * @return A number between 0 and 1.
+	 */
+	public double getCompletedFraction() {
+		ComparisonPipeline currentPipeline = this.pipeline;
+		return currentPipeline == null ? 0 : currentPipeline.getCompletedFraction();
+	}
+
+	/**
+	 * Returns the number of files processed so far, counting a file that
+	 * exists in both directories twice.
+	 * @return The number of files.
+	 */
+	public int getProcessedFiles() {
+		return this.newFiles + this.oldFiles;
+	}
+
+	/**
+	 * Returns the number of files found so far in the new directory.
+	 * @return The number of files.
+	 */
+	public int getNewFiles() {
+		return newFiles;
+	}
+
+	/**
+	 * Returns the number of files found so far in the old directory.
+	 * @return The number of files.
+	 */
+	public int getOldFiles() {
+		return oldFiles;
+	}
+
+	/**
+	 * Returns the number of bytes read so far to compare files.
+	 * @return The number of bytes.
+	 */
+	public long getBytesRead() {
+		FileManager currentFileManager = this.fileManager;
+		return currentFileManager == null ? 0 : currentFileManager.getBytesRead();
+	}
+
+	/**
+	 * Returns the number of files whose results have been restored from the
+	 * journal of an interrupted comparison instead of being compared again.
+	 * @return The number of files.
+	 */
+	public int getResumedResults() {
+		return resumedResults;
+	}
+
+	/**
+	 * Returns the number of files that sampling found probably equal and
+	 * are being verified.
+	 * @return The number of files, which is 0 until the verification starts.
+	 */
+	public int getFilesToVerify() {
+		return filesToVerify;
+	}
+
+	/**
+	 * Returns the number of files verified so far.
+	 * @return The number of files.
+	 */
+	public int getVerifiedFiles() {
+		return verifiedFiles;
+	}
+
+	/**
+	 * Returns the number of new and deleted files that are read to find the
+	 * moved ones.
+	 * @return The number of files, which is 0 until the detection starts.
+	 */
+	public int getMoveCandidates() {
+		MoveResultSink currentMoveSink = this.moveSink;
+		return currentMoveSink == null ? 0 : currentMoveSink.getCandidates();
+	}
+
+	/**
+	 * Returns the number of files read so far to find the moved ones.
+	 * @return The number of files.
+	 */
+	public int getReadMoveCandidates() {
+		MoveResultSink currentMoveSink = this.moveSink;
+		return currentMoveSink == null ? 0 : currentMoveSink.getReadCandidates();
+	}
+
+	public ComparisonResults getResults() {
+		return results;
+	}
+
+	/**
+	 * Returns the object that manages the files of this comparison.
+	 * @return The file manager or <code>null</code> if the comparison hasn't
+	 * started.
+	 */
+	public FileManager getFileManager() {
+		return fileManager;
+	}
+
+	/**
+	 * Reads completely, one by one, the files that sampling found probably
+	 * equal and sends the results of the ones that have changed to the sinks.
+	 * Only one file is read at a time, by a thread of minimum priority, and
+	 * after every file the thread waits as long as reading it took, so the
+	 * verification leaves the disk free at least half of the time and
+	 * disturbs other programs as little as possible.
+	 */
+	private void verify(ComparisonListener listener, ResultSink resultSink) throws FileException {
+		Optional<ComparisonOutcome> unverified = this.fileManager.pollUnverifiedFile();
+		if (unverified.isPresent()) {
+			this.filesToVerify = (int) this.fileManager.getProbablyEqualFiles();
+			listener.onVerificationStarted(this.filesToVerify);
+			Thread thread = Thread.currentThread();
+			int priority = thread.getPriority();
+			thread.setPriority(Thread.MIN_PRIORITY);
+			try {
+				while (unverified.isPresent() && !listener.isCancelled() && !thread.isInterrupted()) {
+					ComparisonOutcome outcome = unverified.get();
+					long start = System.nanoTime();
+					try {
+						outcome.setChanged(!this.fileManager.verifyFilesEqual(outcome.getOldEntry(), outcome.getNewEntry()));
+					} catch (FileException e) {
+						outcome.setError(e);
+					}
+					try {
+						TimeUnit.NANOSECONDS.sleep(System.nanoTime() - start);
+					} catch (InterruptedException e) {
+						thread.interrupt();
+					}
+					if (!listener.isCancelled()) {
+						resultSink.accept(outcome);
+						this.verifiedFiles++;
+						listener.onWaiting();
+					}
+					unverified = this.fileManager.pollUnverifiedFile();
+				}
+			} finally {
+				thread.setPriority(priority);
+			}
+		}
+	}
+}
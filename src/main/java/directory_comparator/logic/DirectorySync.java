@@ -0,0 +1,487 @@
+package directory_comparator.logic;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.enums.SyncAction;
+import directory_comparator.logic.listeners.ReportScanListener;
+import directory_comparator.logic.listeners.SyncListener;
+import directory_comparator.logic.models.ComparisonOptions;
+import directory_comparator.logic.results.ReportEntry;
+import directory_comparator.logic.results.ReportIndex;
+import directory_comparator.logic.results.ReportResultSink;
+
+/**
+ * Brings the old directory in line with the new one, applying the results
+ * of a comparison of both: new, changed and moved files are copied from the
+ * new directory and, if asked, deleted files are deleted, so is the old path
+ * of moved files. Files that are equal or couldn't be compared are left
+ * alone, and so are the files skipped by the comparison.
+ * <p>
+ * The results are read from the report of the comparison, which has all of
+ * them whatever their number, see
+ * {@link directory_comparator.logic.results.ReportResultSink}. Only the
+ * report of a comparison that wasn't stopped is applied, since the files
+ * missing from another one would be left behind. Several files are copied
+ * at once first, each of them into a temporary file next to its
+ * destination, which is renamed over the old file once it's complete, so a
+ * stopped or failed sync never leaves a half-copied file behind. Files
+ * are copied with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+ * which lets the operating system move the bytes without passing them
+ * through the program.
+ * <p>
+ * Deletions are only done once every file has been copied, so a moved file
+ * is never deleted from its old path before it exists in the new one. They
+ * are done one at a time, and the directories left empty are deleted too,
+ * unless they exist in the new directory. A file that replaces a directory,
+ * or that is inside a directory that replaces a file, can't be copied until
+ * the old one is deleted, so it's copied after the deletions.
+ * <p>
+ * The comparison only reports files, so folders are created and deleted as
+ * the files need them, and empty folders of the new directory aren't copied.
+ * <p>
+ * A dry run reports what would be done without changing anything. Files
+ * that can't be copied or deleted are passed to the listener and counted,
+ * and the sync goes on with the rest.
+ */
+public class DirectorySync {
+
+	private static final ReportEntry NO_MORE_FILES = new ReportEntry(null, null, 0, null, null);
+
+	private final File oldDirectory;
+	private final File newDirectory;
+	private final File reportFile;
+	private final Path oldRoot;
+	private final Path newRoot;
+	private final int threads;
+	private final BlockingQueue<ReportEntry> copies;
+	private final Queue<ReportEntry> blockedCopies = new ConcurrentLinkedQueue<>();
+	private final LongAdder copiedFiles = new LongAdder();
+	private final LongAdder deletedFiles = new LongAdder();
+	private final LongAdder failedFiles = new LongAdder();
+	private final LongAdder bytesCopied = new LongAdder();
+	private boolean deletionEnabled;
+	private boolean deletionSkipped;
+	private boolean dryRun;
+	private long copyNanos;
+	private volatile boolean stopped;
+
+	/**
+	 * Constructor.
+	 * @param oldDirectory The old directory, which is changed.
+	 * @param newDirectory The new directory.
+	 * @param reportFile The report of a comparison of both directories.
+	 * @param options The settings that tell how many files are copied at
+	 * once.
+	 * @throws FileException If some of the parameters is invalid.
+	 */
+	public DirectorySync(File oldDirectory, File newDirectory, File reportFile, ComparisonOptions options) throws FileException {
+		if (oldDirectory == null || !oldDirectory.isDirectory() || newDirectory == null || !newDirectory.isDirectory()) {
+			throw new FileException("Only folders can be synced, not archives or snapshots.");
+		}
+		if (reportFile == null || !reportFile.isFile()) {
+			throw new FileException("There is no report of a comparison of the folders to sync.");
+		}
+		this.oldDirectory = oldDirectory;
+		this.newDirectory = newDirectory;
+		this.reportFile = reportFile;
+		this.oldRoot = oldDirectory.toPath().toAbsolutePath().normalize();
+		this.newRoot = newDirectory.toPath().toAbsolutePath().normalize();
+		this.threads = options.getComparisonThreads();
+		this.copies = new ArrayBlockingQueue<>(options.getQueueCapacity());
+	}
+
+	/**
+	 * Tells whether the files that don't exist in the new directory are
+	 * deleted from the old one. They are kept by default.
+	 * @param deletionEnabled <code>true</code> to delete them.
+	 */
+	public void setDeletionEnabled(boolean deletionEnabled) {
+		this.deletionEnabled = deletionEnabled;
+	}
+
+	/**
+	 * Tells whether the files are only reported to the listener, without
+	 * copying or deleting them.
+	 * @param dryRun <code>true</code> for a dry run.
+	 */
+	public void setDryRun(boolean dryRun) {
+		this.dryRun = dryRun;
+	}
+
+	/**
+	 * Returns the number of files copied so far, or to be copied in a dry
+	 * run.
+	 * @return The number of files.
+	 */
+	public long getCopiedFiles() {
+		return this.copiedFiles.sum();
+	}
+
+	/**
+	 * Returns the number of files deleted so far, or to be deleted in a dry
+	 * run.
+	 * @return The number of files.
+	 */
+	public long getDeletedFiles() {
+		return this.deletedFiles.sum();
+	}
+
+	/**
+	 * Returns the number of files that couldn't be copied or deleted.
+	 * @return The number of files.
+	 */
+	public long getFailedFiles() {
+		return this.failedFiles.sum();
+	}
+
+	/**
+	 * Tells whether the files to delete have been kept because some files
+	 * couldn't be copied.
+	 * @return <code>true</code> if nothing has been deleted for that reason.
+	 */
+	public boolean isDeletionSkipped() {
+		return deletionSkipped;
+	}
+
+	/**
+	 * Returns the bytes copied so far, or to be copied in a dry run.
+	 * @return The amount of bytes.
+	 */
+	public long getBytesCopied() {
+		return this.bytesCopied.sum();
+	}
+
+	/**
+	 * Returns how fast the files have been copied, once the copies are
+	 * finished.
+	 * @return The bytes copied per second, or 0 in a dry run or if nothing
+	 * has been copied.
+	 */
+	public long getCopyThroughput() {
+		return this.dryRun || this.copyNanos == 0 ? 0 : (long) (this.bytesCopied.sum() * 1e9 / this.copyNanos);
+	}
+
+	/**
+	 * Syncs the directories and blocks until all the files have been copied
+	 * and deleted or the listener asks to stop.
+	 * @param listener The listener, which is called from several threads.
+	 * @return <code>true</code> if all the results have been applied and
+	 * <code>false</code> if the sync has been stopped.
+	 * @throws FileException If the report can't be read, isn't about these
+	 * directories or is the report of a comparison that was stopped.
+	 */
+	public boolean sync(SyncListener listener) throws FileException {
+		this.checkReport();
+		this.stopped = false;
+		this.deletionSkipped = false;
+		this.blockedCopies.clear();
+		ReportIndex report = new ReportIndex(this.reportFile);
+		try {
+			this.copy(report, listener);
+			if (this.deletionEnabled && !listener.isCancelled() && !this.stopped) {
+				if (this.failedFiles.sum() == 0) {
+					this.delete(report, ResultKind.DELETED, listener);
+					this.delete(report, ResultKind.MOVED, listener);
+				} else {
+					this.deletionSkipped = true;
+				}
+			}
+			ReportEntry entry = this.blockedCopies.poll();
+			while (entry != null && !listener.isCancelled()) {
+				this.copyEntry(entry, listener);
+				entry = this.blockedCopies.poll();
+			}
+		} finally {
+			report.close();
+		}
+		return !listener.isCancelled();
+	}
+
+	/**
+	 * Makes sure that the report is about the directories being synced, so a
+	 * leftover report of other directories doesn't delete the wrong files,
+	 * and that it's the report of a comparison that wasn't stopped, which
+	 * ends with {@link ReportResultSink#COMPLETE_LINE}.
+	 */
+	private void checkReport() throws FileException {
+		boolean matches;
+		boolean complete;
+		try (BufferedReader reader = Files.newBufferedReader(this.reportFile.toPath(), StandardCharsets.UTF_8)) {
+			String header = reader.readLine();
+			Map<String, String> directories = Json.parseObject(header == null ? "" : header);
+			matches = this.oldDirectory.getAbsolutePath().equals(directories.get("old"))
+				&& this.newDirectory.getAbsolutePath().equals(directories.get("new"));
+		} catch (IOException | IllegalArgumentException e) {
+			throw new FileException("Can't read the report " + this.reportFile + ".");
+		}
+		byte[] end = (ReportResultSink.COMPLETE_LINE + "\n").getBytes(StandardCharsets.UTF_8);
+		try (FileChannel channel = FileChannel.open(this.reportFile.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer lastBytes = ByteBuffer.allocate(end.length);
+			long position = channel.size() - end.length;
+			int read = 0;
+			while (position >= 0 && read >= 0 && lastBytes.hasRemaining()) {
+				read = channel.read(lastBytes, position + lastBytes.position());
+			}
+			complete = position >= 0 && Arrays.equals(lastBytes.array(), end);
+		} catch (IOException e) {
+			throw new FileException("Can't read the report " + this.reportFile + ".");
+		}
+		if (!matches) {
+			throw new FileException("The report " + this.reportFile + " is about other folders.");
+		}
+		if (!complete) {
+			throw new FileException("The report " + this.reportFile
+				+ " is of a comparison that was stopped, so it doesn't have all the files to sync.");
+		}
+	}
+
+	/**
+	 * Deletes the files of the old directory of the results of a kind, and
+	 * then the directories left empty that don't exist in the new directory.
+	 */
+	private void delete(ReportIndex report, ResultKind kind, SyncListener listener) throws FileException {
+		report.scan(kind, new ReportScanListener() {
+			@Override
+			public void onEntry(int row, ReportEntry entry) {
+				String relativePath = kind == ResultKind.MOVED ? entry.getFrom() : entry.getPath();
+				try {
+					if (!dryRun) {
+						deleteFile(relativePath);
+					}
+					deletedFiles.increment();
+					listener.onFileSynced(SyncAction.DELETE, relativePath, entry.getSize());
+				} catch (FileException e) {
+					failedFiles.increment();
+					listener.onFileFailed(SyncAction.DELETE, relativePath, e);
+				}
+			}
+			@Override
+			public boolean isCancelled() {
+				return listener.isCancelled();
+			}
+		});
+	}
+
+	private void deleteFile(String relativePath) throws FileException {
+		Path file = resolve(this.oldRoot, relativePath);
+		try {
+			Files.deleteIfExists(file);
+			Path directory = file.getParent();
+			boolean empty = true;
+			while (empty && !directory.equals(this.oldRoot)
+				&& !Files.isDirectory(this.newRoot.resolve(this.oldRoot.relativize(directory)))) {
+				try {
+					Files.deleteIfExists(directory);
+					directory = directory.getParent();
+				} catch (IOException e) {
+
+					// Not empty, or it can't be deleted, which doesn't matter.
+					empty = false;
+				}
+			}
+		} catch (IOException e) {
+			throw new FileException("Can't delete " + file + ".");
+		}
+	}
+
+	/**
+	 * Reads the files to copy from the report and passes them to the threads
+	 * that copy them.
+	 */
+	private void copy(ReportIndex report, SyncListener listener) throws FileException {
+		ExecutorService executor = Executors.newFixedThreadPool(
+			this.threads, Thread.ofPlatform().name("sync-", 0).daemon().factory()
+		);
+		long start = System.nanoTime();
+		try {
+			for (int i = 0; i < this.threads; i++) {
+				executor.execute(() -> this.copyFiles(listener));
+			}
+			ReportScanListener scanListener = new ReportScanListener() {
+				@Override
+				public void onEntry(int row, ReportEntry entry) {
+					put(entry);
+				}
+				@Override
+				public boolean isCancelled() {
+					return listener.isCancelled() || stopped;
+				}
+			};
+			try {
+				report.scan(ResultKind.NEW, scanListener);
+				report.scan(ResultKind.CHANGED, scanListener);
+				report.scan(ResultKind.MOVED, scanListener);
+			} finally {
+				for (int i = 0; i < this.threads; i++) {
+					this.put(NO_MORE_FILES);
+				}
+			}
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			this.stopped = true;
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+			this.copyNanos = System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Run by every copying thread.
+	 */
+	private void copyFiles(SyncListener listener) {
+		try {
+			ReportEntry entry = this.copies.take();
+			while (entry != NO_MORE_FILES) {
+				if (!this.stopped && !listener.isCancelled()) {
+					if (!this.dryRun && this.isBlocked(entry.getPath())) {
+						this.blockedCopies.add(entry);
+					} else {
+						this.copyEntry(entry, listener);
+					}
+				}
+				entry = this.copies.take();
+			}
+		} catch (InterruptedException e) {
+			this.stopped = true;
+		}
+	}
+
+	private void copyEntry(ReportEntry entry, SyncListener listener) {
+		try {
+			long size = this.dryRun ? entry.getSize() : this.copyFile(entry.getPath());
+			this.bytesCopied.add(size);
+			this.copiedFiles.increment();
+			listener.onFileSynced(SyncAction.COPY, entry.getPath(), size);
+		} catch (FileException e) {
+			this.failedFiles.increment();
+			listener.onFileFailed(SyncAction.COPY, entry.getPath(), e);
+		}
+	}
+
+	/**
+	 * Tells whether a file can't be copied because there is a directory
+	 * with its path in the old directory, or a file with the path of one of
+	 * its directories.
+	 */
+	private boolean isBlocked(String relativePath) {
+		boolean result;
+		try {
+			Path target = resolve(this.oldRoot, relativePath);
+			result = Files.isDirectory(target, LinkOption.NOFOLLOW_LINKS);
+			Path directory = target.getParent();
+			if (!result && !Files.isDirectory(directory)) {
+				while (!result && !directory.equals(this.oldRoot)) {
+					result = Files.exists(directory, LinkOption.NOFOLLOW_LINKS) && !Files.isDirectory(directory);
+					directory = directory.getParent();
+				}
+			}
+		} catch (FileException e) {
+
+			// Copying it fails with the reason.
+			result = false;
+		}
+		return result;
+	}
+
+	/**
+	 * Copies a file of the new directory over the file with the same path
+	 * of the old one, through a temporary file, keeping its modification
+	 * time.
+	 * @return The number of bytes copied.
+	 */
+	private long copyFile(String relativePath) throws FileException {
+		Path source = resolve(this.newRoot, relativePath);
+		Path target = resolve(this.oldRoot, relativePath);
+		Path temporaryFile = null;
+		long result = 0;
+		try {
+			Files.createDirectories(target.getParent());
+			temporaryFile = Files.createTempFile(target.getParent(), ".sync-", ".tmp");
+			try (
+				FileChannel input = FileChannel.open(source, StandardOpenOption.READ);
+				FileChannel output = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)
+			) {
+				long size = input.size();
+				long transferred = 1;
+				while (result < size && transferred > 0) {
+
+					// It can transfer less than asked, for example 2 GB at most on Linux.
+					transferred = input.transferTo(result, size - result, output);
+					result += transferred;
+				}
+				output.force(true);
+			}
+			Files.setLastModifiedTime(temporaryFile, Files.getLastModifiedTime(source));
+			try {
+				Files.move(temporaryFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+			temporaryFile = null;
+		} catch (IOException e) {
+			throw new FileException("Can't copy " + source + " to " + target + ".");
+		} finally {
+			if (temporaryFile != null) {
+				try {
+					Files.deleteIfExists(temporaryFile);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Waits until there is room in the queue or the copying threads have
+	 * stopped.
+	 */
+	private void put(ReportEntry entry) {
+		try {
+			boolean added = false;
+			while (!added && !this.stopped) {
+				added = this.copies.offer(entry, 100, TimeUnit.MILLISECONDS);
+			}
+		} catch (InterruptedException e) {
+			this.stopped = true;
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Resolves a path of the report against a directory, refusing paths
+	 * that would end outside of it.
+	 */
+	private static Path resolve(Path root, String relativePath) throws FileException {
+		Path result = root.resolve(relativePath).normalize();
+		if (result.equals(root) || !result.startsWith(root)) {
+			throw new FileException("The path " + relativePath + " of the report is outside of " + root + ".");
+		}
+		return result;
+	}
+}
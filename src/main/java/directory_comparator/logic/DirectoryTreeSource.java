@@ -0,0 +1,76 @@
+package directory_comparator.logic;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+
+/**
+ * A {@link TreeSource} that lists a directory of a file system, which can be
+ * the root of an archive opened as a file system.
+ */
+public class DirectoryTreeSource implements TreeSource {
+
+	private final Path root;
+	private final PathIndex pathIndex;
+	private final FileSystem archive;
+
+	/**
+	 * Constructor.
+	 * @param root The directory.
+	 * @param pathIndex The index of the directories of the comparison.
+	 * @param archive The archive the directory is the root of, which is
+	 * closed with this source, or <code>null</code>.
+	 */
+	public DirectoryTreeSource(Path root, PathIndex pathIndex, FileSystem archive) {
+		this.root = root;
+		this.pathIndex = pathIndex;
+		this.archive = archive;
+	}
+
+	@Override
+	public Path getRoot() {
+		return root;
+	}
+
+	/**
+	 * Lists a directory, reading the attributes of every entry once.
+	 */
+	@Override
+	public void list(int node, Path directory, EntryConsumer consumer) throws FileException {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path child : stream) {
+				BasicFileAttributes attributes;
+				try {
+					attributes = Files.readAttributes(child, BasicFileAttributes.class);
+				} catch (IOException e) {
+
+					// For example, a broken link or a file deleted while listing.
+					attributes = null;
+				}
+				if (attributes != null && (attributes.isRegularFile() || attributes.isDirectory())) {
+					consumer.accept(new FileEntry(this.root, this.pathIndex, node, child.getFileName().toString(), attributes));
+				}
+			}
+		} catch (IOException e) {
+			throw new FileException("Can't list the contents of the folder " + directory + ".");
+		}
+	}
+
+	@Override
+	public void close() throws FileException {
+		if (this.archive != null && this.archive.isOpen()) {
+			try {
+				this.archive.close();
+			} catch (IOException e) {
+				throw new FileException("Can't close the archive " + this.archive + ".");
+			}
+		}
+	}
+}
@@ -2,24 +2,90 @@ package directory_comparator.logic;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
 
 import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.ComparisonMode;
+import directory_comparator.logic.enums.Phase;
 import directory_comparator.logic.enums.ShortcutReason;
+import directory_comparator.logic.metrics.ComparisonMetrics;
+import directory_comparator.logic.metrics.FileComparisonEvent;
+import directory_comparator.logic.metrics.ReconciliationEvent;
+import directory_comparator.logic.metrics.ShortcutEvent;
+import directory_comparator.logic.models.ComparisonOptions;
+import directory_comparator.logic.models.ComparisonOutcome;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+import directory_comparator.logic.strategies.ComparisonStrategy;
+import directory_comparator.logic.strategies.StrategySelector;
 import mslinks.ShellLink;
 
 /**
  * Class with the logic for comparing directories.
+ * <p>
+ * Either of the compared directories can be a ZIP or JAR archive, which is
+ * opened as a {@link FileSystem}, so its entries are listed and read without
+ * extracting them. The CRC-32 of two archived files is compared before
+ * reading them. Either of them can also be a {@link SnapshotManifest} of a
+ * directory, whose files are compared through the digests it keeps, so only
+ * the other side is read. The archives and snapshots stay open until
+ * {@link #close()} is called.
+ * <p>
+ * When the digest cache is enabled, a {@link MerkleTree} of every directory
+ * is kept with it, and the files of the directories that it shows unchanged
+ * and equal on both sides aren't compared, see
+ * {@link #directoryListed(int, List, List)}.
  */
 public class FileManager {
 
+	private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+	private static final int SAMPLE_SIZE = 64 * 1024;
+	private static final List<String> ARCHIVE_EXTENSIONS = List.of(".zip", ".jar", ".war", ".ear");
+
 	private final File oldDirectory;
 	private final File newDirectory;
+	private final TreeSource oldSource;
+	private final TreeSource newSource;
+	private final File resultsDirectory;
 	private final File resultsNewFiles;
 	private final File resultsChangedFiles;
+	private ComparisonMode comparisonMode;
+	private final PathIndex pathIndex = new PathIndex();
+	private final DigestCache oldDigests;
+	private final DigestCache newDigests;
+	private final MerkleTree oldTree;
+	private final MerkleTree newTree;
+	private final LongAdder filesInUnchangedDirectories = new LongAdder();
+	private final long largeFileThreshold;
+	private final LongAdder bytesRead = new LongAdder();
+	private final LongAdder failedShortcuts = new LongAdder();
+	private volatile String shortcutError;
+	private final ComparisonMetrics metrics = new ComparisonMetrics();
+	private final int shortcutThreads;
+	private ShortcutReconciler shortcutReconciler;
+	private final ChunkedFileComparator chunkedFileComparator = new ChunkedFileComparator(CHUNK_SIZE, this.bytesRead);
+	private final SampledFileComparator sampledFileComparator;
+	private final LongAdder probablyEqualFiles = new LongAdder();
+	private final UnverifiedFiles unverifiedFiles;
+	private final StrategySelector strategySelector;
 	
 	/**
 	 * Creates a new object for managing files to do a directory comparison.
@@ -29,6 +95,20 @@ public class FileManager {
 	 * @throws FileException If some of the parameters is invalid.
 	 */
 	public FileManager(File oldDirectory, File newDirectory, File resultsDirectory) throws FileException {
+		this(oldDirectory, newDirectory, resultsDirectory, new ComparisonOptions());
+	}
+	
+	/**
+	 * Creates a new object for managing files to do a directory comparison.
+	 * @param oldDirectory The old directory.
+	 * @param newDirectory The new directory.
+	 * @param resultsDirectory The directory to put the results.
+	 * @param options The comparison settings.
+	 * @throws FileException If some of the parameters is invalid.
+	 */
+	public FileManager(
+		File oldDirectory, File newDirectory, File resultsDirectory, ComparisonOptions options
+	) throws FileException {
 		if (oldDirectory == null) {
 			throw new FileException("You must select the old folder.");
 		}
@@ -38,14 +118,20 @@ public class FileManager {
 		if (resultsDirectory == null) {
 			throw new FileException("You must select the results folder.");
 		}
-    	if (!oldDirectory.isDirectory()) {
+    	if (!oldDirectory.isDirectory() && !isArchive(oldDirectory) && !SnapshotManifest.isSnapshot(oldDirectory)) {
     		throw new FileException("The old folder doesn't exist.");
     	}
-    	if (!newDirectory.isDirectory()) {
+    	if (!newDirectory.isDirectory() && !isArchive(newDirectory) && !SnapshotManifest.isSnapshot(newDirectory)) {
     		throw new FileException("The new folder doesn't exist.");
     	}
     	this.oldDirectory = oldDirectory;
 		this.newDirectory = newDirectory;
+		this.comparisonMode = options.getComparisonMode();
+		this.largeFileThreshold = options.getLargeFileThreshold();
+		this.sampledFileComparator = new SampledFileComparator(SAMPLE_SIZE, options.getSampledBlocks(), this.bytesRead);
+		this.unverifiedFiles = options.isVerificationEnabled() ? new UnverifiedFiles(resultsDirectory.toPath(), this.pathIndex) : null;
+		this.strategySelector = options.getStrategySelector();
+		this.resultsDirectory = resultsDirectory;
 		this.resultsNewFiles = new File(resultsDirectory, "New files");
 		this.resultsChangedFiles = new File(resultsDirectory, "Changed files");
     	try {
@@ -54,78 +140,554 @@ public class FileManager {
 		} catch (IOException e) {
 			throw new FileException("Something is wrong with the results directory.");
 		}
-    	deleteContents(this.resultsNewFiles);
-    	deleteContents(this.resultsChangedFiles);
+    	this.shortcutThreads = options.getListingThreads();
+    	if (options.isDigestCacheEnabled()) {
+    		File cacheDirectory = new File(resultsDirectory, "Digest cache");
+    		this.oldDigests = new DigestCache(cacheFile(cacheDirectory, oldDirectory, "digests-"), this.pathIndex);
+    		this.newDigests = new DigestCache(cacheFile(cacheDirectory, newDirectory, "digests-"), this.pathIndex);
+    		this.oldTree = new MerkleTree(cacheFile(cacheDirectory, oldDirectory, "folders-"), this.pathIndex);
+    		this.newTree = new MerkleTree(cacheFile(cacheDirectory, newDirectory, "folders-"), this.pathIndex);
+    	} else {
+    		this.oldDigests = null;
+    		this.newDigests = null;
+    		this.oldTree = null;
+    		this.newTree = null;
+    	}
+    	this.oldSource = this.openSource(oldDirectory);
+    	this.newSource = this.openSource(newDirectory);
 	}
 	
 	/**
 	 * Counts the total number of files (not directories) in the given
 	 * directory.
 	 * @param directory A directory.
-	 * @return
+	 * @return The number of files.
 	 */
 	public static int countFiles(File directory) {
+		return countFiles(directory, new ComparisonOptions().getListingThreads());
+	}
+	
+	/**
+	 * Counts the total number of files (not directories) in the given
+	 * directory, listing several directories at once.
+	 * @param directory A directory.
+	 * @param parallelism The maximum number of directories listed at once.
+	 * @return The number of files.
+	 */
+	public static int countFiles(File directory, int parallelism) {
+		return countFiles(directory, parallelism, PathFilter.NONE);
+	}
+	
+	/**
+	 * Counts the files (not directories) in the given directory that aren't
+	 * skipped by a filter, listing several directories at once. Skipped
+	 * directories aren't listed.
+	 * @param directory A directory.
+	 * @param parallelism The maximum number of directories listed at once.
+	 * @param filter Which files and directories are skipped.
+	 * @return The number of files.
+	 */
+	public static int countFiles(File directory, int parallelism, PathFilter filter) {
 		int result;
 		if (directory.isDirectory()) {
-			result = countFilesRecursively(directory);
+			ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+			try {
+				result = pool.invoke(new CountFilesTask(directory, "", filter));
+			} finally {
+				pool.shutdownNow();
+			}
 		} else {
 			result = 1;
 		}
 		return result;
 	}
 	
+	public File getOldDirectory() {
+		return oldDirectory;
+	}
+	
+	public File getNewDirectory() {
+		return newDirectory;
+	}
+	
+	/**
+	 * Returns where the old directory is listed from.
+	 * @return The source of the old directory, archive or snapshot.
+	 */
+	public TreeSource getOldSource() {
+		return oldSource;
+	}
+	
+	/**
+	 * Returns where the new directory is listed from.
+	 * @return The source of the new directory, archive or snapshot.
+	 */
+	public TreeSource getNewSource() {
+		return newSource;
+	}
+	
+	/**
+	 * Tells whether the files of the new directory can be opened from
+	 * outside this program, which isn't the case when it's an archive or a
+	 * snapshot.
+	 * @return <code>true</code> if it's a directory.
+	 */
+	public boolean isNewDirectoryOnDisk() {
+		return this.newSource.isReadable() && this.newSource.getRoot().getFileSystem() == FileSystems.getDefault();
+	}
+	
+	/**
+	 * Tells whether a file is an archive that can be compared as a
+	 * directory, judging by its extension.
+	 * @param file The file.
+	 * @return <code>true</code> if it's a ZIP, JAR, WAR or EAR file.
+	 */
+	public static boolean isArchive(File file) {
+		String name = file.getName().toLowerCase(Locale.ROOT);
+		return file.isFile() && ARCHIVE_EXTENSIONS.stream().anyMatch(name::endsWith);
+	}
+	
+	/**
+	 * Closes the archives and snapshots that are being compared, if any.
+	 * Their files can't be read anymore.
+	 * @throws FileException If an archive or a snapshot can't be closed.
+	 */
+	public void close() throws FileException {
+		if (this.unverifiedFiles != null) {
+			this.unverifiedFiles.close();
+		}
+		this.closeSources();
+	}
+
+	private void closeSources() throws FileException {
+		try {
+			if (this.oldSource != null) {
+				this.oldSource.close();
+			}
+		} finally {
+			if (this.newSource != null) {
+				this.newSource.close();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the index of the directories found while comparing, which is
+	 * shared by both sides.
+	 * @return The index.
+	 */
+	public PathIndex getPathIndex() {
+		return pathIndex;
+	}
+	
+	public File getResultsDirectory() {
+		return resultsDirectory;
+	}
+	
+	/**
+	 * Returns the file where all the results of the comparison are written.
+	 * @return The report file inside the results directory.
+	 */
+	public File getReportFile() {
+		return new File(this.resultsDirectory, "report.ndjson");
+	}
+	
+	public ComparisonMode getComparisonMode() {
+		return comparisonMode;
+	}
+	
+	public void setComparisonMode(ComparisonMode comparisonMode) {
+		this.comparisonMode = comparisonMode;
+	}
+	
+	/**
+	 * Tells whether a file of the old directory and its counterpart in the
+	 * new directory are equal, according to the comparison mode of this
+	 * instance.
+	 * @param oldEntry The file in the old directory.
+	 * @param newEntry The file in the new directory.
+	 * @return <code>true</code> if the files are considered equal.
+	 * @throws FileException If the files can't be read.
+	 */
+	public boolean filesEqual(FileEntry oldEntry, FileEntry newEntry) throws FileException {
+		FileComparisonEvent event = new FileComparisonEvent();
+		event.begin();
+		long start = System.nanoTime();
+		boolean result = this.compareContents(oldEntry, newEntry);
+		this.metrics.record(Phase.COMPARISON, start);
+		event.end();
+		if (event.shouldCommit()) {
+			event.path = newEntry.getRelativePath();
+			event.size = newEntry.getSize();
+			event.equal = result;
+			event.commit();
+		}
+		return result;
+	}
+	
+	/**
+	 * Tells whether a file of the old directory and its counterpart in the
+	 * new directory are equal, reading them completely whatever the
+	 * comparison mode. It's used to verify the files that sampling found
+	 * probably equal.
+	 * @param oldEntry The file in the old directory.
+	 * @param newEntry The file in the new directory.
+	 * @return <code>true</code> if the files are equal.
+	 * @throws FileException If the files can't be read or the current thread
+	 * is interrupted.
+	 */
+	public boolean verifyFilesEqual(FileEntry oldEntry, FileEntry newEntry) throws FileException {
+		long start = System.nanoTime();
+		boolean result = this.chunkedFileComparator.filesEqual(oldEntry.getPath(), newEntry.getPath(), oldEntry.getSize());
+		this.metrics.record(Phase.VERIFICATION, start);
+		return result;
+	}
+	
 	/**
-	 * Locates the file in the old directory that corresponds to the
-	 * given path of a file in the new directory.
-	 * @param newFilePath The path of a file in the new directory.
-	 * @return The corresponding old file or an empty {@link Optional}
-	 * if there's no such file.
+	 * Tells whether {@link #filesEqual(FileEntry, FileEntry)} compares two
+	 * files only by sampling them, so finding them equal means that they are
+	 * probably equal.
+	 * @param oldEntry The file in the old directory.
+	 * @param newEntry The file in the new directory.
+	 * @return <code>true</code> if the files are sampled.
 	 */
-	public Optional<Path> locateOldFile(Path newFilePath) {
-		Path newRelativePath = this.newDirectory.toPath().relativize(newFilePath);
-		Path oldFilePath = this.oldDirectory.toPath().resolve(newRelativePath);
-		File oldFile = oldFilePath.toFile();
-		Optional<Path> result;
-		if (oldFile.exists()) {
-			result = Optional.of(oldFilePath);
+	public boolean isSampled(FileEntry oldEntry, FileEntry newEntry) {
+		return this.comparisonMode == ComparisonMode.SAMPLED && this.oldSource.isReadable() && this.newSource.isReadable()
+			&& this.strategySelector.select(newEntry.getRelativePath()).isEmpty()
+			&& this.sampledFileComparator.isSampled(oldEntry.getSize()) && !isArchived(oldEntry) && !isArchived(newEntry);
+	}
+	
+	/**
+	 * Takes the next file that sampling found probably equal and hasn't been
+	 * verified yet. Files are only kept for verification when it's enabled.
+	 * @return The outcome of the file, which isn't changed, or an empty
+	 * {@link Optional} if there are no more files to verify.
+	 * @throws FileException If the files to verify can't be read back.
+	 */
+	public Optional<ComparisonOutcome> pollUnverifiedFile() throws FileException {
+		return this.unverifiedFiles == null ? Optional.empty() : this.unverifiedFiles.poll();
+	}
+	
+	/**
+	 * Returns the number of files that sampling found probably equal,
+	 * verified or not.
+	 * @return The number of files.
+	 */
+	public long getProbablyEqualFiles() {
+		return this.probablyEqualFiles.sum();
+	}
+	
+	/**
+	 * Returns the measurements of the comparison done with this instance.
+	 * @return The metrics.
+	 */
+	public ComparisonMetrics getMetrics() {
+		return this.metrics;
+	}
+	
+	/**
+	 * Returns the journal of an interrupted comparison, which is used when
+	 * comparisons are resumable.
+	 * @return The file.
+	 */
+	public File getJournalFile() {
+		return new File(this.resultsDirectory, "comparison.journal");
+	}
+	
+	/**
+	 * Returns the file where the metrics are written when a comparison ends.
+	 * @return The file.
+	 */
+	public File getMetricsFile() {
+		return new File(this.resultsDirectory, "metrics.json");
+	}
+	
+	/**
+	 * Tells whether two files are equal by reading them byte by byte, in
+	 * chunks if they are big.
+	 * @param oldEntry The file in the old directory.
+	 * @param newEntry The file in the new directory, which must have the
+	 * same size.
+	 * @return <code>true</code> if the files are equal.
+	 * @throws FileException If the files can't be read or the current thread
+	 * is interrupted.
+	 */
+	public boolean compareBytes(FileEntry oldEntry, FileEntry newEntry) throws FileException {
+		boolean result;
+		if (oldEntry.getSize() >= this.largeFileThreshold && !isArchived(oldEntry) && !isArchived(newEntry)) {
+			result = this.chunkedFileComparator.filesEqual(oldEntry.getPath(), newEntry.getPath(), oldEntry.getSize());
 		} else {
-			result = Optional.empty();
+			result = filesEqual(oldEntry.getPath(), newEntry.getPath());
+			this.bytesRead.add(2 * oldEntry.getSize());
 		}
 		return result;
 	}
 	
 	/**
-	 * Locates the file in the new directory that corresponds to the
-	 * given path of a file in the old directory.
-	 * @param oldFilePath The path of a file in the old directory.
-	 * @return The corresponding new file or an empty {@link Optional}
-	 * if there's no such file.
+	 * Returns the SHA-256 digest of a file, from its snapshot or from the
+	 * digest cache if it's enabled and the file hasn't changed since it was
+	 * cached.
+	 * @param entry The file.
+	 * @param old <code>true</code> if the file belongs to the old directory.
+	 * @return The digest.
+	 * @throws FileException If the file can't be read.
 	 */
-	public Optional<Path> locateNewFile(Path oldFilePath) {
-		Path oldRelativePath = this.oldDirectory.toPath().relativize(oldFilePath);
-		Path newFilePath = this.newDirectory.toPath().resolve(oldRelativePath);
-		File newFile = newFilePath.toFile();
-		Optional<Path> result;
-		if (newFile.exists()) {
-			result = Optional.of(newFilePath);
+	public byte[] getDigest(FileEntry entry, boolean old) throws FileException {
+		byte[] result;
+		if (this.oldDigests != null) {
+			result = this.digest(entry, old);
 		} else {
-			result = Optional.empty();
+			result = (old ? this.oldSource : this.newSource).getDigest(entry).orElse(null);
+			if (result == null) {
+				result = digest(entry.getPath(), this.bytesRead);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Receives a pair of directories that has just been listed, before their
+	 * files are compared, and tells whether the files directly inside them
+	 * are known to be equal. That's the case when the digest cache is enabled,
+	 * the {@link MerkleTree} of each side shows that the listing of the
+	 * directory hasn't changed since it was saved, and the saved digests of
+	 * the files of both sides are equal. Only the files directly inside are
+	 * skipped: the subdirectories are listed and checked on their own. It can
+	 * be called from any thread.
+	 * @param node The node of the directories.
+	 * @param oldChildren The files and subdirectories compared in the old
+	 * directory or <code>null</code> if it doesn't exist.
+	 * @param newChildren The files and subdirectories compared in the new
+	 * directory or <code>null</code> if it doesn't exist.
+	 * @return <code>true</code> if the files don't have to be compared.
+	 */
+	public boolean directoryListed(int node, List<FileEntry> oldChildren, List<FileEntry> newChildren) {
+		boolean result = false;
+		if (this.oldTree != null) {
+			boolean oldUnchanged = oldChildren != null && this.oldTree.directoryListed(node, oldChildren);
+			boolean newUnchanged = newChildren != null && this.newTree.directoryListed(node, newChildren);
+			Optional<byte[]> oldDigest = this.oldTree.getSavedFilesDigest(node);
+			result = oldUnchanged && newUnchanged && oldDigest.isPresent()
+				&& Arrays.equals(oldDigest.get(), this.newTree.getSavedFilesDigest(node).orElse(null));
+			if (result) {
+				this.oldTree.reuse(node);
+				this.newTree.reuse(node);
+				for (FileEntry child : oldChildren) {
+					if (!child.isDirectory()) {
+						this.oldDigests.keep(child);
+					}
+				}
+				for (FileEntry child : newChildren) {
+					if (!child.isDirectory()) {
+						this.newDigests.keep(child);
+						this.filesInUnchangedDirectories.increment();
+					}
+				}
+			}
 		}
 		return result;
 	}
 	
+	/**
+	 * Returns the number of files that haven't been compared because their
+	 * directories were known to be equal.
+	 * @return The number of files in the new directory.
+	 */
+	public long getFilesInUnchangedDirectories() {
+		return this.filesInUnchangedDirectories.sum();
+	}
+	
+	/**
+	 * Adds bytes read by a {@link ComparisonStrategy} to the count of bytes
+	 * read to compare files.
+	 * @param bytes The number of bytes.
+	 */
+	public void addBytesRead(long bytes) {
+		this.bytesRead.add(bytes);
+	}
+	
+	/**
+	 * Decides whether two files are equal. If a strategy has been chosen
+	 * for the file, it decides, otherwise the comparison mode does. A file of
+	 * a snapshot can't be read, so it's compared through its digest whatever
+	 * the strategy or the mode.
+	 */
+	private boolean compareContents(FileEntry oldEntry, FileEntry newEntry) throws FileException {
+		boolean result;
+		boolean readable = this.oldSource.isReadable() && this.newSource.isReadable();
+		Optional<ComparisonStrategy> strategy = readable
+			? this.strategySelector.select(newEntry.getRelativePath()) : Optional.empty();
+		Optional<Boolean> decidedFromMetadata = Optional.empty();
+		if (strategy.isEmpty() && oldEntry.getSize() == newEntry.getSize()) {
+			
+			// The CRCs of archived files are more reliable than their modification times.
+			decidedFromMetadata = filesEqualFromArchive(oldEntry, newEntry, this.comparisonMode);
+		}
+		if (decidedFromMetadata.isEmpty()) {
+			decidedFromMetadata = filesEqualFromMetadata(
+				oldEntry, newEntry, this.comparisonMode, strategy.map(ComparisonStrategy::isSizeSignificant).orElse(true)
+			);
+		}
+		if (decidedFromMetadata.isPresent()) {
+			result = decidedFromMetadata.get();
+		} else if (!readable) {
+			result = Arrays.equals(this.getDigest(oldEntry, true), this.getDigest(newEntry, false));
+		} else if (strategy.isPresent()) {
+			result = strategy.get().filesEqual(oldEntry, newEntry, this);
+		} else if (this.isSampled(oldEntry, newEntry)) {
+			result = this.sampledFileComparator.filesEqual(oldEntry.getPath(), newEntry.getPath(), oldEntry.getSize());
+			if (result) {
+				this.probablyEqualFiles.increment();
+				if (this.unverifiedFiles != null) {
+					this.unverifiedFiles.add(oldEntry, newEntry);
+				}
+			}
+		} else if (this.oldDigests != null) {
+			result = Arrays.equals(this.digest(oldEntry, true), this.digest(newEntry, false));
+		} else {
+			result = this.compareBytes(oldEntry, newEntry);
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the number of bytes read to compare files so far. Big files
+	 * are counted while they are being read.
+	 * @return The number of bytes.
+	 */
+	public long getBytesRead() {
+		return this.bytesRead.sum();
+	}
+	
+	/**
+	 * Saves the digest caches and the digests of the directories, if they
+	 * are enabled.
+	 * @param complete <code>true</code> if the whole directories have been
+	 * compared, so the digests of files that don't exist anymore can be
+	 * discarded.
+	 * @throws FileException If a cache can't be saved.
+	 */
+	public void saveDigestCaches(boolean complete) throws FileException {
+		if (this.oldDigests != null) {
+			this.oldDigests.save(complete);
+			this.newDigests.save(complete);
+			this.oldTree.save(complete);
+			this.newTree.save(complete);
+		}
+	}
+	
+	/**
+	 * Tells whether the digests of the files are cached between runs.
+	 * @return <code>true</code> if the digest cache is enabled.
+	 */
+	public boolean isDigestCacheEnabled() {
+		return this.oldDigests != null;
+	}
+	
+	/**
+	 * Returns the number of files whose digest was found in the cache.
+	 * @return The number of hits.
+	 */
+	public long getDigestCacheHits() {
+		return this.oldDigests == null ? 0 : this.oldDigests.getHits() + this.newDigests.getHits();
+	}
+	
+	/**
+	 * Returns the number of files whose digest had to be calculated.
+	 * @return The number of misses.
+	 */
+	public long getDigestCacheMisses() {
+		return this.oldDigests == null ? 0 : this.oldDigests.getMisses() + this.newDigests.getMisses();
+	}
+	
+	/**
+	 * Tells whether two files are equal. The metadata read when the files
+	 * were listed is checked first, so the contents are only read when it
+	 * isn't enough to decide.
+	 * @param oldEntry The file in the old directory.
+	 * @param newEntry The file in the new directory.
+	 * @param comparisonMode The comparison mode.
+	 * @return <code>true</code> if the files are considered equal.
+	 * @throws FileException If the files can't be read.
+	 */
+	public static boolean filesEqual(FileEntry oldEntry, FileEntry newEntry, ComparisonMode comparisonMode) throws FileException {
+		boolean result;
+		Optional<Boolean> decidedFromMetadata = filesEqualFromMetadata(oldEntry, newEntry, comparisonMode, true);
+		if (decidedFromMetadata.isPresent()) {
+			result = decidedFromMetadata.get();
+		} else {
+			result = filesEqual(oldEntry.getPath(), newEntry.getPath());
+		}
+		return result;
+	}
+	
+	/**
+	 * Calculates the SHA-256 digest of the contents of a file.
+	 * @param path The file.
+	 * @return The digest.
+	 * @throws FileException If the file can't be read.
+	 */
+	public static byte[] digest(Path path) throws FileException {
+		return digest(path, new LongAdder());
+	}
+	
+	/**
+	 * Calculates the SHA-256 digest of the contents of a file, counting the
+	 * bytes while they are read. Reading stops if the current thread is
+	 * interrupted.
+	 * @param path The file.
+	 * @param bytesRead The counter where the bytes read are added.
+	 * @return The digest.
+	 * @throws FileException If the file can't be read.
+	 */
+	public static byte[] digest(Path path, LongAdder bytesRead) throws FileException {
+		MessageDigest messageDigest = createMessageDigest();
+		byte[] buffer = new byte[64 * 1024];
+		try (InputStream input = Files.newInputStream(path)) {
+			int read = input.read(buffer);
+			while (read >= 0) {
+				messageDigest.update(buffer, 0, read);
+				bytesRead.add(read);
+				read = input.read(buffer);
+			}
+		} catch (NoSuchFileException e) {
+			throw new FileException("It looks like the file " + e.getFile() + " doesn't exist anymore.");
+		} catch (ClosedByInterruptException e) {
+			throw new FileException("The reading of " + path + " has been stopped.");
+		} catch (IOException e) {
+			throw new FileException("I/O error when reading " + path + ": " + e.getMessage());
+		}
+		return messageDigest.digest();
+	}
+	
 	public static boolean filesEqual(Path path, Path path2) throws FileException {
 		try {
 			return Files.mismatch(path, path2) == -1;
 		} catch (NoSuchFileException e) {
 			throw new FileException("It looks like the file " + e.getFile() + " doesn't exist anymore.");
 		} catch (IOException e) {
-			e.printStackTrace();
-			throw new FileException("I/O error when comparing " + path + " with " + path2 + ".");
+			throw new FileException("I/O error when comparing " + path + " with " + path2 + ": " + e.getMessage());
 		}
 	}
 	
-	public void createShortcut(String newOrChangedPath, ShortcutReason reason) throws FileException {
+	/**
+	 * Creates the shortcut to a new or changed file.
+	 * @param newOrChangedPath The path of the new or changed file.
+	 * @param reason Why the shortcut is created.
+	 * @return <code>true</code> if the shortcut has been created, see
+	 * {@link #createShortcut(File, String)}.
+	 */
+	public boolean createShortcut(String newOrChangedPath, ShortcutReason reason) {
+		return this.createShortcut(this.getShortcutFile(newOrChangedPath, reason), newOrChangedPath);
+	}
+	
+	/**
+	 * Returns the file of the shortcut to a new or changed file.
+	 * @param newOrChangedPath The path of the new or changed file.
+	 * @param reason Why the shortcut is created.
+	 * @return The shortcut file, inside the results directory.
+	 */
+	public File getShortcutFile(String newOrChangedPath, ShortcutReason reason) {
 		File newOrChangedFile = new File(newOrChangedPath);
 		String shortcutFileName = stripExtension(newOrChangedFile.getName()) + ".lnk";
 		File where;
@@ -136,16 +698,254 @@ public class FileManager {
 		} else {
 			throw new RuntimeException("reason is mandatory.");
 		}
-		File shortcutFile = new File(where, shortcutFileName);
-		FileManager.createShortcut(newOrChangedPath, shortcutFile.getAbsolutePath());
+		return new File(where, shortcutFileName);
 	}
+	
+	/**
+	 * Creates a shortcut, replacing the file if it exists. A shortcut that
+	 * can't be created, as happens outside Windows, doesn't stop the
+	 * comparison: it's counted and the error is kept.
+	 * @param shortcutFile The shortcut file.
+	 * @param targetPath The path of the file the shortcut points to.
+	 * @return <code>true</code> if the shortcut has been created.
+	 * @see #getFailedShortcuts()
+	 */
+	public boolean createShortcut(File shortcutFile, String targetPath) {
+		ShortcutEvent event = new ShortcutEvent();
+		event.begin();
+		long start = System.nanoTime();
+		boolean result;
+		try {
+			ShellLink.createLink(targetPath, shortcutFile.getAbsolutePath());
+			result = true;
+		} catch (IOException | RuntimeException e) {
 
-	private static void deleteContents(File file) {
-		if (file.isDirectory()) {
-			deleteContentsRecursively(file);
-		} else if (file.isFile()) {
-			file.delete();
+			// The shortcut library fails with unchecked exceptions outside Windows.
+			this.failedShortcuts.increment();
+			this.shortcutError = "Can't create the shortcut to " + targetPath + ": " + e;
+			result = false;
+		}
+		this.metrics.record(Phase.SHORTCUTS, start);
+		event.end();
+		if (event.shouldCommit()) {
+			event.target = targetPath;
+			event.commit();
 		}
+		return result;
+	}
+	
+	/**
+	 * Returns the number of shortcuts that couldn't be created.
+	 * @return The number of shortcuts.
+	 */
+	public long getFailedShortcuts() {
+		return this.failedShortcuts.sum();
+	}
+	
+	/**
+	 * Returns why the last shortcut that couldn't be created failed.
+	 * @return The error or an empty {@link Optional} if every shortcut has
+	 * been created.
+	 */
+	public Optional<String> getShortcutError() {
+		return Optional.ofNullable(this.shortcutError);
+	}
+	
+	/**
+	 * Starts the shortcuts of the results of a comparison, which are then
+	 * added as the results arrive.
+	 * @see ShortcutReconciler
+	 */
+	public void startShortcuts() {
+		this.getShortcutReconciler().start();
+	}
+	
+	/**
+	 * Adds a shortcut to the results, creating it unless a previous
+	 * comparison left it pointing to the same file.
+	 * @param shortcutFile The shortcut file.
+	 * @param targetPath The path of the file the shortcut points to.
+	 * @see ShortcutReconciler
+	 */
+	public void addShortcut(File shortcutFile, String targetPath) {
+		this.getShortcutReconciler().add(shortcutFile, targetPath);
+	}
+	
+	/**
+	 * Removes a shortcut from the results, deleting it.
+	 * @param shortcutFile The shortcut file.
+	 */
+	public void removeShortcut(File shortcutFile) {
+		this.getShortcutReconciler().remove(shortcutFile);
+	}
+	
+	/**
+	 * Finishes the shortcuts of the results, saving their manifest. Without
+	 * {@link #startShortcuts()}, a complete update deletes every shortcut,
+	 * which is what a comparison that doesn't create them needs.
+	 * @param complete <code>true</code> if the comparison has finished, so
+	 * the shortcuts that aren't results anymore can be deleted.
+	 * @throws FileException If the manifest can't be saved.
+	 * @see ShortcutReconciler
+	 */
+	public void updateShortcuts(boolean complete) throws FileException {
+		ShortcutReconciler reconciler = this.getShortcutReconciler();
+		ReconciliationEvent event = new ReconciliationEvent();
+		event.begin();
+		long start = System.nanoTime();
+		try {
+			reconciler.finish(complete);
+		} finally {
+			this.metrics.record(Phase.RECONCILIATION, start);
+			event.end();
+			if (event.shouldCommit()) {
+				event.created = reconciler.getCreated();
+				event.deleted = reconciler.getDeleted();
+				event.kept = reconciler.getKept();
+				event.commit();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the object that keeps the shortcuts of the results directory in
+	 * line with the results, which is created the first time it's needed.
+	 * @return The reconciler.
+	 */
+	public synchronized ShortcutReconciler getShortcutReconciler() {
+		if (this.shortcutReconciler == null) {
+			this.shortcutReconciler = new ShortcutReconciler(
+				this, new File(this.resultsDirectory, "shortcuts.manifest"),
+				List.of(this.resultsNewFiles, this.resultsChangedFiles), this.shortcutThreads
+			);
+		}
+		return this.shortcutReconciler;
+	}
+
+	/**
+	 * Decides whether two files are equal from the metadata read when they
+	 * were listed.
+	 * @param sizeSignificant <code>false</code> if files with different
+	 * sizes can be equal.
+	 * @return The answer or an empty {@link Optional} if the contents of the
+	 * files have to be read.
+	 */
+	private static Optional<Boolean> filesEqualFromMetadata(
+		FileEntry oldEntry, FileEntry newEntry, ComparisonMode comparisonMode, boolean sizeSignificant
+	) {
+		Optional<Boolean> result;
+		if (oldEntry.getSize() != newEntry.getSize() && sizeSignificant) {
+			result = Optional.of(false);
+		} else if (comparisonMode == ComparisonMode.QUICK && oldEntry.getLastModified() == newEntry.getLastModified()) {
+			result = Optional.of(true);
+		} else {
+			result = Optional.empty();
+		}
+		return result;
+	}
+	
+	/**
+	 * Decides whether two files of the same size are equal from the CRC-32
+	 * that archives keep for every file, without decompressing them.
+	 * Different CRCs mean different contents. Equal CRCs are only trusted by
+	 * the modes that don't read every byte.
+	 * @return The answer or an empty {@link Optional} if a file isn't
+	 * archived or the contents of the files have to be read.
+	 */
+	private static Optional<Boolean> filesEqualFromArchive(
+		FileEntry oldEntry, FileEntry newEntry, ComparisonMode comparisonMode
+	) {
+		Optional<Boolean> result = Optional.empty();
+		if (isArchived(oldEntry) && isArchived(newEntry)) {
+			try {
+				Object crc = Files.getAttribute(oldEntry.getPath(), "zip:crc");
+				Object crc2 = Files.getAttribute(newEntry.getPath(), "zip:crc");
+				if (!crc.equals(crc2)) {
+					result = Optional.of(false);
+				} else if (comparisonMode != ComparisonMode.STRICT) {
+					result = Optional.of(true);
+				}
+			} catch (IOException | IllegalArgumentException | UnsupportedOperationException e) {
+
+				// The archive doesn't keep CRCs, so the files are read.
+			}
+		}
+		return result;
+	}
+	
+	private static boolean isArchived(FileEntry entry) {
+		return entry.getRoot().getFileSystem() != FileSystems.getDefault();
+	}
+	
+	/**
+	 * Returns where a compared directory is listed from, opening it as a
+	 * file system if it's an archive.
+	 */
+	private TreeSource openSource(File directory) throws FileException {
+		TreeSource result;
+		if (isArchive(directory)) {
+			try {
+				FileSystem archive = FileSystems.newFileSystem(directory.toPath());
+				result = new DirectoryTreeSource(archive.getRootDirectories().iterator().next(), this.pathIndex, archive);
+			} catch (IOException | RuntimeException e) {
+				this.closeSources();
+				throw new FileException("Can't open the archive " + directory + ".");
+			}
+		} else if (SnapshotManifest.isSnapshot(directory)) {
+			try {
+				result = new SnapshotManifest(directory, this.pathIndex);
+			} catch (FileException e) {
+				this.closeSources();
+				throw e;
+			}
+		} else {
+			result = new DirectoryTreeSource(directory.toPath(), this.pathIndex, null);
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the digest of a file through the digest cache of its side,
+	 * unless it's known without reading the file, and adds it to the tree of
+	 * that side.
+	 */
+	private byte[] digest(FileEntry entry, boolean old) throws FileException {
+		DigestCache cache = old ? this.oldDigests : this.newDigests;
+		byte[] result = (old ? this.oldSource : this.newSource).getDigest(entry).orElse(null);
+		if (result == null) {
+			result = cache.lookup(entry);
+		}
+		if (result == null) {
+			result = digest(entry.getPath(), this.bytesRead);
+			cache.put(entry, result);
+		}
+		(old ? this.oldTree : this.newTree).fileDigested(entry, result);
+		return result;
+	}
+	
+	/**
+	 * Creates the SHA-256 digest that files and directories are digested
+	 * with.
+	 */
+	static MessageDigest createMessageDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Every Java platform must support SHA-256.", e);
+		}
+	}
+	
+	/**
+	 * Returns a cache file of a directory. The name depends on the absolute
+	 * path of the directory, so the same directory uses the same cache
+	 * whether it's the old or the new one.
+	 */
+	private static Path cacheFile(File cacheDirectory, File directory, String prefix) {
+		byte[] pathDigest = createMessageDigest().digest(
+			directory.getAbsolutePath().getBytes(StandardCharsets.UTF_8)
+		);
+		String name = prefix + HexFormat.of().formatHex(pathDigest, 0, 8) + ".bin";
+		return new File(cacheDirectory, name).toPath();
 	}
 	
 	private static String stripExtension(String fileName) {
@@ -162,36 +962,51 @@ public class FileManager {
 		return result;
 	}
 	
-	private static void createShortcut(String targetPath, String createdShortcutPath) throws FileException {
-		try {
-			ShellLink.createLink(targetPath, createdShortcutPath);
-		} catch (IOException e) {
-			e.printStackTrace();
-			throw new FileException("ERROR: can't create shortcut to " + targetPath + ".");
-		}	
-	}
-	
-	private static void deleteContentsRecursively(File directory) {
-		File[] children = directory.listFiles();
-		for (File child : children) {
-			if (child.isFile()) {
-				child.delete();
-			} else if (child.isDirectory()) {
-				deleteContentsRecursively(child);
-			}
+	/**
+	 * Counts the files inside a directory, forking a task for every
+	 * subdirectory.
+	 */
+	private static class CountFilesTask extends RecursiveTask<Integer> {
+
+		private static final long serialVersionUID = -2361520476337716547L;
+
+		private final File directory;
+		private final String relativePath;
+		private final transient PathFilter filter;
+
+		private CountFilesTask(File directory, String relativePath, PathFilter filter) {
+			this.directory = directory;
+			this.relativePath = relativePath;
+			this.filter = filter;
 		}
-	}
-	
-	private static int countFilesRecursively(File directory) {
-		int result = 0;
-		File[] children = directory.listFiles();
-		for (File child : children) {
-			if (child.isFile()) {
-				result++;
-			} else if (child.isDirectory()) {
-				result = result + countFilesRecursively(child);
+
+		@Override
+		protected Integer compute() {
+			int result = 0;
+			File[] children = this.directory.listFiles();
+			List<CountFilesTask> subdirectories = new ArrayList<>();
+			if (children != null) {
+				PathFilter childFilter = this.filter;
+				String ignoreFileName = this.filter.getIgnoreFileName();
+				if (ignoreFileName != null && new File(this.directory, ignoreFileName).isFile()) {
+					childFilter = this.filter.enter(this.relativePath, this.directory.toPath());
+				}
+				String prefix = this.relativePath.isEmpty() ? "" : this.relativePath + "/";
+				for (File child : children) {
+					String childPath = prefix + child.getName();
+					if (child.isFile()) {
+						if (!childFilter.isExcluded(childPath, false)) {
+							result++;
+						}
+					} else if (child.isDirectory() && !childFilter.isExcluded(childPath, true)) {
+						subdirectories.add(new CountFilesTask(child, childPath, childFilter));
+					}
+				}
 			}
+			for (CountFilesTask subdirectory : invokeAll(subdirectories)) {
+				result = result + subdirectory.join();
+			}
+			return result;
 		}
-		return result;
 	}
 }
@@ -0,0 +1,166 @@
+package directory_comparator.logic;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tools for writing and reading JSON by hand, which is enough for the flat
+ * records this program writes.
+ */
+public class Json {
+
+	/**
+	 * Quotes a string as a JSON string literal.
+	 * @param value The string.
+	 * @return The literal, including the quotes.
+	 */
+	public static String quote(String value) {
+		StringBuilder result = new StringBuilder(value.length() + 2);
+		result.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char character = value.charAt(i);
+			switch (character) {
+			case '"':
+				result.append("\\\"");
+				break;
+			case '\\':
+				result.append("\\\\");
+				break;
+			case '\n':
+				result.append("\\n");
+				break;
+			case '\r':
+				result.append("\\r");
+				break;
+			case '\t':
+				result.append("\\t");
+				break;
+			default:
+				if (character < 0x20) {
+					result.append(String.format("\\u%04x", (int) character));
+				} else {
+					result.append(character);
+				}
+			}
+		}
+		result.append('"');
+		return result.toString();
+	}
+
+	/**
+	 * Parses a flat JSON object, whose values are strings, numbers,
+	 * booleans or <code>null</code>, like the records this program writes.
+	 * @param json The object.
+	 * @return The values by name. Values that aren't strings are returned as
+	 * they are written and <code>null</code> as <code>null</code>.
+	 * @throws IllegalArgumentException If the text isn't a flat JSON object.
+	 */
+	public static Map<String, String> parseObject(String json) {
+		Map<String, String> result = new LinkedHashMap<>();
+		int[] position = { skipWhitespace(json, 0) };
+		expect(json, position, '{');
+		position[0] = skipWhitespace(json, position[0]);
+		if (position[0] < json.length() && json.charAt(position[0]) == '}') {
+			position[0]++;
+		} else {
+			boolean more = true;
+			while (more) {
+				position[0] = skipWhitespace(json, position[0]);
+				String name = parseString(json, position);
+				position[0] = skipWhitespace(json, position[0]);
+				expect(json, position, ':');
+				position[0] = skipWhitespace(json, position[0]);
+				String value;
+				if (position[0] < json.length() && json.charAt(position[0]) == '"') {
+					value = parseString(json, position);
+				} else {
+					int start = position[0];
+					while (position[0] < json.length() && ",} \t\r\n".indexOf(json.charAt(position[0])) < 0) {
+						position[0]++;
+					}
+					value = json.substring(start, position[0]);
+					if (value.isEmpty()) {
+						throw new IllegalArgumentException("A value is missing at " + start + ".");
+					}
+					if (value.equals("null")) {
+						value = null;
+					}
+				}
+				result.put(name, value);
+				position[0] = skipWhitespace(json, position[0]);
+				more = position[0] < json.length() && json.charAt(position[0]) == ',';
+				if (more) {
+					position[0]++;
+				}
+			}
+			expect(json, position, '}');
+		}
+		return result;
+	}
+
+	private static String parseString(String json, int[] position) {
+		expect(json, position, '"');
+		StringBuilder result = new StringBuilder();
+		boolean closed = false;
+		while (!closed) {
+			if (position[0] >= json.length()) {
+				throw new IllegalArgumentException("A string isn't closed.");
+			}
+			char character = json.charAt(position[0]);
+			position[0]++;
+			if (character == '"') {
+				closed = true;
+			} else if (character == '\\') {
+				if (position[0] >= json.length()) {
+					throw new IllegalArgumentException("A string isn't closed.");
+				}
+				char escaped = json.charAt(position[0]);
+				position[0]++;
+				switch (escaped) {
+				case 'n':
+					result.append('\n');
+					break;
+				case 'r':
+					result.append('\r');
+					break;
+				case 't':
+					result.append('\t');
+					break;
+				case 'b':
+					result.append('\b');
+					break;
+				case 'f':
+					result.append('\f');
+					break;
+				case 'u':
+					if (position[0] + 4 > json.length()) {
+						throw new IllegalArgumentException("An escape sequence isn't complete.");
+					}
+					result.append((char) Integer.parseInt(json.substring(position[0], position[0] + 4), 16));
+					position[0] = position[0] + 4;
+					break;
+				default:
+					result.append(escaped);
+				}
+			} else {
+				result.append(character);
+			}
+		}
+		return result.toString();
+	}
+
+	private static void expect(String json, int[] position, char expected) {
+		if (position[0] >= json.length() || json.charAt(position[0]) != expected) {
+			throw new IllegalArgumentException("Expected " + expected + " at " + position[0] + ".");
+		}
+		position[0]++;
+	}
+
+	private static int skipWhitespace(String json, int position) {
+		int result = position;
+		while (result < json.length() && Character.isWhitespace(json.charAt(result))) {
+			result++;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,491 @@
+package directory_comparator.logic;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.EntryStatus;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.enums.ShortcutReason;
+import directory_comparator.logic.listeners.ReportScanListener;
+import directory_comparator.logic.listeners.WatchListener;
+import directory_comparator.logic.models.ComparisonOptions;
+import directory_comparator.logic.models.ComparisonOutcome;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+import directory_comparator.logic.results.ReportEntry;
+import directory_comparator.logic.results.ReportIndex;
+import directory_comparator.logic.results.ResultSink;
+
+/**
+ * A {@link DirectoryComparison} that, if watching is enabled, keeps its
+ * results up to date after it finishes. The new directory, and optionally
+ * the old one, are watched through a {@link WatchService}, and every file
+ * affected by an event is classified and compared again, updating the
+ * summary and the shortcuts of the results directory. Events are applied
+ * once they have settled for a moment, so a file that is being written is
+ * compared once.
+ * <p>
+ * The results of the full comparison aren't kept in memory: the ones of
+ * the affected files are read back from its report, and only the results
+ * that have changed since are kept. The digest cache and the manifest of
+ * the shortcuts are saved when watching stops.
+ * <p>
+ * When the watch service loses events because there are too many, the
+ * directories are compared again from scratch. While events keep being
+ * lost, the full comparisons are repeated periodically instead of after
+ * every lost event.
+ */
+public class LiveComparison {
+
+	/**
+	 * How long, in milliseconds, to wait for an event before asking the
+	 * listener whether to stop.
+	 */
+	private static final long POLL_PERIOD = 250;
+
+	/**
+	 * How long, in milliseconds, the directories have to be quiet before the
+	 * events received are applied.
+	 */
+	private static final long SETTLE_PERIOD = 500;
+
+	/**
+	 * The minimum time, in milliseconds, between two full comparisons done
+	 * because events were lost.
+	 */
+	private static final long RESCAN_PERIOD = 30_000;
+
+	private final File oldDirectory;
+	private final File newDirectory;
+	private final File resultsDirectory;
+	private final ComparisonOptions options;
+	/**
+	 * The results of the files classified again while watching, by path,
+	 * which replace the ones in the report of the last full comparison. They
+	 * are sorted so the results inside a directory are next to each other.
+	 */
+	private final NavigableMap<String, Set<ResultKind>> changedResults = new TreeMap<>();
+	private volatile DirectoryComparison comparison;
+	private volatile boolean watching;
+	private long lastComparison;
+
+	/**
+	 * Constructor.
+	 * @param oldDirectory The old directory.
+	 * @param newDirectory The new directory.
+	 * @param resultsDirectory Where to store the results.
+	 * @param options The comparison settings, which tell whether to watch.
+	 */
+	public LiveComparison(File oldDirectory, File newDirectory, File resultsDirectory, ComparisonOptions options) {
+		this.oldDirectory = oldDirectory;
+		this.newDirectory = newDirectory;
+		this.resultsDirectory = resultsDirectory;
+		this.options = options;
+		this.comparison = new DirectoryComparison(oldDirectory, newDirectory, resultsDirectory, options);
+	}
+
+	/**
+	 * Compares the directories and, if watching is enabled, watches them
+	 * until the listener asks to stop.
+	 * @param listener The listener.
+	 * @param extraSinks More sinks for the results of the first full
+	 * comparison.
+	 * @throws FileException If something goes wrong or an archive or a
+	 * snapshot is compared with watching enabled.
+	 */
+	public void run(WatchListener listener, ResultSink... extraSinks) throws FileException {
+		if (this.options.isWatchEnabled() && (FileManager.isArchive(this.oldDirectory) || FileManager.isArchive(this.newDirectory))) {
+			throw new FileException("Archives can't be watched for changes.");
+		}
+		if (this.options.isWatchEnabled() && (SnapshotManifest.isSnapshot(this.oldDirectory) || SnapshotManifest.isSnapshot(this.newDirectory))) {
+			throw new FileException("Snapshots can't be watched for changes.");
+		}
+		this.compare(this.comparison, listener, extraSinks);
+		while (this.options.isWatchEnabled() && !listener.isCancelled()) {
+			this.watching = true;
+			boolean eventsLost;
+			try {
+				eventsLost = this.watch(listener);
+			} finally {
+				this.saveWatchedChanges();
+			}
+			if (eventsLost && !listener.isCancelled()) {
+				this.compare(
+					new DirectoryComparison(this.oldDirectory, this.newDirectory, this.resultsDirectory, this.options),
+					listener
+				);
+			}
+		}
+	}
+
+	/**
+	 * Returns the comparison whose results are being kept up to date, which
+	 * is replaced by every full comparison as soon as it starts.
+	 * @return The comparison.
+	 */
+	public DirectoryComparison getComparison() {
+		return comparison;
+	}
+
+	/**
+	 * Tells whether the first full comparison has finished and the
+	 * directories are being watched.
+	 * @return <code>true</code> if the directories are being watched.
+	 */
+	public boolean isWatching() {
+		return watching;
+	}
+
+	private void compare(DirectoryComparison fullComparison, WatchListener listener, ResultSink... extraSinks) throws FileException {
+		this.changedResults.clear();
+		this.comparison = fullComparison;
+		fullComparison.run(listener, extraSinks);
+		this.lastComparison = System.currentTimeMillis();
+		if (!listener.isCancelled()) {
+			listener.onComparisonFinished();
+		}
+	}
+
+	/**
+	 * Saves what comparing files while watching has changed: the digests
+	 * added to the cache and the shortcuts, so the next comparison finds
+	 * them.
+	 */
+	private void saveWatchedChanges() throws FileException {
+		FileManager fileManager = this.comparison.getFileManager();
+		fileManager.saveDigestCaches(true);
+		if (this.options.isShortcutsEnabled()) {
+			fileManager.updateShortcuts(false);
+		}
+	}
+
+	/**
+	 * Watches the directories, applying the events received.
+	 * @return <code>true</code> if events have been lost and the directories
+	 * have to be compared again.
+	 */
+	private boolean watch(WatchListener listener) throws FileException {
+		boolean result = false;
+		Path oldRoot = this.oldDirectory.toPath();
+		Path newRoot = this.newDirectory.toPath();
+		try (WatchService service = FileSystems.getDefault().newWatchService()) {
+			Map<WatchKey, Path[]> keys = new HashMap<>();
+			register(service, newRoot, newRoot, keys);
+			if (this.options.isWatchOldEnabled()) {
+				register(service, oldRoot, oldRoot, keys);
+			}
+			Set<String> pending = new LinkedHashSet<>();
+			boolean eventsLost = false;
+			long lastEvent = 0;
+			while (!result && !listener.isCancelled()) {
+				WatchKey key = service.poll(POLL_PERIOD, TimeUnit.MILLISECONDS);
+				if (key != null) {
+					Path[] directory = keys.get(key);
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+							eventsLost = true;
+						} else {
+							Path child = directory[1].resolve((Path) event.context());
+							pending.add(relativePath(directory[0], child));
+							if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+								&& Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+								this.register(service, directory[0], child, keys);
+							}
+						}
+					}
+					if (!key.reset()) {
+						keys.remove(key);
+					}
+					lastEvent = System.currentTimeMillis();
+				}
+				long now = System.currentTimeMillis();
+				if (now - lastEvent >= SETTLE_PERIOD) {
+					if (eventsLost) {
+						result = now - this.lastComparison >= RESCAN_PERIOD;
+					} else if (!pending.isEmpty()) {
+						this.apply(pending, listener);
+						pending.clear();
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new FileException("Can't watch the folders for changes: " + e.getMessage());
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+
+			// The task has been cancelled.
+			Thread.currentThread().interrupt();
+		}
+		return result;
+	}
+
+	/**
+	 * Registers a directory and its subdirectories, except the ones skipped
+	 * by the filter. Every key remembers the compared directory and the
+	 * directory it watches.
+	 */
+	private void register(WatchService service, Path root, Path directory, Map<WatchKey, Path[]> keys) throws IOException {
+		try {
+			Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+					FileVisitResult result;
+					if (isExcluded(relativePath(root, dir), true)) {
+						result = FileVisitResult.SKIP_SUBTREE;
+					} else {
+						WatchKey key = dir.register(
+							service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+							StandardWatchEventKinds.ENTRY_MODIFY
+						);
+						keys.put(key, new Path[] { root, dir });
+						result = FileVisitResult.CONTINUE;
+					}
+					return result;
+				}
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException e) {
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (NoSuchFileException e) {
+
+			// The directory has been deleted right after being created.
+		}
+	}
+
+	/**
+	 * Classifies again every file affected by the paths changed. A changed
+	 * directory affects every file inside it on any side, and every file that
+	 * had a result inside it. A changed ignore file affects its whole
+	 * directory. The results that the affected files had are read from the
+	 * report in a single pass, unless they have changed while watching.
+	 */
+	private void apply(Set<String> changedPaths, WatchListener listener) throws FileException {
+		Set<String> affected = new TreeSet<>();
+		Set<String> changedDirectories = new HashSet<>();
+		String ignoreFileName = this.options.getFilter().getIgnoreFileName();
+		for (String changedPath : changedPaths) {
+			int separator = changedPath.lastIndexOf('/');
+			if (changedPath.substring(separator + 1).equals(ignoreFileName)) {
+				changedPath = separator < 0 ? "" : changedPath.substring(0, separator);
+			}
+			affected.add(changedPath);
+			changedDirectories.add(changedPath);
+			this.addFiles(this.oldDirectory.toPath(), changedPath, affected);
+			this.addFiles(this.newDirectory.toPath(), changedPath, affected);
+			String prefix = changedPath.isEmpty() ? "" : changedPath + "/";
+			affected.addAll(this.changedResults.subMap(prefix, true, prefix + '\uffff', false).keySet());
+		}
+		Map<String, Set<ResultKind>> reported = new HashMap<>();
+		ReportIndex.scan(this.comparison.getFileManager().getReportFile(), new ReportScanListener() {
+			@Override
+			public void onEntry(int row, ReportEntry entry) {
+				String path = entry.getPath();
+				if (!changedResults.containsKey(path) && (affected.contains(path) || isInside(path, changedDirectories))) {
+					reported.computeIfAbsent(path, key -> EnumSet.noneOf(ResultKind.class)).add(entry.getKind());
+				}
+			}
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		});
+		affected.addAll(reported.keySet());
+		for (String path : affected) {
+			Set<ResultKind> before = this.changedResults.get(path);
+			if (before == null) {
+				before = reported.getOrDefault(path, EnumSet.noneOf(ResultKind.class));
+			}
+			this.reclassify(path, before, listener);
+		}
+	}
+
+	/**
+	 * Tells whether a path is inside one of some directories, which can be
+	 * the root, the empty path.
+	 */
+	private static boolean isInside(String path, Set<String> directories) {
+		boolean result = directories.contains("");
+		int separator = path.indexOf('/');
+		while (!result && separator >= 0) {
+			result = directories.contains(path.substring(0, separator));
+			separator = path.indexOf('/', separator + 1);
+		}
+		return result;
+	}
+
+	private void addFiles(Path root, String relativePath, Set<String> files) {
+		Path path = root.resolve(relativePath);
+		if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+			try {
+				Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+					@Override
+					public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+						return isExcluded(relativePath(root, directory), true)
+							? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+					}
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+						if (attributes.isRegularFile()) {
+							files.add(relativePath(root, file));
+						}
+						return FileVisitResult.CONTINUE;
+					}
+					@Override
+					public FileVisitResult visitFileFailed(Path file, IOException e) {
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			} catch (IOException e) {
+
+				// The directory has been deleted meanwhile and its files will be reclassified as missing.
+			}
+		}
+	}
+
+	private boolean isExcluded(String relativePath, boolean directory) {
+		return this.options.getFilter().isPathExcluded(
+			relativePath, directory, this.oldDirectory.toPath(), this.newDirectory.toPath()
+		);
+	}
+
+	/**
+	 * Classifies and compares a file again and updates its results. A file
+	 * skipped by the filter is handled as if it didn't exist.
+	 * @param before The results the file had.
+	 */
+	private void reclassify(String relativePath, Set<ResultKind> before, WatchListener listener) throws FileException {
+		FileManager fileManager = this.comparison.getFileManager();
+		PathIndex pathIndex = fileManager.getPathIndex();
+		int separator = relativePath.lastIndexOf('/');
+		int directory = separator < 0 ? PathIndex.ROOT : pathIndex.find(relativePath.substring(0, separator));
+		String name = relativePath.substring(separator + 1);
+		FileEntry oldEntry = null;
+		FileEntry newEntry = null;
+		if (!relativePath.isEmpty() && !this.isExcluded(relativePath, false)) {
+			oldEntry = entry(this.oldDirectory.toPath(), pathIndex, directory, name);
+			newEntry = entry(this.newDirectory.toPath(), pathIndex, directory, name);
+		}
+		ComparisonOutcome outcome = null;
+		if (oldEntry != null && newEntry != null) {
+			outcome = new ComparisonOutcome(EntryStatus.COMMON, oldEntry, newEntry);
+			try {
+				outcome.setChanged(!fileManager.filesEqual(oldEntry, newEntry));
+				if (!outcome.isChanged() && this.options.isVerificationEnabled() && fileManager.isSampled(oldEntry, newEntry)) {
+
+					// A single file is verified at once.
+					outcome.setChanged(!fileManager.verifyFilesEqual(oldEntry, newEntry));
+				}
+			} catch (FileException e) {
+				outcome.setError(e);
+			}
+		} else if (newEntry != null) {
+			outcome = new ComparisonOutcome(EntryStatus.NEW, null, newEntry);
+		} else if (oldEntry != null) {
+			outcome = new ComparisonOutcome(EntryStatus.DELETED, oldEntry, null);
+		}
+		Set<ResultKind> after = EnumSet.noneOf(ResultKind.class);
+		if (outcome != null) {
+			ResultSink collector = (kind, entry) -> after.add(kind);
+			collector.accept(outcome);
+		}
+		if (!before.equals(after)) {
+			for (ResultKind kind : before) {
+				if (!after.contains(kind)) {
+					this.removeResult(kind, relativePath, directory, name);
+				}
+			}
+			for (ResultKind kind : after) {
+				if (!before.contains(kind)) {
+					this.addResult(kind, kind == ResultKind.DELETED ? oldEntry : newEntry);
+				}
+			}
+			this.changedResults.put(relativePath, after);
+			listener.onChange(relativePath, before, after);
+		}
+	}
+
+	private void addResult(ResultKind kind, FileEntry entry) throws FileException {
+		this.comparison.getResults().accept(kind, entry);
+		ShortcutReason reason = shortcutReason(kind);
+		if (reason != null && this.options.isShortcutsEnabled()) {
+			FileManager fileManager = this.comparison.getFileManager();
+			String path = entry.getPath().toAbsolutePath().toString();
+			fileManager.addShortcut(fileManager.getShortcutFile(path, reason), path);
+		}
+	}
+
+	private void removeResult(ResultKind kind, String relativePath, int directory, String name) {
+		FileManager fileManager = this.comparison.getFileManager();
+		Path root = kind == ResultKind.DELETED ? this.oldDirectory.toPath() : this.newDirectory.toPath();
+		FileEntry entry = new FileEntry(root, fileManager.getPathIndex(), directory, name, 0);
+		this.comparison.getResults().remove(kind, entry);
+		ShortcutReason reason = shortcutReason(kind);
+		if (reason != null && this.options.isShortcutsEnabled()) {
+			fileManager.removeShortcut(fileManager.getShortcutFile(entry.getPath().toAbsolutePath().toString(), reason));
+		}
+	}
+
+	private static ShortcutReason shortcutReason(ResultKind kind) {
+		ShortcutReason result;
+		if (kind == ResultKind.NEW) {
+			result = ShortcutReason.FILE_CREATED;
+		} else if (kind == ResultKind.CHANGED) {
+			result = ShortcutReason.FILE_CHANGED;
+		} else {
+			result = null;
+		}
+		return result;
+	}
+
+	/**
+	 * Reads a file of one of the compared directories.
+	 * @return The file or <code>null</code> if it doesn't exist or isn't a
+	 * regular file.
+	 */
+	private static FileEntry entry(Path root, PathIndex pathIndex, int directory, String name) {
+		FileEntry result;
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(
+				pathIndex.resolve(root, directory, name), BasicFileAttributes.class
+			);
+			result = attributes.isRegularFile() ? new FileEntry(root, pathIndex, directory, name, attributes) : null;
+		} catch (IOException e) {
+			result = null;
+		}
+		return result;
+	}
+
+	private static String relativePath(Path root, Path path) {
+		List<String> names = new ArrayList<>();
+		for (Path name : root.relativize(path)) {
+			names.add(name.toString());
+		}
+		return String.join("/", names);
+	}
+}
@@ -0,0 +1,579 @@
+package directory_comparator.logic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.EntryStatus;
+import directory_comparator.logic.enums.Phase;
+import directory_comparator.logic.listeners.WalkListener;
+import directory_comparator.logic.metrics.ComparisonMetrics;
+import directory_comparator.logic.metrics.ListingEvent;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+
+/**
+ * Walks the old and the new directories side by side in a single pass.
+ * Every directory is listed only once through the {@link TreeSource} of its
+ * side, then the sorted listings of both sides are merged, so a
+ * file can be classified as new, deleted or present in both directories
+ * without probing for its existence in the other directory.
+ * <p>
+ * Listing a directory on a network file system mostly waits for round trips,
+ * so every pair of directories is a fork-join task and idle threads steal
+ * pending directories from busy ones. That way many directories are listed
+ * at once, up to the given parallelism.
+ * <p>
+ * Every directory walked is added to a {@link PathIndex}, which the files
+ * found refer to instead of keeping their own paths.
+ * <p>
+ * The entries skipped by the {@link PathFilter} are dropped right after
+ * their directory is listed, so an excluded directory is never listed.
+ * <p>
+ * With a memory budget, see {@link #setMemoryBudget(Path, long)}, a
+ * directory with more entries than fit in the budget is sorted externally:
+ * its listing is written in sorted runs to temporary files, which are merged
+ * while the directory is walked. The listings of a directory are released
+ * before its subdirectories are walked, and the subdirectories waiting to be
+ * walked beyond the budget are written to a temporary file too, so the
+ * listings held don't grow with the size of the tree. The subdirectories
+ * held while walking a directory get half the room of the ones held while
+ * walking its parent, so those of all the levels being walked together fit
+ * in twice the room of the top one. The budget only covers
+ * the listings: the {@link PathIndex} and the listeners keep their own state.
+ */
+public class MergeWalker {
+
+	/**
+	 * The order of the entries of a listing, which is the one of the file
+	 * system, so the listings it returns are usually sorted already. On
+	 * Windows, names are compared ignoring case, and names that only differ
+	 * in case by their case, so they still have an order.
+	 */
+	static final Comparator<FileEntry> BY_NAME = File.separatorChar == '\\'
+		? Comparator.comparing(FileEntry::getName, String.CASE_INSENSITIVE_ORDER).thenComparing(FileEntry::getName)
+		: Comparator.comparing(FileEntry::getName);
+
+	/**
+	 * The memory that an entry listed is assumed to take, with its name, its
+	 * attributes and its place in the listing.
+	 */
+	private static final int ENTRY_MEMORY = 256;
+
+	/**
+	 * The fewest entries held in memory per listing whatever the budget, so
+	 * a tiny budget doesn't write a run for every few entries.
+	 */
+	private static final int MIN_ENTRIES_IN_MEMORY = 1024;
+
+	/**
+	 * The memory that a subdirectory waiting to be walked is assumed to take,
+	 * with its paths and its task.
+	 */
+	private static final int PENDING_DIRECTORY_MEMORY = 256;
+
+	/**
+	 * The fewest subdirectories held in memory per directory walked however
+	 * deep it is, so the subdirectories of deep directories are still walked
+	 * in parallel.
+	 */
+	private static final int MIN_PENDING_DIRECTORIES = 64;
+
+	private final TreeSource oldSource;
+	private final TreeSource newSource;
+	private final PathIndex pathIndex;
+	private final int parallelism;
+	private final PathFilter filter;
+	private final ComparisonMetrics metrics;
+	private final DoubleAdder completedFraction = new DoubleAdder();
+	private final AtomicReference<FileException> failure = new AtomicReference<>();
+	private Path spillDirectory;
+	private int maxEntriesInMemory;
+
+	/**
+	 * Constructor.
+	 * @param oldSource Where the old directory is listed from.
+	 * @param newSource Where the new directory is listed from.
+	 * @param pathIndex The index where the directories walked are added.
+	 * @param parallelism The maximum number of directories listed at once.
+	 * @param filter Which files and directories are skipped.
+	 * @param metrics Where the time spent listing every directory is recorded.
+	 */
+	public MergeWalker(
+		TreeSource oldSource, TreeSource newSource, PathIndex pathIndex, int parallelism, PathFilter filter,
+		ComparisonMetrics metrics
+	) {
+		this.oldSource = oldSource;
+		this.newSource = newSource;
+		this.pathIndex = pathIndex;
+		this.parallelism = Math.max(1, parallelism);
+		this.filter = filter;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Bounds the memory taken by the listings of the directories being
+	 * walked. Every thread lists a directory of each side at a time and holds
+	 * the subdirectories waiting to be walked of every level above it, so
+	 * each listing gets a share of the budget, the subdirectories of every
+	 * level get a share that halves with the depth, and the entries beyond
+	 * them are written to temporary files, see {@link SpilledListing}.
+	 * A directory sorted that way isn't passed to
+	 * {@link WalkListener#onDirectoryListed(int, List, List)}.
+	 * @param spillDirectory The directory where the runs are written, which
+	 * is created when needed.
+	 * @param memoryBudget The memory for listings in bytes or 0 to hold every
+	 * listing in memory.
+	 */
+	public void setMemoryBudget(Path spillDirectory, long memoryBudget) {
+		this.spillDirectory = spillDirectory;
+		this.maxEntriesInMemory = memoryBudget <= 0 ? 0 : (int) Math.min(
+			Integer.MAX_VALUE, Math.max(
+				MIN_ENTRIES_IN_MEMORY, memoryBudget / ((2L * ENTRY_MEMORY + 2L * PENDING_DIRECTORY_MEMORY) * this.parallelism)
+			)
+		);
+	}
+
+	/**
+	 * Returns how much of the two directories has been walked. Every directory
+	 * shares its part equally among its entries, so the value never goes
+	 * backwards even though the total number of files isn't known in advance.
+	 * @return A number between 0 and 1.
+	 */
+	public double getCompletedFraction() {
+		return this.completedFraction.sum();
+	}
+
+	/**
+	 * Walks the two directories, passing every file found to the listener.
+	 * The listener is called from several threads at once.
+	 * @param listener The listener.
+	 * @throws FileException If a directory can't be listed or the listener
+	 * fails.
+	 */
+	public void walk(WalkListener listener) throws FileException {
+		this.completedFraction.reset();
+		this.failure.set(null);
+		ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+		try {
+			pool.invoke(new DirectoryPairTask(
+				this.oldSource.getRoot(), this.newSource.getRoot(), PathIndex.ROOT, 0, 1, this.filter, listener
+			));
+		} finally {
+			pool.shutdownNow();
+			this.deleteSpillDirectory();
+		}
+		FileException error = this.failure.get();
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Deletes the directory of the spilled listings if it has been created,
+	 * unless something else has been put in it.
+	 */
+	private void deleteSpillDirectory() {
+		if (this.spillDirectory != null) {
+			try {
+				Files.deleteIfExists(this.spillDirectory);
+			} catch (DirectoryNotEmptyException e) {
+
+				// Not only ours.
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Walks a directory that exists in one or both sides.
+	 */
+	private class DirectoryPairTask extends RecursiveAction {
+
+		private static final long serialVersionUID = -6061467327437707384L;
+
+		private final transient Path oldDirectory;
+		private final transient Path newDirectory;
+		private final int node;
+		private final int depth;
+		private final double weight;
+		private final transient WalkListener listener;
+		private transient PathFilter filter;
+		private int files;
+
+		private DirectoryPairTask(
+			Path oldDirectory, Path newDirectory, int node, int depth, double weight, PathFilter filter, WalkListener listener
+		) {
+			this.oldDirectory = oldDirectory;
+			this.newDirectory = newDirectory;
+			this.node = node;
+			this.depth = depth;
+			this.weight = weight;
+			this.filter = filter;
+			this.listener = listener;
+		}
+
+		@Override
+		protected void compute() {
+			if (!this.isStopped()) {
+				try {
+					this.walk();
+				} catch (FileException e) {
+					MergeWalker.this.failure.compareAndSet(null, e);
+				}
+			}
+		}
+
+		private boolean isStopped() {
+			return this.listener.isCancelled() || MergeWalker.this.failure.get() != null;
+		}
+
+		/**
+		 * Lists and merges the directories, and then walks their
+		 * subdirectories once the listings have been released, so the
+		 * listings of the directories above aren't held while walking deeper.
+		 */
+		private void walk() throws FileException {
+			try (PendingDirectories subdirectories = new PendingDirectories()) {
+				this.walkListings(subdirectories);
+				subdirectories.walk();
+			}
+		}
+
+		private void walkListings(PendingDirectories subdirectories) throws FileException {
+			try (
+				Listing oldListing = this.list(MergeWalker.this.oldSource, this.oldDirectory);
+				Listing newListing = this.list(MergeWalker.this.newSource, this.newDirectory)
+			) {
+				String relativePath = MergeWalker.this.pathIndex.getRelativePath(this.node);
+				if (!this.filter.isEmpty()) {
+					this.filter = this.filter.enter(
+						relativePath,
+						oldListing.ignoreFile && MergeWalker.this.oldSource.isReadable() ? this.oldDirectory : null,
+						newListing.ignoreFile && MergeWalker.this.newSource.isReadable() ? this.newDirectory : null
+					);
+				}
+				String prefix = relativePath.isEmpty() ? "" : relativePath + "/";
+				if (oldListing.spill == null && newListing.spill == null) {
+					if (!this.filter.isEmpty()) {
+						this.removeExcluded(prefix, oldListing.entries);
+						this.removeExcluded(prefix, newListing.entries);
+					}
+					this.listener.onDirectoryListed(
+						this.node, this.oldDirectory == null ? null : oldListing.entries,
+						this.newDirectory == null ? null : newListing.entries
+					);
+				}
+				long entries = oldListing.size() + newListing.size();
+				if (entries == 0) {
+					MergeWalker.this.completedFraction.add(this.weight);
+					this.listener.onDirectoryWalked(this.node, 0);
+				} else {
+					this.merge(oldListing, newListing, prefix, this.weight / entries, subdirectories);
+				}
+			}
+		}
+
+		/**
+		 * Merges two listings sorted by name, visiting together the entries
+		 * with the same name. Every entry gets the same share of the weight of
+		 * the directory.
+		 */
+		private void merge(
+			Listing oldListing, Listing newListing, String prefix, double share, PendingDirectories subdirectories
+		) throws FileException {
+			FileEntry oldChild = this.next(oldListing, prefix, share);
+			FileEntry newChild = this.next(newListing, prefix, share);
+			while (!this.isStopped() && (oldChild != null || newChild != null)) {
+				int comparison;
+				if (oldChild == null) {
+					comparison = 1;
+				} else if (newChild == null) {
+					comparison = -1;
+				} else {
+					comparison = BY_NAME.compare(oldChild, newChild);
+				}
+				if (comparison < 0) {
+					this.visit(oldChild, null, share, subdirectories);
+					oldChild = this.next(oldListing, prefix, share);
+				} else if (comparison > 0) {
+					this.visit(null, newChild, share, subdirectories);
+					newChild = this.next(newListing, prefix, share);
+				} else {
+					this.visit(oldChild, newChild, 2 * share, subdirectories);
+					oldChild = this.next(oldListing, prefix, share);
+					newChild = this.next(newListing, prefix, share);
+				}
+			}
+			if (!this.isStopped()) {
+				this.listener.onDirectoryWalked(this.node, this.files);
+			}
+		}
+
+		/**
+		 * Returns the next entry of a listing. The entries of a spilled
+		 * listing are filtered while they are read.
+		 */
+		private FileEntry next(Listing listing, String prefix, double share) throws FileException {
+			FileEntry result = listing.next();
+			while (result != null && listing.spill != null && this.filter.isExcluded(prefix + result.getName(), result.isDirectory())) {
+				MergeWalker.this.completedFraction.add(share);
+				result = listing.next();
+			}
+			return result;
+		}
+
+		private void visit(
+			FileEntry oldEntry, FileEntry newEntry, double weight, PendingDirectories subdirectories
+		) throws FileException {
+			if (oldEntry != null && newEntry != null && oldEntry.isDirectory() == newEntry.isDirectory()) {
+				if (oldEntry.isDirectory()) {
+					subdirectories.add(newEntry.getName(), true, true, weight);
+				} else {
+					this.listener.onEntry(EntryStatus.COMMON, oldEntry, newEntry);
+					this.files++;
+					MergeWalker.this.completedFraction.add(weight);
+				}
+			} else {
+
+				// A file and a directory with the same name are unrelated entries.
+				double sideWeight = oldEntry != null && newEntry != null ? weight / 2 : weight;
+				if (oldEntry != null) {
+					this.visitOneSide(oldEntry, EntryStatus.DELETED, sideWeight, subdirectories);
+				}
+				if (newEntry != null) {
+					this.visitOneSide(newEntry, EntryStatus.NEW, sideWeight, subdirectories);
+				}
+			}
+		}
+
+		private void visitOneSide(
+			FileEntry entry, EntryStatus status, double weight, PendingDirectories subdirectories
+		) throws FileException {
+			if (entry.isDirectory()) {
+				subdirectories.add(entry.getName(), status == EntryStatus.DELETED, status == EntryStatus.NEW, weight);
+			} else if (status == EntryStatus.NEW) {
+				this.listener.onEntry(status, null, entry);
+				this.files++;
+				MergeWalker.this.completedFraction.add(weight);
+			} else {
+				this.listener.onEntry(status, entry, null);
+				this.files++;
+				MergeWalker.this.completedFraction.add(weight);
+			}
+		}
+
+		private void removeExcluded(String prefix, List<FileEntry> children) {
+			children.removeIf(child -> this.filter.isExcluded(prefix + child.getName(), child.isDirectory()));
+		}
+
+		/**
+		 * Lists the regular files and directories inside a directory, sorted by
+		 * name.
+		 */
+		private Listing list(TreeSource source, Path directory) throws FileException {
+			Listing result = new Listing(source.getRoot(), this.node, this.filter.getIgnoreFileName());
+			if (directory != null) {
+				ListingEvent event = new ListingEvent();
+				event.begin();
+				long start = System.nanoTime();
+				try {
+					source.list(this.node, directory, result::add);
+					result.sort();
+				} catch (FileException e) {
+					result.close();
+					throw e;
+				}
+				MergeWalker.this.metrics.record(Phase.LISTING, start);
+				event.end();
+				if (event.shouldCommit()) {
+					event.directory = directory.toString();
+					event.entries = (int) Math.min(Integer.MAX_VALUE, result.size());
+					event.commit();
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * The subdirectories found while merging, which are walked once the
+		 * listings are released. With a memory budget, the ones beyond the
+		 * share of the depth of the directory are written to a temporary
+		 * file, and they are walked in batches of that size.
+		 */
+		private class PendingDirectories implements AutoCloseable {
+
+			private final List<DirectoryPairTask> tasks = new ArrayList<>();
+			private final int maxTasks = MergeWalker.this.maxEntriesInMemory == 0 ? 0 : Math.max(
+				MIN_PENDING_DIRECTORIES, MergeWalker.this.maxEntriesInMemory >> Math.min(DirectoryPairTask.this.depth, 30)
+			);
+			private Path spillFile;
+			private DataOutputStream output;
+
+			private void add(String name, boolean inOld, boolean inNew, double weight) throws FileException {
+				int child = MergeWalker.this.pathIndex.child(DirectoryPairTask.this.node, name);
+				if (this.maxTasks == 0 || this.tasks.size() < this.maxTasks) {
+					this.tasks.add(this.task(name, inOld, inNew, child, weight));
+				} else {
+					try {
+						if (this.output == null) {
+							Files.createDirectories(MergeWalker.this.spillDirectory);
+							this.spillFile = Files.createTempFile(MergeWalker.this.spillDirectory, "directories-", ".run");
+							this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.spillFile)));
+						}
+						this.output.writeUTF(name);
+						this.output.writeBoolean(inOld);
+						this.output.writeBoolean(inNew);
+						this.output.writeInt(child);
+						this.output.writeDouble(weight);
+					} catch (IOException e) {
+						e.printStackTrace();
+						throw new FileException("Can't write the folders to walk to " + MergeWalker.this.spillDirectory + ".");
+					}
+				}
+			}
+
+			private void walk() throws FileException {
+				invokeAll(this.tasks);
+				this.tasks.clear();
+				if (this.output != null) {
+					try {
+						this.output.close();
+						this.output = null;
+						try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.spillFile)))) {
+							boolean end = false;
+							while (!end && !DirectoryPairTask.this.isStopped()) {
+								try {
+									while (this.tasks.size() < this.maxTasks) {
+										this.tasks.add(this.task(
+											input.readUTF(), input.readBoolean(), input.readBoolean(), input.readInt(), input.readDouble()
+										));
+									}
+								} catch (EOFException e) {
+									end = true;
+								}
+								invokeAll(this.tasks);
+								this.tasks.clear();
+							}
+						}
+					} catch (IOException e) {
+						e.printStackTrace();
+						throw new FileException("Can't read the folders to walk from " + MergeWalker.this.spillDirectory + ".");
+					}
+				}
+			}
+
+			private DirectoryPairTask task(String name, boolean inOld, boolean inNew, int child, double weight) {
+				return new DirectoryPairTask(
+					inOld ? DirectoryPairTask.this.oldDirectory.resolve(name) : null,
+					inNew ? DirectoryPairTask.this.newDirectory.resolve(name) : null,
+					child, DirectoryPairTask.this.depth + 1, weight, DirectoryPairTask.this.filter, DirectoryPairTask.this.listener
+				);
+			}
+
+			/**
+			 * Deletes the temporary file, if any.
+			 */
+			@Override
+			public void close() {
+				if (this.spillFile != null) {
+					try {
+						if (this.output != null) {
+							this.output.close();
+						}
+						Files.deleteIfExists(this.spillFile);
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The entries of a directory of one side, in memory or spilled to
+	 * temporary files if there are too many of them.
+	 */
+	private class Listing implements AutoCloseable {
+
+		private final Path root;
+		private final int node;
+		private final String ignoreFileName;
+		private List<FileEntry> entries = new ArrayList<>();
+		private SpilledListing spill;
+		private boolean ignoreFile;
+		private int position;
+
+		private Listing(Path root, int node, String ignoreFileName) {
+			this.root = root;
+			this.node = node;
+			this.ignoreFileName = ignoreFileName;
+		}
+
+		private void add(FileEntry entry) throws FileException {
+			if (!entry.isDirectory() && entry.getName().equals(this.ignoreFileName)) {
+				this.ignoreFile = true;
+			}
+			this.entries.add(entry);
+			if (MergeWalker.this.maxEntriesInMemory > 0 && this.entries.size() >= MergeWalker.this.maxEntriesInMemory) {
+				if (this.spill == null) {
+					this.spill = new SpilledListing(MergeWalker.this.spillDirectory, this.root, MergeWalker.this.pathIndex, this.node);
+				}
+				this.spill.addRun(this.entries);
+				this.entries = new ArrayList<>();
+			}
+		}
+
+		/**
+		 * Sorts the entries once the directory has been listed.
+		 */
+		private void sort() throws FileException {
+			if (this.spill == null) {
+				this.entries.sort(BY_NAME);
+			} else if (!this.entries.isEmpty()) {
+				this.spill.addRun(this.entries);
+				this.entries = new ArrayList<>();
+			}
+		}
+
+		private long size() {
+			return this.spill == null ? this.entries.size() : this.spill.getCount();
+		}
+
+		private FileEntry next() throws FileException {
+			FileEntry result;
+			if (this.spill != null) {
+				result = this.spill.next();
+			} else if (this.position < this.entries.size()) {
+				result = this.entries.get(this.position);
+				this.position++;
+			} else {
+				result = null;
+			}
+			return result;
+		}
+
+		@Override
+		public void close() {
+			if (this.spill != null) {
+				this.spill.close();
+			}
+		}
+	}
+}
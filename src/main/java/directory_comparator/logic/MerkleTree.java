@@ -0,0 +1,360 @@
+package directory_comparator.logic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+
+/**
+ * A persistent Merkle tree of the directories of a compared directory, kept
+ * next to its {@link DigestCache}. Every directory has three digests:
+ * <ul>
+ * <li>The digest of its listing: the name, size, modification time and file
+ * key of every file directly inside it, which tells without reading any file
+ * whether they have changed since the tree was saved.</li>
+ * <li>The digest of its files: the name, size and content digest of every
+ * file directly inside it.</li>
+ * <li>The digest of its subtree, which combines the digest of its files with
+ * the name and subtree digest of every subdirectory.</li>
+ * </ul>
+ * If the listings of a directory on both sides are the ones saved and the
+ * saved digests of the files of both sides are equal, the files directly
+ * inside it are equal, whichever runs saved them, and they don't have to be
+ * compared. The subtree digest isn't enough to skip a whole subtree: a file
+ * can change without changing the listings of the directories above it, so
+ * the subdirectories are still listed and checked on their own.
+ * <p>
+ * While a comparison runs, the digest of the files of a directory is known
+ * once the content digests of all of them are, so a directory with files
+ * that aren't read, for example because they only exist on this side, isn't
+ * saved, and neither are the directories above it. The tree is written to a
+ * temporary file that replaces the old one at once.
+ */
+public class MerkleTree {
+
+	private static final int MAGIC = 0x4D4B5431;
+	private static final int VERSION = 1;
+
+	private final Path treeFile;
+	private final PathIndex pathIndex;
+	private final Map<Integer, Node> savedNodes = new HashMap<>();
+	private final Map<Integer, Node> nodes = new ConcurrentHashMap<>();
+	private final Map<Integer, Pending> pendingNodes = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a tree backed by the given file, loading it if it exists. A
+	 * tree file that can't be read is ignored.
+	 * @param treeFile The file.
+	 * @param pathIndex The index of the directories of the comparison.
+	 */
+	public MerkleTree(Path treeFile, PathIndex pathIndex) {
+		this.treeFile = treeFile;
+		this.pathIndex = pathIndex;
+		try {
+			this.load();
+		} catch (IOException e) {
+			this.savedNodes.clear();
+			System.err.println("WARNING: ignoring the folder digests " + treeFile + " because they can't be read: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Starts collecting the digests of the files of a directory that has
+	 * just been listed.
+	 * @param node The node of the directory.
+	 * @param children The files and subdirectories inside it that are
+	 * compared.
+	 * @return <code>true</code> if the files haven't changed since the tree
+	 * was saved, judging by their metadata.
+	 */
+	public boolean directoryListed(int node, List<FileEntry> children) {
+		Pending pending = new Pending(listingDigest(children));
+		for (FileEntry child : children) {
+			if (child.isDirectory()) {
+				pending.subdirectories.add(child.getName());
+			} else {
+				pending.remainingFiles.incrementAndGet();
+			}
+		}
+		Node saved = this.savedNodes.get(node);
+		if (pending.remainingFiles.get() == 0) {
+			this.complete(node, pending);
+		} else {
+			this.pendingNodes.put(node, pending);
+		}
+		return saved != null && Arrays.equals(saved.listing, pending.listing);
+	}
+
+	/**
+	 * Returns the saved digest of the files directly inside a directory.
+	 * @param node The node of the directory.
+	 * @return The digest or an empty {@link Optional} if it isn't known.
+	 */
+	public Optional<byte[]> getSavedFilesDigest(int node) {
+		return Optional.ofNullable(this.savedNodes.get(node)).map(saved -> saved.filesDigest);
+	}
+
+	/**
+	 * Takes the saved digest of the files of a directory, whose files
+	 * haven't changed and aren't read.
+	 * @param node The node of the directory, which must have been listed.
+	 */
+	public void reuse(int node) {
+		Pending pending = this.pendingNodes.remove(node);
+		if (pending != null) {
+			this.nodes.put(node, new Node(pending.listing, this.savedNodes.get(node).filesDigest, pending.subdirectories));
+		}
+	}
+
+	/**
+	 * Adds the content digest of a file. It can be called from any thread.
+	 * @param entry The file.
+	 * @param digest Its content digest.
+	 */
+	public void fileDigested(FileEntry entry, byte[] digest) {
+		Pending pending = this.pendingNodes.get(entry.getDirectoryNode());
+		if (pending != null && pending.files.putIfAbsent(entry.getName(), new FileDigest(entry.getSize(), digest)) == null) {
+			if (pending.remainingFiles.decrementAndGet() == 0) {
+				this.complete(entry.getDirectoryNode(), pending);
+			}
+		}
+	}
+
+	/**
+	 * Writes the tree to its file. After that, nothing else is collected.
+	 * @param evict <code>true</code> to keep only the directories found by
+	 * this run, which should only be done after a complete run.
+	 * @throws FileException If the tree can't be written.
+	 */
+	public synchronized void save(boolean evict) throws FileException {
+		this.pendingNodes.clear();
+		Map<Integer, Node> nodesToSave = new HashMap<>(this.nodes);
+		this.nodes.clear();
+		Map<Integer, byte[]> digests = new HashMap<>();
+		for (Integer node : nodesToSave.keySet()) {
+			this.subtreeDigest(node, nodesToSave, digests);
+		}
+		if (!evict) {
+			for (Map.Entry<Integer, Node> saved : this.savedNodes.entrySet()) {
+				if (!nodesToSave.containsKey(saved.getKey())) {
+					nodesToSave.put(saved.getKey(), saved.getValue());
+					digests.put(saved.getKey(), saved.getValue().digest);
+				}
+			}
+		}
+		Path temporaryFile = this.treeFile.resolveSibling(this.treeFile.getFileName() + ".tmp");
+		try {
+			Files.createDirectories(this.treeFile.getParent());
+			try (FileChannel channel = FileChannel.open(
+				temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+			)) {
+				DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.writeInt((int) digests.values().stream().filter(Objects::nonNull).count());
+				for (Map.Entry<Integer, byte[]> digest : digests.entrySet()) {
+					if (digest.getValue() != null) {
+						Node node = nodesToSave.get(digest.getKey());
+						output.writeUTF(this.pathIndex.getRelativePath(digest.getKey()));
+						writeBytes(output, node.listing);
+						writeBytes(output, node.filesDigest);
+						writeBytes(output, digest.getValue());
+					}
+				}
+				output.flush();
+				channel.force(true);
+			}
+			try {
+				Files.move(temporaryFile, this.treeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, this.treeFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new FileException("Can't save the folder digests " + this.treeFile + ".");
+		}
+	}
+
+	/**
+	 * Calculates the digest of the subtree of a directory found by this run,
+	 * if the digests of the files of all its subdirectories are known.
+	 * @return The digest or <code>null</code>.
+	 */
+	private byte[] subtreeDigest(int node, Map<Integer, Node> nodesToSave, Map<Integer, byte[]> digests) {
+		byte[] result;
+		if (digests.containsKey(node)) {
+			result = digests.get(node);
+		} else {
+			Node directory = nodesToSave.get(node);
+			MessageDigest messageDigest = FileManager.createMessageDigest();
+			if (directory != null) {
+				messageDigest.update(directory.filesDigest);
+				List<String> subdirectories = new ArrayList<>(directory.subdirectories);
+				subdirectories.sort(null);
+				int index = 0;
+				while (messageDigest != null && index < subdirectories.size()) {
+					String name = subdirectories.get(index);
+					byte[] childDigest = this.subtreeDigest(this.pathIndex.child(node, name), nodesToSave, digests);
+					if (childDigest == null) {
+						messageDigest = null;
+					} else {
+						update(messageDigest, name);
+						messageDigest.update(childDigest);
+					}
+					index++;
+				}
+			}
+			result = directory == null || messageDigest == null ? null : messageDigest.digest();
+			digests.put(node, result);
+		}
+		return result;
+	}
+
+	private void complete(int node, Pending pending) {
+		this.pendingNodes.remove(node);
+		MessageDigest messageDigest = FileManager.createMessageDigest();
+		for (Map.Entry<String, FileDigest> file : new TreeMap<>(pending.files).entrySet()) {
+			update(messageDigest, file.getKey());
+			messageDigest.update(ByteBuffer.allocate(Long.BYTES).putLong(file.getValue().size).array());
+			messageDigest.update(file.getValue().digest);
+		}
+		this.nodes.put(node, new Node(pending.listing, messageDigest.digest(), pending.subdirectories));
+	}
+
+	private void load() throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.treeFile)))) {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				throw new IOException("unknown format");
+			}
+			int count = input.readInt();
+			for (int i = 0; i < count; i++) {
+				String relativePath = input.readUTF();
+				byte[] listing = readBytes(input);
+				byte[] filesDigest = readBytes(input);
+				byte[] digest = readBytes(input);
+				this.savedNodes.put(this.pathIndex.find(relativePath), new Node(listing, filesDigest, digest));
+			}
+		} catch (NoSuchFileException e) {
+
+			// The first run with this tree.
+		}
+	}
+
+	/**
+	 * Calculates the digest of the metadata of the files of a directory,
+	 * which are sorted by name.
+	 */
+	private static byte[] listingDigest(List<FileEntry> children) {
+		MessageDigest messageDigest = FileManager.createMessageDigest();
+		ByteBuffer numbers = ByteBuffer.allocate(2 * Long.BYTES);
+		for (FileEntry child : children) {
+			if (!child.isDirectory()) {
+				update(messageDigest, child.getName());
+				numbers.clear();
+				numbers.putLong(child.getSize()).putLong(child.getLastModified());
+				messageDigest.update(numbers.array());
+				update(messageDigest, Objects.toString(child.getFileKey(), ""));
+			}
+		}
+		return messageDigest.digest();
+	}
+
+	/**
+	 * Adds a string to a digest, followed by a separator that no string
+	 * contains, so consecutive strings can't be mistaken for others.
+	 */
+	private static void update(MessageDigest messageDigest, String value) {
+		messageDigest.update(value.getBytes(StandardCharsets.UTF_8));
+		messageDigest.update((byte) 0);
+	}
+
+	private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+		output.writeShort(bytes.length);
+		output.write(bytes);
+	}
+
+	private static byte[] readBytes(DataInputStream input) throws IOException {
+		byte[] result = new byte[input.readUnsignedShort()];
+		input.readFully(result);
+		return result;
+	}
+
+	/**
+	 * A directory whose files are being digested.
+	 */
+	private static class Pending {
+
+		private final byte[] listing;
+		private final List<String> subdirectories = new ArrayList<>();
+		private final Map<String, FileDigest> files = new ConcurrentHashMap<>();
+		private final AtomicInteger remainingFiles = new AtomicInteger();
+
+		private Pending(byte[] listing) {
+			this.listing = listing;
+		}
+	}
+
+	private static class FileDigest {
+
+		private final long size;
+		private final byte[] digest;
+
+		private FileDigest(long size, byte[] digest) {
+			this.size = size;
+			this.digest = digest;
+		}
+	}
+
+	/**
+	 * A directory whose files have been digested. Directories found by the
+	 * current run have their subdirectories, and saved ones their subtree
+	 * digest.
+	 */
+	private static class Node {
+
+		private final byte[] listing;
+		private final byte[] filesDigest;
+		private final List<String> subdirectories;
+		private final byte[] digest;
+
+		private Node(byte[] listing, byte[] filesDigest, List<String> subdirectories) {
+			this.listing = listing;
+			this.filesDigest = filesDigest;
+			this.subdirectories = subdirectories;
+			this.digest = null;
+		}
+
+		private Node(byte[] listing, byte[] filesDigest, byte[] digest) {
+			this.listing = listing;
+			this.filesDigest = filesDigest;
+			this.subdirectories = null;
+			this.digest = digest;
+		}
+	}
+}
@@ -0,0 +1,353 @@
+package directory_comparator.logic;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Decides which files and directories a comparison skips. An excluded
+ * directory is never listed, so nothing inside it is walked, counted or
+ * compared.
+ * <p>
+ * There are three kinds of rules:
+ * <ul>
+ * <li>Exclude rules, which skip every file or directory they match.</li>
+ * <li>Include rules which, if there are any, skip every file that doesn't
+ * match at least one of them. Directories are always walked, because they
+ * may contain files that are included.</li>
+ * <li>The rules of ignore files, which work like <code>.gitignore</code>
+ * files: every directory can have one, its rules apply to everything below
+ * the directory, the last rule that matches wins and a rule that starts with
+ * <code>!</code> includes again what an earlier rule excluded. An ignore
+ * file found in either of the compared directories applies to both, so both
+ * sides are always filtered alike.</li>
+ * </ul>
+ * A rule is a glob, optionally prefixed by <code>glob:</code>, or a regular
+ * expression prefixed by <code>regex:</code> that must match the whole
+ * relative path, using <code>/</code> as separator. In globs, <code>*</code>
+ * and <code>?</code> don't match <code>/</code>, <code>**</code> matches any
+ * number of directories and a trailing <code>/</code> only matches
+ * directories. A glob without any other <code>/</code> matches the name of a
+ * file or directory at any depth, otherwise it matches the relative path.
+ * <p>
+ * A filter is immutable. The filter of a directory is made from the one of
+ * its parent with {@link #enter(String, Path...)}.
+ */
+public class PathFilter {
+
+	/**
+	 * A filter that doesn't skip anything.
+	 */
+	public static final PathFilter NONE = new PathFilter(List.of(), List.of(), null);
+
+	private static final String GLOB = "glob:";
+	private static final String REGEX = "regex:";
+
+	private final List<Rule> includes;
+	private final List<Rule> excludes;
+	private final String ignoreFileName;
+	private final List<Rule> ignoreRules;
+	private final String description;
+
+	/**
+	 * Creates a filter.
+	 * @param includes The include rules.
+	 * @param excludes The exclude rules.
+	 * @param ignoreFileName The name of the ignore files, like
+	 * <code>.gitignore</code>, or <code>null</code> not to read ignore files.
+	 * @throws IllegalArgumentException If a rule isn't valid.
+	 */
+	public PathFilter(List<String> includes, List<String> excludes, String ignoreFileName) {
+		this.includes = parseRules(includes);
+		this.excludes = parseRules(excludes);
+		this.ignoreFileName = ignoreFileName == null || ignoreFileName.isBlank() ? null : ignoreFileName.strip();
+		this.ignoreRules = List.of();
+		this.description = "include " + includes + ", exclude " + excludes + ", ignore files " + this.ignoreFileName;
+	}
+
+	private PathFilter(PathFilter parent, List<Rule> ignoreRules) {
+		this.includes = parent.includes;
+		this.excludes = parent.excludes;
+		this.ignoreFileName = parent.ignoreFileName;
+		this.ignoreRules = ignoreRules;
+		this.description = parent.description;
+	}
+
+	/**
+	 * Creates a filter from rules separated by <code>;</code> or new lines,
+	 * as they are written in the settings.
+	 * @param includes The include rules.
+	 * @param excludes The exclude rules.
+	 * @param ignoreFileName The name of the ignore files or an empty string
+	 * not to read ignore files.
+	 * @return The filter.
+	 * @throws IllegalArgumentException If a rule isn't valid.
+	 */
+	public static PathFilter parse(String includes, String excludes, String ignoreFileName) {
+		return new PathFilter(split(includes), split(excludes), ignoreFileName);
+	}
+
+	/**
+	 * Tells whether this filter can skip anything.
+	 * @return <code>true</code> if it never skips anything.
+	 */
+	public boolean isEmpty() {
+		return this.includes.isEmpty() && this.excludes.isEmpty() && this.ignoreFileName == null;
+	}
+
+	/**
+	 * Returns the name of the ignore files.
+	 * @return The name or <code>null</code> if ignore files aren't read.
+	 */
+	public String getIgnoreFileName() {
+		return ignoreFileName;
+	}
+
+	/**
+	 * Returns the filter for the contents of a directory, which adds the
+	 * rules of its ignore files to the ones of this filter.
+	 * @param relativePath The path of the directory relative to the
+	 * compared directories, empty for the compared directories themselves.
+	 * @param directories The directory on every side that has an ignore
+	 * file. <code>null</code> elements are ignored.
+	 * @return The filter, which is this one if there are no new rules.
+	 */
+	public PathFilter enter(String relativePath, Path... directories) {
+		PathFilter result = this;
+		if (this.ignoreFileName != null) {
+			List<Rule> rules = new ArrayList<>();
+			for (Path directory : directories) {
+				if (directory != null) {
+					this.readIgnoreFile(directory.resolve(this.ignoreFileName), relativePath, rules);
+				}
+			}
+			if (!rules.isEmpty()) {
+				List<Rule> ignoreRules = new ArrayList<>(this.ignoreRules);
+				ignoreRules.addAll(rules);
+				result = new PathFilter(this, Collections.unmodifiableList(ignoreRules));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Tells whether a file or directory inside the directory of this filter
+	 * is skipped.
+	 * @param relativePath The path of the file or directory relative to the
+	 * compared directories.
+	 * @param directory <code>true</code> if it's a directory.
+	 * @return <code>true</code> if it's skipped.
+	 */
+	public boolean isExcluded(String relativePath, boolean directory) {
+		String name = relativePath.substring(relativePath.lastIndexOf('/') + 1);
+		boolean result = false;
+		for (Rule rule : this.excludes) {
+			result = result || rule.matches(relativePath, name, directory);
+		}
+		if (!result) {
+			for (Rule rule : this.ignoreRules) {
+				if (rule.matches(relativePath, name, directory)) {
+					result = !rule.negated;
+				}
+			}
+		}
+		if (!result && !directory && !this.includes.isEmpty()) {
+			result = true;
+			for (Rule rule : this.includes) {
+				result = result && !rule.matches(relativePath, name, directory);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Tells whether a file or directory at any depth is skipped, because
+	 * itself or one of its parents is. Unlike
+	 * {@link #isExcluded(String, boolean)}, this must be called on the filter
+	 * of the compared directories and reads the ignore files of all the
+	 * parents, so it's meant for isolated paths rather than for walking.
+	 * @param relativePath The path relative to the compared directories.
+	 * @param directory <code>true</code> if it's a directory.
+	 * @param roots The compared directories.
+	 * @return <code>true</code> if it's skipped.
+	 */
+	public boolean isPathExcluded(String relativePath, boolean directory, Path... roots) {
+		boolean result = false;
+		if (!this.isEmpty() && !relativePath.isEmpty()) {
+			PathFilter filter = this.enter("", roots);
+			String[] names = relativePath.split("/");
+			String parent = "";
+			int index = 0;
+			while (!result && index < names.length - 1) {
+				parent = parent.isEmpty() ? names[index] : parent + "/" + names[index];
+				result = filter.isExcluded(parent, true);
+				Path[] directories = new Path[roots.length];
+				for (int i = 0; i < roots.length; i++) {
+					directories[i] = roots[i].resolve(parent);
+				}
+				filter = filter.enter(parent, directories);
+				index++;
+			}
+			result = result || filter.isExcluded(relativePath, directory);
+		}
+		return result;
+	}
+
+	/**
+	 * Describes the rules of this filter, except the ones read from ignore
+	 * files.
+	 */
+	@Override
+	public String toString() {
+		return description;
+	}
+
+	private void readIgnoreFile(Path ignoreFile, String relativePath, List<Rule> rules) {
+		List<String> lines;
+		try {
+			lines = Files.readAllLines(ignoreFile, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+
+			// Usually, the directory doesn't have an ignore file.
+			lines = List.of();
+		}
+		for (String line : lines) {
+			String rule = line.strip();
+			if (!rule.isEmpty() && !rule.startsWith("#")) {
+				try {
+					rules.add(parseRule(rule, relativePath, true));
+				} catch (PatternSyntaxException e) {
+					System.err.println("WARNING: ignoring the rule " + rule + " of " + ignoreFile + ": " + e.getDescription());
+				}
+			}
+		}
+	}
+
+	private static List<String> split(String rules) {
+		List<String> result = new ArrayList<>();
+		if (rules != null) {
+			for (String rule : rules.split("[;\\n]")) {
+				if (!rule.isBlank()) {
+					result.add(rule.strip());
+				}
+			}
+		}
+		return result;
+	}
+
+	private static List<Rule> parseRules(List<String> rules) {
+		List<Rule> result = new ArrayList<>();
+		for (String rule : rules) {
+			try {
+				result.add(parseRule(rule, "", false));
+			} catch (PatternSyntaxException e) {
+				throw new IllegalArgumentException("The filter rule " + rule + " isn't valid: " + e.getDescription() + ".");
+			}
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Parses a rule.
+	 * @param rule The rule.
+	 * @param base The relative path of the directory the rule applies to.
+	 * @param negatable <code>true</code> if a leading <code>!</code> negates
+	 * the rule, as in ignore files.
+	 */
+	private static Rule parseRule(String rule, String base, boolean negatable) {
+		Rule result;
+		if (rule.startsWith(REGEX)) {
+			result = new Rule(Pattern.compile(rule.substring(REGEX.length())), base, false, false, false);
+		} else {
+			String glob = rule.startsWith(GLOB) ? rule.substring(GLOB.length()) : rule;
+			boolean negated = negatable && glob.startsWith("!");
+			if (negated) {
+				glob = glob.substring(1);
+			}
+			boolean directoryOnly = glob.endsWith("/");
+			if (directoryOnly) {
+				glob = glob.substring(0, glob.length() - 1);
+			}
+			boolean nameOnly = glob.indexOf('/') < 0;
+			if (glob.startsWith("/")) {
+				glob = glob.substring(1);
+			}
+			result = new Rule(Pattern.compile(globToRegex(glob)), base, nameOnly, directoryOnly, negated);
+		}
+		return result;
+	}
+
+	private static String globToRegex(String glob) {
+		StringBuilder result = new StringBuilder();
+		int index = 0;
+		while (index < glob.length()) {
+			char character = glob.charAt(index);
+			if (glob.startsWith("**/", index)) {
+				result.append("(?:.*/)?");
+				index = index + 3;
+			} else if (glob.startsWith("**", index)) {
+				result.append(".*");
+				index = index + 2;
+			} else if (character == '*') {
+				result.append("[^/]*");
+				index++;
+			} else if (character == '?') {
+				result.append("[^/]");
+				index++;
+			} else if (character == '[' && glob.indexOf(']', index + 2) > 0) {
+				int end = glob.indexOf(']', index + 2);
+				String characters = glob.substring(index + 1, end);
+				if (characters.startsWith("!")) {
+					characters = "^" + characters.substring(1);
+				}
+				result.append('[').append(characters.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+				index = end + 1;
+			} else if (character == '\\' && index + 1 < glob.length()) {
+				result.append(Pattern.quote(String.valueOf(glob.charAt(index + 1))));
+				index = index + 2;
+			} else {
+				result.append(Pattern.quote(String.valueOf(character)));
+				index++;
+			}
+		}
+		return result.toString();
+	}
+
+	private static class Rule {
+
+		private final Pattern pattern;
+		private final String base;
+		private final boolean nameOnly;
+		private final boolean directoryOnly;
+		private final boolean negated;
+
+		private Rule(Pattern pattern, String base, boolean nameOnly, boolean directoryOnly, boolean negated) {
+			this.pattern = pattern;
+			this.base = base;
+			this.nameOnly = nameOnly;
+			this.directoryOnly = directoryOnly;
+			this.negated = negated;
+		}
+
+		private boolean matches(String relativePath, String name, boolean directory) {
+			boolean result;
+			if (this.directoryOnly && !directory) {
+				result = false;
+			} else if (this.nameOnly) {
+				result = this.pattern.matcher(name).matches();
+			} else if (this.base.isEmpty()) {
+				result = this.pattern.matcher(relativePath).matches();
+			} else {
+				result = relativePath.startsWith(this.base + "/")
+					&& this.pattern.matcher(relativePath.substring(this.base.length() + 1)).matches();
+			}
+			return result;
+		}
+	}
+}
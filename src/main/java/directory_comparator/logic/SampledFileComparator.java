@@ -0,0 +1,112 @@
+package directory_comparator.logic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+import directory_comparator.exceptions.FileException;
+
+/**
+ * Compares files of the same size by reading only some blocks of them: the
+ * first one, the last one and a number of blocks spread evenly between them.
+ * Files whose blocks are equal are only probably equal, but files whose
+ * blocks differ have certainly changed. Files that aren't bigger than the
+ * blocks read are compared completely.
+ */
+public class SampledFileComparator {
+
+	private final int blockSize;
+	private final int strideBlocks;
+	private final LongAdder bytesRead;
+	private final ThreadLocal<ByteBuffer[]> buffers;
+
+	/**
+	 * Constructor.
+	 * @param blockSize The size of every block read.
+	 * @param strideBlocks The number of blocks read between the first and
+	 * the last ones.
+	 * @param bytesRead The counter where the bytes read are added.
+	 */
+	public SampledFileComparator(int blockSize, int strideBlocks, LongAdder bytesRead) {
+		this.blockSize = blockSize;
+		this.strideBlocks = strideBlocks;
+		this.bytesRead = bytesRead;
+		this.buffers = ThreadLocal.withInitial(() -> new ByteBuffer[] {
+			ByteBuffer.allocateDirect(blockSize), ByteBuffer.allocateDirect(blockSize)
+		});
+	}
+
+	/**
+	 * Tells whether files of a size are only sampled or the blocks read
+	 * cover them completely.
+	 * @param size The size of the files.
+	 * @return <code>true</code> if the files are bigger than the blocks read.
+	 */
+	public boolean isSampled(long size) {
+		return size > (long) this.blockSize * (this.strideBlocks + 2);
+	}
+
+	/**
+	 * Tells whether the sampled blocks of two files of the same size are
+	 * equal.
+	 * @param path A file.
+	 * @param path2 Another file.
+	 * @param size The size of both files, which must be sampled, see
+	 * {@link #isSampled(long)}.
+	 * @return <code>true</code> if the files are probably equal and
+	 * <code>false</code> if they are certainly different.
+	 * @throws FileException If the files can't be read or the current thread
+	 * is interrupted.
+	 */
+	public boolean filesEqual(Path path, Path path2, long size) throws FileException {
+		ByteBuffer[] blocks = this.buffers.get();
+		boolean result = true;
+		try (
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+			FileChannel channel2 = FileChannel.open(path2, StandardOpenOption.READ)
+		) {
+			int block = 0;
+			while (result && block < this.strideBlocks + 2) {
+				if (Thread.currentThread().isInterrupted()) {
+					throw new ClosedByInterruptException();
+				}
+
+				// The blocks start at evenly spaced positions, from the beginning to the end of the file.
+				long position = (size - this.blockSize) * block / (this.strideBlocks + 1);
+				read(channel, blocks[0], position, this.blockSize);
+				read(channel2, blocks[1], position, this.blockSize);
+				result = blocks[0].mismatch(blocks[1]) == -1;
+				this.bytesRead.add(2L * this.blockSize);
+				block++;
+			}
+		} catch (NoSuchFileException e) {
+			throw new FileException("It looks like the file " + e.getFile() + " doesn't exist anymore.");
+		} catch (ClosedByInterruptException e) {
+			throw new FileException("The comparison of " + path + " with " + path2 + " has been stopped.");
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new FileException("I/O error when comparing " + path + " with " + path2 + ".");
+		}
+		return result;
+	}
+
+	/**
+	 * Fills the buffer with the given part of the file. A file that has
+	 * become shorter since it was listed leaves fewer bytes in the buffer,
+	 * so it doesn't match the other file.
+	 */
+	private static void read(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+		buffer.clear();
+		buffer.limit(length);
+		int read = 0;
+		while (buffer.hasRemaining() && read >= 0) {
+			read = channel.read(buffer, position + buffer.position());
+		}
+		buffer.flip();
+	}
+}
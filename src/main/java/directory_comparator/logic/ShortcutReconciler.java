@@ -0,0 +1,255 @@
+package directory_comparator.logic;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import directory_comparator.exceptions.FileException;
+
+/**
+ * Updates the shortcuts of the results directory so they match the results
+ * of a new comparison, instead of deleting all of them and creating them
+ * again. A manifest in the results directory remembers the target of every
+ * shortcut created, so a shortcut that still exists and still points to the
+ * same file is kept, only the missing shortcuts are created and only the
+ * stale ones are deleted.
+ * <p>
+ * During a comparison, the missing shortcuts are written as the results
+ * arrive, by a few threads behind a bounded queue. When it ends, the files
+ * of the shortcut folders are checked against the shortcuts of the results,
+ * which are kept sorted by name. Outside a comparison, as while watching,
+ * shortcuts are written and deleted at once.
+ */
+public class ShortcutReconciler {
+
+	private static final int QUEUED_SHORTCUTS = 64;
+
+	private final FileManager fileManager;
+	private final File manifestFile;
+	private final List<File> folders;
+	private final int parallelism;
+	private final TreeMap<String, String> shortcuts = new TreeMap<>();
+	private final SortedSet<String> overwritten = new TreeSet<>();
+	private final AtomicInteger created = new AtomicInteger();
+	private Map<String, String> previous = new TreeMap<>();
+	private ThreadPoolExecutor executor;
+	private int deleted;
+	private int kept;
+
+	/**
+	 * Constructor.
+	 * @param fileManager The object that creates the shortcuts.
+	 * @param manifestFile The manifest of the shortcuts.
+	 * @param folders The folders that contain the shortcuts.
+	 * @param parallelism The maximum number of shortcuts written at once.
+	 */
+	public ShortcutReconciler(FileManager fileManager, File manifestFile, List<File> folders, int parallelism) {
+		this.fileManager = fileManager;
+		this.manifestFile = manifestFile;
+		this.folders = folders;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Starts the shortcuts of a comparison, reading the manifest of the
+	 * previous one.
+	 */
+	public synchronized void start() {
+		this.previous = this.loadManifest();
+		this.shortcuts.clear();
+		this.created.set(0);
+		this.deleted = 0;
+		this.kept = 0;
+		this.executor = new ThreadPoolExecutor(
+			this.parallelism, this.parallelism, 0, TimeUnit.NANOSECONDS,
+			new ArrayBlockingQueue<>(this.parallelism * QUEUED_SHORTCUTS),
+			Thread.ofPlatform().name("shortcuts-", 0).daemon().factory(),
+			new ThreadPoolExecutor.CallerRunsPolicy()
+		);
+	}
+
+	/**
+	 * Adds a shortcut to the results and creates it, unless the previous
+	 * comparison left it pointing to the same file. During a comparison, it
+	 * may still be being written by another thread when the method returns.
+	 * @param shortcutFile The shortcut file.
+	 * @param targetPath The path of the file the shortcut points to.
+	 */
+	public synchronized void add(File shortcutFile, String targetPath) {
+		String name = this.getName(shortcutFile);
+		String oldTarget = this.shortcuts.put(name, targetPath);
+		if (this.executor == null) {
+			if (!shortcutFile.isFile() || !targetPath.equals(oldTarget)) {
+				this.create(shortcutFile, targetPath);
+			}
+		} else if (oldTarget != null) {
+
+			// Two results with the same name: the last one is written at the end.
+			this.overwritten.add(name);
+		} else if (shortcutFile.isFile() && targetPath.equals(this.previous.get(name))) {
+			this.kept++;
+		} else {
+			this.executor.execute(() -> this.create(shortcutFile, targetPath));
+		}
+	}
+
+	/**
+	 * Removes a shortcut from the results and deletes it.
+	 * @param shortcutFile The shortcut file.
+	 */
+	public synchronized void remove(File shortcutFile) {
+		this.shortcuts.remove(this.getName(shortcutFile));
+		if (shortcutFile.delete()) {
+			this.deleted++;
+		}
+	}
+
+	/**
+	 * Waits for the shortcuts being written and saves the manifest. After a
+	 * complete comparison, the files of the shortcut folders that aren't
+	 * shortcuts of the results are deleted. It can also be called without
+	 * starting a comparison, to delete all the shortcuts.
+	 * @param complete <code>true</code> if every result of the comparison has
+	 * been added. Otherwise, the shortcuts of the previous comparison that
+	 * still exist are kept.
+	 * @throws FileException If the manifest can't be written.
+	 */
+	public synchronized void finish(boolean complete) throws FileException {
+		if (this.executor != null) {
+			this.executor.shutdown();
+			try {
+				this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				this.executor.shutdownNow();
+				Thread.currentThread().interrupt();
+				throw new FileException("Interrupted while creating the shortcuts.");
+			} finally {
+				this.executor = null;
+			}
+		}
+		for (String name : this.overwritten) {
+			this.create(this.getFile(name), this.shortcuts.get(name));
+		}
+		this.overwritten.clear();
+		if (complete) {
+			for (File folder : this.folders) {
+				File[] children = folder.listFiles();
+				for (File child : children == null ? new File[0] : children) {
+					if (!this.shortcuts.containsKey(this.getName(child)) && child.isFile() && child.delete()) {
+						this.deleted++;
+					}
+				}
+			}
+		} else {
+			for (Map.Entry<String, String> entry : this.previous.entrySet()) {
+				if (!this.shortcuts.containsKey(entry.getKey()) && this.getFile(entry.getKey()).isFile()) {
+					this.shortcuts.put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		this.previous = new TreeMap<>();
+		this.saveManifest();
+	}
+
+	public int getCreated() {
+		return created.get();
+	}
+
+	public int getDeleted() {
+		return deleted;
+	}
+
+	public int getKept() {
+		return kept;
+	}
+
+	private void create(File shortcutFile, String targetPath) {
+		if (this.fileManager.createShortcut(shortcutFile, targetPath)) {
+			this.created.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns the name of a shortcut, which is its path relative to the
+	 * results directory.
+	 */
+	private String getName(File shortcutFile) {
+		return this.manifestFile.getParentFile().toPath().relativize(shortcutFile.toPath()).toString();
+	}
+
+	private File getFile(String name) {
+		return new File(this.manifestFile.getParentFile(), name);
+	}
+
+	/**
+	 * Reads the manifest, which has a line for every shortcut with its name
+	 * and the path of the target, separated by a tab. A manifest that can't
+	 * be read is ignored, which only means that every shortcut is written
+	 * again.
+	 */
+	private Map<String, String> loadManifest() {
+		Map<String, String> result = new TreeMap<>();
+		try {
+			for (String line : Files.readAllLines(this.manifestFile.toPath(), StandardCharsets.UTF_8)) {
+				int separator = line.indexOf('\t');
+				if (separator > 0) {
+					result.put(line.substring(0, separator), line.substring(separator + 1));
+				}
+			}
+		} catch (NoSuchFileException e) {
+
+			// The first run in this results directory.
+		} catch (IOException e) {
+			result.clear();
+			System.err.println("WARNING: ignoring the shortcut manifest " + this.manifestFile + " because it can't be read: " + e.getMessage());
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the shortcuts that exist to a temporary file that replaces the
+	 * manifest at once.
+	 */
+	private void saveManifest() throws FileException {
+		Path temporaryFile = this.manifestFile.toPath().resolveSibling(this.manifestFile.getName() + ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(
+				temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+			)) {
+				BufferedWriter writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+				for (Map.Entry<String, String> entry : this.shortcuts.entrySet()) {
+					if (this.getFile(entry.getKey()).isFile()) {
+						writer.write(entry.getKey() + "\t" + entry.getValue() + "\n");
+					}
+				}
+				writer.flush();
+				channel.force(true);
+			}
+			try {
+				Files.move(temporaryFile, this.manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, this.manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			throw new FileException("Can't save the shortcut manifest " + this.manifestFile + ": " + e.getMessage());
+		}
+	}
+}
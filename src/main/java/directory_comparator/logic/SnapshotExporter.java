@@ -0,0 +1,288 @@
+package directory_comparator.logic;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.EntryStatus;
+import directory_comparator.logic.listeners.SnapshotExportListener;
+import directory_comparator.logic.listeners.WalkListener;
+import directory_comparator.logic.metrics.ComparisonMetrics;
+import directory_comparator.logic.models.ComparisonOptions;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+
+/**
+ * Writes a {@link SnapshotManifest} of a directory, so it can be compared
+ * later even if it doesn't exist anymore.
+ * <p>
+ * The directory is walked by a {@link MergeWalker} against an empty side,
+ * so several directories are listed and read at once, and the files of a
+ * directory are digested by the thread that listed it. Every directory is
+ * appended to the snapshot as soon as its files are digested, so only the
+ * table of directories is kept in memory until the end.
+ * <p>
+ * The snapshot is written to a temporary file that replaces the snapshot
+ * file once it's complete, so a stopped or failed export never leaves a
+ * half-written snapshot behind. Files that can't be read are left out of it.
+ */
+public class SnapshotExporter {
+
+	private final File directory;
+	private final File snapshotFile;
+	private final PathIndex pathIndex = new PathIndex();
+	private final MergeWalker walker;
+	private final LongAdder bytesRead = new LongAdder();
+	private final LongAdder files = new LongAdder();
+	private final LongAdder skippedFiles = new LongAdder();
+	private final List<Directory> directories = new ArrayList<>();
+	private FileChannel channel;
+	private long position;
+
+	/**
+	 * Constructor.
+	 * @param directory The directory.
+	 * @param snapshotFile The file where the snapshot is written.
+	 * @param options The settings that tell which files are skipped and how
+	 * many directories are read at once.
+	 * @throws FileException If some of the parameters is invalid.
+	 */
+	public SnapshotExporter(File directory, File snapshotFile, ComparisonOptions options) throws FileException {
+		if (directory == null || !directory.isDirectory()) {
+			throw new FileException("The folder to take a snapshot of doesn't exist.");
+		}
+		if (snapshotFile == null) {
+			throw new FileException("You must select the snapshot file.");
+		}
+		this.directory = directory;
+		this.snapshotFile = snapshotFile;
+		this.walker = new MergeWalker(
+			TreeSource.EMPTY, new DirectoryTreeSource(directory.toPath(), this.pathIndex, null), this.pathIndex,
+			options.getListingThreads(), options.getFilter(), new ComparisonMetrics()
+		);
+	}
+
+	/**
+	 * Returns how much of the directory has been exported.
+	 * @return A number between 0 and 1.
+	 * @see MergeWalker#getCompletedFraction()
+	 */
+	public double getCompletedFraction() {
+		return this.walker.getCompletedFraction();
+	}
+
+	/**
+	 * Returns the number of files written to the snapshot so far.
+	 * @return The number of files.
+	 */
+	public long getFiles() {
+		return this.files.sum();
+	}
+
+	/**
+	 * Returns the number of files left out because they couldn't be read.
+	 * @return The number of files.
+	 */
+	public long getSkippedFiles() {
+		return this.skippedFiles.sum();
+	}
+
+	public long getBytesRead() {
+		return this.bytesRead.sum();
+	}
+
+	/**
+	 * Exports the directory and blocks until the snapshot is written or the
+	 * listener asks to stop.
+	 * @param listener The listener, which is called from several threads.
+	 * @return <code>true</code> if the snapshot has been written and
+	 * <code>false</code> if the export has been stopped.
+	 * @throws FileException If the directory can't be walked or the snapshot
+	 * can't be written.
+	 */
+	public boolean export(SnapshotExportListener listener) throws FileException {
+		Path temporaryFile = this.snapshotFile.toPath().resolveSibling(this.snapshotFile.getName() + ".tmp");
+		boolean result = false;
+		try {
+			Path parent = temporaryFile.toAbsolutePath().getParent();
+			if (parent != null) {
+				Files.createDirectories(parent);
+			}
+			try (FileChannel output = FileChannel.open(
+				temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+			)) {
+				this.channel = output;
+				this.position = SnapshotManifest.HEADER_SIZE;
+				this.walker.walk(new WalkListener() {
+					@Override
+					public void onDirectoryListed(int node, List<FileEntry> oldChildren, List<FileEntry> newChildren) throws FileException {
+						int exported = exportDirectory(node, newChildren, listener);
+						listener.onDirectoryExported(node, exported);
+					}
+					@Override
+					public void onEntry(EntryStatus status, FileEntry oldEntry, FileEntry newEntry) {
+					}
+					@Override
+					public boolean isCancelled() {
+						return listener.isCancelled();
+					}
+				});
+				if (!listener.isCancelled()) {
+					this.writeTable(output);
+					output.force(true);
+					result = true;
+				}
+			}
+			if (result) {
+				try {
+					Files.move(temporaryFile, this.snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(temporaryFile, this.snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new FileException("Can't write the snapshot " + this.snapshotFile + ".");
+		} finally {
+			this.channel = null;
+			if (!result) {
+				try {
+					Files.deleteIfExists(temporaryFile);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Digests the files of a directory and appends its block to the
+	 * snapshot: the records of the files, sorted by name, and then their
+	 * names.
+	 * @return The number of files written.
+	 */
+	private int exportDirectory(int node, List<FileEntry> children, SnapshotExportListener listener) throws FileException {
+		ByteBuffer records = ByteBuffer.allocate(children.size() * SnapshotManifest.RECORD_SIZE);
+		ByteArrayOutputStream names = new ByteArrayOutputStream();
+		int result = 0;
+		int index = 0;
+		while (!listener.isCancelled() && index < children.size()) {
+			FileEntry child = children.get(index);
+			if (!child.isDirectory()) {
+				byte[] digest;
+				try {
+					digest = FileManager.digest(child.getPath(), this.bytesRead);
+				} catch (FileException e) {
+					System.err.println("WARNING: leaving " + child.getPath() + " out of the snapshot: " + e.getMessage());
+					this.skippedFiles.increment();
+					digest = null;
+				}
+				if (digest != null) {
+					byte[] name = child.getName().getBytes(StandardCharsets.UTF_8);
+					records.putInt(names.size());
+					records.putLong(child.getSize());
+					records.putLong(child.getLastModified());
+					records.put(digest);
+					names.write(name.length >>> 8);
+					names.write(name.length);
+					names.write(name, 0, name.length);
+					result++;
+				}
+			}
+			index++;
+		}
+		records.flip();
+		this.append(node, result, records, ByteBuffer.wrap(names.toByteArray()));
+		this.files.add(result);
+		return result;
+	}
+
+	/**
+	 * Writes the block of a directory at the end of the snapshot and adds
+	 * the directory to the table.
+	 */
+	private synchronized void append(int node, int fileCount, ByteBuffer records, ByteBuffer names) throws FileException {
+		try {
+			long recordsPosition = this.position;
+			long namesPosition = recordsPosition + records.remaining();
+			this.write(records);
+			this.write(names);
+			this.directories.add(new Directory(
+				this.pathIndex.getRelativePath(node), recordsPosition, fileCount, namesPosition
+			));
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new FileException("Can't write the snapshot " + this.snapshotFile + ".");
+		}
+	}
+
+	private void write(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			this.position += this.channel.write(buffer, this.position);
+		}
+	}
+
+	/**
+	 * Writes the table of directories after the last block and then the
+	 * header, which tells where the table starts.
+	 */
+	private void writeTable(FileChannel output) throws IOException {
+		long tableOffset = this.position;
+		DataOutputStream table = new DataOutputStream(new BufferedOutputStream(
+			Channels.newOutputStream(output.position(tableOffset))
+		));
+		table.writeUTF(this.directory.getAbsolutePath());
+		for (Directory exported : this.directories) {
+			table.writeUTF(exported.relativePath);
+			table.writeLong(exported.records);
+			table.writeInt(exported.files);
+			table.writeLong(exported.names);
+		}
+		table.flush();
+		ByteBuffer header = ByteBuffer.allocate(SnapshotManifest.HEADER_SIZE);
+		header.putInt(SnapshotManifest.MAGIC);
+		header.putInt(SnapshotManifest.VERSION);
+		header.putLong(System.currentTimeMillis());
+		header.putLong(this.files.sum());
+		header.putInt(this.directories.size());
+		header.putLong(tableOffset);
+		header.flip();
+		while (header.hasRemaining()) {
+			output.write(header, header.position());
+		}
+	}
+
+	/**
+	 * A directory written to the snapshot and where its block is.
+	 */
+	private static class Directory {
+
+		private final String relativePath;
+		private final long records;
+		private final int files;
+		private final long names;
+
+		private Directory(String relativePath, long records, int files, long names) {
+			this.relativePath = relativePath;
+			this.records = records;
+			this.files = files;
+			this.names = names;
+		}
+	}
+}
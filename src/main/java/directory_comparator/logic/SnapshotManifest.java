@@ -0,0 +1,305 @@
+package directory_comparator.logic;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+
+/**
+ * A snapshot of a directory written by a {@link SnapshotExporter}, which
+ * can be compared instead of the directory itself. It keeps the relative
+ * path, size, modification time and SHA-256 digest of every file, so
+ * comparing a directory with a snapshot only reads the other directory.
+ * <p>
+ * The file starts with a fixed header and ends with the table of
+ * directories, which is loaded in memory. Between them, every directory has
+ * a block with a fixed-size record for each of its files, sorted by name,
+ * followed by their names. Paths aren't repeated for every file, since
+ * the table keeps the path of every directory once. The blocks are mapped
+ * in memory instead of being read, so a file is only loaded when its
+ * directory is listed and a big snapshot doesn't take memory of its own.
+ * <p>
+ * The files listed from a snapshot are resolved against the snapshot file,
+ * so their paths show where they come from, but they can't be read.
+ */
+public class SnapshotManifest implements TreeSource {
+
+	/**
+	 * The extension of snapshot files.
+	 */
+	public static final String EXTENSION = ".snapshot";
+
+	static final int MAGIC = 0x534E5031;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 36;
+	static final int DIGEST_LENGTH = 32;
+
+	/**
+	 * The size of the record of a file: the position of its name among the
+	 * names of its directory, its size, its modification time and its
+	 * digest.
+	 */
+	static final int RECORD_SIZE = Integer.BYTES + 2 * Long.BYTES + DIGEST_LENGTH;
+
+	/**
+	 * The size of the parts the blocks are mapped in, since a mapped buffer
+	 * can't be bigger than 2 GB.
+	 */
+	private static final long MAPPING_SIZE = 1L << 30;
+
+	/**
+	 * How much consecutive parts overlap, so any record or name starting in
+	 * a part ends in it too.
+	 */
+	private static final long MAPPING_OVERLAP = 1L << 17;
+
+	private final File snapshotFile;
+	private final Path root;
+	private final PathIndex pathIndex;
+	private final FileChannel channel;
+	private final Map<String, Directory> directories = new HashMap<>();
+	private final List<ByteBuffer> mappings = new ArrayList<>();
+	private long created;
+	private long fileCount;
+	private String sourceDirectory;
+
+	/**
+	 * Opens a snapshot, loading its table of directories.
+	 * @param snapshotFile The snapshot file.
+	 * @param pathIndex The index of the directories of the comparison.
+	 * @throws FileException If the file can't be read or isn't a snapshot.
+	 */
+	public SnapshotManifest(File snapshotFile, PathIndex pathIndex) throws FileException {
+		this.snapshotFile = snapshotFile;
+		this.root = snapshotFile.toPath();
+		this.pathIndex = pathIndex;
+		try {
+			this.channel = FileChannel.open(this.root, StandardOpenOption.READ);
+		} catch (IOException e) {
+			throw new FileException("Can't open the snapshot " + snapshotFile + ".");
+		}
+		try {
+			this.load();
+		} catch (IOException e) {
+			this.closeChannel();
+			throw new FileException("The file " + snapshotFile + " isn't a valid snapshot.");
+		}
+	}
+
+	/**
+	 * Tells whether a file is a snapshot that can be compared as a
+	 * directory, judging by its extension.
+	 * @param file The file.
+	 * @return <code>true</code> if it's a snapshot file.
+	 */
+	public static boolean isSnapshot(File file) {
+		return file.isFile() && file.getName().toLowerCase(Locale.ROOT).endsWith(EXTENSION);
+	}
+
+	@Override
+	public Path getRoot() {
+		return root;
+	}
+
+	/**
+	 * Returns when the snapshot was taken.
+	 * @return The time in milliseconds.
+	 */
+	public long getCreated() {
+		return created;
+	}
+
+	public long getFileCount() {
+		return fileCount;
+	}
+
+	/**
+	 * Returns the directory the snapshot was taken of.
+	 * @return Its absolute path when it was exported.
+	 */
+	public String getSourceDirectory() {
+		return sourceDirectory;
+	}
+
+	@Override
+	public void list(int node, Path directory, EntryConsumer consumer) throws FileException {
+		Directory listed = this.directories.get(this.pathIndex.getRelativePath(node));
+		if (listed != null) {
+			for (String subdirectory : listed.subdirectories) {
+				consumer.accept(new FileEntry(this.root, this.pathIndex, node, subdirectory, true, 0, 0, null));
+			}
+			for (int file = 0; file < listed.files; file++) {
+				long record = listed.records + (long) file * RECORD_SIZE;
+				consumer.accept(new FileEntry(
+					this.root, this.pathIndex, node, this.readName(listed, record), false,
+					this.getLong(record + Integer.BYTES), this.getLong(record + Integer.BYTES + Long.BYTES),
+					null
+				));
+			}
+		}
+	}
+
+	/**
+	 * The files of a snapshot can only be compared through their digests.
+	 */
+	@Override
+	public boolean isReadable() {
+		return false;
+	}
+
+	/**
+	 * Returns the digest of a file of the snapshot, looking it up by name
+	 * among the records of its directory.
+	 */
+	@Override
+	public Optional<byte[]> getDigest(FileEntry entry) {
+		Directory directory = this.directories.get(this.pathIndex.getRelativePath(entry.getDirectoryNode()));
+		Optional<byte[]> result = Optional.empty();
+		if (directory != null) {
+			int low = 0;
+			int high = directory.files - 1;
+			while (result.isEmpty() && low <= high) {
+				int middle = (low + high) >>> 1;
+				long record = directory.records + (long) middle * RECORD_SIZE;
+				int comparison = this.readName(directory, record).compareTo(entry.getName());
+				if (comparison < 0) {
+					low = middle + 1;
+				} else if (comparison > 0) {
+					high = middle - 1;
+				} else {
+					byte[] digest = new byte[DIGEST_LENGTH];
+					this.getBytes(record + Integer.BYTES + 2 * Long.BYTES, digest);
+					result = Optional.of(digest);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Closes the snapshot file. The mapped blocks are released when they
+	 * aren't used anymore.
+	 */
+	@Override
+	public void close() throws FileException {
+		this.closeChannel();
+	}
+
+	private void closeChannel() throws FileException {
+		try {
+			this.channel.close();
+		} catch (IOException e) {
+			throw new FileException("Can't close the snapshot " + this.snapshotFile + ".");
+		}
+	}
+
+	private void load() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		int read = 0;
+		while (header.hasRemaining() && read >= 0) {
+			read = this.channel.read(header, header.position());
+		}
+		header.flip();
+		if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+			throw new IOException("unknown format");
+		}
+		this.created = header.getLong();
+		this.fileCount = header.getLong();
+		int directoryCount = header.getInt();
+		long tableOffset = header.getLong();
+		DataInputStream input = new DataInputStream(new BufferedInputStream(
+			Channels.newInputStream(this.channel.position(tableOffset))
+		));
+		this.sourceDirectory = input.readUTF();
+		List<String> paths = new ArrayList<>(directoryCount);
+		for (int i = 0; i < directoryCount; i++) {
+			String relativePath = input.readUTF();
+			this.directories.put(relativePath, new Directory(input.readLong(), input.readInt(), input.readLong()));
+			paths.add(relativePath);
+		}
+		for (String relativePath : paths) {
+			if (!relativePath.isEmpty()) {
+				int separator = relativePath.lastIndexOf('/');
+				Directory parent = this.directories.get(separator < 0 ? "" : relativePath.substring(0, separator));
+				if (parent == null) {
+					throw new IOException("missing parent of " + relativePath);
+				}
+				parent.subdirectories.add(relativePath.substring(separator + 1));
+			}
+		}
+		long position = HEADER_SIZE;
+		while (position < tableOffset) {
+			long size = Math.min(MAPPING_SIZE + MAPPING_OVERLAP, tableOffset - position);
+			this.mappings.add(this.channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+			position += MAPPING_SIZE;
+		}
+	}
+
+	/**
+	 * Returns the name of the file of a record.
+	 */
+	private String readName(Directory directory, long record) {
+		long position = directory.names + this.getInt(record);
+		int length = this.getShort(position) & 0xFFFF;
+		byte[] name = new byte[length];
+		this.getBytes(position + Short.BYTES, name);
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	private ByteBuffer mapping(long position) {
+		return this.mappings.get((int) ((position - HEADER_SIZE) / MAPPING_SIZE));
+	}
+
+	private static int offset(long position) {
+		return (int) ((position - HEADER_SIZE) % MAPPING_SIZE);
+	}
+
+	private int getInt(long position) {
+		return this.mapping(position).getInt(offset(position));
+	}
+
+	private short getShort(long position) {
+		return this.mapping(position).getShort(offset(position));
+	}
+
+	private long getLong(long position) {
+		return this.mapping(position).getLong(offset(position));
+	}
+
+	private void getBytes(long position, byte[] destination) {
+		this.mapping(position).get(offset(position), destination);
+	}
+
+	/**
+	 * A directory of the snapshot and where its block is.
+	 */
+	private static class Directory {
+
+		private final long records;
+		private final int files;
+		private final long names;
+		private final List<String> subdirectories = new ArrayList<>();
+
+		private Directory(long records, int files, long names) {
+			this.records = records;
+			this.files = files;
+			this.names = names;
+		}
+	}
+}
@@ -0,0 +1,241 @@
+package directory_comparator.logic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+
+/**
+ * The listing of a directory with too many entries to be sorted in memory.
+ * The entries are received in runs of a bounded size, which are sorted by
+ * name, in the order {@link MergeWalker} sorts listings, and written to
+ * temporary files, and then read back in order by merging the runs, so only
+ * one entry of every run is in memory at a time. At most
+ * {@value #MAX_FAN_IN} runs are open at once: when there are more, the
+ * oldest ones are first merged into bigger runs, in as many passes as
+ * needed.
+ * <p>
+ * The file key of an entry is kept as its text, which is all that the
+ * digest cache and the folder digests use.
+ */
+public class SpilledListing implements AutoCloseable {
+
+	private static final int BUFFER_SIZE = 16 * 1024;
+
+	/**
+	 * The maximum number of runs merged at once, which keeps the open files
+	 * and their buffers bounded however big the directory is.
+	 */
+	static final int MAX_FAN_IN = 64;
+
+	private final Path spillDirectory;
+	private final Path root;
+	private final PathIndex pathIndex;
+	private final int node;
+	private final List<Path> runFiles = new ArrayList<>();
+	private final PriorityQueue<Run> runs = new PriorityQueue<>(Comparator.comparing(run -> run.entry, MergeWalker.BY_NAME));
+	private long count;
+	private boolean merging;
+
+	/**
+	 * Constructor.
+	 * @param spillDirectory The directory where the runs are written.
+	 * @param root The compared directory the entries belong to.
+	 * @param pathIndex The index of the directories of the comparison.
+	 * @param node The node of the directory listed.
+	 */
+	public SpilledListing(Path spillDirectory, Path root, PathIndex pathIndex, int node) {
+		this.spillDirectory = spillDirectory;
+		this.root = root;
+		this.pathIndex = pathIndex;
+		this.node = node;
+	}
+
+	/**
+	 * Sorts entries and writes them as a new run.
+	 * @param entries The entries, which are sorted in place.
+	 * @throws FileException If the run can't be written.
+	 */
+	public void addRun(List<FileEntry> entries) throws FileException {
+		entries.sort(MergeWalker.BY_NAME);
+		try {
+			Files.createDirectories(this.spillDirectory);
+			Path runFile = Files.createTempFile(this.spillDirectory, "listing-", ".run");
+			this.runFiles.add(runFile);
+			try (DataOutputStream output = openRun(runFile)) {
+				for (FileEntry entry : entries) {
+					write(output, entry);
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new FileException("Can't write the listing of a big folder to " + this.spillDirectory + ".");
+		}
+		this.count += entries.size();
+	}
+
+	/**
+	 * Returns the number of entries received.
+	 * @return The number of entries.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the next entry by name, opening the runs the first time. No
+	 * run can be added after that.
+	 * @return The entry or <code>null</code> if there are no more.
+	 * @throws FileException If a run can't be read.
+	 */
+	public FileEntry next() throws FileException {
+		FileEntry result = null;
+		try {
+			if (!this.merging) {
+				this.merging = true;
+				while (this.runFiles.size() > MAX_FAN_IN) {
+					this.mergeOldestRuns();
+				}
+				this.open(this.runFiles);
+			}
+			result = this.poll();
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new FileException("Can't read the listing of a big folder from " + this.spillDirectory + ".");
+		}
+		return result;
+	}
+
+	/**
+	 * Merges the {@value #MAX_FAN_IN} oldest runs into a new run, which is
+	 * merged in turn after the others, and deletes them.
+	 */
+	private void mergeOldestRuns() throws IOException {
+		List<Path> merged = new ArrayList<>(this.runFiles.subList(0, MAX_FAN_IN));
+		Path runFile = Files.createTempFile(this.spillDirectory, "listing-", ".run");
+		this.runFiles.add(runFile);
+		try (DataOutputStream output = openRun(runFile)) {
+			this.open(merged);
+			for (FileEntry entry = this.poll(); entry != null; entry = this.poll()) {
+				write(output, entry);
+			}
+		}
+		this.runFiles.subList(0, MAX_FAN_IN).clear();
+		for (Path mergedFile : merged) {
+			Files.deleteIfExists(mergedFile);
+		}
+	}
+
+	/**
+	 * Opens some runs, reading their first entries.
+	 */
+	private void open(List<Path> runFiles) throws IOException {
+		for (Path runFile : runFiles) {
+			Run run = new Run(runFile);
+			if (run.advance()) {
+				this.runs.add(run);
+			}
+		}
+	}
+
+	/**
+	 * Returns the first entry of the open runs and reads the next one of its
+	 * run.
+	 */
+	private FileEntry poll() throws IOException {
+		FileEntry result = null;
+		Run first = this.runs.poll();
+		if (first != null) {
+			result = first.entry;
+			if (first.advance()) {
+				this.runs.add(first);
+			}
+		}
+		return result;
+	}
+
+	private static DataOutputStream openRun(Path runFile) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFile), BUFFER_SIZE));
+	}
+
+	private static void write(DataOutputStream output, FileEntry entry) throws IOException {
+		output.writeUTF(entry.getName());
+		output.writeBoolean(entry.isDirectory());
+		output.writeLong(entry.getSize());
+		output.writeLong(entry.getLastModified());
+		output.writeUTF(Objects.toString(entry.getFileKey(), ""));
+	}
+
+	/**
+	 * Deletes the runs.
+	 */
+	@Override
+	public void close() {
+		for (Run run : this.runs) {
+			run.close();
+		}
+		this.runs.clear();
+		for (Path runFile : this.runFiles) {
+			try {
+				Files.deleteIfExists(runFile);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		this.runFiles.clear();
+	}
+
+	/**
+	 * A run being read, with its next entry.
+	 */
+	private class Run {
+
+		private final DataInputStream input;
+		private FileEntry entry;
+
+		private Run(Path runFile) throws IOException {
+			this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(runFile), BUFFER_SIZE));
+		}
+
+		/**
+		 * Reads the next entry of the run, closing it at the end.
+		 */
+		private boolean advance() throws IOException {
+			try {
+				String name = this.input.readUTF();
+				boolean directory = this.input.readBoolean();
+				long size = this.input.readLong();
+				long lastModified = this.input.readLong();
+				String fileKey = this.input.readUTF();
+				this.entry = new FileEntry(
+					root, pathIndex, node, name, directory, size, lastModified, fileKey.isEmpty() ? null : fileKey
+				);
+			} catch (EOFException e) {
+				this.entry = null;
+				this.close();
+			}
+			return this.entry != null;
+		}
+
+		private void close() {
+			try {
+				this.input.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package directory_comparator.logic;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.models.FileEntry;
+
+/**
+ * Where the files of one side of a comparison are listed from: a directory,
+ * an archive opened as a file system or a {@link SnapshotManifest} of a
+ * directory that may not exist anymore. The {@link MergeWalker} lists
+ * directories through it, so it doesn't care which one it walks.
+ * <p>
+ * Implementations must be thread safe, since several directories are listed
+ * at once.
+ */
+public interface TreeSource {
+
+	/**
+	 * A side without any file, so everything found on the other side is new
+	 * or deleted.
+	 */
+	TreeSource EMPTY = new TreeSource() {
+		@Override
+		public Path getRoot() {
+			return null;
+		}
+		@Override
+		public void list(int node, Path directory, EntryConsumer consumer) {
+		}
+	};
+
+	/**
+	 * Returns the path the files listed are resolved against.
+	 * @return The root or <code>null</code> if there is nothing to list.
+	 */
+	Path getRoot();
+
+	/**
+	 * Lists the regular files and directories inside a directory, passing
+	 * them one by one, so a huge directory doesn't have to fit in memory.
+	 * @param node The node of the directory in the {@link
+	 * directory_comparator.logic.models.PathIndex PathIndex} of the
+	 * comparison.
+	 * @param directory The path of the directory, resolved against the root.
+	 * @param consumer Receives the entries, in any order.
+	 * @throws FileException If the directory can't be listed or the consumer
+	 * fails.
+	 */
+	void list(int node, Path directory, EntryConsumer consumer) throws FileException;
+
+	/**
+	 * Tells whether the contents of the files listed can be read. Otherwise
+	 * they can only be compared through their digests, see
+	 * {@link #getDigest(FileEntry)}.
+	 * @return <code>true</code> if the files can be opened.
+	 */
+	default boolean isReadable() {
+		return true;
+	}
+
+	/**
+	 * Returns the digest of a file listed if it's known without reading it.
+	 * @param entry The file.
+	 * @return The SHA-256 digest or an empty {@link Optional} if the file has
+	 * to be read.
+	 */
+	default Optional<byte[]> getDigest(FileEntry entry) {
+		return Optional.empty();
+	}
+
+	/**
+	 * Releases what the source keeps open. Its files can't be listed or read
+	 * anymore.
+	 * @throws FileException If something can't be closed.
+	 */
+	default void close() throws FileException {
+	}
+
+	/**
+	 * Receives the entries of a directory while it's listed.
+	 */
+	@FunctionalInterface
+	interface EntryConsumer {
+
+		/**
+		 * Invoked once for every entry.
+		 * @param entry The file or directory.
+		 * @throws FileException If the entry can't be processed.
+		 */
+		void accept(FileEntry entry) throws FileException;
+	}
+}
@@ -0,0 +1,23 @@
+package directory_comparator.logic;
+
+/**
+ * Tools for showing amounts to the user.
+ */
+public class Units {
+
+	/**
+	 * Formats an amount of bytes in the most readable unit.
+	 * @param bytes The amount of bytes.
+	 * @return The formatted amount.
+	 */
+	public static String formatBytes(long bytes) {
+		String[] units = { "bytes", "KB", "MB", "GB", "TB" };
+		double amount = bytes;
+		int unit = 0;
+		while (amount >= 1024 && unit < units.length - 1) {
+			amount = amount / 1024;
+			unit++;
+		}
+		return unit == 0 ? bytes + " " + units[0] : String.format("%.1f %s", amount, units[unit]);
+	}
+}
@@ -0,0 +1,145 @@
+package directory_comparator.logic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.EntryStatus;
+import directory_comparator.logic.models.ComparisonOutcome;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+
+/**
+ * The files that sampling found probably equal, waiting to be verified. They
+ * are appended to a temporary file as they are found, from any thread, and
+ * read back in the same order, so they take no memory however many there
+ * are. Only what is needed to read the files again is kept.
+ * <p>
+ * Once they start being read back, new files are ignored: the files
+ * compared after the comparison, as while watching, are verified at once.
+ */
+public class UnverifiedFiles implements AutoCloseable {
+
+	private static final int BUFFER_SIZE = 16 * 1024;
+
+	private final Path directory;
+	private final PathIndex pathIndex;
+	private Path oldRoot;
+	private Path newRoot;
+	private Path file;
+	private DataOutputStream output;
+	private DataInputStream input;
+	private boolean reading;
+
+	/**
+	 * Constructor.
+	 * @param directory The directory where the temporary file is written,
+	 * which is created when needed.
+	 * @param pathIndex The index of the directories of the comparison.
+	 */
+	public UnverifiedFiles(Path directory, PathIndex pathIndex) {
+		this.directory = directory;
+		this.pathIndex = pathIndex;
+	}
+
+	/**
+	 * Adds a file that sampling found probably equal.
+	 * @param oldEntry The file in the old directory.
+	 * @param newEntry The file in the new directory.
+	 * @throws FileException If the file can't be written.
+	 */
+	public synchronized void add(FileEntry oldEntry, FileEntry newEntry) throws FileException {
+		if (!this.reading) {
+			try {
+				if (this.output == null) {
+					Files.createDirectories(this.directory);
+					this.file = Files.createTempFile(this.directory, "unverified-", ".tmp");
+					this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.file), BUFFER_SIZE));
+					this.oldRoot = oldEntry.getRoot();
+					this.newRoot = newEntry.getRoot();
+				}
+				this.output.writeInt(oldEntry.getDirectoryNode());
+				this.output.writeUTF(oldEntry.getName());
+				this.output.writeUTF(newEntry.getName());
+				this.output.writeLong(oldEntry.getSize());
+				this.output.writeLong(oldEntry.getLastModified());
+				this.output.writeLong(newEntry.getLastModified());
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new FileException("Can't write the files to verify to " + this.directory + ".");
+			}
+		}
+	}
+
+	/**
+	 * Takes the next file to verify. The first call stops adding files.
+	 * @return The outcome of the file, which isn't changed, or an empty
+	 * {@link Optional} if there are no more files to verify.
+	 * @throws FileException If the file can't be read.
+	 */
+	public synchronized Optional<ComparisonOutcome> poll() throws FileException {
+		Optional<ComparisonOutcome> result = Optional.empty();
+		try {
+			if (!this.reading) {
+				this.reading = true;
+				if (this.output != null) {
+					this.output.close();
+					this.output = null;
+					this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file), BUFFER_SIZE));
+				}
+			}
+			if (this.input != null) {
+				try {
+					int node = this.input.readInt();
+					String oldName = this.input.readUTF();
+					String newName = this.input.readUTF();
+					long size = this.input.readLong();
+					long oldLastModified = this.input.readLong();
+					long newLastModified = this.input.readLong();
+					result = Optional.of(new ComparisonOutcome(
+						EntryStatus.COMMON,
+						new FileEntry(this.oldRoot, this.pathIndex, node, oldName, false, size, oldLastModified, null),
+						new FileEntry(this.newRoot, this.pathIndex, node, newName, false, size, newLastModified, null)
+					));
+				} catch (EOFException e) {
+					this.close();
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new FileException("Can't read the files to verify from " + this.directory + ".");
+		}
+		return result;
+	}
+
+	/**
+	 * Deletes the temporary file, if any, and stops adding files.
+	 */
+	@Override
+	public synchronized void close() {
+		this.reading = true;
+		try {
+			if (this.output != null) {
+				this.output.close();
+				this.output = null;
+			}
+			if (this.input != null) {
+				this.input.close();
+				this.input = null;
+			}
+			if (this.file != null) {
+				Files.deleteIfExists(this.file);
+				this.file = null;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
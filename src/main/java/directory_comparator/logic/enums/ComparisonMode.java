@@ -0,0 +1,42 @@
+package directory_comparator.logic.enums;
+
+/**
+ * How the contents of a file that exists in both directories are compared.
+ * In every mode, two files with different sizes are considered changed
+ * without reading them.
+ */
+public enum ComparisonMode {
+
+	/**
+	 * Files with the same size are compared byte by byte.
+	 */
+	STRICT("Strict: compare every byte"),
+	
+	/**
+	 * Files with the same size and the same modification time are assumed
+	 * to be equal without reading them. The rest are compared byte by byte.
+	 */
+	QUICK("Quick: trust size and modification time"),
+	
+	/**
+	 * Only some blocks of files with the same size are compared, so files
+	 * are either probably equal or certainly changed. The files that are
+	 * probably equal can be verified afterwards.
+	 */
+	SAMPLED("Sampled: compare a few blocks of every file");
+	
+	private final String label;
+	
+	private ComparisonMode(String label) {
+		this.label = label;
+	}
+	
+	/**
+	 * Returns the text that describes this mode to the user.
+	 * @return The text.
+	 */
+	@Override
+	public String toString() {
+		return this.label;
+	}
+}
@@ -0,0 +1,24 @@
+package directory_comparator.logic.enums;
+
+/**
+ * How an entry found while walking the old and new directories side by side
+ * has been classified.
+ */
+public enum EntryStatus {
+
+	/**
+	 * The file only exists in the new directory.
+	 */
+	NEW,
+	
+	/**
+	 * The file only exists in the old directory.
+	 */
+	DELETED,
+	
+	/**
+	 * The file exists in both directories, so the contents of the two
+	 * versions have to be compared.
+	 */
+	COMMON
+}
@@ -0,0 +1,47 @@
+package directory_comparator.logic.enums;
+
+/**
+ * The phases of a comparison whose time is measured.
+ */
+public enum Phase {
+
+	/**
+	 * Listing a directory and reading the attributes of its entries.
+	 */
+	LISTING("Listing folders"),
+
+	/**
+	 * Deciding whether a file that exists in both directories has changed.
+	 */
+	COMPARISON("Comparing files"),
+
+	/**
+	 * Reading completely a file that sampling found probably equal.
+	 */
+	VERIFICATION("Verifying sampled files"),
+
+	/**
+	 * Creating a shortcut to a new or changed file.
+	 */
+	SHORTCUTS("Creating shortcuts"),
+
+	/**
+	 * Updating the shortcuts of a previous run to match the new results.
+	 */
+	RECONCILIATION("Updating results folder");
+
+	private final String label;
+
+	private Phase(String label) {
+		this.label = label;
+	}
+
+	/**
+	 * Returns the text that describes this phase to the user.
+	 * @return The text.
+	 */
+	@Override
+	public String toString() {
+		return this.label;
+	}
+}
@@ -0,0 +1,56 @@
+package directory_comparator.logic.enums;
+
+/**
+ * The kinds of results that a comparison reports.
+ */
+public enum ResultKind {
+
+	/**
+	 * A file that only exists in the new directory.
+	 */
+	NEW("New"),
+	
+	/**
+	 * A file that exists in both directories with different contents.
+	 */
+	CHANGED("Changed"),
+	
+	/**
+	 * A file that only exists in the old directory.
+	 */
+	DELETED("Deleted"),
+	
+	/**
+	 * A file of the new directory with the same contents as a file of the
+	 * old directory with another path, which has been moved or renamed.
+	 * It's reported instead of being new and deleted.
+	 */
+	MOVED("Moved"),
+	
+	/**
+	 * An empty file in the new directory. It's reported besides being new,
+	 * changed or unchanged.
+	 */
+	ZERO_KB("Zero KB"),
+	
+	/**
+	 * A file that exists in both directories and couldn't be compared. The
+	 * rest of the files are compared anyway.
+	 */
+	ERROR("Errors");
+
+	private final String label;
+
+	private ResultKind(String label) {
+		this.label = label;
+	}
+
+	/**
+	 * Returns the text that describes this kind of result to the user.
+	 * @return The text.
+	 */
+	@Override
+	public String toString() {
+		return this.label;
+	}
+}
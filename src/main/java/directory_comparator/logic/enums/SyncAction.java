@@ -0,0 +1,33 @@
+package directory_comparator.logic.enums;
+
+/**
+ * What a sync does to a file of the old directory.
+ */
+public enum SyncAction {
+
+	/**
+	 * The file is copied from the new directory, replacing the old one if
+	 * it exists.
+	 */
+	COPY("Copy"),
+	
+	/**
+	 * The file doesn't exist in the new directory and is deleted.
+	 */
+	DELETE("Delete");
+
+	private final String label;
+
+	private SyncAction(String label) {
+		this.label = label;
+	}
+
+	/**
+	 * Returns the text that describes this action to the user.
+	 * @return The text.
+	 */
+	@Override
+	public String toString() {
+		return this.label;
+	}
+}
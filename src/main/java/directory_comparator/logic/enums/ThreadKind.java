@@ -0,0 +1,18 @@
+package directory_comparator.logic.enums;
+
+/**
+ * The kind of threads that compare files in parallel.
+ */
+public enum ThreadKind {
+
+	/**
+	 * Classic threads backed by operating system threads.
+	 */
+	PLATFORM,
+	
+	/**
+	 * Lightweight threads scheduled by the JVM, which are cheap to block on
+	 * I/O, so many more of them can be used.
+	 */
+	VIRTUAL
+}
@@ -0,0 +1,68 @@
+package directory_comparator.logic.listeners;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.ComparisonPipeline;
+import directory_comparator.logic.models.ComparisonOutcome;
+
+/**
+ * An object of this class collects the results of a
+ * {@link ComparisonPipeline}. All its methods but
+ * {@link #onDirectoryWalked(int, int)} are called from the thread that runs
+ * the pipeline.
+ */
+public interface ComparisonListener {
+
+	/**
+	 * Invoked once for every file that has been classified and, if it
+	 * exists in both directories, compared. A file that couldn't be compared
+	 * has an error, but the comparison goes on.
+	 * @param outcome The result for the file.
+	 * @throws FileException If the result can't be processed.
+	 */
+	void onOutcome(ComparisonOutcome outcome) throws FileException;
+	
+	/**
+	 * Invoked periodically while no result arrives, for example while a big
+	 * file is being compared, so the progress can still be shown.
+	 */
+	void onWaiting();
+	
+	/**
+	 * Invoked from the threads that walk the directories, so it must be
+	 * thread safe, once all the files directly inside a directory have been
+	 * found. Their outcomes may be passed to
+	 * {@link #onOutcome(ComparisonOutcome)} before or after this call.
+	 * @param node The node of the directory.
+	 * @param files The number of files found, which is the number of
+	 * outcomes of the directory.
+	 * @throws FileException If the directory can't be processed.
+	 */
+	default void onDirectoryWalked(int node, int files) throws FileException {
+	}
+	
+	/**
+	 * Invoked when all the files have been compared and, in the sampled
+	 * mode, the files that are probably equal start being verified. The
+	 * results found so far are already known. While the files are verified,
+	 * {@link #onWaiting()} is invoked after every file.
+	 * @param files The number of files to verify.
+	 */
+	default void onVerificationStarted(int files) {
+	}
+	
+	/**
+	 * Invoked when all the files have been compared and the new and deleted
+	 * files of the same size start being read to find the ones that have
+	 * been moved. While they are read, {@link #onWaiting()} is invoked after
+	 * every file.
+	 * @param files The number of files to read.
+	 */
+	default void onMoveDetectionStarted(int files) {
+	}
+	
+	/**
+	 * Tells whether the comparison has to stop as soon as possible.
+	 * @return <code>true</code> if the comparison has to stop.
+	 */
+	boolean isCancelled();
+}
@@ -0,0 +1,24 @@
+package directory_comparator.logic.listeners;
+
+import directory_comparator.logic.results.ReportEntry;
+import directory_comparator.logic.results.ReportIndex;
+
+/**
+ * An object of this class receives the results of a kind read in order by
+ * {@link ReportIndex#scan(directory_comparator.logic.enums.ResultKind, ReportScanListener)}.
+ */
+public interface ReportScanListener {
+
+	/**
+	 * Invoked once for every result of the kind scanned.
+	 * @param row The position of the result among the ones of its kind.
+	 * @param entry The result.
+	 */
+	void onEntry(int row, ReportEntry entry);
+
+	/**
+	 * Tells whether the scan has to stop as soon as possible.
+	 * @return <code>true</code> if the scan has to stop.
+	 */
+	boolean isCancelled();
+}
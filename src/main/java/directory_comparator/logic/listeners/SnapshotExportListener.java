@@ -0,0 +1,25 @@
+package directory_comparator.logic.listeners;
+
+import directory_comparator.logic.SnapshotExporter;
+
+/**
+ * An object of this class follows the export of a snapshot by a
+ * {@link SnapshotExporter}. Several directories are exported at once, so
+ * implementations must be thread safe.
+ */
+public interface SnapshotExportListener {
+
+	/**
+	 * Invoked once the files directly inside a directory have been read and
+	 * written to the snapshot.
+	 * @param node The node of the directory.
+	 * @param files The number of files written.
+	 */
+	void onDirectoryExported(int node, int files);
+
+	/**
+	 * Tells whether the export has to stop as soon as possible.
+	 * @return <code>true</code> if the export has to stop.
+	 */
+	boolean isCancelled();
+}
@@ -0,0 +1,37 @@
+package directory_comparator.logic.listeners;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.DirectorySync;
+import directory_comparator.logic.enums.SyncAction;
+
+/**
+ * An object of this class follows a sync done by a {@link DirectorySync}.
+ * Several files are copied at once, so implementations must be thread safe.
+ */
+public interface SyncListener {
+
+	/**
+	 * Invoked once a file has been copied or deleted, or would be in a dry
+	 * run.
+	 * @param action What has been done to the file.
+	 * @param relativePath The path of the file relative to the directories.
+	 * @param size The size of the file.
+	 */
+	void onFileSynced(SyncAction action, String relativePath, long size);
+
+	/**
+	 * Invoked when a file can't be copied or deleted. The sync goes on with
+	 * the rest of the files.
+	 * @param action What couldn't be done to the file.
+	 * @param relativePath The path of the file relative to the directories.
+	 * @param error Why it couldn't be done.
+	 */
+	void onFileFailed(SyncAction action, String relativePath, FileException error);
+
+	/**
+	 * Tells whether the sync has to stop as soon as possible. The files
+	 * being copied are finished first.
+	 * @return <code>true</code> if the sync has to stop.
+	 */
+	boolean isCancelled();
+}
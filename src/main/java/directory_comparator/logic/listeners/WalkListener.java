@@ -0,0 +1,60 @@
+package directory_comparator.logic.listeners;
+
+import java.util.List;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.MergeWalker;
+import directory_comparator.logic.enums.EntryStatus;
+import directory_comparator.logic.models.FileEntry;
+
+/**
+ * An object of this class receives the files found by a {@link MergeWalker}.
+ * The walker lists several directories at once, so implementations must be
+ * thread safe.
+ */
+public interface WalkListener {
+
+	/**
+	 * Invoked once for every file found in any of the two directories.
+	 * @param status The classification of the file.
+	 * @param oldEntry The file in the old directory or <code>null</code> if
+	 * the status is {@link EntryStatus#NEW}.
+	 * @param newEntry The file in the new directory or <code>null</code> if
+	 * the status is {@link EntryStatus#DELETED}.
+	 * @throws FileException If the file can't be processed.
+	 */
+	void onEntry(EntryStatus status, FileEntry oldEntry, FileEntry newEntry) throws FileException;
+	
+	/**
+	 * Invoked once a pair of directories has been listed, before any of
+	 * their files is passed to
+	 * {@link #onEntry(EntryStatus, FileEntry, FileEntry)}. It isn't invoked
+	 * for a directory with too many entries to be held in memory, whose
+	 * listing is sorted on disk instead.
+	 * @param node The node of the directories.
+	 * @param oldChildren The files and subdirectories of the old directory
+	 * that aren't skipped, sorted by name, or <code>null</code> if it doesn't
+	 * exist.
+	 * @param newChildren The same for the new directory.
+	 * @throws FileException If the directory can't be processed.
+	 */
+	default void onDirectoryListed(int node, List<FileEntry> oldChildren, List<FileEntry> newChildren) throws FileException {
+	}
+	
+	/**
+	 * Invoked once all the files directly inside a directory have been
+	 * passed to {@link #onEntry(EntryStatus, FileEntry, FileEntry)}, unless
+	 * the walk stops before.
+	 * @param node The node of the directory.
+	 * @param files The number of files passed.
+	 * @throws FileException If the directory can't be processed.
+	 */
+	default void onDirectoryWalked(int node, int files) throws FileException {
+	}
+	
+	/**
+	 * Tells whether the walk has to stop as soon as possible.
+	 * @return <code>true</code> if the walk has to stop.
+	 */
+	boolean isCancelled();
+}
@@ -0,0 +1,30 @@
+package directory_comparator.logic.listeners;
+
+import java.util.Set;
+
+import directory_comparator.logic.LiveComparison;
+import directory_comparator.logic.enums.ResultKind;
+
+/**
+ * An object of this class follows a {@link LiveComparison}: the full
+ * comparisons, through the methods of {@link ComparisonListener}, and the
+ * changes found while watching the directories. The methods it adds are
+ * called from the thread that runs the live comparison.
+ */
+public interface WatchListener extends ComparisonListener {
+
+	/**
+	 * Invoked when a full comparison has finished, before the directories
+	 * are watched.
+	 */
+	void onComparisonFinished();
+
+	/**
+	 * Invoked when the results of a file have changed while watching.
+	 * @param relativePath The path of the file relative to the compared
+	 * directories.
+	 * @param before The results the file had.
+	 * @param after The results the file has now.
+	 */
+	void onChange(String relativePath, Set<ResultKind> before, Set<ResultKind> after);
+}
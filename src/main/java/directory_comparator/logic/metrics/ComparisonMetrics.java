@@ -0,0 +1,184 @@
+package directory_comparator.logic.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.Units;
+import directory_comparator.logic.enums.Phase;
+
+/**
+ * The measurements of a comparison: how long every {@link Phase} took, how
+ * its latencies were distributed and how fast files and bytes were
+ * processed. The phases run at the same time in a pipeline, so for every
+ * phase both the time spent by all the threads and the wall time are kept.
+ * <p>
+ * Every operation measured is also a Flight Recorder event, so a recording
+ * shows what the threads were doing at any moment.
+ */
+public class ComparisonMetrics {
+
+	private final Map<Phase, PhaseMetrics> phases = new EnumMap<>(Phase.class);
+	private final long start = System.nanoTime();
+	private volatile long end;
+	private volatile int files;
+	private volatile long bytesRead;
+
+	/**
+	 * Constructor. The comparison is timed from now.
+	 */
+	public ComparisonMetrics() {
+		for (Phase phase : Phase.values()) {
+			this.phases.put(phase, new PhaseMetrics());
+		}
+	}
+
+	/**
+	 * Records an operation that ends now.
+	 * @param phase The phase the operation belongs to.
+	 * @param operationStart When the operation started, according to
+	 * {@link System#nanoTime()}.
+	 */
+	public void record(Phase phase, long operationStart) {
+		this.phases.get(phase).record(operationStart, System.nanoTime());
+	}
+
+	/**
+	 * Stops timing the comparison.
+	 * @param processedFiles The number of files processed.
+	 * @param totalBytesRead The number of bytes read to compare files.
+	 */
+	public void finish(int processedFiles, long totalBytesRead) {
+		this.files = processedFiles;
+		this.bytesRead = totalBytesRead;
+		this.end = System.nanoTime();
+	}
+
+	public PhaseMetrics getPhase(Phase phase) {
+		return this.phases.get(phase);
+	}
+
+	/**
+	 * Returns the time the comparison took, or has taken so far if it
+	 * hasn't finished.
+	 * @return The time in nanoseconds.
+	 */
+	public long getElapsedNanos() {
+		long currentEnd = this.end;
+		return (currentEnd == 0 ? System.nanoTime() : currentEnd) - this.start;
+	}
+
+	/**
+	 * Returns how many files were processed per second.
+	 * @return The rate.
+	 */
+	public double getFilesPerSecond() {
+		return perSecond(this.files, this.getElapsedNanos());
+	}
+
+	/**
+	 * Returns how many bytes were read per second to compare files.
+	 * @return The rate.
+	 */
+	public double getBytesPerSecond() {
+		return perSecond(this.bytesRead, this.getElapsedNanos());
+	}
+
+	/**
+	 * Creates a text that shows the measurements to the user.
+	 * @return The text.
+	 */
+	public String createSummary() {
+		StringBuilder result = new StringBuilder();
+		result.append(String.format("Time: %.1f s, %.0f files/s, %s/s.",
+			this.getElapsedNanos() / 1e9, this.getFilesPerSecond(), Units.formatBytes((long) this.getBytesPerSecond())
+		));
+		for (Phase phase : Phase.values()) {
+			PhaseMetrics metrics = this.phases.get(phase);
+			if (metrics.getCount() > 0) {
+				result.append(String.format("\n%s: %d in %.1f s (%.1f s of threads), mean %s, p99 %s, max %s.",
+					phase, metrics.getCount(), metrics.getWallNanos() / 1e9, metrics.getTotalNanos() / 1e9,
+					formatLatency(metrics.getMeanNanos()), formatLatency(metrics.getPercentileNanos(99)),
+					formatLatency(metrics.getMaxNanos())
+				));
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Writes the measurements to a JSON file like this one, where times are
+	 * in microseconds and every bucket of a histogram has the number of
+	 * operations faster than its bound and slower than the bound of the
+	 * previous one:
+	 * <pre>
+	 * {"elapsedMicros":1500000,"files":2000,"bytesRead":1048576,
+	 * "filesPerSecond":1333.3,"bytesPerSecond":699050.7,"phases":{
+	 * "LISTING":{"count":40,"wallMicros":900000,"totalMicros":2400000,
+	 * "meanMicros":60000,"p50Micros":65536,"p90Micros":131072,"p99Micros":131072,
+	 * "maxMicros":120000,"histogram":[{"upToMicros":65536,"count":25},...]},...}}
+	 * </pre>
+	 * @param file The file.
+	 * @throws FileException If the file can't be written.
+	 */
+	public void writeJson(File file) throws FileException {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"elapsedMicros\":").append(this.getElapsedNanos() / 1000)
+			.append(",\"files\":").append(this.files)
+			.append(",\"bytesRead\":").append(this.bytesRead)
+			.append(",\"filesPerSecond\":").append(String.format(Locale.ROOT, "%.1f", this.getFilesPerSecond()))
+			.append(",\"bytesPerSecond\":").append(String.format(Locale.ROOT, "%.1f", this.getBytesPerSecond()))
+			.append(",\"phases\":{");
+		boolean first = true;
+		for (Phase phase : Phase.values()) {
+			PhaseMetrics metrics = this.phases.get(phase);
+			json.append(first ? "\n" : ",\n").append('"').append(phase.name()).append("\":{\"count\":").append(metrics.getCount())
+				.append(",\"wallMicros\":").append(metrics.getWallNanos() / 1000)
+				.append(",\"totalMicros\":").append(metrics.getTotalNanos() / 1000)
+				.append(",\"meanMicros\":").append(metrics.getMeanNanos() / 1000)
+				.append(",\"p50Micros\":").append(metrics.getPercentileNanos(50) / 1000)
+				.append(",\"p90Micros\":").append(metrics.getPercentileNanos(90) / 1000)
+				.append(",\"p99Micros\":").append(metrics.getPercentileNanos(99) / 1000)
+				.append(",\"maxMicros\":").append(metrics.getMaxNanos() / 1000)
+				.append(",\"histogram\":[");
+			long[] counts = metrics.getBucketCounts();
+			boolean firstBucket = true;
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] > 0) {
+					json.append(firstBucket ? "" : ",").append("{\"upToMicros\":")
+						.append(PhaseMetrics.getBucketUpperBoundNanos(i) / 1000).append(",\"count\":").append(counts[i]).append('}');
+					firstBucket = false;
+				}
+			}
+			json.append("]}");
+			first = false;
+		}
+		json.append("\n}}\n");
+		try {
+			Files.writeString(file.toPath(), json, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new FileException("Can't write the metrics " + file + ".");
+		}
+	}
+
+	private static double perSecond(double amount, long nanos) {
+		return nanos == 0 ? 0 : amount * 1e9 / nanos;
+	}
+
+	private static String formatLatency(long nanos) {
+		String result;
+		if (nanos < 1_000_000) {
+			result = (nanos / 1000) + " us";
+		} else if (nanos < 1_000_000_000) {
+			result = String.format("%.1f ms", nanos / 1e6);
+		} else {
+			result = String.format("%.1f s", nanos / 1e9);
+		}
+		return result;
+	}
+}
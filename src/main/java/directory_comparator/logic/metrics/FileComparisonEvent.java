@@ -0,0 +1,28 @@
+package directory_comparator.logic.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for the comparison of a file that exists in both
+ * directories.
+ */
+@Name("directory_comparator.FileComparison")
+@Label("File Comparison")
+@Description("A file of the new folder compared with its counterpart in the old folder")
+@Category("Directory Comparator")
+public class FileComparisonEvent extends jdk.jfr.Event {
+
+	@Label("Path")
+	public String path;
+
+	@Label("Size")
+	@DataAmount
+	public long size;
+
+	@Label("Equal")
+	public boolean equal;
+}
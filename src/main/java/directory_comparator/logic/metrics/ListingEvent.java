@@ -0,0 +1,22 @@
+package directory_comparator.logic.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for the listing of a directory.
+ */
+@Name("directory_comparator.Listing")
+@Label("Folder Listing")
+@Description("A folder listed and the attributes of its entries read")
+@Category("Directory Comparator")
+public class ListingEvent extends jdk.jfr.Event {
+
+	@Label("Folder")
+	public String directory;
+
+	@Label("Entries")
+	public int entries;
+}
@@ -0,0 +1,135 @@
+package directory_comparator.logic.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The measurements of a phase of a comparison, which can be recorded from
+ * several threads at once without locking. Besides the number of operations
+ * and the time spent in them, it keeps a histogram of their latencies with
+ * buckets whose bounds are powers of two of microseconds, and the wall time
+ * from the start of the first operation to the end of the last one.
+ */
+public class PhaseMetrics {
+
+	private static final int BUCKETS = 40;
+
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final AtomicLong maxNanos = new AtomicLong();
+	private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong lastEnd = new AtomicLong(Long.MIN_VALUE);
+
+	/**
+	 * Constructor.
+	 */
+	public PhaseMetrics() {
+		for (int i = 0; i < BUCKETS; i++) {
+			this.buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records an operation.
+	 * @param start When the operation started, according to
+	 * {@link System#nanoTime()}.
+	 * @param end When the operation ended.
+	 */
+	public void record(long start, long end) {
+		long nanos = Math.max(0, end - start);
+		this.count.increment();
+		this.totalNanos.add(nanos);
+		this.buckets[bucket(nanos)].increment();
+		this.maxNanos.accumulateAndGet(nanos, Math::max);
+		this.firstStart.accumulateAndGet(start, Math::min);
+		this.lastEnd.accumulateAndGet(end, Math::max);
+	}
+
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	/**
+	 * Returns the time spent in the operations, adding up the time of the
+	 * operations that ran at the same time in different threads.
+	 * @return The time in nanoseconds.
+	 */
+	public long getTotalNanos() {
+		return this.totalNanos.sum();
+	}
+
+	/**
+	 * Returns the time from the start of the first operation to the end of
+	 * the last one.
+	 * @return The time in nanoseconds, which is 0 if there are no operations.
+	 */
+	public long getWallNanos() {
+		long start = this.firstStart.get();
+		long end = this.lastEnd.get();
+		return start == Long.MAX_VALUE ? 0 : end - start;
+	}
+
+	public long getMaxNanos() {
+		return this.maxNanos.get();
+	}
+
+	/**
+	 * Returns the average latency of the operations.
+	 * @return The latency in nanoseconds.
+	 */
+	public long getMeanNanos() {
+		long operations = this.getCount();
+		return operations == 0 ? 0 : this.getTotalNanos() / operations;
+	}
+
+	/**
+	 * Estimates a percentile of the latencies of the operations from the
+	 * histogram.
+	 * @param percentile A number between 0 and 100.
+	 * @return The upper bound of the bucket where the percentile falls, in
+	 * nanoseconds, which is never higher than the maximum latency.
+	 */
+	public long getPercentileNanos(double percentile) {
+		long[] counts = this.getBucketCounts();
+		long total = 0;
+		for (long bucketCount : counts) {
+			total = total + bucketCount;
+		}
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = counts[0];
+		int bucket = 0;
+		while (seen < rank && bucket < BUCKETS - 1) {
+			bucket++;
+			seen = seen + counts[bucket];
+		}
+		return total == 0 ? 0 : Math.min(getBucketUpperBoundNanos(bucket), this.getMaxNanos());
+	}
+
+	/**
+	 * Returns the number of operations in every bucket of the histogram.
+	 * @return The counts, from the fastest bucket to the slowest.
+	 */
+	public long[] getBucketCounts() {
+		long[] result = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			result[i] = this.buckets[i].sum();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the latency below which an operation falls in a bucket.
+	 * @param bucket The index of the bucket.
+	 * @return The latency in nanoseconds.
+	 */
+	public static long getBucketUpperBoundNanos(int bucket) {
+		return 1000L << bucket;
+	}
+
+	private static int bucket(long nanos) {
+		long micros = nanos / 1000;
+		int result = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+		return Math.min(result, BUCKETS - 1);
+	}
+}
@@ -0,0 +1,26 @@
+package directory_comparator.logic.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for the update of the shortcuts of the results
+ * directory at the end of a comparison.
+ */
+@Name("directory_comparator.Reconciliation")
+@Label("Results Folder Update")
+@Description("The shortcuts of the results folder updated to match the results")
+@Category("Directory Comparator")
+public class ReconciliationEvent extends jdk.jfr.Event {
+
+	@Label("Shortcuts Created")
+	public int created;
+
+	@Label("Shortcuts Deleted")
+	public int deleted;
+
+	@Label("Shortcuts Kept")
+	public int kept;
+}
@@ -0,0 +1,20 @@
+package directory_comparator.logic.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for the creation of a shortcut in the results
+ * directory.
+ */
+@Name("directory_comparator.Shortcut")
+@Label("Shortcut")
+@Description("A shortcut to a new or changed file created in the results folder")
+@Category("Directory Comparator")
+public class ShortcutEvent extends jdk.jfr.Event {
+
+	@Label("Target")
+	public String target;
+}
@@ -0,0 +1,248 @@
+package directory_comparator.logic.models;
+
+import directory_comparator.logic.PathFilter;
+import directory_comparator.logic.enums.ComparisonMode;
+import directory_comparator.logic.enums.ThreadKind;
+import directory_comparator.logic.strategies.StrategySelector;
+
+/**
+ * The settings that tune how a directory comparison is done.
+ */
+public class ComparisonOptions {
+
+	private int comparisonThreads = Runtime.getRuntime().availableProcessors();
+	private int listingThreads = Math.max(8, Runtime.getRuntime().availableProcessors());
+	private ThreadKind threadKind = ThreadKind.PLATFORM;
+	private int queueCapacity = 1024;
+	private ComparisonMode comparisonMode = ComparisonMode.STRICT;
+	private int sampledBlocks = 8;
+	private boolean verificationEnabled;
+	private boolean moveDetectionEnabled;
+	private StrategySelector strategySelector = StrategySelector.NONE;
+	private boolean digestCacheEnabled;
+	private long largeFileThreshold = 64L * 1024 * 1024;
+	private boolean shortcutsEnabled = true;
+	private boolean journalEnabled;
+	private boolean watchEnabled;
+	private boolean watchOldEnabled;
+	private PathFilter filter = PathFilter.NONE;
+	private long memoryBudget;
+	
+	/**
+	 * Returns the number of threads that compare the contents of files at
+	 * the same time.
+	 * @return The number of threads.
+	 */
+	public int getComparisonThreads() {
+		return comparisonThreads;
+	}
+	
+	public void setComparisonThreads(int comparisonThreads) {
+		this.comparisonThreads = Math.max(1, comparisonThreads);
+	}
+	
+	/**
+	 * Returns the maximum number of directories that are listed at the same
+	 * time. Listing on network file systems is bound by latency, so this can
+	 * be much higher than the number of processors.
+	 * @return The number of threads.
+	 */
+	public int getListingThreads() {
+		return listingThreads;
+	}
+	
+	public void setListingThreads(int listingThreads) {
+		this.listingThreads = Math.max(1, listingThreads);
+	}
+	
+	public ThreadKind getThreadKind() {
+		return threadKind;
+	}
+	
+	public void setThreadKind(ThreadKind threadKind) {
+		this.threadKind = threadKind;
+	}
+	
+	/**
+	 * Returns how many files can be waiting between two stages of the
+	 * comparison. When a queue is full, the stage that feeds it waits, so
+	 * memory use doesn't depend on the size of the directories.
+	 * @return The capacity of each queue.
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+	
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = Math.max(1, queueCapacity);
+	}
+	
+	public ComparisonMode getComparisonMode() {
+		return comparisonMode;
+	}
+	
+	public void setComparisonMode(ComparisonMode comparisonMode) {
+		this.comparisonMode = comparisonMode;
+	}
+	
+	/**
+	 * Returns the number of blocks read from the middle of every file in the
+	 * sampled mode, besides the first and the last ones.
+	 * @return The number of blocks.
+	 */
+	public int getSampledBlocks() {
+		return sampledBlocks;
+	}
+	
+	public void setSampledBlocks(int sampledBlocks) {
+		this.sampledBlocks = Math.max(0, sampledBlocks);
+	}
+	
+	/**
+	 * Tells whether, in the sampled mode, the files that are probably equal
+	 * are read completely once all the files have been sampled.
+	 * @return <code>true</code> if the files are verified.
+	 */
+	public boolean isVerificationEnabled() {
+		return verificationEnabled;
+	}
+	
+	public void setVerificationEnabled(boolean verificationEnabled) {
+		this.verificationEnabled = verificationEnabled;
+	}
+	
+	/**
+	 * Tells whether new and deleted files with the same contents are
+	 * reported as moved, once all the files have been compared.
+	 * @return <code>true</code> if moved files are detected.
+	 */
+	public boolean isMoveDetectionEnabled() {
+		return moveDetectionEnabled;
+	}
+	
+	public void setMoveDetectionEnabled(boolean moveDetectionEnabled) {
+		this.moveDetectionEnabled = moveDetectionEnabled;
+	}
+	
+	/**
+	 * Returns the rules that choose how every file is compared, instead of
+	 * the comparison mode.
+	 * @return The selector.
+	 */
+	public StrategySelector getStrategySelector() {
+		return strategySelector;
+	}
+	
+	public void setStrategySelector(StrategySelector strategySelector) {
+		this.strategySelector = strategySelector;
+	}
+	
+	/**
+	 * Tells whether the digests of the files whose contents are read are
+	 * saved in the results directory, so the next comparison of the same
+	 * directories doesn't have to read the files that haven't changed.
+	 * @return <code>true</code> if the digest cache is used.
+	 */
+	public boolean isDigestCacheEnabled() {
+		return digestCacheEnabled;
+	}
+	
+	public void setDigestCacheEnabled(boolean digestCacheEnabled) {
+		this.digestCacheEnabled = digestCacheEnabled;
+	}
+	
+	/**
+	 * Returns the size from which files are compared chunk by chunk, which
+	 * shows progress inside the file and lets the comparison be stopped in
+	 * the middle of it.
+	 * @return The size in bytes.
+	 */
+	public long getLargeFileThreshold() {
+		return largeFileThreshold;
+	}
+	
+	public void setLargeFileThreshold(long largeFileThreshold) {
+		this.largeFileThreshold = largeFileThreshold;
+	}
+	
+	/**
+	 * Tells whether shortcuts to the new and changed files are created in
+	 * the results directory. The report is always written.
+	 * @return <code>true</code> if shortcuts are created.
+	 */
+	public boolean isShortcutsEnabled() {
+		return shortcutsEnabled;
+	}
+	
+	public void setShortcutsEnabled(boolean shortcutsEnabled) {
+		this.shortcutsEnabled = shortcutsEnabled;
+	}
+	
+	/**
+	 * Tells whether the comparison keeps a journal in the results directory,
+	 * so if it's stopped or dies, the next comparison of the same
+	 * directories resumes it instead of starting over.
+	 * @return <code>true</code> if the journal is used.
+	 */
+	public boolean isJournalEnabled() {
+		return journalEnabled;
+	}
+	
+	public void setJournalEnabled(boolean journalEnabled) {
+		this.journalEnabled = journalEnabled;
+	}
+	
+	/**
+	 * Tells whether, after the comparison, the directories are watched and
+	 * the results updated as files change, until the comparison is stopped.
+	 * @return <code>true</code> if the directories are watched.
+	 */
+	public boolean isWatchEnabled() {
+		return watchEnabled;
+	}
+	
+	public void setWatchEnabled(boolean watchEnabled) {
+		this.watchEnabled = watchEnabled;
+	}
+	
+	/**
+	 * Tells whether the old directory is watched too, besides the new one.
+	 * @return <code>true</code> if both directories are watched.
+	 */
+	public boolean isWatchOldEnabled() {
+		return watchOldEnabled;
+	}
+	
+	public void setWatchOldEnabled(boolean watchOldEnabled) {
+		this.watchOldEnabled = watchOldEnabled;
+	}
+	
+	/**
+	 * Returns the rules that decide which files and directories are skipped.
+	 * Skipped directories aren't even listed.
+	 * @return The filter.
+	 */
+	public PathFilter getFilter() {
+		return filter;
+	}
+	
+	public void setFilter(PathFilter filter) {
+		this.filter = filter;
+	}
+	
+	/**
+	 * Returns the memory that the listings of the directories being walked
+	 * can take. The listings of directories too big for it are sorted in
+	 * temporary files in the results directory. It only covers the listings:
+	 * the index of the directories, the detection of moved files and the
+	 * digest cache still take memory that grows with the directories.
+	 * @return The memory in bytes or 0 if it isn't limited.
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+	
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = Math.max(0, memoryBudget);
+	}
+}
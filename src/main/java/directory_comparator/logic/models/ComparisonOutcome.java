@@ -0,0 +1,81 @@
+package directory_comparator.logic.models;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.EntryStatus;
+
+/**
+ * A file that has gone through the comparison, with everything that has
+ * been found out about it.
+ */
+public class ComparisonOutcome {
+
+	private final EntryStatus status;
+	private final FileEntry oldEntry;
+	private final FileEntry newEntry;
+	private boolean changed;
+	private FileException error;
+	private boolean resumed;
+	
+	/**
+	 * Constructor.
+	 * @param status The classification of the file.
+	 * @param oldEntry The file in the old directory, if any.
+	 * @param newEntry The file in the new directory, if any.
+	 */
+	public ComparisonOutcome(EntryStatus status, FileEntry oldEntry, FileEntry newEntry) {
+		this.status = status;
+		this.oldEntry = oldEntry;
+		this.newEntry = newEntry;
+	}
+	
+	public EntryStatus getStatus() {
+		return status;
+	}
+	
+	public FileEntry getOldEntry() {
+		return oldEntry;
+	}
+	
+	public FileEntry getNewEntry() {
+		return newEntry;
+	}
+	
+	/**
+	 * Tells whether the contents of a file that exists in both directories
+	 * are different.
+	 * @return <code>true</code> if the file has changed.
+	 */
+	public boolean isChanged() {
+		return changed;
+	}
+	
+	public void setChanged(boolean changed) {
+		this.changed = changed;
+	}
+	
+	/**
+	 * Returns the error that happened while processing the file.
+	 * @return The error or <code>null</code> if everything went well.
+	 */
+	public FileException getError() {
+		return error;
+	}
+	
+	public void setError(FileException error) {
+		this.error = error;
+	}
+	
+	/**
+	 * Tells whether the file belongs to a directory that had already been
+	 * completed by an interrupted run that is being resumed, so it hasn't
+	 * been compared again and its results have already been restored.
+	 * @return <code>true</code> if the file has been skipped.
+	 */
+	public boolean isResumed() {
+		return resumed;
+	}
+	
+	public void setResumed(boolean resumed) {
+		this.resumed = resumed;
+	}
+}
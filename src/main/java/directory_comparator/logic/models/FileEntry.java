@@ -0,0 +1,149 @@
+package directory_comparator.logic.models;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A file or directory found while listing a directory, together with the
+ * metadata read when it was listed, so it doesn't have to be read again.
+ * Its location is kept as the node of its directory in a {@link PathIndex}
+ * and its name, and its paths are only built when they are asked for.
+ */
+public class FileEntry {
+
+	private final Path root;
+	private final PathIndex pathIndex;
+	private final int directoryNode;
+	private final String name;
+	private final boolean directory;
+	private final long size;
+	private final long lastModified;
+	private final Object fileKey;
+	
+	/**
+	 * Constructor.
+	 * @param root The compared directory the file belongs to.
+	 * @param pathIndex The index of the directories of the comparison.
+	 * @param directoryNode The node of the directory of the file.
+	 * @param name The name of the file.
+	 * @param attributes The attributes read when the file was listed.
+	 */
+	public FileEntry(Path root, PathIndex pathIndex, int directoryNode, String name, BasicFileAttributes attributes) {
+		this.root = root;
+		this.pathIndex = pathIndex;
+		this.directoryNode = directoryNode;
+		this.name = name;
+		this.directory = attributes.isDirectory();
+		this.size = attributes.size();
+		this.lastModified = attributes.lastModifiedTime().toMillis();
+		this.fileKey = attributes.fileKey();
+	}
+	
+	/**
+	 * Creates a regular file whose attributes have been restored from a
+	 * previous run instead of read from the file system.
+	 * @param root The compared directory the file belongs to.
+	 * @param pathIndex The index of the directories of the comparison.
+	 * @param directoryNode The node of the directory of the file.
+	 * @param name The name of the file.
+	 * @param size The size of the file.
+	 */
+	public FileEntry(Path root, PathIndex pathIndex, int directoryNode, String name, long size) {
+		this.root = root;
+		this.pathIndex = pathIndex;
+		this.directoryNode = directoryNode;
+		this.name = name;
+		this.directory = false;
+		this.size = size;
+		this.lastModified = 0;
+		this.fileKey = null;
+	}
+
+	/**
+	 * Creates a file or directory whose attributes have been read from a
+	 * snapshot or a spilled listing of its directory instead of from the
+	 * file system.
+	 * @param root The compared directory the file belongs to.
+	 * @param pathIndex The index of the directories of the comparison.
+	 * @param directoryNode The node of the directory of the file.
+	 * @param name The name of the file.
+	 * @param directory <code>true</code> if it's a directory.
+	 * @param size The size of the file.
+	 * @param lastModified The modification time of the file, in milliseconds.
+	 * @param fileKey The file key or <code>null</code> if it isn't known.
+	 */
+	public FileEntry(
+		Path root, PathIndex pathIndex, int directoryNode, String name, boolean directory, long size, long lastModified,
+		Object fileKey
+	) {
+		this.root = root;
+		this.pathIndex = pathIndex;
+		this.directoryNode = directoryNode;
+		this.name = name;
+		this.directory = directory;
+		this.size = size;
+		this.lastModified = lastModified;
+		this.fileKey = fileKey;
+	}
+
+	/**
+	 * Returns the path of the file.
+	 * @return The path, built from the root.
+	 */
+	public Path getPath() {
+		return this.pathIndex.resolve(this.root, this.directoryNode, this.name);
+	}
+	
+	/**
+	 * Returns the path of the file relative to the compared directory.
+	 * @return The relative path, using <code>/</code> as separator.
+	 */
+	public String getRelativePath() {
+		return this.pathIndex.getRelativePath(this.directoryNode, this.name);
+	}
+	
+	public Path getRoot() {
+		return root;
+	}
+	
+	public PathIndex getPathIndex() {
+		return pathIndex;
+	}
+	
+	/**
+	 * Returns the node of the directory that contains the file.
+	 * @return The node in the {@link PathIndex}.
+	 */
+	public int getDirectoryNode() {
+		return directoryNode;
+	}
+	
+	/**
+	 * Returns the name of the file.
+	 * @return The last segment of the relative path.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	public boolean isDirectory() {
+		return directory;
+	}
+	
+	public long getSize() {
+		return size;
+	}
+	
+	public long getLastModified() {
+		return lastModified;
+	}
+	
+	/**
+	 * Returns the object that uniquely identifies the file in its file system.
+	 * @return The file key or <code>null</code> if the file system doesn't
+	 * provide one.
+	 */
+	public Object getFileKey() {
+		return fileKey;
+	}
+}
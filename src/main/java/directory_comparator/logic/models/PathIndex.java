@@ -0,0 +1,243 @@
+package directory_comparator.logic.models;
+
+import java.nio.file.Path;
+
+/**
+ * A compact index of the directories found while comparing two directory
+ * trees. Every directory is a node identified by an <code>int</code> that
+ * stores only its parent node and the identifier of its name, in primitive
+ * arrays, and every distinct name is stored once. The same relative
+ * directory gets the same node on both sides, so a file can be identified by
+ * the node of its directory and its own name, without storing the path of
+ * its directory again and again.
+ * <p>
+ * The names and the children of every node are found through open addressing
+ * tables of primitives, so no key or value is boxed.
+ * <p>
+ * Adding nodes is synchronized. Reading is not, but a node can only be read
+ * by a thread that got its identifier from the thread that added it, which
+ * always happens through some synchronization.
+ */
+public class PathIndex {
+
+	/**
+	 * The node of the compared directories themselves.
+	 */
+	public static final int ROOT = 0;
+
+	private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+	private int[] segmentSlots = new int[512];
+	private long[] childKeys = new long[2048];
+	private int[] childNodes = new int[2048];
+	private volatile String[] segments = new String[256];
+	private volatile int[] parents = new int[1024];
+	private volatile int[] names = new int[1024];
+	private int segmentCount;
+	private int nodeCount = 1;
+
+	/**
+	 * Returns the node of a subdirectory, adding it if it isn't in the index
+	 * yet.
+	 * @param parent The node of the parent directory.
+	 * @param name The name of the subdirectory.
+	 * @return The node of the subdirectory.
+	 */
+	public synchronized int child(int parent, String name) {
+		int segment = this.segment(name);
+		long key = ((long) parent << 32) | segment;
+		int mask = this.childNodes.length - 1;
+		int slot = hash(key) & mask;
+		while (this.childNodes[slot] != ROOT && this.childKeys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		int result = this.childNodes[slot];
+		if (result == ROOT) {
+			if (this.nodeCount == this.parents.length) {
+				int[] newParents = new int[this.nodeCount * 2];
+				int[] newNames = new int[this.nodeCount * 2];
+				System.arraycopy(this.parents, 0, newParents, 0, this.nodeCount);
+				System.arraycopy(this.names, 0, newNames, 0, this.nodeCount);
+				this.names = newNames;
+				this.parents = newParents;
+			}
+			result = this.nodeCount;
+			this.parents[result] = parent;
+			this.names[result] = segment;
+			this.nodeCount++;
+			this.childKeys[slot] = key;
+			this.childNodes[slot] = result;
+			if (this.nodeCount * 2 > this.childNodes.length) {
+				this.growChildren();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the node of a directory given its path relative to the root,
+	 * adding the directories that aren't in the index yet.
+	 * @param relativePath The relative path, using <code>/</code> as separator.
+	 * @return The node.
+	 */
+	public int find(String relativePath) {
+		int result = ROOT;
+		if (!relativePath.isEmpty()) {
+			for (String name : relativePath.split("/")) {
+				result = this.child(result, name);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of directories in the index, including the root.
+	 * @return The number of nodes.
+	 */
+	public synchronized int size() {
+		return this.nodeCount;
+	}
+
+	/**
+	 * Returns the name of a directory.
+	 * @param node The node of the directory.
+	 * @return The name, which is empty for the root.
+	 */
+	public String getName(int node) {
+		return node == ROOT ? "" : this.segments[this.names[node]];
+	}
+
+	/**
+	 * Returns the parent of a directory.
+	 * @param node The node of the directory.
+	 * @return The node of the parent, which is the root itself for the root.
+	 */
+	public int getParent(int node) {
+		return this.parents[node];
+	}
+
+	/**
+	 * Returns the path of a directory relative to the root.
+	 * @param node The node of the directory.
+	 * @return The relative path, using <code>/</code> as separator, which is
+	 * empty for the root.
+	 */
+	public String getRelativePath(int node) {
+		StringBuilder result = new StringBuilder();
+		this.appendRelativePath(node, result);
+		return result.toString();
+	}
+
+	/**
+	 * Returns the path of a file relative to the root.
+	 * @param directory The node of the directory of the file.
+	 * @param name The name of the file.
+	 * @return The relative path, using <code>/</code> as separator.
+	 */
+	public String getRelativePath(int directory, String name) {
+		StringBuilder result = new StringBuilder();
+		this.appendRelativePath(directory, result);
+		if (result.length() > 0) {
+			result.append('/');
+		}
+		return result.append(name).toString();
+	}
+
+	/**
+	 * Resolves a file against one of the compared directories.
+	 * @param root The compared directory.
+	 * @param directory The node of the directory of the file.
+	 * @param name The name of the file.
+	 * @return The path of the file.
+	 */
+	public Path resolve(Path root, int directory, String name) {
+		Path result = root;
+		if (directory != ROOT) {
+			result = this.resolve(root, this.getParent(directory), this.getName(directory));
+		}
+		return result.resolve(name);
+	}
+
+	private void appendRelativePath(int node, StringBuilder builder) {
+		if (node != ROOT) {
+			int parent = this.getParent(node);
+			this.appendRelativePath(parent, builder);
+			if (parent != ROOT) {
+				builder.append('/');
+			}
+			builder.append(this.getName(node));
+		}
+	}
+
+	/**
+	 * Returns the identifier of a name, adding it if it isn't stored yet. The
+	 * table keeps the identifier plus one, so that zero marks a free slot.
+	 */
+	private int segment(String name) {
+		int mask = this.segmentSlots.length - 1;
+		int slot = hash(name.hashCode()) & mask;
+		while (this.segmentSlots[slot] != 0 && !this.segments[this.segmentSlots[slot] - 1].equals(name)) {
+			slot = (slot + 1) & mask;
+		}
+		int result = this.segmentSlots[slot] - 1;
+		if (result < 0) {
+			if (this.segmentCount == this.segments.length) {
+				String[] newSegments = new String[this.segmentCount * 2];
+				System.arraycopy(this.segments, 0, newSegments, 0, this.segmentCount);
+				this.segments = newSegments;
+			}
+			result = this.segmentCount;
+			this.segments[result] = name;
+			this.segmentCount++;
+			this.segmentSlots[slot] = result + 1;
+			if (this.segmentCount * 2 > this.segmentSlots.length) {
+				this.growSegments();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Doubles the table of the children, placing every node again.
+	 */
+	private void growChildren() {
+		long[] oldKeys = this.childKeys;
+		int[] oldNodes = this.childNodes;
+		this.childKeys = new long[oldKeys.length * 2];
+		this.childNodes = new int[oldNodes.length * 2];
+		int mask = this.childNodes.length - 1;
+		for (int i = 0; i < oldNodes.length; i++) {
+			if (oldNodes[i] != ROOT) {
+				int slot = hash(oldKeys[i]) & mask;
+				while (this.childNodes[slot] != ROOT) {
+					slot = (slot + 1) & mask;
+				}
+				this.childKeys[slot] = oldKeys[i];
+				this.childNodes[slot] = oldNodes[i];
+			}
+		}
+	}
+
+	/**
+	 * Doubles the table of the names, placing every name again.
+	 */
+	private void growSegments() {
+		this.segmentSlots = new int[this.segmentSlots.length * 2];
+		int mask = this.segmentSlots.length - 1;
+		for (int segment = 0; segment < this.segmentCount; segment++) {
+			int slot = hash(this.segments[segment].hashCode()) & mask;
+			while (this.segmentSlots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			this.segmentSlots[slot] = segment + 1;
+		}
+	}
+
+	/**
+	 * Spreads the bits of a key, so that similar keys don't fall in
+	 * neighbouring slots.
+	 */
+	private static int hash(long key) {
+		return (int) ((key * HASH_MULTIPLIER) >>> 32);
+	}
+}
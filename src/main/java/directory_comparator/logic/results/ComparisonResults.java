@@ -0,0 +1,131 @@
+package directory_comparator.logic.results;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+
+/**
+ * The summary of a comparison: how many results of every kind have been
+ * found and the first few files of every kind, so its memory use doesn't
+ * depend on how many results there are. The complete results are in the
+ * report written by {@link ReportResultSink}.
+ * <p>
+ * The files are kept as the node of their directory in the
+ * {@link PathIndex} of the comparison and their name, and their paths are
+ * only built when they are asked for.
+ * <p>
+ * While directories are being watched, results are added and removed from
+ * one thread and read from another, so all the methods are synchronized.
+ */
+public class ComparisonResults implements ResultSink {
+
+	/**
+	 * The maximum number of files of every kind that are kept.
+	 */
+	public static final int PREVIEW_SIZE = 1000;
+	
+	private final Map<ResultKind, Preview> previews = new EnumMap<>(ResultKind.class);
+	
+	/**
+	 * Constructor.
+	 */
+	public ComparisonResults() {
+		for (ResultKind kind : ResultKind.values()) {
+			this.previews.put(kind, new Preview());
+		}
+	}
+	
+	@Override
+	public synchronized void accept(ResultKind kind, FileEntry entry) {
+		this.previews.get(kind).add(entry);
+	}
+	
+	/**
+	 * Removes a result that isn't valid anymore. A file removed from the
+	 * preview isn't replaced by a file that didn't fit in it.
+	 * @param kind The kind of result.
+	 * @param entry The file.
+	 */
+	public synchronized void remove(ResultKind kind, FileEntry entry) {
+		this.previews.get(kind).remove(entry);
+	}
+	
+	/**
+	 * Returns the number of results of a kind.
+	 * @param kind The kind.
+	 * @return The number of results.
+	 */
+	public synchronized int getCount(ResultKind kind) {
+		return this.previews.get(kind).count;
+	}
+	
+	/**
+	 * Returns the absolute paths of the first results of a kind.
+	 * @param kind The kind.
+	 * @return At most {@link #PREVIEW_SIZE} paths.
+	 */
+	public synchronized List<String> getPreview(ResultKind kind) {
+		Preview preview = this.previews.get(kind);
+		List<String> result = new ArrayList<>(preview.size());
+		for (int i = 0; i < preview.size(); i++) {
+			result.add(preview.entry.getPathIndex().resolve(
+				preview.entry.getRoot(), preview.directories[i], preview.names[i]
+			).toAbsolutePath().toString());
+		}
+		return result;
+	}
+	
+	/**
+	 * The first files of a kind.
+	 */
+	private static class Preview {
+		
+		private int count;
+		private int size;
+		private int[] directories = new int[16];
+		private String[] names = new String[16];
+		
+		/**
+		 * Any of the files, which tells the root and the index of all of them.
+		 */
+		private FileEntry entry;
+		
+		private void add(FileEntry entry) {
+			if (this.size < PREVIEW_SIZE) {
+				if (this.size == this.names.length) {
+					this.directories = Arrays.copyOf(this.directories, this.size * 2);
+					this.names = Arrays.copyOf(this.names, this.size * 2);
+				}
+				this.directories[this.size] = entry.getDirectoryNode();
+				this.names[this.size] = entry.getName();
+				this.entry = entry;
+				this.size++;
+			}
+			this.count++;
+		}
+		
+		private void remove(FileEntry entry) {
+			int index = 0;
+			while (index < this.size
+				&& (this.directories[index] != entry.getDirectoryNode() || !this.names[index].equals(entry.getName()))) {
+				index++;
+			}
+			if (index < this.size) {
+				System.arraycopy(this.directories, index + 1, this.directories, index, this.size - index - 1);
+				System.arraycopy(this.names, index + 1, this.names, index, this.size - index - 1);
+				this.size--;
+			}
+			this.count = Math.max(0, this.count - 1);
+		}
+		
+		private int size() {
+			return this.size;
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package directory_comparator.logic.results;
+
+import java.util.Arrays;
+import java.util.List;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.models.FileEntry;
+
+/**
+ * Passes every result to several sinks.
+ */
+public class CompositeResultSink implements ResultSink {
+
+	private final List<ResultSink> sinks;
+	
+	/**
+	 * Constructor.
+	 * @param sinks The sinks, which receive the results in this order.
+	 */
+	public CompositeResultSink(ResultSink... sinks) {
+		this.sinks = Arrays.asList(sinks);
+	}
+
+	@Override
+	public void accept(ResultKind kind, FileEntry entry) throws FileException {
+		for (ResultSink sink : this.sinks) {
+			sink.accept(kind, entry);
+		}
+	}
+
+	@Override
+	public void acceptError(FileEntry entry, FileException error) throws FileException {
+		for (ResultSink sink : this.sinks) {
+			sink.acceptError(entry, error);
+		}
+	}
+
+	@Override
+	public void acceptMove(FileEntry oldEntry, FileEntry newEntry) throws FileException {
+		for (ResultSink sink : this.sinks) {
+			sink.acceptMove(oldEntry, newEntry);
+		}
+	}
+
+	/**
+	 * Closes all the sinks, even if some of them fail.
+	 */
+	@Override
+	public void close() throws FileException {
+		FileException error = null;
+		for (ResultSink sink : this.sinks) {
+			try {
+				sink.close();
+			} catch (FileException e) {
+				error = e;
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package directory_comparator.logic.results;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.models.FileEntry;
+
+/**
+ * Writes every result as a line of comma-separated values, after a header
+ * line:
+ * <pre>
+ * kind,path,size,error,from
+ * CHANGED,docs/readme.txt,1024,,
+ * ERROR,docs/locked.txt,1024,Can't read the file.,
+ * MOVED,docs/old/readme.txt,1024,,docs/readme.txt
+ * </pre>
+ * The last value is the path in the old directory of a moved file.
+ * Values that contain commas, quotes or line breaks are quoted.
+ */
+public class CsvResultSink implements ResultSink {
+
+	private final Writer writer;
+
+	/**
+	 * Writes the header.
+	 * @param writer Where to write the results. It's closed with the sink.
+	 * @throws FileException If the header can't be written.
+	 */
+	public CsvResultSink(Writer writer) throws FileException {
+		this.writer = writer;
+		try {
+			this.writer.write("kind,path,size,error,from\n");
+		} catch (IOException e) {
+			throw new FileException("Can't write the results.");
+		}
+	}
+
+	@Override
+	public void accept(ResultKind kind, FileEntry entry) throws FileException {
+		try {
+			this.writer.write(kind.name() + "," + quote(entry.getRelativePath()) + "," + entry.getSize() + ",,\n");
+		} catch (IOException e) {
+			throw new FileException("Can't write the results.");
+		}
+	}
+
+	@Override
+	public void acceptError(FileEntry entry, FileException error) throws FileException {
+		try {
+			this.writer.write(ResultKind.ERROR.name() + "," + quote(entry.getRelativePath()) + "," + entry.getSize()
+				+ "," + quote(String.valueOf(error.getMessage())) + ",\n");
+		} catch (IOException e) {
+			throw new FileException("Can't write the results.");
+		}
+	}
+
+	@Override
+	public void acceptMove(FileEntry oldEntry, FileEntry newEntry) throws FileException {
+		try {
+			this.writer.write(ResultKind.MOVED.name() + "," + quote(newEntry.getRelativePath()) + "," + newEntry.getSize()
+				+ ",," + quote(oldEntry.getRelativePath()) + "\n");
+		} catch (IOException e) {
+			throw new FileException("Can't write the results.");
+		}
+	}
+
+	@Override
+	public void close() throws FileException {
+		try {
+			this.writer.close();
+		} catch (IOException e) {
+			throw new FileException("Can't write the results.");
+		}
+	}
+
+	private static String quote(String value) {
+		String result;
+		if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+			result = "\"" + value.replace("\"", "\"\"") + "\"";
+		} else {
+			result = value;
+		}
+		return result;
+	}
+}
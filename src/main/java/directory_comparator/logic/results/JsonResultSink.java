@@ -0,0 +1,92 @@
+package directory_comparator.logic.results;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.Json;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.models.FileEntry;
+
+/**
+ * Writes the results as a single JSON document, streaming every result as
+ * soon as it's found:
+ * <pre>
+ * {"old":"/a","new":"/b","results":[
+ * {"kind":"CHANGED","path":"docs/readme.txt","size":1024},
+ * {"kind":"ERROR","path":"docs/locked.txt","size":1024,"error":"..."},
+ * {"kind":"MOVED","path":"docs/old/readme.txt","size":1024,"from":"docs/readme.txt"}
+ * ]}
+ * </pre>
+ */
+public class JsonResultSink implements ResultSink {
+
+	private final Writer writer;
+	private boolean empty = true;
+
+	/**
+	 * Writes the beginning of the document.
+	 * @param writer Where to write the results. It's closed with the sink.
+	 * @param oldDirectory The old directory.
+	 * @param newDirectory The new directory.
+	 * @throws FileException If the document can't be written.
+	 */
+	public JsonResultSink(Writer writer, File oldDirectory, File newDirectory) throws FileException {
+		this.writer = writer;
+		try {
+			this.writer.write("{\"old\":" + Json.quote(oldDirectory.getAbsolutePath())
+				+ ",\"new\":" + Json.quote(newDirectory.getAbsolutePath()) + ",\"results\":[");
+		} catch (IOException e) {
+			throw new FileException("Can't write the results.");
+		}
+	}
+
+	@Override
+	public void accept(ResultKind kind, FileEntry entry) throws FileException {
+		try {
+			this.writer.write((this.empty ? "\n" : ",\n") + "{\"kind\":\"" + kind.name() + "\",\"path\":"
+				+ Json.quote(entry.getRelativePath()) + ",\"size\":" + entry.getSize() + "}");
+			this.empty = false;
+		} catch (IOException e) {
+			throw new FileException("Can't write the results.");
+		}
+	}
+
+	@Override
+	public void acceptError(FileEntry entry, FileException error) throws FileException {
+		try {
+			this.writer.write((this.empty ? "\n" : ",\n") + "{\"kind\":\"" + ResultKind.ERROR.name() + "\",\"path\":"
+				+ Json.quote(entry.getRelativePath()) + ",\"size\":" + entry.getSize()
+				+ ",\"error\":" + Json.quote(String.valueOf(error.getMessage())) + "}");
+			this.empty = false;
+		} catch (IOException e) {
+			throw new FileException("Can't write the results.");
+		}
+	}
+
+	@Override
+	public void acceptMove(FileEntry oldEntry, FileEntry newEntry) throws FileException {
+		try {
+			this.writer.write((this.empty ? "\n" : ",\n") + "{\"kind\":\"" + ResultKind.MOVED.name() + "\",\"path\":"
+				+ Json.quote(newEntry.getRelativePath()) + ",\"size\":" + newEntry.getSize()
+				+ ",\"from\":" + Json.quote(oldEntry.getRelativePath()) + "}");
+			this.empty = false;
+		} catch (IOException e) {
+			throw new FileException("Can't write the results.");
+		}
+	}
+
+	/**
+	 * Ends the document and closes the writer.
+	 */
+	@Override
+	public void close() throws FileException {
+		try {
+			this.writer.write("\n]}\n");
+			this.writer.close();
+		} catch (IOException e) {
+			throw new FileException("Can't write the results.");
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package directory_comparator.logic.results;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.FileManager;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.listeners.ComparisonListener;
+import directory_comparator.logic.models.FileEntry;
+
+/**
+ * Finds the files that have been moved or renamed, which would otherwise be
+ * reported twice: as new in the new directory and as deleted in the old
+ * one. The new and deleted files are held back until all the files have
+ * been compared, sorted by size in temporary files when there are many, see
+ * {@link SizeSortedEntries}, and the rest of the results are passed on at
+ * once.
+ * <p>
+ * {@link #detectMoves(ComparisonListener)} then matches new and deleted
+ * files by size, which is known without reading them. The files whose size
+ * doesn't collide with a file of the other directory are passed on first,
+ * as new or deleted, and only the files whose size collides are read to
+ * compare their digests. A new file with the same digest as a deleted one is
+ * passed on as moved, preferring a deleted file with the same name if
+ * there are several. Empty files are never matched, since they all have the
+ * same contents. If the moves aren't detected, the files held back are
+ * passed on as new or deleted when the sink is closed.
+ */
+public class MoveResultSink implements ResultSink {
+
+	private final ResultSink sink;
+	private final FileManager fileManager;
+	private final SizeSortedEntries heldEntries;
+	private boolean passedOn;
+	private volatile int candidates;
+	private volatile int readCandidates;
+
+	/**
+	 * Constructor.
+	 * @param sink The sink that receives the results.
+	 * @param fileManager The object that reads the digests of the files.
+	 */
+	public MoveResultSink(ResultSink sink, FileManager fileManager) {
+		this.sink = sink;
+		this.fileManager = fileManager;
+		this.heldEntries = new SizeSortedEntries(fileManager.getResultsDirectory().toPath(), fileManager.getPathIndex());
+	}
+
+	@Override
+	public void accept(ResultKind kind, FileEntry entry) throws FileException {
+		if ((kind == ResultKind.NEW || kind == ResultKind.DELETED) && entry.getSize() > 0) {
+			this.heldEntries.add(kind == ResultKind.NEW, entry);
+		} else {
+			this.sink.accept(kind, entry);
+		}
+	}
+
+	@Override
+	public void acceptError(FileEntry entry, FileException error) throws FileException {
+		this.sink.acceptError(entry, error);
+	}
+
+	@Override
+	public void acceptMove(FileEntry oldEntry, FileEntry newEntry) throws FileException {
+		this.sink.acceptMove(oldEntry, newEntry);
+	}
+
+	/**
+	 * Returns the number of new and deleted files that have to be read
+	 * because their size collides with a file of the other directory.
+	 * @return The number of files, which is 0 until the detection starts.
+	 */
+	public int getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * Returns the number of candidates read so far.
+	 * @return The number of files.
+	 */
+	public int getReadCandidates() {
+		return readCandidates;
+	}
+
+	/**
+	 * Matches the new and deleted files received, once all the files have
+	 * been compared, and passes them on. The files held back are read twice:
+	 * first to pass on the ones whose size doesn't collide and count the
+	 * others, and then to match the others. If the detection is stopped,
+	 * the moves found so far are still reported.
+	 * @param listener Told when the detection starts and after every file
+	 * read. It also decides when the detection stops.
+	 * @throws FileException If the files held back can't be read or the sink
+	 * fails.
+	 */
+	public void detectMoves(ComparisonListener listener) throws FileException {
+		this.passedOn = true;
+		int[] candidateCount = new int[1];
+		this.heldEntries.forEachSize((size, added, deleted) -> {
+			if (added.isEmpty() || deleted.isEmpty()) {
+				this.passOn(added, deleted);
+			} else {
+				candidateCount[0] += added.size() + deleted.size();
+			}
+		});
+		if (candidateCount[0] > 0) {
+			this.candidates = candidateCount[0];
+			listener.onMoveDetectionStarted(candidateCount[0]);
+			this.heldEntries.forEachSize((size, added, deleted) -> {
+				if (!added.isEmpty() && !deleted.isEmpty()) {
+					this.match(deleted, added, listener);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Passes on the new and deleted files held back, unless the moves have
+	 * been detected, and closes the sink that receives them.
+	 */
+	@Override
+	public void close() throws FileException {
+		try {
+			if (!this.passedOn) {
+				this.passedOn = true;
+				this.heldEntries.forEachSize((size, added, deleted) -> this.passOn(added, deleted));
+			}
+		} finally {
+			try {
+				this.heldEntries.close();
+			} finally {
+				this.sink.close();
+			}
+		}
+	}
+
+	/**
+	 * Passes on files as new or deleted.
+	 */
+	private void passOn(List<FileEntry> added, List<FileEntry> deleted) throws FileException {
+		for (FileEntry entry : added) {
+			this.sink.accept(ResultKind.NEW, entry);
+		}
+		for (FileEntry entry : deleted) {
+			this.sink.accept(ResultKind.DELETED, entry);
+		}
+	}
+
+	/**
+	 * Matches new and deleted files of the same size by their digests and
+	 * passes them on, the new files that match a deleted one as moved. Once
+	 * the detection is stopped, the files left aren't read.
+	 */
+	private void match(List<FileEntry> deleted, List<FileEntry> added, ComparisonListener listener) throws FileException {
+		Map<ByteBuffer, List<FileEntry>> deletedByDigest = new HashMap<>();
+		for (FileEntry entry : deleted) {
+			if (!listener.isCancelled()) {
+				this.digest(entry, true, listener).ifPresent(
+					digest -> deletedByDigest.computeIfAbsent(digest, key -> new ArrayList<>()).add(entry)
+				);
+			}
+		}
+		Set<FileEntry> movedEntries = new HashSet<>();
+		for (FileEntry entry : added) {
+			FileEntry oldEntry = null;
+			if (!listener.isCancelled() && !deletedByDigest.isEmpty()) {
+				Optional<ByteBuffer> digest = this.digest(entry, false, listener);
+				List<FileEntry> sameContents = digest.isPresent() ? deletedByDigest.get(digest.get()) : null;
+				if (sameContents != null) {
+					oldEntry = sameContents.get(0);
+					for (FileEntry candidate : sameContents) {
+						if (candidate.getName().equals(entry.getName())) {
+							oldEntry = candidate;
+						}
+					}
+					sameContents.remove(oldEntry);
+					if (sameContents.isEmpty()) {
+						deletedByDigest.remove(digest.get());
+					}
+					movedEntries.add(oldEntry);
+				}
+			}
+			if (oldEntry == null) {
+				this.sink.accept(ResultKind.NEW, entry);
+			} else {
+				this.sink.acceptMove(oldEntry, entry);
+			}
+		}
+		for (FileEntry entry : deleted) {
+			if (!movedEntries.contains(entry)) {
+				this.sink.accept(ResultKind.DELETED, entry);
+			}
+		}
+	}
+
+	/**
+	 * Reads the digest of a file.
+	 * @return The digest or nothing if the file can't be read, so it's
+	 * reported as new or deleted.
+	 */
+	private Optional<ByteBuffer> digest(FileEntry entry, boolean old, ComparisonListener listener) {
+		Optional<ByteBuffer> result;
+		try {
+			result = Optional.of(ByteBuffer.wrap(this.fileManager.getDigest(entry, old)));
+		} catch (FileException e) {
+			result = Optional.empty();
+		}
+		this.readCandidates++;
+		listener.onWaiting();
+		return result;
+	}
+}
@@ -0,0 +1,61 @@
+package directory_comparator.logic.results;
+
+import directory_comparator.logic.enums.ResultKind;
+
+/**
+ * A result read back from a report written by {@link ReportResultSink}.
+ */
+public class ReportEntry {
+
+	private final ResultKind kind;
+	private final String path;
+	private final long size;
+	private final String error;
+	private final String from;
+
+	/**
+	 * Constructor.
+	 * @param kind The kind of result.
+	 * @param path The path of the file relative to the compared directories.
+	 * @param size The size of the file.
+	 * @param error Why the file couldn't be compared or <code>null</code>.
+	 * @param from The path of a moved file in the old directory or
+	 * <code>null</code>.
+	 */
+	public ReportEntry(ResultKind kind, String path, long size, String error, String from) {
+		this.kind = kind;
+		this.path = path;
+		this.size = size;
+		this.error = error;
+		this.from = from;
+	}
+
+	public ResultKind getKind() {
+		return kind;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns why the file couldn't be compared.
+	 * @return The reason or <code>null</code> if the result isn't an error.
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * Returns where a moved file was in the old directory.
+	 * @return The path relative to the old directory or <code>null</code> if
+	 * the result isn't a move.
+	 */
+	public String getFrom() {
+		return from;
+	}
+}
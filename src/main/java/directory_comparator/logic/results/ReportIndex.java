@@ -0,0 +1,331 @@
+package directory_comparator.logic.results;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.Json;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.listeners.ReportScanListener;
+
+/**
+ * Random access to the results of a report written by
+ * {@link ReportResultSink}, so they can be browsed whatever their number.
+ * <p>
+ * Opening the index reads the report once and keeps, for every result, only
+ * where its line starts, how long it is and the size of its file, grouped by
+ * kind. Results are read back in pages of consecutive results of the same
+ * kind, and the last pages read are cached, so scrolling through them only
+ * reads the part of the report that is shown.
+ */
+public class ReportIndex {
+
+	private static final int PAGE_SIZE = 256;
+	private static final int CACHED_PAGES = 64;
+
+	/**
+	 * The largest part of the report that is read at once.
+	 */
+	private static final int WINDOW_SIZE = 1024 * 1024;
+
+	private final File reportFile;
+	private final FileChannel channel;
+	private final Map<ResultKind, Rows> rows = new EnumMap<>(ResultKind.class);
+	private final Map<Long, ReportEntry[]> pages = new LinkedHashMap<>(CACHED_PAGES, 0.75f, true) {
+
+		private static final long serialVersionUID = 5342916542045838573L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, ReportEntry[]> eldest) {
+			return this.size() > CACHED_PAGES;
+		}
+	};
+
+	/**
+	 * Opens a report and indexes its results.
+	 * @param reportFile The report file.
+	 * @throws FileException If the report can't be read.
+	 */
+	public ReportIndex(File reportFile) throws FileException {
+		this.reportFile = reportFile;
+		for (ResultKind kind : ResultKind.values()) {
+			this.rows.put(kind, new Rows());
+		}
+		try {
+			this.channel = FileChannel.open(reportFile.toPath(), StandardOpenOption.READ);
+		} catch (IOException e) {
+			throw new FileException("Can't open the report " + reportFile + ".");
+		}
+		try {
+			this.index();
+		} catch (IOException e) {
+			this.closeChannel();
+			throw new FileException("Can't read the report " + reportFile + ".");
+		}
+	}
+
+	/**
+	 * Returns the number of results of a kind.
+	 * @param kind The kind of result.
+	 * @return The number of results.
+	 */
+	public int getCount(ResultKind kind) {
+		return this.rows.get(kind).count;
+	}
+
+	/**
+	 * Returns the size of the file of a result without reading the report.
+	 * @param kind The kind of result.
+	 * @param row The position of the result among the ones of its kind.
+	 * @return The size in bytes.
+	 */
+	public long getSize(ResultKind kind, int row) {
+		return this.rows.get(kind).sizes[row];
+	}
+
+	/**
+	 * Returns a result, reading its page of the report if it isn't cached.
+	 * @param kind The kind of result.
+	 * @param row The position of the result among the ones of its kind.
+	 * @return The result.
+	 * @throws FileException If the report can't be read.
+	 */
+	public synchronized ReportEntry getEntry(ResultKind kind, int row) throws FileException {
+		long key = ((long) kind.ordinal() << 32) | (row / PAGE_SIZE);
+		ReportEntry[] page = this.pages.get(key);
+		if (page == null) {
+			page = this.readPage(kind, row / PAGE_SIZE);
+			this.pages.put(key, page);
+		}
+		return page[row % PAGE_SIZE];
+	}
+
+	/**
+	 * Reads all the results of a kind in order, reading the report
+	 * sequentially.
+	 * @param kind The kind of result.
+	 * @param listener Receives the results and tells when to stop.
+	 * @throws FileException If the report can't be read.
+	 */
+	public void scan(ResultKind kind, ReportScanListener listener) throws FileException {
+		Rows kindRows = this.rows.get(kind);
+		ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE);
+		long windowStart = 0;
+		window.limit(0);
+		int row = 0;
+		try {
+			while (row < kindRows.count && !listener.isCancelled()) {
+				long offset = kindRows.offsets[row];
+				int length = kindRows.lengths[row];
+				ReportEntry entry;
+				if (length > WINDOW_SIZE) {
+					entry = parse(kind, this.read(offset, length), 0, length);
+				} else {
+					if (offset < windowStart || offset + length > windowStart + window.limit()) {
+						windowStart = offset;
+						window.clear();
+						this.readFully(window, offset, true);
+						window.flip();
+					}
+					entry = parse(kind, window.array(), (int) (offset - windowStart), length);
+				}
+				listener.onEntry(row, entry);
+				row++;
+			}
+		} catch (IOException e) {
+			throw new FileException("Can't read the report " + this.reportFile + ".");
+		}
+	}
+
+	/**
+	 * Reads all the results of a report in the order they were written,
+	 * without indexing it, so nothing is kept in memory whatever its size.
+	 * @param reportFile The report file.
+	 * @param listener Receives the results and tells when to stop.
+	 * @throws FileException If the report can't be read.
+	 */
+	public static void scan(File reportFile, ReportScanListener listener) throws FileException {
+		try (BufferedReader reader = Files.newBufferedReader(reportFile.toPath(), StandardCharsets.UTF_8)) {
+			int row = 0;
+			String line = reader.readLine();
+			while (line != null && !listener.isCancelled()) {
+				try {
+					Map<String, String> values = Json.parseObject(line);
+					String kind = values.get("kind");
+					if (kind != null) {
+						listener.onEntry(row, new ReportEntry(
+							ResultKind.valueOf(kind), values.get("path"), Long.parseLong(values.get("size")),
+							values.get("error"), values.get("from")
+						));
+						row++;
+					}
+				} catch (IllegalArgumentException e) {
+
+					// Not a result.
+				}
+				line = reader.readLine();
+			}
+		} catch (IOException e) {
+			throw new FileException("Can't read the report " + reportFile + ".");
+		}
+	}
+
+	/**
+	 * Closes the report.
+	 * @throws FileException If the report can't be closed.
+	 */
+	public void close() throws FileException {
+		this.closeChannel();
+	}
+
+	private void closeChannel() throws FileException {
+		try {
+			this.channel.close();
+		} catch (IOException e) {
+			throw new FileException("Can't close the report " + this.reportFile + ".");
+		}
+	}
+
+	/**
+	 * Reads the report once, remembering where the line of every result is.
+	 * The first line, which describes the directories, and lines that can't
+	 * be parsed, like one cut by a crash, are skipped.
+	 */
+	private void index() throws IOException {
+		try (InputStream input = Files.newInputStream(this.reportFile.toPath())) {
+			byte[] buffer = new byte[64 * 1024];
+			byte[] line = new byte[1024];
+			int length = 0;
+			long lineStart = 0;
+			long offset = 0;
+			int read = input.read(buffer);
+			while (read >= 0) {
+				for (int i = 0; i < read; i++) {
+					offset++;
+					if (buffer[i] == '\n') {
+						this.indexLine(line, length, lineStart);
+						length = 0;
+						lineStart = offset;
+					} else {
+						if (length == line.length) {
+							line = Arrays.copyOf(line, line.length * 2);
+						}
+						line[length] = buffer[i];
+						length++;
+					}
+				}
+				read = input.read(buffer);
+			}
+		}
+	}
+
+	private void indexLine(byte[] line, int length, long offset) {
+		try {
+			Map<String, String> values = Json.parseObject(new String(line, 0, length, StandardCharsets.UTF_8));
+			String kind = values.get("kind");
+			if (kind != null) {
+				this.rows.get(ResultKind.valueOf(kind)).add(offset, length, Long.parseLong(values.get("size")));
+			}
+		} catch (IllegalArgumentException e) {
+
+			// Not a result.
+		}
+	}
+
+	private ReportEntry[] readPage(ResultKind kind, int page) throws FileException {
+		Rows kindRows = this.rows.get(kind);
+		int first = page * PAGE_SIZE;
+		int last = Math.min(first + PAGE_SIZE, kindRows.count) - 1;
+		ReportEntry[] result = new ReportEntry[last - first + 1];
+		try {
+			long start = kindRows.offsets[first];
+			long end = kindRows.offsets[last] + kindRows.lengths[last];
+			if (end - start <= WINDOW_SIZE) {
+
+				// Usually, the whole page is read at once.
+				byte[] bytes = this.read(start, (int) (end - start));
+				for (int row = first; row <= last; row++) {
+					result[row - first] = parse(kind, bytes, (int) (kindRows.offsets[row] - start), kindRows.lengths[row]);
+				}
+			} else {
+				for (int row = first; row <= last; row++) {
+					result[row - first] = parse(
+						kind, this.read(kindRows.offsets[row], kindRows.lengths[row]), 0, kindRows.lengths[row]
+					);
+				}
+			}
+		} catch (IOException e) {
+			throw new FileException("Can't read the report " + this.reportFile + ".");
+		}
+		return result;
+	}
+
+	private byte[] read(long offset, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		this.readFully(buffer, offset, false);
+		return buffer.array();
+	}
+
+	/**
+	 * Fills a buffer from a position of the report.
+	 * @param partial <code>true</code> if reaching the end of the report
+	 * before the buffer is full is fine.
+	 */
+	private void readFully(ByteBuffer buffer, long offset, boolean partial) throws IOException {
+		boolean end = false;
+		while (buffer.hasRemaining() && !end) {
+			int read = this.channel.read(buffer, offset + buffer.position());
+			end = read < 0;
+		}
+		if (end && !partial) {
+			throw new IOException("The report is shorter than expected.");
+		}
+	}
+
+	private static ReportEntry parse(ResultKind kind, byte[] bytes, int offset, int length) throws IOException {
+		ReportEntry result;
+		try {
+			Map<String, String> values = Json.parseObject(new String(bytes, offset, length, StandardCharsets.UTF_8));
+			result = new ReportEntry(
+				kind, values.get("path"), Long.parseLong(values.get("size")), values.get("error"), values.get("from")
+			);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("The report has changed.");
+		}
+		return result;
+	}
+
+	/**
+	 * The lines of the results of a kind, in growing arrays.
+	 */
+	private static class Rows {
+
+		private long[] offsets = new long[1024];
+		private int[] lengths = new int[1024];
+		private long[] sizes = new long[1024];
+		private int count;
+
+		private void add(long offset, int length, long size) {
+			if (this.count == this.offsets.length) {
+				this.offsets = Arrays.copyOf(this.offsets, this.count * 2);
+				this.lengths = Arrays.copyOf(this.lengths, this.count * 2);
+				this.sizes = Arrays.copyOf(this.sizes, this.count * 2);
+			}
+			this.offsets[this.count] = offset;
+			this.lengths[this.count] = length;
+			this.sizes[this.count] = size;
+			this.count++;
+		}
+	}
+}
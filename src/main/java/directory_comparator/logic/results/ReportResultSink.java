@@ -0,0 +1,116 @@
+package directory_comparator.logic.results;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.Json;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.models.FileEntry;
+
+/**
+ * Appends every result to a report file as soon as it's found, one JSON
+ * object per line. The first line describes the compared directories and
+ * every other line is a result like this one:
+ * <pre>
+ * {"kind":"CHANGED","path":"docs/readme.txt","size":1024}
+ * </pre>
+ * The path is relative to the old directory for deleted files and to the
+ * new directory for the rest. Files that couldn't be compared also have the
+ * reason:
+ * <pre>
+ * {"kind":"ERROR","path":"docs/locked.txt","size":1024,"error":"..."}
+ * </pre>
+ * Moved files have their path in the old directory:
+ * <pre>
+ * {"kind":"MOVED","path":"docs/old/readme.txt","size":1024,"from":"docs/readme.txt"}
+ * </pre>
+ * The report of a comparison that found all the results ends with this
+ * line, so it can't be mistaken for the report of a stopped one:
+ * <pre>
+ * {"complete":true}
+ * </pre>
+ */
+public class ReportResultSink implements ResultSink {
+
+	/**
+	 * The last line of the report of a comparison that wasn't stopped.
+	 */
+	public static final String COMPLETE_LINE = "{\"complete\":true}";
+
+	private final File reportFile;
+	private final Writer writer;
+	private boolean complete;
+
+	/**
+	 * Creates the report file, replacing the report of a previous run.
+	 * @param reportFile The report file.
+	 * @param oldDirectory The old directory.
+	 * @param newDirectory The new directory.
+	 * @throws FileException If the report can't be created.
+	 */
+	public ReportResultSink(File reportFile, File oldDirectory, File newDirectory) throws FileException {
+		this.reportFile = reportFile;
+		try {
+			this.writer = new BufferedWriter(Files.newBufferedWriter(reportFile.toPath(), StandardCharsets.UTF_8), 64 * 1024);
+			this.writer.write("{\"old\":" + Json.quote(oldDirectory.getAbsolutePath())
+				+ ",\"new\":" + Json.quote(newDirectory.getAbsolutePath()) + "}\n");
+		} catch (IOException e) {
+			throw new FileException("Can't create the report " + reportFile + ".");
+		}
+	}
+
+	@Override
+	public void accept(ResultKind kind, FileEntry entry) throws FileException {
+		try {
+			this.writer.write("{\"kind\":\"" + kind.name() + "\",\"path\":" + Json.quote(entry.getRelativePath())
+				+ ",\"size\":" + entry.getSize() + "}\n");
+		} catch (IOException e) {
+			throw new FileException("Can't write to the report " + this.reportFile + ".");
+		}
+	}
+
+	@Override
+	public void acceptError(FileEntry entry, FileException error) throws FileException {
+		try {
+			this.writer.write("{\"kind\":\"" + ResultKind.ERROR.name() + "\",\"path\":" + Json.quote(entry.getRelativePath())
+				+ ",\"size\":" + entry.getSize() + ",\"error\":" + Json.quote(String.valueOf(error.getMessage())) + "}\n");
+		} catch (IOException e) {
+			throw new FileException("Can't write to the report " + this.reportFile + ".");
+		}
+	}
+
+	@Override
+	public void acceptMove(FileEntry oldEntry, FileEntry newEntry) throws FileException {
+		try {
+			this.writer.write("{\"kind\":\"" + ResultKind.MOVED.name() + "\",\"path\":" + Json.quote(newEntry.getRelativePath())
+				+ ",\"size\":" + newEntry.getSize() + ",\"from\":" + Json.quote(oldEntry.getRelativePath()) + "}\n");
+		} catch (IOException e) {
+			throw new FileException("Can't write to the report " + this.reportFile + ".");
+		}
+	}
+
+	/**
+	 * Tells the sink that it has received all the results of the comparison,
+	 * so the report is marked as complete when it's closed.
+	 */
+	public void complete() {
+		this.complete = true;
+	}
+
+	@Override
+	public void close() throws FileException {
+		try {
+			if (this.complete) {
+				this.writer.write(COMPLETE_LINE + "\n");
+			}
+			this.writer.close();
+		} catch (IOException e) {
+			throw new FileException("Can't write to the report " + this.reportFile + ".");
+		}
+	}
+}
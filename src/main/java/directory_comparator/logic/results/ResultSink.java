@@ -0,0 +1,74 @@
+package directory_comparator.logic.results;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.EntryStatus;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.models.ComparisonOutcome;
+import directory_comparator.logic.models.FileEntry;
+
+/**
+ * Receives the results of a comparison one by one, as soon as they are
+ * found, so they don't have to be kept in memory until the comparison ends.
+ */
+public interface ResultSink {
+
+	/**
+	 * Receives a result.
+	 * @param kind The kind of result.
+	 * @param entry The file the result is about. Deleted files belong to the
+	 * old directory and the rest to the new one.
+	 * @throws FileException If the result can't be stored.
+	 */
+	void accept(ResultKind kind, FileEntry entry) throws FileException;
+	
+	/**
+	 * Receives a file that couldn't be compared. By default, it's received
+	 * as a result of kind {@link ResultKind#ERROR}, without the reason.
+	 * @param entry The file in the new directory.
+	 * @param error Why the file couldn't be compared.
+	 * @throws FileException If the result can't be stored.
+	 */
+	default void acceptError(FileEntry entry, FileException error) throws FileException {
+		this.accept(ResultKind.ERROR, entry);
+	}
+	
+	/**
+	 * Receives a file that has been moved or renamed. By default, it's
+	 * received as a result of kind {@link ResultKind#MOVED}, without the old
+	 * file.
+	 * @param oldEntry The file in the old directory.
+	 * @param newEntry The file with the same contents in the new directory.
+	 * @throws FileException If the result can't be stored.
+	 */
+	default void acceptMove(FileEntry oldEntry, FileEntry newEntry) throws FileException {
+		this.accept(ResultKind.MOVED, newEntry);
+	}
+	
+	/**
+	 * Receives all the results derived from the outcome of comparing a file.
+	 * @param outcome The outcome.
+	 * @throws FileException If a result can't be stored.
+	 */
+	default void accept(ComparisonOutcome outcome) throws FileException {
+		FileEntry newEntry = outcome.getNewEntry();
+		if (newEntry != null && newEntry.getSize() == 0) {
+			this.accept(ResultKind.ZERO_KB, newEntry);
+		}
+		if (outcome.getError() != null) {
+			this.acceptError(newEntry, outcome.getError());
+		} else if (outcome.getStatus() == EntryStatus.NEW) {
+			this.accept(ResultKind.NEW, newEntry);
+		} else if (outcome.getStatus() == EntryStatus.DELETED) {
+			this.accept(ResultKind.DELETED, outcome.getOldEntry());
+		} else if (outcome.isChanged()) {
+			this.accept(ResultKind.CHANGED, newEntry);
+		}
+	}
+	
+	/**
+	 * Invoked when no more results will be received.
+	 * @throws FileException If the pending results can't be stored.
+	 */
+	default void close() throws FileException {
+	}
+}
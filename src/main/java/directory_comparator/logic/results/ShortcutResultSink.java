@@ -0,0 +1,52 @@
+package directory_comparator.logic.results;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.FileManager;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.enums.ShortcutReason;
+import directory_comparator.logic.models.FileEntry;
+
+/**
+ * Gives every new or changed file a shortcut in the results directory as soon
+ * as its result arrives, writing only the ones the previous run didn't leave,
+ * and deletes the shortcuts of the previous run that aren't results anymore
+ * when the comparison ends. The shortcuts must have been started with
+ * {@link FileManager#startShortcuts()}.
+ */
+public class ShortcutResultSink implements ResultSink {
+
+	private final FileManager fileManager;
+	private boolean complete;
+
+	/**
+	 * Constructor.
+	 * @param fileManager The object that manages the results directory.
+	 */
+	public ShortcutResultSink(FileManager fileManager) {
+		this.fileManager = fileManager;
+	}
+
+	@Override
+	public void accept(ResultKind kind, FileEntry entry) throws FileException {
+		String path = entry.getPath().toAbsolutePath().toString();
+		if (kind == ResultKind.NEW) {
+			this.fileManager.addShortcut(this.fileManager.getShortcutFile(path, ShortcutReason.FILE_CREATED), path);
+		} else if (kind == ResultKind.CHANGED) {
+			this.fileManager.addShortcut(this.fileManager.getShortcutFile(path, ShortcutReason.FILE_CHANGED), path);
+		}
+	}
+
+	/**
+	 * Tells the sink that it has received all the results of the comparison,
+	 * so the shortcuts of files that aren't new or changed anymore can be
+	 * deleted when it's closed. Otherwise, they are kept.
+	 */
+	public void complete() {
+		this.complete = true;
+	}
+
+	@Override
+	public void close() throws FileException {
+		this.fileManager.updateShortcuts(this.complete);
+	}
+}
@@ -0,0 +1,308 @@
+package directory_comparator.logic.results;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+
+/**
+ * The new and deleted files held back by {@link MoveResultSink}, sorted by
+ * size. They are received in runs of a bounded size, which are sorted and
+ * written to temporary files, and then read back by merging the runs, so
+ * only one entry of every run and the files of a single size are in memory
+ * at a time. Files of the same size are read back in the order they were
+ * received. At most {@value #MAX_FAN_IN} runs are open at once: when there
+ * are more, the oldest ones are first merged into bigger runs.
+ * <p>
+ * The file key of an entry is kept as its text, which is all that the
+ * digest cache uses.
+ */
+public class SizeSortedEntries implements AutoCloseable {
+
+	private static final int RUN_ENTRIES = 16 * 1024;
+	private static final int MAX_FAN_IN = 64;
+	private static final int BUFFER_SIZE = 16 * 1024;
+	private static final Comparator<HeldEntry> BY_SIZE = Comparator.comparingLong(entry -> entry.entry.getSize());
+
+	private final Path spillDirectory;
+	private final PathIndex pathIndex;
+	private final List<HeldEntry> entries = new ArrayList<>();
+	private final List<Path> runFiles = new ArrayList<>();
+	private Path oldRoot;
+	private Path newRoot;
+
+	/**
+	 * Receives the files of every size, from the smallest.
+	 */
+	public interface SizeListener {
+
+		/**
+		 * Receives the files of a size.
+		 * @param size The size of the files.
+		 * @param newEntries The new files of that size, maybe none.
+		 * @param deletedEntries The deleted files of that size, maybe none.
+		 * @throws FileException If the files can't be handled.
+		 */
+		void onSize(long size, List<FileEntry> newEntries, List<FileEntry> deletedEntries) throws FileException;
+	}
+
+	/**
+	 * Constructor.
+	 * @param spillDirectory The directory where the runs are written.
+	 * @param pathIndex The index of the directories of the comparison.
+	 */
+	public SizeSortedEntries(Path spillDirectory, PathIndex pathIndex) {
+		this.spillDirectory = spillDirectory;
+		this.pathIndex = pathIndex;
+	}
+
+	/**
+	 * Adds a file, writing a run when enough files have been received.
+	 * @param added <code>true</code> if it's new, <code>false</code> if
+	 * it's deleted.
+	 * @param entry The file.
+	 * @throws FileException If a run can't be written.
+	 */
+	public synchronized void add(boolean added, FileEntry entry) throws FileException {
+		if (added) {
+			this.newRoot = entry.getRoot();
+		} else {
+			this.oldRoot = entry.getRoot();
+		}
+		this.entries.add(new HeldEntry(added, entry));
+		if (this.entries.size() >= RUN_ENTRIES) {
+			this.writeRun();
+		}
+	}
+
+	/**
+	 * Passes the files received to a listener, grouped by size. It can be
+	 * called several times, but no file can be added after the first one.
+	 * @param listener The listener.
+	 * @throws FileException If a run can't be read or the listener fails.
+	 */
+	public synchronized void forEachSize(SizeListener listener) throws FileException {
+		try {
+			if (this.runFiles.isEmpty()) {
+				this.entries.sort(BY_SIZE);
+				Iterator<HeldEntry> iterator = this.entries.iterator();
+				group(() -> iterator.hasNext() ? iterator.next() : null, listener);
+			} else {
+				this.forEachSizeInRuns(listener);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new FileException("Can't read the new and deleted files from " + this.spillDirectory + ".");
+		}
+	}
+
+	/**
+	 * Writes the files held in memory as a last run and merges all the runs.
+	 */
+	private void forEachSizeInRuns(SizeListener listener) throws FileException, IOException {
+		if (!this.entries.isEmpty()) {
+			this.writeRun();
+		}
+		while (this.runFiles.size() > MAX_FAN_IN) {
+			List<Path> merged = new ArrayList<>(this.runFiles.subList(0, MAX_FAN_IN));
+			Path runFile = Files.createTempFile(this.spillDirectory, "moves-", ".run");
+			this.runFiles.add(runFile);
+			try (DataOutputStream output = openRun(runFile); Merge merge = new Merge(merged)) {
+				for (HeldEntry entry = merge.poll(); entry != null; entry = merge.poll()) {
+					this.write(output, entry);
+				}
+			}
+			this.runFiles.subList(0, MAX_FAN_IN).clear();
+			for (Path mergedFile : merged) {
+				Files.deleteIfExists(mergedFile);
+			}
+		}
+		try (Merge merge = new Merge(this.runFiles)) {
+			group(merge::poll, listener);
+		}
+	}
+
+	/**
+	 * Groups files sorted by size and passes every group to the listener.
+	 */
+	private static void group(EntrySupplier entries, SizeListener listener) throws FileException, IOException {
+		List<FileEntry> newEntries = new ArrayList<>();
+		List<FileEntry> deletedEntries = new ArrayList<>();
+		HeldEntry entry = entries.next();
+		while (entry != null) {
+			long size = entry.entry.getSize();
+			while (entry != null && entry.entry.getSize() == size) {
+				(entry.added ? newEntries : deletedEntries).add(entry.entry);
+				entry = entries.next();
+			}
+			listener.onSize(size, newEntries, deletedEntries);
+			newEntries.clear();
+			deletedEntries.clear();
+		}
+	}
+
+	/**
+	 * Deletes the runs.
+	 */
+	@Override
+	public synchronized void close() {
+		this.entries.clear();
+		for (Path runFile : this.runFiles) {
+			try {
+				Files.deleteIfExists(runFile);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		this.runFiles.clear();
+	}
+
+	/**
+	 * Sorts the files held in memory by size, keeping the order of the files
+	 * of the same size, and writes them as a new run.
+	 */
+	private void writeRun() throws FileException {
+		this.entries.sort(BY_SIZE);
+		try {
+			Files.createDirectories(this.spillDirectory);
+			Path runFile = Files.createTempFile(this.spillDirectory, "moves-", ".run");
+			this.runFiles.add(runFile);
+			try (DataOutputStream output = openRun(runFile)) {
+				for (HeldEntry entry : this.entries) {
+					this.write(output, entry);
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new FileException("Can't write the new and deleted files to " + this.spillDirectory + ".");
+		}
+		this.entries.clear();
+	}
+
+	private static DataOutputStream openRun(Path runFile) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFile), BUFFER_SIZE));
+	}
+
+	private void write(DataOutputStream output, HeldEntry held) throws IOException {
+		FileEntry entry = held.entry;
+		output.writeBoolean(held.added);
+		output.writeInt(entry.getDirectoryNode());
+		output.writeUTF(entry.getName());
+		output.writeBoolean(entry.isDirectory());
+		output.writeLong(entry.getSize());
+		output.writeLong(entry.getLastModified());
+		output.writeUTF(Objects.toString(entry.getFileKey(), ""));
+	}
+
+	/**
+	 * Returns the files to group one by one, and <code>null</code> at the
+	 * end.
+	 */
+	private interface EntrySupplier {
+
+		HeldEntry next() throws IOException;
+	}
+
+	/**
+	 * A file received, with its side.
+	 */
+	private static class HeldEntry {
+
+		private final boolean added;
+		private final FileEntry entry;
+
+		private HeldEntry(boolean added, FileEntry entry) {
+			this.added = added;
+			this.entry = entry;
+		}
+	}
+
+	/**
+	 * The merge of some runs. A run that comes first wins between files of
+	 * the same size, which keeps them in the order they were received.
+	 */
+	private class Merge implements AutoCloseable {
+
+		private final PriorityQueue<Run> runs = new PriorityQueue<>(
+			Comparator.<Run>comparingLong(run -> run.entry.entry.getSize()).thenComparingInt(run -> run.index)
+		);
+		private final List<Run> opened = new ArrayList<>();
+
+		private Merge(List<Path> runFiles) throws IOException {
+			for (Path runFile : runFiles) {
+				Run run = new Run(runFile, this.opened.size());
+				this.opened.add(run);
+				if (run.advance()) {
+					this.runs.add(run);
+				}
+			}
+		}
+
+		private HeldEntry poll() throws IOException {
+			HeldEntry result = null;
+			Run first = this.runs.poll();
+			if (first != null) {
+				result = first.entry;
+				if (first.advance()) {
+					this.runs.add(first);
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public void close() throws IOException {
+			for (Run run : this.opened) {
+				run.input.close();
+			}
+		}
+	}
+
+	/**
+	 * A run being read, with its next file.
+	 */
+	private class Run {
+
+		private final DataInputStream input;
+		private final int index;
+		private HeldEntry entry;
+
+		private Run(Path runFile, int index) throws IOException {
+			this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(runFile), BUFFER_SIZE));
+			this.index = index;
+		}
+
+		private boolean advance() throws IOException {
+			try {
+				boolean added = this.input.readBoolean();
+				int node = this.input.readInt();
+				String name = this.input.readUTF();
+				boolean directory = this.input.readBoolean();
+				long size = this.input.readLong();
+				long lastModified = this.input.readLong();
+				String fileKey = this.input.readUTF();
+				this.entry = new HeldEntry(added, new FileEntry(
+					added ? newRoot : oldRoot, pathIndex, node, name, directory, size, lastModified,
+					fileKey.isEmpty() ? null : fileKey
+				));
+			} catch (EOFException e) {
+				this.entry = null;
+			}
+			return this.entry != null;
+		}
+	}
+}
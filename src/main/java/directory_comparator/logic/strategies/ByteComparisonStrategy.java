@@ -0,0 +1,27 @@
+package directory_comparator.logic.strategies;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.FileManager;
+import directory_comparator.logic.models.FileEntry;
+
+/**
+ * Compares files byte by byte, even if the digest cache is enabled. It's
+ * the fastest strategy for files that are read only once.
+ */
+public class ByteComparisonStrategy implements ComparisonStrategy {
+
+	/**
+	 * The name of this strategy.
+	 */
+	public static final String NAME = "bytes";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean filesEqual(FileEntry oldEntry, FileEntry newEntry, FileManager fileManager) throws FileException {
+		return fileManager.compareBytes(oldEntry, newEntry);
+	}
+}
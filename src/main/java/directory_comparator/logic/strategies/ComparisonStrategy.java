@@ -0,0 +1,49 @@
+package directory_comparator.logic.strategies;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.FileManager;
+import directory_comparator.logic.models.FileEntry;
+
+/**
+ * A rule that decides whether a file that exists in both directories has
+ * changed. The strategy of every file is chosen by a
+ * {@link StrategySelector}.
+ * <p>
+ * Strategies are found with {@link java.util.ServiceLoader}, so other ones
+ * can be added by listing them in a
+ * <code>META-INF/services/directory_comparator.logic.strategies.ComparisonStrategy</code>
+ * file of a jar in the class path. They must have a public constructor
+ * without parameters and be thread safe, because several files are compared
+ * at the same time.
+ */
+public interface ComparisonStrategy {
+
+	/**
+	 * Returns the name that selects this strategy in the settings.
+	 * @return The name, which must be unique.
+	 */
+	String getName();
+
+	/**
+	 * Tells whether files with different sizes are always different. If
+	 * they are, they aren't even read.
+	 * @return <code>true</code> by default.
+	 */
+	default boolean isSizeSignificant() {
+		return true;
+	}
+
+	/**
+	 * Tells whether a file of the old directory and its counterpart in the
+	 * new directory are equal.
+	 * @param oldEntry The file in the old directory.
+	 * @param newEntry The file in the new directory.
+	 * @param fileManager The object that manages the files of the
+	 * comparison. The bytes read must be added to its counter, see
+	 * {@link FileManager#addBytesRead(long)}.
+	 * @return <code>true</code> if the files are considered equal.
+	 * @throws FileException If the files can't be read or the current thread
+	 * is interrupted.
+	 */
+	boolean filesEqual(FileEntry oldEntry, FileEntry newEntry, FileManager fileManager) throws FileException;
+}
@@ -0,0 +1,29 @@
+package directory_comparator.logic.strategies;
+
+import java.util.Arrays;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.FileManager;
+import directory_comparator.logic.models.FileEntry;
+
+/**
+ * Compares the SHA-256 digests of files. With the digest cache enabled, a
+ * file that hasn't changed since the previous run isn't read again.
+ */
+public class DigestComparisonStrategy implements ComparisonStrategy {
+
+	/**
+	 * The name of this strategy.
+	 */
+	public static final String NAME = "digest";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean filesEqual(FileEntry oldEntry, FileEntry newEntry, FileManager fileManager) throws FileException {
+		return Arrays.equals(fileManager.getDigest(oldEntry, true), fileManager.getDigest(newEntry, false));
+	}
+}
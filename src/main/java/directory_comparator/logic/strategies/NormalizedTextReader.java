@@ -0,0 +1,127 @@
+package directory_comparator.logic.strategies;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.Arrays;
+
+/**
+ * Reads a text file byte by byte through a buffer of fixed size, turning
+ * every line ending, whether <code>\r\n</code>, <code>\r</code> or
+ * <code>\n</code>, into <code>\n</code>. It works with any encoding where
+ * those characters are single bytes, like UTF-8 or ISO-8859-1.
+ */
+class NormalizedTextReader implements Closeable {
+
+	/**
+	 * What {@link #next()} returns at the end of the file.
+	 */
+	static final int END = -1;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final InputStream input;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position;
+	private int limit;
+	private long bytesRead;
+
+	/**
+	 * Constructor.
+	 * @param input The contents of the file.
+	 */
+	NormalizedTextReader(InputStream input) {
+		this.input = input;
+	}
+
+	/**
+	 * Reads the next byte.
+	 * @return The byte, <code>\n</code> for any line ending or {@link #END}.
+	 * @throws IOException If the file can't be read or the current thread is
+	 * interrupted.
+	 */
+	int next() throws IOException {
+		int result = this.read();
+		if (result == '\r') {
+			if (this.peek() == '\n') {
+				this.position++;
+			}
+			result = '\n';
+		}
+		return result;
+	}
+
+	/**
+	 * Skips the bytes that are the same in two readers, without normalizing
+	 * them, as far as both buffers allow. It makes comparing files that are
+	 * equal about as fast as comparing them byte by byte.
+	 * @param reader A reader.
+	 * @param reader2 Another reader.
+	 * @throws IOException If a file can't be read or the current thread is
+	 * interrupted.
+	 */
+	static void skipEqual(NormalizedTextReader reader, NormalizedTextReader reader2) throws IOException {
+		reader.ensureBuffered();
+		reader2.ensureBuffered();
+		int length = Math.min(reader.limit - reader.position, reader2.limit - reader2.position);
+		int mismatch = Arrays.mismatch(
+			reader.buffer, reader.position, reader.position + length,
+			reader2.buffer, reader2.position, reader2.position + length
+		);
+		int equal = mismatch < 0 ? length : mismatch;
+		if (equal > 0 && reader.buffer[reader.position + equal - 1] == '\r') {
+
+			// What a carriage return means depends on the byte after it, which next() checks.
+			equal--;
+		}
+		reader.position = reader.position + equal;
+		reader2.position = reader2.position + equal;
+	}
+
+	/**
+	 * Returns the number of bytes read from the file so far.
+	 * @return The number of bytes.
+	 */
+	long getBytesRead() {
+		return bytesRead;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.input.close();
+	}
+
+	private int read() throws IOException {
+		this.ensureBuffered();
+		int result;
+		if (this.position < this.limit) {
+			result = this.buffer[this.position] & 0xFF;
+			this.position++;
+		} else {
+			result = END;
+		}
+		return result;
+	}
+
+	private int peek() throws IOException {
+		this.ensureBuffered();
+		return this.position < this.limit ? this.buffer[this.position] & 0xFF : END;
+	}
+
+	/**
+	 * Fills the buffer if all its bytes have been read. At the end of the
+	 * file, the buffer stays empty.
+	 */
+	private void ensureBuffered() throws IOException {
+		if (this.position == this.limit) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new ClosedByInterruptException();
+			}
+			int read = this.input.read(this.buffer);
+			this.position = 0;
+			this.limit = Math.max(read, 0);
+			this.bytesRead = this.bytesRead + this.limit;
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package directory_comparator.logic.strategies;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+
+import directory_comparator.logic.PathFilter;
+
+/**
+ * Chooses the {@link ComparisonStrategy} of every file from rules like
+ * <code>text=*.txt,*.md</code>, which compares the files whose name ends in
+ * <code>.txt</code> or <code>.md</code> as text. The patterns are written
+ * like the rules of a {@link PathFilter} and the first rule that matches a
+ * file wins. Files that don't match any rule are compared the default way.
+ * <p>
+ * A selector is immutable.
+ */
+public class StrategySelector {
+
+	/**
+	 * A selector without rules, which compares every file the default way.
+	 */
+	public static final StrategySelector NONE = new StrategySelector(List.of());
+
+	private static Map<String, ComparisonStrategy> strategies;
+
+	private final List<Rule> rules;
+	private final String description;
+
+	/**
+	 * Creates a selector.
+	 * @param rules The rules, like <code>text=*.txt,*.md</code>.
+	 * @throws IllegalArgumentException If a rule isn't valid or names a
+	 * strategy that doesn't exist.
+	 */
+	public StrategySelector(List<String> rules) {
+		List<Rule> parsedRules = new ArrayList<>();
+		for (String rule : rules) {
+			int separator = rule.indexOf('=');
+			if (separator < 0) {
+				throw new IllegalArgumentException("The strategy rule " + rule + " must be like text=*.txt,*.md.");
+			}
+			String name = rule.substring(0, separator).strip();
+			ComparisonStrategy strategy = findStrategy(name).orElseThrow(() -> new IllegalArgumentException(
+				"There is no comparison strategy called " + name + ". The strategies are "
+				+ String.join(", ", getStrategyNames()) + "."
+			));
+			List<String> patterns = new ArrayList<>();
+			for (String pattern : rule.substring(separator + 1).split(",")) {
+				if (!pattern.isBlank()) {
+					patterns.add(pattern.strip());
+				}
+			}
+			if (patterns.isEmpty()) {
+				throw new IllegalArgumentException("The strategy rule " + rule + " doesn't have any pattern.");
+			}
+			parsedRules.add(new Rule(strategy, new PathFilter(patterns, List.of(), null)));
+		}
+		this.rules = Collections.unmodifiableList(parsedRules);
+		this.description = "strategies " + rules;
+	}
+
+	/**
+	 * Creates a selector from rules separated by <code>;</code> or new lines,
+	 * as they are written in the settings.
+	 * @param rules The rules.
+	 * @return The selector.
+	 * @throws IllegalArgumentException If a rule isn't valid or names a
+	 * strategy that doesn't exist.
+	 */
+	public static StrategySelector parse(String rules) {
+		List<String> result = new ArrayList<>();
+		if (rules != null) {
+			for (String rule : rules.split("[;\\n]")) {
+				if (!rule.isBlank()) {
+					result.add(rule.strip());
+				}
+			}
+		}
+		return new StrategySelector(result);
+	}
+
+	/**
+	 * Finds a strategy by its name among the ones built in and the ones
+	 * added to the class path.
+	 * @param name The name.
+	 * @return The strategy or an empty {@link Optional} if there is none
+	 * with that name.
+	 */
+	public static Optional<ComparisonStrategy> findStrategy(String name) {
+		return Optional.ofNullable(loadStrategies().get(name));
+	}
+
+	/**
+	 * Returns the names of all the strategies.
+	 * @return The names, sorted.
+	 */
+	public static List<String> getStrategyNames() {
+		return new ArrayList<>(loadStrategies().keySet());
+	}
+
+	/**
+	 * Chooses the strategy of a file.
+	 * @param relativePath The path of the file relative to the compared
+	 * directories.
+	 * @return The strategy or an empty {@link Optional} to compare the file
+	 * the default way.
+	 */
+	public Optional<ComparisonStrategy> select(String relativePath) {
+		Optional<ComparisonStrategy> result = Optional.empty();
+		int index = 0;
+		while (result.isEmpty() && index < this.rules.size()) {
+			Rule rule = this.rules.get(index);
+			if (!rule.files.isExcluded(relativePath, false)) {
+				result = Optional.of(rule.strategy);
+			}
+			index++;
+		}
+		return result;
+	}
+
+	/**
+	 * Tells whether this selector has rules.
+	 * @return <code>true</code> if every file is compared the default way.
+	 */
+	public boolean isEmpty() {
+		return this.rules.isEmpty();
+	}
+
+	/**
+	 * Describes the rules of this selector.
+	 */
+	@Override
+	public String toString() {
+		return description;
+	}
+
+	private static synchronized Map<String, ComparisonStrategy> loadStrategies() {
+		if (strategies == null) {
+			Map<String, ComparisonStrategy> loaded = new TreeMap<>();
+			for (ComparisonStrategy strategy : ServiceLoader.load(ComparisonStrategy.class)) {
+				loaded.putIfAbsent(strategy.getName(), strategy);
+			}
+			strategies = Collections.unmodifiableMap(loaded);
+		}
+		return strategies;
+	}
+
+	/**
+	 * A strategy and the files it applies to, which are the ones its filter
+	 * doesn't skip.
+	 */
+	private static class Rule {
+
+		private final ComparisonStrategy strategy;
+		private final PathFilter files;
+
+		private Rule(ComparisonStrategy strategy, PathFilter files) {
+			this.strategy = strategy;
+			this.files = files;
+		}
+	}
+}
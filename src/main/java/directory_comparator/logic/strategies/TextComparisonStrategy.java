@@ -0,0 +1,110 @@
+package directory_comparator.logic.strategies;
+
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.FileManager;
+import directory_comparator.logic.models.FileEntry;
+
+/**
+ * Compares text files ignoring how their lines end and the spaces and tabs
+ * at the end of every line, so a file edited on Windows and on Linux is
+ * still equal. Both files are read at the same time through small buffers,
+ * so any file size takes the same memory, and the parts that are identical
+ * are skipped in bulk.
+ * <p>
+ * Instead of normalizing the blanks before comparing, two runs of blanks
+ * are compared as they are read: if they differ, the files are only equal
+ * when both runs are at the end of a line.
+ */
+public class TextComparisonStrategy implements ComparisonStrategy {
+
+	/**
+	 * The name of this strategy.
+	 */
+	public static final String NAME = "text";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/**
+	 * Files with different sizes can be equal, for example if one of them
+	 * ends its lines with <code>\r\n</code>.
+	 * @return <code>false</code>.
+	 */
+	@Override
+	public boolean isSizeSignificant() {
+		return false;
+	}
+
+	@Override
+	public boolean filesEqual(FileEntry oldEntry, FileEntry newEntry, FileManager fileManager) throws FileException {
+		Path path = oldEntry.getPath();
+		Path path2 = newEntry.getPath();
+		boolean result;
+		try (
+			NormalizedTextReader reader = new NormalizedTextReader(Files.newInputStream(path));
+			NormalizedTextReader reader2 = new NormalizedTextReader(Files.newInputStream(path2))
+		) {
+			try {
+				result = textEqual(reader, reader2);
+			} finally {
+				fileManager.addBytesRead(reader.getBytesRead() + reader2.getBytesRead());
+			}
+		} catch (NoSuchFileException e) {
+			throw new FileException("It looks like the file " + e.getFile() + " doesn't exist anymore.");
+		} catch (ClosedByInterruptException e) {
+			throw new FileException("The comparison of " + path + " with " + path2 + " has been stopped.");
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new FileException("I/O error when comparing " + path + " with " + path2 + ".");
+		}
+		return result;
+	}
+
+	private static boolean textEqual(NormalizedTextReader reader, NormalizedTextReader reader2) throws IOException {
+		boolean result = true;
+		int character = reader.next();
+		int character2 = reader2.next();
+		while (result && (character != NormalizedTextReader.END || character2 != NormalizedTextReader.END)) {
+			if (character == character2 && !isBlank(character)) {
+				NormalizedTextReader.skipEqual(reader, reader2);
+				character = reader.next();
+				character2 = reader2.next();
+			} else if (isBlank(character) || isBlank(character2)) {
+				while (isBlank(character) && character == character2) {
+					character = reader.next();
+					character2 = reader2.next();
+				}
+				if (isBlank(character) || isBlank(character2)) {
+
+					// The blanks are different, which only doesn't matter at the end of the lines.
+					while (isBlank(character)) {
+						character = reader.next();
+					}
+					while (isBlank(character2)) {
+						character2 = reader2.next();
+					}
+					result = isLineEnd(character) && isLineEnd(character2);
+				}
+			} else {
+				result = false;
+			}
+		}
+		return result;
+	}
+
+	private static boolean isBlank(int character) {
+		return character == ' ' || character == '\t';
+	}
+
+	private static boolean isLineEnd(int character) {
+		return character == '\n' || character == NormalizedTextReader.END;
+	}
+}
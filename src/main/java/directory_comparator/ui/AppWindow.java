@@ -8,6 +8,8 @@ import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -21,14 +23,25 @@ import javax.swing.JMenuBar;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 
+import directory_comparator.logic.PathFilter;
 import directory_comparator.logic.PropertyManager;
+import directory_comparator.logic.enums.ComparisonMode;
+import directory_comparator.logic.enums.ThreadKind;
+import directory_comparator.logic.models.ComparisonOptions;
+import directory_comparator.logic.strategies.StrategySelector;
 import directory_comparator.ui.components.DirectoryChooser;
 import directory_comparator.ui.components.FileJTextField;
 import directory_comparator.ui.components.HorizontalSeparator;
+import directory_comparator.ui.components.PropertyBackedJCheckBox;
+import directory_comparator.ui.components.PropertyBackedJComboBox;
+import directory_comparator.ui.components.PropertyBackedJSpinner;
+import directory_comparator.ui.components.PropertyBackedJTextField;
 import directory_comparator.ui.components.ReadOnlyJTextArea;
+import directory_comparator.ui.components.ResultsBrowser;
 import directory_comparator.ui.components.buttons.StartJButton;
 import directory_comparator.ui.components.buttons.StopJButton;
 import directory_comparator.ui.workers.DirectoryComparisonTask;
@@ -45,12 +58,30 @@ public class AppWindow extends JFrame {
 	private final PropertyManager properties;
 	private final JPanel contentPane;
 	private final JFileChooser directoryChooser = new DirectoryChooser();
+	private final JFileChooser archiveChooser = new DirectoryChooser(true);
 	private final FileJTextField oldDirectoryTextField;
 	private final FileJTextField newDirectoryTextField;
 	private final FileJTextField resultDirectoryTextField;
+	private final PropertyBackedJComboBox<ComparisonMode> comparisonModeComboBox;
+	private final PropertyBackedJCheckBox digestCacheCheckBox;
+	private final PropertyBackedJCheckBox verificationCheckBox;
+	private final PropertyBackedJCheckBox moveDetectionCheckBox;
+	private final PropertyBackedJCheckBox journalCheckBox;
+	private final PropertyBackedJCheckBox watchCheckBox;
+	private final PropertyBackedJCheckBox watchOldCheckBox;
+	private final PropertyBackedJSpinner comparisonThreadsSpinner;
+	private final PropertyBackedJSpinner listingThreadsSpinner;
+	private final PropertyBackedJSpinner memoryBudgetSpinner;
+	private final PropertyBackedJCheckBox virtualThreadsCheckBox;
+	private final PropertyBackedJTextField includeTextField;
+	private final PropertyBackedJTextField excludeTextField;
+	private final PropertyBackedJTextField ignoreFileTextField;
+	private final PropertyBackedJTextField strategiesTextField;
+	private final transient Collection<JComponent> optionComponents = new ArrayList<>();
 	private JButton oldDirectoryChooseButton;
 	private JButton newDirectoryChooseButton;
 	private JButton resultsDirectoryChooseButton;
+	private final ResultsBrowser resultsBrowser = new ResultsBrowser();
 	private DirectoryComparisonTask task;
 	
 	/**
@@ -62,6 +93,43 @@ public class AppWindow extends JFrame {
 		this.oldDirectoryTextField = createJFileTextField("text.field.old.directory");
 		this.newDirectoryTextField = createJFileTextField("text.field.new.directory");
 		this.resultDirectoryTextField = createJFileTextField("text.field.results");
+		this.comparisonModeComboBox = new PropertyBackedJComboBox<>(
+			ComparisonMode.class, this.properties, "combo.box.comparison.mode", ComparisonMode.STRICT
+		);
+		this.digestCacheCheckBox = new PropertyBackedJCheckBox(
+			"Remember file and folder digests between runs", this.properties, "check.box.digest.cache", false
+		);
+		this.verificationCheckBox = new PropertyBackedJCheckBox(
+			"Verify sampled files afterwards", this.properties, "check.box.verification", false
+		);
+		this.moveDetectionCheckBox = new PropertyBackedJCheckBox(
+			"Detect moved and renamed files", this.properties, "check.box.move.detection", false
+		);
+		this.journalCheckBox = new PropertyBackedJCheckBox(
+			"Resume interrupted comparisons", this.properties, "check.box.journal", false
+		);
+		this.watchCheckBox = new PropertyBackedJCheckBox(
+			"Keep watching for changes", this.properties, "check.box.watch", false
+		);
+		this.watchOldCheckBox = new PropertyBackedJCheckBox(
+			"Watch the old folder too", this.properties, "check.box.watch.old", false
+		);
+		this.comparisonThreadsSpinner = new PropertyBackedJSpinner(
+			this.properties, "spinner.comparison.threads", Runtime.getRuntime().availableProcessors(), 1, 1024
+		);
+		this.listingThreadsSpinner = new PropertyBackedJSpinner(
+			this.properties, "spinner.listing.threads", new ComparisonOptions().getListingThreads(), 1, 1024
+		);
+		this.memoryBudgetSpinner = new PropertyBackedJSpinner(
+			this.properties, "spinner.memory.budget", 0, 0, 1024 * 1024
+		);
+		this.virtualThreadsCheckBox = new PropertyBackedJCheckBox(
+			"Use virtual threads", this.properties, "check.box.virtual.threads", false
+		);
+		this.includeTextField = new PropertyBackedJTextField(this.properties, "text.field.include");
+		this.excludeTextField = new PropertyBackedJTextField(this.properties, "text.field.exclude");
+		this.ignoreFileTextField = new PropertyBackedJTextField(this.properties, "text.field.ignore.file");
+		this.strategiesTextField = new PropertyBackedJTextField(this.properties, "text.field.strategies");
 		
 		//Set up the window.
 	    this.setTitle("Folder comparator");
@@ -117,6 +185,44 @@ public class AppWindow extends JFrame {
 	public JButton getResultsDirectoryChooseButton() {
 		return resultsDirectoryChooseButton;
 	}
+	
+	public ResultsBrowser getResultsBrowser() {
+		return resultsBrowser;
+	}
+	
+	/**
+	 * Returns the components that change the comparison settings, which
+	 * can't be used while a comparison is running.
+	 * @return The components.
+	 */
+	public Collection<JComponent> getOptionComponents() {
+		return optionComponents;
+	}
+	
+	/**
+	 * Creates the comparison settings from what is selected in this window.
+	 * @return The settings.
+	 * @throws IllegalArgumentException If a filter or strategy rule isn't valid.
+	 */
+	public ComparisonOptions createComparisonOptions() {
+		ComparisonOptions result = new ComparisonOptions();
+		result.setComparisonMode(this.comparisonModeComboBox.getSelectedValue());
+		result.setDigestCacheEnabled(this.digestCacheCheckBox.isSelected());
+		result.setVerificationEnabled(this.verificationCheckBox.isSelected());
+		result.setMoveDetectionEnabled(this.moveDetectionCheckBox.isSelected());
+		result.setJournalEnabled(this.journalCheckBox.isSelected());
+		result.setWatchEnabled(this.watchCheckBox.isSelected());
+		result.setWatchOldEnabled(this.watchOldCheckBox.isSelected());
+		result.setComparisonThreads(this.comparisonThreadsSpinner.getIntValue());
+		result.setListingThreads(this.listingThreadsSpinner.getIntValue());
+		result.setMemoryBudget(this.memoryBudgetSpinner.getIntValue() * 1024L * 1024);
+		result.setThreadKind(this.virtualThreadsCheckBox.isSelected() ? ThreadKind.VIRTUAL : ThreadKind.PLATFORM);
+		result.setFilter(PathFilter.parse(
+			this.includeTextField.getText(), this.excludeTextField.getText(), this.ignoreFileTextField.getText()
+		));
+		result.setStrategySelector(StrategySelector.parse(this.strategiesTextField.getText()));
+		return result;
+	}
 
 	private static void adjustTextField(JTextField jTextField) {
 		jTextField.setMaximumSize(new Dimension(Integer.MAX_VALUE, jTextField.getPreferredSize().height));
@@ -129,7 +235,7 @@ public class AppWindow extends JFrame {
 	}
 	
 	private JButton addFolderSelectionComponents(
-		Container verticalPanel, FileJTextField fileTextField, String label
+		Container verticalPanel, FileJTextField fileTextField, String label, JFileChooser chooser
 	) {
 		JPanel folderSelectionPanel = new JPanel();
 		folderSelectionPanel.setLayout(new BoxLayout(folderSelectionPanel, BoxLayout.Y_AXIS));
@@ -152,9 +258,9 @@ public class AppWindow extends JFrame {
 		selectDirectoryButton.addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent e) {
-				int returnVal = AppWindow.this.directoryChooser.showOpenDialog(verticalPanel);
+				int returnVal = chooser.showOpenDialog(verticalPanel);
 		        if (returnVal == JFileChooser.APPROVE_OPTION) {
-		            File directory = AppWindow.this.directoryChooser.getSelectedFile();
+		            File directory = chooser.getSelectedFile();
 		            fileTextField.setSelectedFile(directory);
 		        }
 			}}
@@ -166,6 +272,45 @@ public class AppWindow extends JFrame {
 		return selectDirectoryButton;
 	}
 	
+	private void addOption(Container optionsPanel, String label, JComponent component) {
+		JPanel horizontalPanel = new JPanel();
+		horizontalPanel.setLayout(new BoxLayout(horizontalPanel, BoxLayout.X_AXIS));
+		horizontalPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+		if (label != null) {
+			horizontalPanel.add(new JLabel(label));
+			horizontalPanel.add(Box.createRigidArea(new Dimension(GAP, 0)));
+		}
+		component.setMaximumSize(new Dimension(Integer.MAX_VALUE, component.getPreferredSize().height));
+		horizontalPanel.add(component);
+		optionsPanel.add(horizontalPanel);
+		optionsPanel.add(Box.createVerticalStrut(GAP / 2));
+		this.optionComponents.add(component);
+	}
+	
+	private void addOptionsComponents(Container verticalPanel) {
+		JPanel optionsPanel = new JPanel();
+		optionsPanel.setLayout(new BoxLayout(optionsPanel, BoxLayout.Y_AXIS));
+		optionsPanel.setBorder(BorderFactory.createEmptyBorder(GAP, GAP, GAP, GAP));
+		optionsPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+		addOption(optionsPanel, "Comparison mode", this.comparisonModeComboBox);
+		addOption(optionsPanel, null, this.digestCacheCheckBox);
+		addOption(optionsPanel, null, this.verificationCheckBox);
+		addOption(optionsPanel, null, this.moveDetectionCheckBox);
+		addOption(optionsPanel, null, this.journalCheckBox);
+		addOption(optionsPanel, null, this.watchCheckBox);
+		addOption(optionsPanel, null, this.watchOldCheckBox);
+		addOption(optionsPanel, "Comparison threads", this.comparisonThreadsSpinner);
+		addOption(optionsPanel, null, this.virtualThreadsCheckBox);
+		addOption(optionsPanel, "Folders listed at once", this.listingThreadsSpinner);
+		addOption(optionsPanel, "Memory for folder listings only, in MB (0 = no limit)", this.memoryBudgetSpinner);
+		addOption(optionsPanel, "Only files matching (separated by ;)", this.includeTextField);
+		addOption(optionsPanel, "Skip files and folders matching", this.excludeTextField);
+		addOption(optionsPanel, "Ignore files named, like .gitignore", this.ignoreFileTextField);
+		addOption(optionsPanel, "Compare files as, like text=*.txt,*.md", this.strategiesTextField);
+		verticalPanel.add(optionsPanel);
+		verticalPanel.add(new HorizontalSeparator());
+	}
+	
 	private JPanel drawFileCopyPanel() {
 		JPanel fileCopyPanel = new JPanel();
 		fileCopyPanel.setLayout(new BoxLayout(fileCopyPanel, BoxLayout.Y_AXIS));
@@ -201,7 +346,11 @@ public class AppWindow extends JFrame {
         Dimension taskOutputPreferredSize = taskOutput.getPreferredSize();
         scrollableTaskOutput.setPreferredSize(Tools.add(taskOutputPreferredSize, scrollableTaskOutputInsets));
         
-        fileCopyPanel.add(scrollableTaskOutput);
+        this.resultsBrowser.setBorder(BorderFactory.createEmptyBorder(0, GAP, GAP, GAP));
+        JSplitPane outputPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, scrollableTaskOutput, this.resultsBrowser);
+        outputPane.setResizeWeight(0.5);
+        outputPane.setBorder(null);
+        fileCopyPanel.add(outputPane);
         
         return fileCopyPanel;
 	}
@@ -210,14 +359,16 @@ public class AppWindow extends JFrame {
 		JPanel verticalPanel = new JPanel();
 		verticalPanel.setLayout(new BoxLayout(verticalPanel, BoxLayout.Y_AXIS));
 		this.oldDirectoryChooseButton = addFolderSelectionComponents(
-			verticalPanel, this.oldDirectoryTextField, "Old folder"
+			verticalPanel, this.oldDirectoryTextField, "Old folder, ZIP/JAR archive or snapshot", this.archiveChooser
 		);
 		this.newDirectoryChooseButton = addFolderSelectionComponents(
-			verticalPanel, this.newDirectoryTextField, "New folder"
+			verticalPanel, this.newDirectoryTextField, "New folder, ZIP/JAR archive or snapshot", this.archiveChooser
 		);
 		this.resultsDirectoryChooseButton = addFolderSelectionComponents(
-			verticalPanel, this.resultDirectoryTextField, "Where do you want to store the result of the comparison?"
+			verticalPanel, this.resultDirectoryTextField, "Where do you want to store the result of the comparison?",
+			this.directoryChooser
 		);
+		this.addOptionsComponents(verticalPanel);
 		JPanel fileCopyPanel = drawFileCopyPanel();
 		
 		/*
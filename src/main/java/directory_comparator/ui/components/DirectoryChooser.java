@@ -1,9 +1,17 @@
 package directory_comparator.ui.components;
 
+import java.io.File;
+
 import javax.swing.JFileChooser;
+import javax.swing.filechooser.FileFilter;
+
+import directory_comparator.logic.FileManager;
+import directory_comparator.logic.SnapshotManifest;
 
 /**
- * An extension of {@link JFileChooser} that chooses a directory.
+ * An extension of {@link JFileChooser} that chooses a directory or, if
+ * archives are allowed, a ZIP or JAR archive or a snapshot that is compared
+ * as a directory.
  */
 public class DirectoryChooser extends JFileChooser {
 
@@ -13,8 +21,32 @@ public class DirectoryChooser extends JFileChooser {
 	 * Constructor.
 	 */
 	public DirectoryChooser() {
-		this.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
-		this.setDialogTitle("Select a folder");
+		this(false);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param archivesAllowed <code>true</code> if archives and snapshots can
+	 * be chosen too.
+	 */
+	public DirectoryChooser(boolean archivesAllowed) {
+		if (archivesAllowed) {
+			this.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+			this.setFileFilter(new FileFilter() {
+				@Override
+				public boolean accept(File file) {
+					return file.isDirectory() || FileManager.isArchive(file) || SnapshotManifest.isSnapshot(file);
+				}
+				@Override
+				public String getDescription() {
+					return "Folders, ZIP or JAR archives and snapshots";
+				}
+			});
+			this.setDialogTitle("Select a folder, an archive or a snapshot");
+		} else {
+			this.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+			this.setDialogTitle("Select a folder");
+		}
 		this.setApproveButtonText("Select");
 	}
 }
@@ -0,0 +1,42 @@
+package directory_comparator.ui.components;
+
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
+import java.util.Optional;
+
+import javax.swing.JCheckBox;
+
+import directory_comparator.logic.PropertyManager;
+
+/**
+ * A {@link JCheckBox} whose state is backed in a properties file.
+ */
+public final class PropertyBackedJCheckBox extends JCheckBox {
+
+	private static final long serialVersionUID = 4155460960612733907L;
+
+	/**
+	 * Creates a {@link JCheckBox} whose state is backed in a properties file.
+	 * @param text The text of the check box.
+	 * @param propertyManager The properties file manager instance.
+	 * @param propertyKey The key of the property where the state of this instance
+	 * will be saved.
+	 * @param defaultValue The state of the check box if the property doesn't
+	 * exist yet.
+	 */
+	public PropertyBackedJCheckBox(String text, PropertyManager propertyManager, String propertyKey, boolean defaultValue) {
+		super(text);
+		Optional<String> propertyValue = propertyManager.getProperty(propertyKey);
+		if (propertyValue.isPresent()) {
+			this.setSelected(Boolean.parseBoolean(propertyValue.get()));
+		} else {
+			this.setSelected(defaultValue);
+		}
+		this.addItemListener(new ItemListener() {
+			@Override
+			public void itemStateChanged(ItemEvent e) {
+				propertyManager.setProperty(propertyKey, Boolean.toString(isSelected()));
+			}
+		});
+	}
+}
@@ -0,0 +1,59 @@
+package directory_comparator.ui.components;
+
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
+import java.util.Optional;
+
+import javax.swing.JComboBox;
+
+import directory_comparator.logic.PropertyManager;
+
+/**
+ * A {@link JComboBox} for choosing a value of an enum whose selection is
+ * backed in a properties file.
+ * @param <E> The enum type.
+ */
+public final class PropertyBackedJComboBox<E extends Enum<E>> extends JComboBox<E> {
+
+	private static final long serialVersionUID = 6012390127374218790L;
+
+	/**
+	 * Creates a {@link JComboBox} whose selection is backed in a properties file.
+	 * @param enumType The enum whose values can be selected.
+	 * @param propertyManager The properties file manager instance.
+	 * @param propertyKey The key of the property where the selection of this
+	 * instance will be saved.
+	 * @param defaultValue The selected value if the property doesn't exist yet.
+	 */
+	public PropertyBackedJComboBox(
+		Class<E> enumType, PropertyManager propertyManager, String propertyKey, E defaultValue
+	) {
+		super(enumType.getEnumConstants());
+		Optional<String> propertyValue = propertyManager.getProperty(propertyKey);
+		E selectedValue = defaultValue;
+		if (propertyValue.isPresent()) {
+			for (E value : enumType.getEnumConstants()) {
+				if (value.name().equals(propertyValue.get())) {
+					selectedValue = value;
+				}
+			}
+		}
+		this.setSelectedItem(selectedValue);
+		this.addItemListener(new ItemListener() {
+			@Override
+			public void itemStateChanged(ItemEvent e) {
+				if (e.getStateChange() == ItemEvent.SELECTED) {
+					propertyManager.setProperty(propertyKey, getSelectedValue().name());
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Returns the selected value.
+	 * @return The value.
+	 */
+	public E getSelectedValue() {
+		return this.getItemAt(this.getSelectedIndex());
+	}
+}
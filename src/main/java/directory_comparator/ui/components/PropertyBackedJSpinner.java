@@ -0,0 +1,62 @@
+package directory_comparator.ui.components;
+
+import java.util.Optional;
+
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import directory_comparator.logic.PropertyManager;
+
+/**
+ * A {@link JSpinner} for whole numbers whose value is backed in a properties
+ * file.
+ */
+public final class PropertyBackedJSpinner extends JSpinner {
+
+	private static final long serialVersionUID = -3264958224826302716L;
+
+	/**
+	 * Creates a {@link JSpinner} whose value is backed in a properties file.
+	 * @param propertyManager The properties file manager instance.
+	 * @param propertyKey The key of the property where the value of this instance
+	 * will be saved.
+	 * @param defaultValue The value if the property doesn't exist yet.
+	 * @param minimum The minimum value.
+	 * @param maximum The maximum value.
+	 */
+	public PropertyBackedJSpinner(
+		PropertyManager propertyManager, String propertyKey, int defaultValue, int minimum, int maximum
+	) {
+		super(new SpinnerNumberModel(
+			Math.min(Math.max(readValue(propertyManager, propertyKey, defaultValue), minimum), maximum),
+			minimum, maximum, 1
+		));
+		this.addChangeListener(new ChangeListener() {
+			@Override
+			public void stateChanged(ChangeEvent e) {
+				propertyManager.setProperty(propertyKey, getValue().toString());
+			}
+		});
+	}
+	
+	/**
+	 * Returns the selected number.
+	 * @return The number.
+	 */
+	public int getIntValue() {
+		return ((Number) this.getValue()).intValue();
+	}
+	
+	private static int readValue(PropertyManager propertyManager, String propertyKey, int defaultValue) {
+		Optional<String> propertyValue = propertyManager.getProperty(propertyKey);
+		int result;
+		try {
+			result = propertyValue.isPresent() ? Integer.parseInt(propertyValue.get()) : defaultValue;
+		} catch (NumberFormatException e) {
+			result = defaultValue;
+		}
+		return result;
+	}
+}
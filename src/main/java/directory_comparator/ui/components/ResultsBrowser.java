@@ -0,0 +1,271 @@
+package directory_comparator.ui.components;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.results.ReportEntry;
+import directory_comparator.logic.results.ReportIndex;
+import directory_comparator.ui.workers.ReportLoadTask;
+import directory_comparator.ui.workers.ResultsViewTask;
+
+/**
+ * Browses the results of a comparison, with a tab for every kind of result.
+ * The results are read from the report only when they are shown, so the
+ * browser stays responsive whatever their number. They can be filtered by
+ * path and sorted by clicking the header of a column, see
+ * {@link ResultsTableModel#toggleSort(int)}.
+ * <p>
+ * While the comparison runs, the browser shows the results as they are
+ * found, see {@link #addLiveResults(List)}. They can be filtered and sorted
+ * once the report is loaded.
+ * <p>
+ * All the methods must be called from the event dispatching thread.
+ */
+public final class ResultsBrowser extends JPanel {
+
+	private static final long serialVersionUID = -7432318920548306712L;
+	private static final int GAP = 10;
+
+	/**
+	 * How long, in milliseconds, the filter has to stay the same before the
+	 * results are filtered.
+	 */
+	private static final int FILTER_DELAY = 300;
+
+	private final JTabbedPane tabs = new JTabbedPane();
+	private final JTextField filterTextField = new JTextField();
+	private final JLabel statusLabel = new JLabel(" ");
+	private final transient Map<ResultKind, ResultsTableModel> models = new EnumMap<>(ResultKind.class);
+	private final Timer filterTimer;
+	private transient ReportIndex index;
+	private transient ReportLoadTask loadTask;
+	private transient ResultsViewTask viewTask;
+
+	/**
+	 * Constructor.
+	 */
+	public ResultsBrowser() {
+		super(new BorderLayout());
+		JPanel filterPanel = new JPanel();
+		filterPanel.setLayout(new BoxLayout(filterPanel, BoxLayout.X_AXIS));
+		filterPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, GAP / 2, 0));
+		filterPanel.add(new JLabel("Filter by path"));
+		filterPanel.add(Box.createRigidArea(new Dimension(GAP, 0)));
+		filterPanel.add(this.filterTextField);
+		filterPanel.add(Box.createRigidArea(new Dimension(GAP, 0)));
+		filterPanel.add(this.statusLabel);
+		this.add(filterPanel, BorderLayout.NORTH);
+		for (ResultKind kind : ResultKind.values()) {
+			ResultsTableModel model = new ResultsTableModel(kind);
+			JTable table = new JTable(model);
+			table.setFillsViewportHeight(true);
+			table.getTableHeader().setReorderingAllowed(false);
+			table.getTableHeader().addMouseListener(new MouseAdapter() {
+				@Override
+				public void mouseClicked(MouseEvent e) {
+					int column = table.convertColumnIndexToModel(table.columnAtPoint(e.getPoint()));
+					if (column == ResultsTableModel.PATH_COLUMN || column == ResultsTableModel.SIZE_COLUMN) {
+						model.toggleSort(column);
+						updateView();
+					}
+				}
+			});
+			this.models.put(kind, model);
+			this.tabs.addTab(kind.toString(), new JScrollPane(table));
+		}
+		this.add(this.tabs, BorderLayout.CENTER);
+		this.filterTimer = new Timer(FILTER_DELAY, event -> this.updateView());
+		this.filterTimer.setRepeats(false);
+		this.filterTextField.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				filterTimer.restart();
+			}
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				filterTimer.restart();
+			}
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+				filterTimer.restart();
+			}
+		});
+		this.tabs.addChangeListener(event -> this.updateView());
+	}
+
+	/**
+	 * Shows the results of a report, which is read in the background.
+	 * Meanwhile, the results found while the comparison ran are still shown.
+	 * @param reportFile The report file.
+	 */
+	public void load(File reportFile) {
+		if (this.index != null) {
+			this.clear();
+		}
+		this.statusLabel.setText("Reading the results...");
+		this.loadTask = new ReportLoadTask(this, reportFile);
+		this.loadTask.execute();
+	}
+
+	/**
+	 * Stops showing results and closes the report, so it can be written
+	 * again.
+	 */
+	public void clear() {
+		this.loadTask = null;
+		this.cancelViewTask();
+		for (ResultsTableModel model : this.models.values()) {
+			model.setIndex(null);
+		}
+		if (this.index != null) {
+			try {
+				this.index.close();
+			} catch (FileException e) {
+				e.printStackTrace();
+			}
+			this.index = null;
+		}
+		this.updateTitles();
+		this.statusLabel.setText(" ");
+	}
+
+	/**
+	 * Shows results found while the comparison runs, before the report can
+	 * be read. They are ignored once a report is shown.
+	 * @param results The results.
+	 */
+	public void addLiveResults(List<ReportEntry> results) {
+		if (this.index == null) {
+			Map<ResultKind, List<ReportEntry>> byKind = new EnumMap<>(ResultKind.class);
+			for (ReportEntry result : results) {
+				byKind.computeIfAbsent(result.getKind(), kind -> new ArrayList<>()).add(result);
+			}
+			for (Map.Entry<ResultKind, List<ReportEntry>> entry : byKind.entrySet()) {
+				this.models.get(entry.getKey()).addLiveEntries(entry.getValue());
+			}
+			this.updateTitles();
+			if (this.loadTask == null) {
+				this.updateStatus();
+			}
+		}
+	}
+
+	/**
+	 * Called by a {@link ReportLoadTask} when it has read the report.
+	 * @param task The task.
+	 * @param loadedIndex The index of the report.
+	 */
+	public void reportLoaded(ReportLoadTask task, ReportIndex loadedIndex) {
+		if (task == this.loadTask) {
+			this.index = loadedIndex;
+			for (ResultsTableModel model : this.models.values()) {
+				model.setIndex(loadedIndex);
+			}
+			this.updateTitles();
+			this.updateView();
+		} else {
+
+			// The browser has been cleared or is loading another report.
+			try {
+				loadedIndex.close();
+			} catch (FileException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Called by a {@link ResultsViewTask} when the rows of a table have
+	 * changed. Meanwhile, the filter or the order asked for may have changed
+	 * again.
+	 */
+	public void viewChanged() {
+		this.updateStatus();
+		this.updateView();
+	}
+
+	/**
+	 * Shows a problem reading the results.
+	 * @param error The message.
+	 */
+	public void showError(String error) {
+		this.statusLabel.setText("Error: " + error);
+	}
+
+	/**
+	 * Makes the table of the selected tab show the rows asked for, starting
+	 * a task if they aren't shown yet.
+	 */
+	private void updateView() {
+		ResultsTableModel model = this.getSelectedModel();
+		if (this.index != null && model != null) {
+			String filter = this.filterTextField.getText().strip();
+			if (model.isViewUpToDate(filter)) {
+				this.cancelViewTask();
+				this.updateStatus();
+			} else if (this.viewTask == null || !this.viewTask.isFor(model, filter)) {
+				this.cancelViewTask();
+				this.statusLabel.setText(model.getSortColumn() < 0 ? "Filtering..." : "Sorting...");
+				this.viewTask = new ResultsViewTask(this, model, filter);
+				this.viewTask.execute();
+			}
+		} else if (this.loadTask == null) {
+			this.updateStatus();
+		}
+	}
+
+	private void cancelViewTask() {
+		if (this.viewTask != null && !this.viewTask.isDone()) {
+
+			// Interrupting a thread that reads a file channel would close it.
+			this.viewTask.cancel(false);
+		}
+		this.viewTask = null;
+	}
+
+	private void updateStatus() {
+		ResultsTableModel model = this.getSelectedModel();
+		if (model != null && this.index != null) {
+			this.statusLabel.setText(model.getRowCount() + " of " + model.getTotalCount());
+		} else if (model != null && model.getTotalCount() > 0) {
+			this.statusLabel.setText(model.getRowCount() + " of " + model.getTotalCount() + " found so far");
+		}
+	}
+
+	private void updateTitles() {
+		int tab = 0;
+		for (ResultKind kind : ResultKind.values()) {
+			ResultsTableModel model = this.models.get(kind);
+			int count = model.getTotalCount();
+			this.tabs.setTitleAt(tab, this.index == null && count == 0 ? kind.toString() : kind + " (" + count + ")");
+			tab++;
+		}
+	}
+
+	private ResultsTableModel getSelectedModel() {
+		int tab = this.tabs.getSelectedIndex();
+		return tab < 0 ? null : this.models.get(ResultKind.values()[tab]);
+	}
+}
@@ -0,0 +1,247 @@
+package directory_comparator.ui.components;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.Units;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.results.ReportEntry;
+import directory_comparator.logic.results.ReportIndex;
+
+/**
+ * A table of the results of a kind, read from a {@link ReportIndex} only
+ * when their rows are shown. The rows can be a view of the results, which
+ * is a selection of them in any order.
+ * <p>
+ * While the comparison runs, there is no report yet and the table shows the
+ * results as they are found instead, up to {@link #LIVE_LIMIT} of them.
+ */
+public class ResultsTableModel extends AbstractTableModel {
+
+	private static final long serialVersionUID = -3702475912407393262L;
+
+	/**
+	 * The column of the paths of the files.
+	 */
+	public static final int PATH_COLUMN = 0;
+
+	/**
+	 * The column of the sizes of the files.
+	 */
+	public static final int SIZE_COLUMN = 1;
+
+	/**
+	 * The column of the reasons why files couldn't be compared, for errors,
+	 * or of the paths in the old directory, for moved files. The other kinds
+	 * of results don't have it.
+	 */
+	public static final int DETAIL_COLUMN = 2;
+
+	/**
+	 * The maximum number of rows kept in memory while the comparison runs.
+	 */
+	public static final int LIVE_LIMIT = 100000;
+
+	private final ResultKind kind;
+	private transient ReportIndex index;
+	private int[] view;
+	private String viewFilter = "";
+	private int viewSortColumn = -1;
+	private boolean viewAscending = true;
+	private int sortColumn = -1;
+	private boolean ascending = true;
+	private final transient List<ReportEntry> liveEntries = new ArrayList<>();
+	private int liveCount;
+
+	/**
+	 * Constructor.
+	 * @param kind The kind of results shown.
+	 */
+	public ResultsTableModel(ResultKind kind) {
+		this.kind = kind;
+	}
+
+	public ResultKind getKind() {
+		return kind;
+	}
+
+	public ReportIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Shows the results of a report in the order they were found, instead of
+	 * the ones found while the comparison ran.
+	 * @param index The report or <code>null</code> to show nothing.
+	 */
+	public void setIndex(ReportIndex index) {
+		this.index = index;
+		this.liveEntries.clear();
+		this.liveCount = 0;
+		this.view = null;
+		this.viewFilter = "";
+		this.viewSortColumn = -1;
+		this.viewAscending = true;
+		this.fireTableDataChanged();
+	}
+
+	/**
+	 * Adds rows for results that have just been found, while there is no
+	 * report to read them from.
+	 * @param entries The results, which must be of the kind of this table.
+	 */
+	public void addLiveEntries(List<ReportEntry> entries) {
+		int firstRow = this.liveEntries.size();
+		for (ReportEntry entry : entries) {
+			if (this.liveEntries.size() < LIVE_LIMIT) {
+				this.liveEntries.add(entry);
+			}
+			this.liveCount++;
+		}
+		if (this.liveEntries.size() > firstRow) {
+			this.fireTableRowsInserted(firstRow, this.liveEntries.size() - 1);
+		}
+	}
+
+	/**
+	 * Shows a selection of the results in a given order.
+	 * @param view The positions of the results shown, among the ones of
+	 * their kind, or <code>null</code> to show all of them in the order they
+	 * were found.
+	 * @param filter The text that the paths of the results shown contain.
+	 * @param sortColumn The column the results are sorted by or -1 if they
+	 * are in the order they were found.
+	 * @param ascending <code>false</code> if they are sorted in reverse.
+	 */
+	public void setView(int[] view, String filter, int sortColumn, boolean ascending) {
+		this.view = view;
+		this.viewFilter = filter;
+		this.viewSortColumn = sortColumn;
+		this.viewAscending = ascending;
+		this.fireTableDataChanged();
+	}
+
+	/**
+	 * Changes the order asked for the rows when the header of a column is
+	 * clicked: the first click sorts by the column in ascending order, the
+	 * second one in descending order and the third one goes back to the
+	 * order the results were found. The rows don't change until a new view
+	 * is set.
+	 * @param column The column clicked.
+	 */
+	public void toggleSort(int column) {
+		if (this.sortColumn != column) {
+			this.sortColumn = column;
+			this.ascending = true;
+		} else if (this.ascending) {
+			this.ascending = false;
+		} else {
+			this.sortColumn = -1;
+			this.ascending = true;
+		}
+	}
+
+	/**
+	 * Returns the column that the rows have to be sorted by.
+	 * @return The column or -1 if the rows have to be in the order the
+	 * results were found.
+	 */
+	public int getSortColumn() {
+		return sortColumn;
+	}
+
+	public boolean isAscending() {
+		return ascending;
+	}
+
+	/**
+	 * Tells whether the rows are sorted as asked for and filtered.
+	 * @param filter The text that the paths of the results shown must
+	 * contain.
+	 * @return <code>true</code> if the rows are up to date.
+	 */
+	public boolean isViewUpToDate(String filter) {
+		return this.viewFilter.equals(filter) && this.viewSortColumn == this.sortColumn
+			&& this.viewAscending == this.ascending;
+	}
+
+	/**
+	 * Returns the number of results of the kind of this table, shown or not.
+	 * @return The number of results.
+	 */
+	public int getTotalCount() {
+		return this.index == null ? this.liveCount : this.index.getCount(this.kind);
+	}
+
+	@Override
+	public int getRowCount() {
+		int result;
+		if (this.index == null) {
+			result = this.liveEntries.size();
+		} else if (this.view == null) {
+			result = this.index.getCount(this.kind);
+		} else {
+			result = this.view.length;
+		}
+		return result;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return this.kind == ResultKind.ERROR || this.kind == ResultKind.MOVED ? 3 : 2;
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		String result;
+		if (column == PATH_COLUMN) {
+			result = "Path";
+		} else if (column == SIZE_COLUMN) {
+			result = "Size";
+		} else if (this.kind == ResultKind.MOVED) {
+			result = "Moved from";
+		} else {
+			result = "Reason";
+		}
+		return result;
+	}
+
+	@Override
+	public Object getValueAt(int row, int column) {
+		Object result;
+		try {
+			ReportEntry entry = this.getEntry(row);
+			if (column == PATH_COLUMN) {
+				result = entry.getPath();
+			} else if (column == SIZE_COLUMN) {
+				result = Units.formatBytes(entry.getSize());
+			} else if (this.kind == ResultKind.MOVED) {
+				result = entry.getFrom();
+			} else {
+				result = entry.getError();
+			}
+		} catch (FileException e) {
+			result = column == PATH_COLUMN ? e.getMessage() : null;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the result shown in a row.
+	 * @param row The row.
+	 * @return The result.
+	 * @throws FileException If the report can't be read.
+	 */
+	public ReportEntry getEntry(int row) throws FileException {
+		ReportEntry result;
+		if (this.index == null) {
+			result = this.liveEntries.get(row);
+		} else {
+			result = this.index.getEntry(this.kind, this.view == null ? row : this.view[row]);
+		}
+		return result;
+	}
+}
@@ -5,6 +5,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.beans.PropertyChangeListener;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 
@@ -12,6 +13,7 @@ import javax.swing.JButton;
 import javax.swing.JProgressBar;
 import javax.swing.JTextArea;
 
+import directory_comparator.logic.models.ComparisonOptions;
 import directory_comparator.ui.AppWindow;
 import directory_comparator.ui.components.FileJTextField;
 import directory_comparator.ui.listeners.DirectoryComparisonChangeListener;
@@ -36,38 +38,50 @@ public class StartJButton extends JButton {
 		FileJTextField sourceFileTextField = appWindow.getSourceFileTextField();
 		FileJTextField destinationFileTextField = appWindow.getDestinationFileTextField();
 		FileJTextField resultsDirectoryFileTextField = appWindow.getResultDirectoryTextField();
-		Collection<Component> sensitiveComponents = Arrays.asList(
+		Collection<Component> sensitiveComponents = new ArrayList<>(Arrays.asList(
 			this, sourceFileTextField, destinationFileTextField, resultsDirectoryFileTextField,
 			appWindow.getSourceFileChooseButton(), appWindow.getDestinationFileChooseButton(),
 			appWindow.getResultsDirectoryChooseButton()
-		);
+		));
+		sensitiveComponents.addAll(appWindow.getOptionComponents());
 		this.addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent e) {
-				File sourceDirectory = sourceFileTextField.getSelectedFile();
-				File destinationDirectory = destinationFileTextField.getSelectedFile();
-				File resultsDirectory = resultsDirectoryFileTextField.getSelectedFile();
+				ComparisonOptions options;
+				try {
+					options = appWindow.createComparisonOptions();
+				} catch (IllegalArgumentException exception) {
+					taskOutput.setText("Error: " + exception.getMessage());
+					options = null;
+				}
+				if (options != null) {
+					File sourceDirectory = sourceFileTextField.getSelectedFile();
+					File destinationDirectory = destinationFileTextField.getSelectedFile();
+					File resultsDirectory = resultsDirectoryFileTextField.getSelectedFile();
 				
-				progressBar.setValue(0);
-		    	taskOutput.setText("Calculating data...");
-		    	for (Component component : sensitiveComponents) {
-		    		component.setEnabled(false);
-		    	}
+					progressBar.setValue(0);
+			    	taskOutput.setText(DirectoryComparisonChangeListener.createStatusNoteText(0, 0));
+			    	appWindow.getResultsBrowser().clear();
+			    	for (Component component : sensitiveComponents) {
+			    		component.setEnabled(false);
+			    	}
 		        
-		        //Instances of javax.swing.SwingWorker are not reusuable, so
-		        //we create new instances as needed.
-		    	DirectoryComparisonTask task = new DirectoryComparisonTask(
-		        	sourceDirectory, destinationDirectory, resultsDirectory, taskOutput, sensitiveComponents, stopButton
-		        );
-		        PropertyChangeListener propertyChangeListener = new DirectoryComparisonChangeListener(
-	            	progressBar, taskOutput, task
-	            );
-		        task.addPropertyChangeListener(propertyChangeListener);
-		        appWindow.setTask(task);
-		        task.execute();
+			        //Instances of javax.swing.SwingWorker are not reusuable, so
+			        //we create new instances as needed.
+			    	DirectoryComparisonTask task = new DirectoryComparisonTask(
+			        	sourceDirectory, destinationDirectory, resultsDirectory, options,
+			        	taskOutput, appWindow.getResultsBrowser(), sensitiveComponents, stopButton
+			        );
+			        PropertyChangeListener propertyChangeListener = new DirectoryComparisonChangeListener(
+		            	progressBar, taskOutput, task
+		            );
+			        task.addPropertyChangeListener(propertyChangeListener);
+			        appWindow.setTask(task);
+			        task.execute();
 		        
-		        // After a task starts, the user has the possibility of stopping it.
-		        stopButton.setEnabled(true);
+			        // After a task starts, the user has the possibility of stopping it.
+			        stopButton.setEnabled(true);
+				}
 			}
 		});
 	}
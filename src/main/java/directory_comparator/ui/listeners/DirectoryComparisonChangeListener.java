@@ -6,6 +6,7 @@ import java.beans.PropertyChangeListener;
 import javax.swing.JProgressBar;
 import javax.swing.JTextArea;
 
+import directory_comparator.logic.Units;
 import directory_comparator.ui.workers.DirectoryComparisonTask;
 
 /**
@@ -32,24 +33,46 @@ public class DirectoryComparisonChangeListener implements PropertyChangeListener
 		this.task = task;
 	}
 	
-	public static String createStatusNoteText(int processedFiles, int totalFiles) {
+	/**
+	 * Creates the text that tells the user how the task is going. The total
+	 * number of files isn't known until both directories have been walked.
+	 * @param processedFiles The number of files processed so far.
+	 * @param bytesRead The number of bytes read so far to compare files.
+	 * @return The text.
+	 */
+	public static String createStatusNoteText(int processedFiles, long bytesRead) {
 		String result;
-		if (totalFiles > 0) {
-			result = "Processed " + processedFiles + "/" + totalFiles + " files.";
+		if (processedFiles > 0 || bytesRead > 0) {
+			result = "Processed " + processedFiles + " files.\nRead " + Units.formatBytes(bytesRead) + ".";
 		} else {
-			result = "";
+			result = "Listing folders...";
 		}
 		return result;
 	}
-
+	
 	/**
-     * Invoked when task's progress property changes.
+     * Invoked when task's progress property changes and, periodically, to
+     * show how many files have been processed. While the folders are
+     * watched, it's also invoked when the results change.
      */
     public void propertyChange(PropertyChangeEvent evt) {
         if ("progress" == evt.getPropertyName()) {
             int progress = (Integer) evt.getNewValue();
             progressBar.setValue(progress);
-            statusNote.setText(createStatusNoteText(this.task.getProcessedFiles(), this.task.getTotalFiles()));
-        } 
+        } else if ("status" == evt.getPropertyName()) {
+            String text = createStatusNoteText(this.task.getProcessedFiles(), this.task.getBytesRead());
+            if (this.task.getFilesToVerify() > 0) {
+            	text = text + "\nAll the files have been sampled. Verified " + this.task.getVerifiedFiles() + " of "
+            	+ this.task.getFilesToVerify() + " files that are probably equal.";
+            }
+            if (this.task.getMoveCandidates() > 0) {
+            	text = text + "\nLooking for moved files. Read " + this.task.getReadMoveCandidates() + " of "
+            	+ this.task.getMoveCandidates() + " new and deleted files of the same size.";
+            }
+            statusNote.setText(text);
+        } else if ("results" == evt.getPropertyName()) {
+            progressBar.setValue(100);
+            statusNote.setText(this.task.createSummaryText());
+        }
     }
 }
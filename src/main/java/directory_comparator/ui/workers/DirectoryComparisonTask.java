@@ -3,40 +3,54 @@ package directory_comparator.ui.workers;
 import java.awt.Component;
 import java.awt.Toolkit;
 import java.io.File;
-import java.nio.file.Path;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Optional;
+import java.util.List;
 import java.util.Set;
 
 import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 
 import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.DirectoryComparison;
 import directory_comparator.logic.FileManager;
-import directory_comparator.logic.enums.ShortcutReason;
-import directory_comparator.ui.listeners.DirectoryComparisonChangeListener;
-import directory_comparator.ui.workers.models.ComparisonResults;
+import directory_comparator.logic.LiveComparison;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.listeners.WatchListener;
+import directory_comparator.logic.models.ComparisonOptions;
+import directory_comparator.logic.models.ComparisonOutcome;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.results.ComparisonResults;
+import directory_comparator.logic.results.ReportEntry;
+import directory_comparator.logic.results.ResultSink;
+import directory_comparator.ui.components.ResultsBrowser;
 
 /**
- * An asynchronous task that compares all the contents of two directories.
+ * An asynchronous task that compares all the contents of two directories
+ * and, if watching is enabled, keeps the results up to date until it's
+ * stopped.
+ * <p>
+ * The results of the first comparison are published as soon as they are
+ * found, and {@link SwingWorker} passes them to the event dispatching thread
+ * in batches. The progress is notified at most once every
+ * {@link #UPDATE_INTERVAL} milliseconds, whatever the number of files.
  */
-public class DirectoryComparisonTask extends SwingWorker<Void, Void> {
+public class DirectoryComparisonTask extends SwingWorker<Void, ReportEntry> {
 
-	private final File oldDirectory;
-	private final File newDirectory;
-	private final File resultsDirectory;
+	/**
+	 * The minimum time, in milliseconds, between two notifications of the
+	 * progress.
+	 */
+	private static final long UPDATE_INTERVAL = 100;
+
+	private final LiveComparison live;
+	private final boolean watchEnabled;
 	private volatile JTextArea statusNote;
+	private final ResultsBrowser resultsBrowser;
 	private final Collection<Component> sensitiveComponents;
 	private final Component stopButton;
 	private String error;
-	private volatile int newFilesCompared;
-	private volatile int totalNewFiles;
-	private volatile int oldFilesChecked;
-	private volatile int totalOldFiles;
-	private ComparisonResults comparisonResults;
-	private Set<String> oldFilesThatNotExistInNewDirectory;
-	private FileManager fileManager;
+	private long lastUpdate;
 	
 	/**
 	 * Constructor.
@@ -44,7 +58,10 @@ public class DirectoryComparisonTask extends SwingWorker<Void, Void> {
 	 * @param newDirectory The new directory, which will be compared
 	 * to the old one to find out if there is something changed or new.
 	 * @param resultsDirectory Where to store the results.
+	 * @param options The comparison settings.
 	 * @param statusNote The status note.
+	 * @param resultsBrowser Where the results are shown while they are found
+	 * and when the comparison finishes.
 	 * @param sensitiveComponents The components that have to be enabled
 	 * only when the task ends.
 	 * @param stopButton The button that makes this task stop.
@@ -52,25 +69,55 @@ public class DirectoryComparisonTask extends SwingWorker<Void, Void> {
 	 */
     public DirectoryComparisonTask(
     	File oldDirectory, File newDirectory, File resultsDirectory,
-    	JTextArea statusNote, Collection<Component> sensitiveComponents,
-    	Component stopButton
+    	ComparisonOptions options, JTextArea statusNote, ResultsBrowser resultsBrowser,
+    	Collection<Component> sensitiveComponents, Component stopButton
     ) {
-    	this.oldDirectory = oldDirectory;
-    	this.newDirectory = newDirectory;
-    	this.resultsDirectory = resultsDirectory;
+    	this.live = new LiveComparison(oldDirectory, newDirectory, resultsDirectory, options);
+    	this.watchEnabled = options.isWatchEnabled();
 		this.statusNote = statusNote;
+		this.resultsBrowser = resultsBrowser;
 		this.sensitiveComponents = sensitiveComponents;
 		this.stopButton = stopButton;
 	}
     
     public int getProcessedFiles() {
-    	return this.newFilesCompared + this.oldFilesChecked;
+    	return this.live.getComparison().getProcessedFiles();
     }
     
-    public int getTotalFiles() {
-    	return this.totalNewFiles + this.totalOldFiles;
+    /**
+     * Returns the number of files that sampling found probably equal and
+     * are being verified.
+     * @return The number of files, which is 0 until the verification starts.
+     */
+    public int getFilesToVerify() {
+    	return this.live.getComparison().getFilesToVerify();
     }
-
+    
+    public int getVerifiedFiles() {
+    	return this.live.getComparison().getVerifiedFiles();
+    }
+    
+    /**
+     * Returns the number of new and deleted files that are read to find the
+     * moved ones.
+     * @return The number of files, which is 0 until the detection starts.
+     */
+    public int getMoveCandidates() {
+    	return this.live.getComparison().getMoveCandidates();
+    }
+    
+    public int getReadMoveCandidates() {
+    	return this.live.getComparison().getReadMoveCandidates();
+    }
+    
+    /**
+     * Returns the number of bytes read so far to compare files.
+     * @return The number of bytes.
+     */
+    public long getBytesRead() {
+    	return this.live.getComparison().getBytesRead();
+    }
+    
     /**
      * Main task. Executed in background thread. Note that this method is
      * executed only once.
@@ -79,32 +126,75 @@ public class DirectoryComparisonTask extends SwingWorker<Void, Void> {
     @Override
     public Void doInBackground() {
 		this.setProgress(0);
-		this.newFilesCompared = 0;
-		this.oldFilesChecked = 0;
 		try {
-			this.fileManager = new FileManager(this.oldDirectory, this.newDirectory, this.resultsDirectory);
-	    	this.totalNewFiles = FileManager.countFiles(this.newDirectory);
-			this.totalOldFiles = FileManager.countFiles(this.oldDirectory);
-			this.statusNote.setText(DirectoryComparisonChangeListener.createStatusNoteText(
-				this.getProcessedFiles(), this.getTotalFiles()
-			));
-			this.comparisonResults = new ComparisonResults(); 
-			this.oldFilesThatNotExistInNewDirectory = new HashSet<>();
-			this.compareRecursively(this.newDirectory);
-			this.getOldFilesThatNotExistInNewDirectoryRecursively(this.oldDirectory);
-			this.statusNote.setText("Creating results in results folder...");
-			for (String path : this.comparisonResults.getNewFilePaths()) {
-				this.fileManager.createShortcut(path, ShortcutReason.FILE_CREATED);
-			}
-			for (String path : this.comparisonResults.getChangedFilePaths()) {
-				this.fileManager.createShortcut(path, ShortcutReason.FILE_CHANGED);
-			}
+			this.live.run(new WatchListener() {
+				@Override
+				public void onOutcome(ComparisonOutcome outcome) {
+					updateProgress(false);
+				}
+				@Override
+				public void onWaiting() {
+					updateProgress(false);
+				}
+				@Override
+				public void onVerificationStarted(int files) {
+					updateProgress(true);
+				}
+				@Override
+				public void onMoveDetectionStarted(int files) {
+					updateProgress(true);
+				}
+				@Override
+				public void onComparisonFinished() {
+					updateProgress(true);
+					firePropertyChange("results", null, null);
+					if (watchEnabled) {
+						
+						// While watching, the task doesn't end after a comparison.
+						File reportFile = live.getComparison().getFileManager().getReportFile();
+						SwingUtilities.invokeLater(() -> resultsBrowser.load(reportFile));
+					}
+				}
+				@Override
+				public void onChange(String relativePath, Set<ResultKind> before, Set<ResultKind> after) {
+					firePropertyChange("results", null, relativePath);
+				}
+				@Override
+				public boolean isCancelled() {
+					return DirectoryComparisonTask.this.isCancelled();
+				}
+			}, new ResultSink() {
+				@Override
+				public void accept(ResultKind kind, FileEntry entry) {
+					publish(new ReportEntry(kind, entry.getRelativePath(), entry.getSize(), null, null));
+				}
+				@Override
+				public void acceptMove(FileEntry oldEntry, FileEntry newEntry) {
+					publish(new ReportEntry(
+						ResultKind.MOVED, newEntry.getRelativePath(), newEntry.getSize(), null, oldEntry.getRelativePath()
+					));
+				}
+				@Override
+				public void acceptError(FileEntry entry, FileException error) {
+					publish(new ReportEntry(ResultKind.ERROR, entry.getRelativePath(), entry.getSize(), error.getMessage(), null));
+				}
+			});
 		} catch (FileException e) {
 			this.error(e.getMessage());
 		}
         return null;
     }
 
+	/**
+	 * Executed in event dispatching thread. Shows a batch of the results
+	 * published while the first comparison runs.
+	 * @param results The results.
+	 */
+	@Override
+	protected void process(List<ReportEntry> results) {
+		this.resultsBrowser.addLiveResults(results);
+	}
+
 	/**
 	 * Executed in event dispatching thread. This method is called when the task
 	 * finishes.
@@ -121,86 +211,92 @@ public class DirectoryComparisonTask extends SwingWorker<Void, Void> {
         
         if (this.error != null) {
         	this.statusNote.setText("Error: " + this.error);
-        } else if (this.isCancelled()) {
+        } else if (this.isCancelled() && !this.live.isWatching()) {
         	this.statusNote.setText("Task cancelled.");
-        } else if (this.comparisonResults == null) {
-        	this.statusNote.setText("Error: there are not comparison results.");
         } else {
-        	int changedFiles = this.comparisonResults.getChangedFilePaths().size();
-        	int addedFiles = this.comparisonResults.getNewFilePaths().size();
-        	int deletedFiles = this.oldFilesThatNotExistInNewDirectory.size();
-        	String changesString;
-        	if (changedFiles + addedFiles + deletedFiles == 0) {
-        		changesString = "The two folders are identical.";
-        	} else {
-        		changesString = "Files changed in new folder: " + changedFiles
-        		+ ".\nFiles added in new folder: " + addedFiles
-        		+ ".\nFiles deleted in new folder: " + deletedFiles + ".";
+        	this.statusNote.setText(this.createSummaryText());
+        	if (!this.watchEnabled) {
+        		this.resultsBrowser.load(this.live.getComparison().getFileManager().getReportFile());
         	}
-        	String zeroKbFiles = printCollection(this.comparisonResults.getZeroKbFilePaths());
-        	String oldFilesThatNotExistInNew = printCollection(this.oldFilesThatNotExistInNewDirectory);
-        	this.statusNote.setText(
-        		"File comparison has been completed.\nFiles in old folder: " + this.totalOldFiles
-        		+ ".\nFiles in new folder: " + this.totalNewFiles + ".\n" + changesString
-        		+ "\n\nZero KB files" + zeroKbFiles
-        		+ "\n\nOld files that don't exist in new directory"
-        		+ oldFilesThatNotExistInNew
-        	);
         }
     }
-    
-    private static String printCollection(Collection<String> collection) {
-    	String result;
-    	if (collection.size() > 0) {
-    		result = "\n" + String.join("\n", collection);
+
+    /**
+     * Creates a summary of the results of the comparison. While the folders
+     * are being watched, the summary includes the changes found since the
+     * comparison finished.
+     * @return The text.
+     */
+    public String createSummaryText() {
+    	DirectoryComparison comparison = this.live.getComparison();
+    	ComparisonResults comparisonResults = comparison.getResults();
+    	FileManager fileManager = comparison.getFileManager();
+    	int changedFiles = comparisonResults.getCount(ResultKind.CHANGED);
+    	int addedFiles = comparisonResults.getCount(ResultKind.NEW);
+    	int deletedFiles = comparisonResults.getCount(ResultKind.DELETED);
+    	int movedFiles = comparisonResults.getCount(ResultKind.MOVED);
+    	String changesString;
+    	if (changedFiles + addedFiles + deletedFiles + movedFiles == 0) {
+    		changesString = "The two folders are identical.";
     	} else {
-    		result = ": none.";
+    		changesString = "Files changed in new folder: " + changedFiles
+    		+ ".\nFiles added in new folder: " + addedFiles
+    		+ ".\nFiles deleted in new folder: " + deletedFiles + ".";
+    		if (movedFiles > 0) {
+    			changesString = changesString + "\nFiles moved or renamed in new folder: " + movedFiles + ".";
+    		}
     	}
-    	return result;
-    }
-    
-    private void compareRecursively(File newDirectory) throws FileException {
-    	File[] newDirectoryChildren = newDirectory.listFiles();
-    	int index = 0;
-    	File newDirectoryChild;
-    	while (!this.isCancelled() && index < newDirectoryChildren.length) {
-    		newDirectoryChild = newDirectoryChildren[index];
-    		if (newDirectoryChild.isFile()) {
-    			Optional<Path> oldFilePath = this.fileManager.locateOldFile(newDirectoryChild.toPath());
-    			if (newDirectoryChild.length() == 0) {
-    				this.comparisonResults.addZeroKbFilePath(newDirectoryChild.getAbsolutePath());
-    			}
-    			if(!oldFilePath.isPresent()) {
-    				this.comparisonResults.addNewFilePath(newDirectoryChild.getAbsolutePath());
-    			} else if (!FileManager.filesEqual(Path.of(newDirectoryChild.getAbsolutePath()), oldFilePath.get())) {
-    				this.comparisonResults.addChangedFilePath(newDirectoryChild.getAbsolutePath());
-    			}
-    			this.newFilesCompared++;
-    			this.setProgress(Math.min(newFilesCompared * 90 / totalNewFiles, 90));
-    		} else if (newDirectoryChild.isDirectory()) {
-    			this.compareRecursively(newDirectoryChild);
+    	if (fileManager.isDigestCacheEnabled()) {
+    		changesString = changesString + "\nDigest cache: " + fileManager.getDigestCacheHits()
+    		+ " hits, " + fileManager.getDigestCacheMisses() + " misses.";
+    		if (fileManager.getFilesInUnchangedDirectories() > 0) {
+    			changesString = changesString + "\nFiles skipped in unchanged folders: "
+    			+ fileManager.getFilesInUnchangedDirectories() + ".";
     		}
-    		index++;
     	}
+    	if (comparison.getResumedResults() > 0) {
+    		changesString = changesString + "\nResults restored from an interrupted comparison: "
+    		+ comparison.getResumedResults() + ".";
+    	}
+    	if (fileManager.getProbablyEqualFiles() > 0) {
+    		changesString = changesString + "\nFiles that are probably equal, compared by sampling: "
+    		+ fileManager.getProbablyEqualFiles() + ". Verified: " + comparison.getVerifiedFiles() + ".";
+    	}
+    	if (comparisonResults.getCount(ResultKind.ERROR) > 0) {
+    		changesString = changesString + "\nFiles that couldn't be compared: "
+    		+ comparisonResults.getCount(ResultKind.ERROR) + ".";
+    	}
+    	if (fileManager.getFailedShortcuts() > 0) {
+    		changesString = changesString + "\nShortcuts that couldn't be created: "
+    		+ fileManager.getFailedShortcuts() + ". " + fileManager.getShortcutError().orElse("");
+    	}
+    	String status;
+    	if (!this.live.isWatching()) {
+    		status = "File comparison has been completed.";
+    	} else if (this.isDone()) {
+    		status = "File comparison has been completed. The folders aren't watched anymore.";
+    	} else {
+    		status = "File comparison has been completed. Watching the folders for changes, stop to finish."
+    		+ "\nThe report has the results of the last full comparison.";
+    	}
+    	return status + "\nFiles in old folder: " + comparison.getOldFiles()
+    		+ ".\nFiles in new folder: " + comparison.getNewFiles() + ".\n" + changesString
+    		+ "\nAll the results are in " + fileManager.getReportFile() + ", browse them below."
+    		+ "\n\n" + fileManager.getMetrics().createSummary()
+    		+ "\nThe metrics are in " + fileManager.getMetricsFile() + ".";
     }
-
-    private void getOldFilesThatNotExistInNewDirectoryRecursively(File oldDirectory) {
-    	File[] oldDirectoryChildren = oldDirectory.listFiles();
-    	int index = 0;
-    	File oldDirectoryChild;
-    	while (!this.isCancelled() && index < oldDirectoryChildren.length) {
-    		oldDirectoryChild = oldDirectoryChildren[index];
-    		if (oldDirectoryChild.isFile()) {
-    			Optional<Path> newFilePath = this.fileManager.locateNewFile(oldDirectoryChild.toPath());
-    			if(!newFilePath.isPresent()) {
-    				this.oldFilesThatNotExistInNewDirectory.add(oldDirectoryChild.getAbsolutePath());
-    			}
-    			this.oldFilesChecked++;
-    			this.setProgress(Math.min(90 + oldFilesChecked * 10 / totalOldFiles, 100));
-    		} else if (oldDirectoryChild.isDirectory()) {
-    			this.getOldFilesThatNotExistInNewDirectoryRecursively(oldDirectoryChild);
-    		}
-    		index++;
+    
+    /**
+     * Notifies the progress, unless it was notified a short time ago.
+     * @param force <code>true</code> to notify it anyway.
+     */
+    private void updateProgress(boolean force) {
+    	long now = System.currentTimeMillis();
+    	if (force || now - this.lastUpdate >= UPDATE_INTERVAL) {
+    		this.lastUpdate = now;
+    		DirectoryComparison comparison = this.live.getComparison();
+    		this.setProgress(Math.min((int) (comparison.getCompletedFraction() * 100), 100));
+    		this.firePropertyChange("status", null, now);
     	}
     }
     
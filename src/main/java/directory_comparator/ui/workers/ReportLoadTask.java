@@ -0,0 +1,54 @@
+package directory_comparator.ui.workers;
+
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingWorker;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.results.ReportIndex;
+import directory_comparator.ui.components.ResultsBrowser;
+
+/**
+ * An asynchronous task that indexes a report for a {@link ResultsBrowser}.
+ */
+public class ReportLoadTask extends SwingWorker<ReportIndex, Void> {
+
+	private final ResultsBrowser browser;
+	private final File reportFile;
+
+	/**
+	 * Constructor.
+	 * @param browser The browser that shows the report.
+	 * @param reportFile The report file.
+	 */
+	public ReportLoadTask(ResultsBrowser browser, File reportFile) {
+		this.browser = browser;
+		this.reportFile = reportFile;
+	}
+
+	/**
+	 * Executed in a background thread.
+	 * @return The index of the report.
+	 * @throws FileException If the report can't be read.
+	 */
+	@Override
+	protected ReportIndex doInBackground() throws FileException {
+		return new ReportIndex(this.reportFile);
+	}
+
+	/**
+	 * Executed in the event dispatching thread. Passes the report to the
+	 * browser, which closes it if it has been cleared meanwhile.
+	 */
+	@Override
+	protected void done() {
+		try {
+			this.browser.reportLoaded(this, this.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			this.browser.showError(e.getCause().getMessage());
+		}
+	}
+}
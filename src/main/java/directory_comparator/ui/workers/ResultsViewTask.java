@@ -0,0 +1,171 @@
+package directory_comparator.ui.workers;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingWorker;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.listeners.ReportScanListener;
+import directory_comparator.logic.results.ReportEntry;
+import directory_comparator.logic.results.ReportIndex;
+import directory_comparator.ui.components.ResultsBrowser;
+import directory_comparator.ui.components.ResultsTableModel;
+
+/**
+ * An asynchronous task that selects and sorts the results shown in a
+ * {@link ResultsTableModel}. Filtering and sorting by path read the report
+ * once from beginning to end, while sorting by size doesn't read it at all.
+ */
+public class ResultsViewTask extends SwingWorker<int[], Void> {
+
+	private final ResultsBrowser browser;
+	private final ResultsTableModel model;
+	private final ReportIndex index;
+	private final ResultKind kind;
+	private final String filter;
+	private final int sortColumn;
+	private final boolean ascending;
+
+	/**
+	 * Constructor.
+	 * @param browser The browser that shows the table.
+	 * @param model The table, which tells how to sort the results.
+	 * @param filter The text that the paths of the results shown must
+	 * contain, ignoring case. Empty to show them all.
+	 */
+	public ResultsViewTask(ResultsBrowser browser, ResultsTableModel model, String filter) {
+		this.browser = browser;
+		this.model = model;
+		this.index = model.getIndex();
+		this.kind = model.getKind();
+		this.filter = filter;
+		this.sortColumn = model.getSortColumn();
+		this.ascending = model.isAscending();
+	}
+
+	/**
+	 * Tells whether this task computes a view.
+	 * @param table The table.
+	 * @param rowFilter The text that the paths of the results shown must
+	 * contain.
+	 * @return <code>true</code> if the task computes the view of the table
+	 * with that filter and the order the table asks for now.
+	 */
+	public boolean isFor(ResultsTableModel table, String rowFilter) {
+		return this.model == table && this.filter.equals(rowFilter) && this.sortColumn == table.getSortColumn()
+			&& this.ascending == table.isAscending();
+	}
+
+	/**
+	 * Executed in a background thread.
+	 * @return The positions of the results shown or <code>null</code> to
+	 * show all of them in the order they were found.
+	 * @throws FileException If the report can't be read.
+	 */
+	@Override
+	protected int[] doInBackground() throws FileException {
+		int[] result;
+		if (this.filter.isEmpty() && this.sortColumn < 0) {
+			result = null;
+		} else {
+			Selection selection = new Selection(this.sortColumn == ResultsTableModel.PATH_COLUMN);
+			if (this.filter.isEmpty() && this.sortColumn != ResultsTableModel.PATH_COLUMN) {
+				for (int row = 0; row < this.index.getCount(this.kind); row++) {
+					selection.add(row, null);
+				}
+			} else {
+				String lowerCaseFilter = this.filter.toLowerCase(Locale.ROOT);
+				this.index.scan(this.kind, new ReportScanListener() {
+					@Override
+					public void onEntry(int row, ReportEntry entry) {
+						if (entry.getPath().toLowerCase(Locale.ROOT).contains(lowerCaseFilter)) {
+							selection.add(row, entry.getPath());
+						}
+					}
+					@Override
+					public boolean isCancelled() {
+						return ResultsViewTask.this.isCancelled();
+					}
+				});
+			}
+			result = this.sort(selection);
+		}
+		return result;
+	}
+
+	/**
+	 * Executed in the event dispatching thread. Shows the view unless a
+	 * newer one has been asked for meanwhile.
+	 */
+	@Override
+	protected void done() {
+		if (!this.isCancelled()) {
+			try {
+				this.model.setView(this.get(), this.filter, this.sortColumn, this.ascending);
+				this.browser.viewChanged();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				this.browser.showError(e.getCause().getMessage());
+			}
+		}
+	}
+
+	private int[] sort(Selection selection) {
+		int[] result;
+		if (this.sortColumn < 0) {
+			result = Arrays.copyOf(selection.rows, selection.size);
+		} else {
+			Integer[] positions = new Integer[selection.size];
+			for (int i = 0; i < positions.length; i++) {
+				positions[i] = i;
+			}
+			Comparator<Integer> comparator;
+			if (this.sortColumn == ResultsTableModel.PATH_COLUMN) {
+				comparator = Comparator.comparing(position -> selection.paths[position]);
+			} else {
+				comparator = Comparator.comparingLong(position -> this.index.getSize(this.kind, selection.rows[position]));
+			}
+			Arrays.sort(positions, this.ascending ? comparator : comparator.reversed());
+			result = new int[positions.length];
+			for (int i = 0; i < positions.length; i++) {
+				result[i] = selection.rows[positions[i]];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The results selected, in growing arrays.
+	 */
+	private static class Selection {
+
+		private final boolean keepPaths;
+		private int[] rows = new int[1024];
+		private String[] paths;
+		private int size;
+
+		private Selection(boolean keepPaths) {
+			this.keepPaths = keepPaths;
+			this.paths = keepPaths ? new String[this.rows.length] : null;
+		}
+
+		private void add(int row, String path) {
+			if (this.size == this.rows.length) {
+				this.rows = Arrays.copyOf(this.rows, this.size * 2);
+				if (this.keepPaths) {
+					this.paths = Arrays.copyOf(this.paths, this.size * 2);
+				}
+			}
+			this.rows[this.size] = row;
+			if (this.keepPaths) {
+				this.paths[this.size] = path;
+			}
+			this.size++;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package directory_comparator.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.listeners.ComparisonListener;
+import directory_comparator.logic.models.ComparisonOptions;
+import directory_comparator.logic.models.ComparisonOutcome;
+
+class ComparisonJournalTest {
+
+	@TempDir
+	Path temporaryDirectory;
+
+	@Test
+	void resumesAComparisonThatWasStopped() throws IOException, FileException {
+		File oldDirectory = this.temporaryDirectory.resolve("old").toFile();
+		File newDirectory = this.temporaryDirectory.resolve("new").toFile();
+		for (int directory = 0; directory < 20; directory++) {
+			for (int file = 0; file < 20; file++) {
+				String name = "dir" + directory + "/file" + file;
+				write(oldDirectory.toPath().resolve(name), name);
+				if (file % 5 != 0) {
+					write(newDirectory.toPath().resolve(name), file % 3 == 0 ? "changed" : name);
+				}
+			}
+			write(newDirectory.toPath().resolve("dir" + directory + "/added"), "added");
+		}
+		File resultsDirectory = this.temporaryDirectory.resolve("results").toFile();
+		ComparisonOptions options = new ComparisonOptions();
+		options.setJournalEnabled(true);
+		options.setShortcutsEnabled(false);
+		options.setComparisonThreads(1);
+		options.setListingThreads(1);
+		DirectoryComparison stopped = new DirectoryComparison(oldDirectory, newDirectory, resultsDirectory, options);
+		stopped.run(new StoppingListener(250));
+		File journalFile = new File(resultsDirectory, "comparison.journal");
+		assertTrue(journalFile.isFile());
+
+		DirectoryComparison resumed = new DirectoryComparison(oldDirectory, newDirectory, resultsDirectory, options);
+		resumed.run(new StoppingListener(Integer.MAX_VALUE));
+		assertTrue(resumed.getResumedResults() > 0);
+		assertFalse(journalFile.exists());
+
+		options.setJournalEnabled(false);
+		DirectoryComparison fresh = new DirectoryComparison(
+			oldDirectory, newDirectory, this.temporaryDirectory.resolve("fresh").toFile(), options
+		);
+		fresh.run(new StoppingListener(Integer.MAX_VALUE));
+		assertEquals(20, fresh.getResults().getCount(ResultKind.NEW));
+		for (ResultKind kind : ResultKind.values()) {
+			assertEquals(fresh.getResults().getCount(kind), resumed.getResults().getCount(kind), kind.name());
+		}
+	}
+
+	private static void write(Path file, String contents) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, contents);
+	}
+
+	/**
+	 * Stops a comparison once it has received some outcomes.
+	 */
+	private static class StoppingListener implements ComparisonListener {
+
+		private final int maxOutcomes;
+		private volatile int outcomes;
+
+		private StoppingListener(int maxOutcomes) {
+			this.maxOutcomes = maxOutcomes;
+		}
+
+		@Override
+		public void onOutcome(ComparisonOutcome outcome) {
+			this.outcomes++;
+		}
+
+		@Override
+		public void onWaiting() {
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return this.outcomes >= this.maxOutcomes;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package directory_comparator.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.SyncAction;
+import directory_comparator.logic.listeners.ComparisonListener;
+import directory_comparator.logic.listeners.SyncListener;
+import directory_comparator.logic.models.ComparisonOptions;
+import directory_comparator.logic.models.ComparisonOutcome;
+
+class DirectorySyncTest {
+
+	@TempDir
+	Path temporaryDirectory;
+
+	private Path oldRoot;
+	private Path newRoot;
+	private File resultsDirectory;
+	private ComparisonOptions options;
+
+	@BeforeEach
+	void createDirectories() throws IOException {
+		this.oldRoot = this.temporaryDirectory.resolve("old");
+		this.newRoot = this.temporaryDirectory.resolve("new");
+		this.resultsDirectory = this.temporaryDirectory.resolve("results").toFile();
+		write(this.oldRoot.resolve("a/moved.txt"), "moved");
+		write(this.oldRoot.resolve("x"), "a file that becomes a folder");
+		write(this.oldRoot.resolve("changed.txt"), "1");
+		write(this.oldRoot.resolve("gone.txt"), "gone");
+		write(this.newRoot.resolve("b/moved.txt"), "moved");
+		write(this.newRoot.resolve("x/inner.txt"), "inside the folder");
+		write(this.newRoot.resolve("changed.txt"), "2");
+		write(this.newRoot.resolve("added.txt"), "added");
+		this.options = new ComparisonOptions();
+		this.options.setMoveDetectionEnabled(true);
+		this.options.setShortcutsEnabled(false);
+	}
+
+	@Test
+	void copiesEveryFileBeforeDeletingAny() throws FileException, IOException {
+		this.compare(false);
+		RecordingListener listener = new RecordingListener();
+		DirectorySync sync = this.createSync();
+		assertTrue(sync.sync(listener));
+		assertEquals(List.of(), listener.failed);
+		assertEquals(readTree(this.newRoot), readTree(this.oldRoot));
+		List<String> synced = listener.synced;
+		int firstDeletion = synced.indexOf("Delete gone.txt");
+		assertTrue(firstDeletion >= 0, synced.toString());
+		for (String copy : List.of("Copy added.txt", "Copy b/moved.txt", "Copy changed.txt")) {
+			assertTrue(synced.indexOf(copy) >= 0 && synced.indexOf(copy) < firstDeletion, synced.toString());
+		}
+		assertTrue(synced.indexOf("Delete a/moved.txt") > firstDeletion, synced.toString());
+
+		// The file that replaces a file with a folder can only be copied once the file is deleted.
+		assertTrue(synced.indexOf("Copy x/inner.txt") > synced.indexOf("Delete x"), synced.toString());
+		assertFalse(sync.isDeletionSkipped());
+	}
+
+	@Test
+	void deletesNothingWhenACopyFails() throws FileException, IOException {
+		this.compare(false);
+		Files.delete(this.newRoot.resolve("added.txt"));
+		RecordingListener listener = new RecordingListener();
+		DirectorySync sync = this.createSync();
+		sync.sync(listener);
+
+		// The file that needs the old file deleted can't be copied either.
+		assertEquals(List.of("Copy added.txt", "Copy x/inner.txt"), listener.failed);
+		assertTrue(sync.isDeletionSkipped());
+		assertEquals(0, sync.getDeletedFiles());
+		assertTrue(Files.exists(this.oldRoot.resolve("gone.txt")));
+		assertTrue(Files.exists(this.oldRoot.resolve("a/moved.txt")));
+		assertTrue(Files.isRegularFile(this.oldRoot.resolve("x")));
+		assertEquals("moved", Files.readString(this.oldRoot.resolve("b/moved.txt")));
+	}
+
+	@Test
+	void refusesTheReportOfAStoppedComparison() throws FileException {
+		this.compare(true);
+		DirectorySync sync = this.createSync();
+		FileException error = assertThrows(FileException.class, () -> sync.sync(new RecordingListener()));
+		assertTrue(error.getMessage().contains("stopped"), error.getMessage());
+		assertTrue(Files.exists(this.oldRoot.resolve("gone.txt")));
+		assertFalse(Files.exists(this.oldRoot.resolve("added.txt")));
+	}
+
+	private void compare(boolean stopped) throws FileException {
+		DirectoryComparison comparison = new DirectoryComparison(
+			this.oldRoot.toFile(), this.newRoot.toFile(), this.resultsDirectory, this.options
+		);
+		comparison.run(new ComparisonListener() {
+			@Override
+			public void onOutcome(ComparisonOutcome outcome) {
+			}
+			@Override
+			public void onWaiting() {
+			}
+			@Override
+			public boolean isCancelled() {
+				return stopped;
+			}
+		});
+	}
+
+	private DirectorySync createSync() throws FileException {
+		DirectorySync result = new DirectorySync(
+			this.oldRoot.toFile(), this.newRoot.toFile(), new File(this.resultsDirectory, "report.ndjson"), this.options
+		);
+		result.setDeletionEnabled(true);
+		return result;
+	}
+
+	/**
+	 * Returns the contents of every file of a directory by relative path.
+	 */
+	private static Map<String, String> readTree(Path root) throws IOException {
+		Map<String, String> result = new TreeMap<>();
+		try (Stream<Path> files = Files.walk(root)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				if (Files.isRegularFile(file)) {
+					result.put(root.relativize(file).toString().replace(File.separatorChar, '/'), Files.readString(file));
+				}
+			}
+		}
+		return result;
+	}
+
+	private static void write(Path file, String contents) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, contents);
+	}
+
+	/**
+	 * Records what is done to every file, in the order it's done.
+	 */
+	private static class RecordingListener implements SyncListener {
+
+		private final List<String> synced = Collections.synchronizedList(new ArrayList<>());
+		private final List<String> failed = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public void onFileSynced(SyncAction action, String relativePath, long size) {
+			this.synced.add(action + " " + relativePath);
+		}
+
+		@Override
+		public void onFileFailed(SyncAction action, String relativePath, FileException error) {
+			this.failed.add(action + " " + relativePath);
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+	}
+}
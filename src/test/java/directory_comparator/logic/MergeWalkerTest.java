@@ -0,0 +1,116 @@
+package directory_comparator.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.enums.EntryStatus;
+import directory_comparator.logic.listeners.WalkListener;
+import directory_comparator.logic.metrics.ComparisonMetrics;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+
+class MergeWalkerTest {
+
+	@TempDir
+	Path temporaryDirectory;
+
+	@Test
+	void walksTheFilesOfEveryDirectoryByName() throws IOException, FileException {
+		Path oldRoot = this.temporaryDirectory.resolve("old");
+		Path newRoot = this.temporaryDirectory.resolve("new");
+		write(oldRoot.resolve("b"), "b");
+		write(oldRoot.resolve("d"), "d");
+		write(oldRoot.resolve("gone/x"), "x");
+		write(oldRoot.resolve("same/y"), "y");
+		write(newRoot.resolve("a"), "a");
+		write(newRoot.resolve("b"), "b2");
+		write(newRoot.resolve("d/z"), "z");
+		write(newRoot.resolve("same/y"), "y");
+		Map<String, List<String>> walked = this.walk(oldRoot, newRoot, 0);
+		assertEquals(List.of("NEW a", "COMMON b", "DELETED d"), walked.get(""));
+		assertEquals(List.of("NEW d/z"), walked.get("d"));
+		assertEquals(List.of("DELETED gone/x"), walked.get("gone"));
+		assertEquals(List.of("COMMON same/y"), walked.get("same"));
+	}
+
+	@Test
+	void walksSpilledListingsInTheSameOrder() throws IOException, FileException {
+		Path oldRoot = this.temporaryDirectory.resolve("old");
+		Path newRoot = this.temporaryDirectory.resolve("new");
+		List<Integer> numbers = new ArrayList<>();
+		for (int number = 0; number < 5000; number++) {
+			numbers.add(number);
+		}
+		Collections.shuffle(numbers, new Random(1));
+		Files.createDirectories(oldRoot);
+		Files.createDirectories(newRoot);
+		for (int number : numbers) {
+			if (number % 3 != 0) {
+				Files.createFile(oldRoot.resolve("file" + number));
+			}
+			if (number % 3 != 1) {
+				Files.createFile(newRoot.resolve("file" + number));
+			}
+		}
+		List<String> inMemory = this.walk(oldRoot, newRoot, 0).get("");
+		List<String> spilled = this.walk(oldRoot, newRoot, 1).get("");
+		assertEquals(5000, spilled.size());
+		assertEquals(inMemory, spilled);
+		List<String> names = new ArrayList<>();
+		for (String entry : spilled) {
+			names.add(entry.substring(entry.indexOf(' ') + 1));
+		}
+		List<String> sorted = new ArrayList<>(names);
+		Collections.sort(sorted);
+		assertEquals(sorted, names);
+		assertFalse(Files.exists(this.temporaryDirectory.resolve("spill")));
+	}
+
+	/**
+	 * Walks two directories with a single listing thread, so the entries of
+	 * every directory are received in the order they are merged.
+	 * @return The status and the path of the files found in every directory,
+	 * by the relative path of the directory.
+	 */
+	private Map<String, List<String>> walk(Path oldRoot, Path newRoot, long memoryBudget) throws FileException {
+		PathIndex pathIndex = new PathIndex();
+		MergeWalker walker = new MergeWalker(
+			new DirectoryTreeSource(oldRoot, pathIndex, null), new DirectoryTreeSource(newRoot, pathIndex, null),
+			pathIndex, 1, PathFilter.NONE, new ComparisonMetrics()
+		);
+		walker.setMemoryBudget(this.temporaryDirectory.resolve("spill"), memoryBudget);
+		Map<String, List<String>> result = new ConcurrentHashMap<>();
+		walker.walk(new WalkListener() {
+			@Override
+			public void onEntry(EntryStatus status, FileEntry oldEntry, FileEntry newEntry) {
+				FileEntry entry = newEntry == null ? oldEntry : newEntry;
+				result.computeIfAbsent(pathIndex.getRelativePath(entry.getDirectoryNode()), node -> new ArrayList<>())
+					.add(status + " " + entry.getRelativePath());
+			}
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		});
+		return result;
+	}
+
+	private static void write(Path file, String contents) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, contents);
+	}
+}
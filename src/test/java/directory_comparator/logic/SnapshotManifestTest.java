@@ -0,0 +1,110 @@
+package directory_comparator.logic;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.listeners.SnapshotExportListener;
+import directory_comparator.logic.models.ComparisonOptions;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+
+class SnapshotManifestTest {
+
+	@TempDir
+	Path temporaryDirectory;
+
+	@Test
+	void readsBackTheFilesOfAnExportedSnapshot() throws IOException, FileException, NoSuchAlgorithmException {
+		Path directory = this.temporaryDirectory.resolve("folder");
+		write(directory.resolve("b.txt"), "bee");
+		write(directory.resolve("a.txt"), "a");
+		write(directory.resolve("sub/deeper/c.txt"), "sea");
+		Files.createDirectories(directory.resolve("empty"));
+		File snapshotFile = this.temporaryDirectory.resolve("folder" + SnapshotManifest.EXTENSION).toFile();
+		SnapshotExporter exporter = new SnapshotExporter(directory.toFile(), snapshotFile, new ComparisonOptions());
+		assertTrue(exporter.export(new SnapshotExportListener() {
+			@Override
+			public void onDirectoryExported(int node, int files) {
+			}
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		}));
+		assertTrue(SnapshotManifest.isSnapshot(snapshotFile));
+
+		PathIndex pathIndex = new PathIndex();
+		SnapshotManifest manifest = new SnapshotManifest(snapshotFile, pathIndex);
+		try {
+			assertEquals(3, manifest.getFileCount());
+			assertEquals(directory.toFile().getAbsolutePath(), manifest.getSourceDirectory());
+			List<FileEntry> root = list(manifest, PathIndex.ROOT);
+
+			// Subdirectories come first in no particular order, and files sorted by name to be looked up.
+			assertEquals(Set.of("empty/", "sub/"), Set.copyOf(names(root.subList(0, 2))));
+			assertEquals(List.of("a.txt", "b.txt"), names(root.subList(2, 4)));
+			assertEquals(3, root.get(3).getSize());
+			assertEquals(Files.getLastModifiedTime(directory.resolve("b.txt")).toMillis(), root.get(3).getLastModified());
+			assertArrayEquals(sha256("bee"), manifest.getDigest(root.get(3)).orElseThrow());
+			int deeper = pathIndex.find("sub/deeper");
+			List<FileEntry> deeperFiles = list(manifest, deeper);
+			assertEquals(List.of("c.txt"), names(deeperFiles));
+			assertArrayEquals(sha256("sea"), manifest.getDigest(deeperFiles.get(0)).orElseThrow());
+			assertEquals(List.of(), list(manifest, pathIndex.find("empty")));
+			FileEntry missing = new FileEntry(manifest.getRoot(), pathIndex, PathIndex.ROOT, "c.txt", false, 3, 0, null);
+			assertTrue(manifest.getDigest(missing).isEmpty());
+		} finally {
+			manifest.close();
+		}
+	}
+
+	@Test
+	void refusesAFileThatIsNotASnapshot() throws IOException {
+		Path file = this.temporaryDirectory.resolve("other" + SnapshotManifest.EXTENSION);
+		Files.writeString(file, "not a snapshot");
+		assertThrows(FileException.class, () -> new SnapshotManifest(file.toFile(), new PathIndex()));
+	}
+
+	private static List<FileEntry> list(SnapshotManifest manifest, int node) throws FileException {
+		List<FileEntry> result = new ArrayList<>();
+		manifest.list(node, null, result::add);
+		return result;
+	}
+
+	/**
+	 * Returns the names of some entries, with a slash after the directories.
+	 */
+	private static List<String> names(List<FileEntry> entries) {
+		List<String> result = new ArrayList<>();
+		for (FileEntry entry : entries) {
+			result.add(entry.getName() + (entry.isDirectory() ? "/" : ""));
+		}
+		return result;
+	}
+
+	private static byte[] sha256(String contents) throws NoSuchAlgorithmException {
+		return MessageDigest.getInstance("SHA-256").digest(contents.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void write(Path file, String contents) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, contents);
+	}
+}
@@ -0,0 +1,57 @@
+package directory_comparator.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+
+class SpilledListingTest {
+
+	@TempDir
+	Path spillDirectory;
+
+	@Test
+	void mergesMoreRunsThanItOpensAtOnce() throws IOException, FileException {
+		PathIndex pathIndex = new PathIndex();
+		List<String> names = new ArrayList<>();
+		for (int number = 0; number < (2 * SpilledListing.MAX_FAN_IN + 3) * 10; number++) {
+			names.add("file" + number);
+		}
+		Collections.shuffle(names, new Random(1));
+		try (SpilledListing listing = new SpilledListing(this.spillDirectory, this.spillDirectory, pathIndex, PathIndex.ROOT)) {
+			for (int start = 0; start < names.size(); start += 10) {
+				List<FileEntry> run = new ArrayList<>();
+				for (String name : names.subList(start, start + 10)) {
+					run.add(new FileEntry(this.spillDirectory, pathIndex, PathIndex.ROOT, name, false, name.length(), 0, null));
+				}
+				listing.addRun(run);
+			}
+			assertEquals(names.size(), listing.getCount());
+			List<String> merged = new ArrayList<>();
+			for (FileEntry entry = listing.next(); entry != null; entry = listing.next()) {
+				assertEquals(entry.getName().length(), entry.getSize());
+				merged.add(entry.getName());
+			}
+			assertNull(listing.next());
+			Collections.sort(names);
+			assertEquals(names, merged);
+		}
+		try (Stream<Path> runFiles = Files.list(this.spillDirectory)) {
+			assertEquals(0, runFiles.count());
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package directory_comparator.logic.results;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.DirectoryComparison;
+import directory_comparator.logic.enums.ResultKind;
+import directory_comparator.logic.listeners.ComparisonListener;
+import directory_comparator.logic.models.ComparisonOptions;
+import directory_comparator.logic.models.ComparisonOutcome;
+import directory_comparator.logic.models.FileEntry;
+
+class MoveResultSinkTest {
+
+	@TempDir
+	Path temporaryDirectory;
+
+	@Test
+	void reportsFilesWithTheSameContentsAsMoved() throws IOException, FileException {
+		Path oldRoot = this.temporaryDirectory.resolve("old");
+		Path newRoot = this.temporaryDirectory.resolve("new");
+		write(oldRoot.resolve("a/moved.txt"), "the same contents");
+		write(oldRoot.resolve("gone.txt"), "12345");
+		write(oldRoot.resolve("kept.txt"), "kept");
+		write(newRoot.resolve("b/renamed.txt"), "the same contents");
+		write(newRoot.resolve("added.txt"), "abcde");
+		write(newRoot.resolve("kept.txt"), "kept");
+		write(newRoot.resolve("unique.txt"), "no other file has this size");
+		ComparisonOptions options = new ComparisonOptions();
+		options.setMoveDetectionEnabled(true);
+		options.setShortcutsEnabled(false);
+		DirectoryComparison comparison = new DirectoryComparison(
+			oldRoot.toFile(), newRoot.toFile(), this.temporaryDirectory.resolve("results").toFile(), options
+		);
+		List<String> results = Collections.synchronizedList(new ArrayList<>());
+		comparison.run(new ComparisonListener() {
+			@Override
+			public void onOutcome(ComparisonOutcome outcome) {
+			}
+			@Override
+			public void onWaiting() {
+			}
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		}, new ResultSink() {
+			@Override
+			public void accept(ResultKind kind, FileEntry entry) {
+				results.add(kind.name() + " " + entry.getRelativePath());
+			}
+			@Override
+			public void acceptMove(FileEntry oldEntry, FileEntry newEntry) {
+				results.add(ResultKind.MOVED.name() + " " + oldEntry.getRelativePath() + " " + newEntry.getRelativePath());
+			}
+		});
+		Collections.sort(results);
+		assertEquals(
+			List.of("DELETED gone.txt", "MOVED a/moved.txt b/renamed.txt", "NEW added.txt", "NEW unique.txt"), results
+		);
+		assertEquals(1, comparison.getResults().getCount(ResultKind.MOVED));
+		assertEquals(4, comparison.getMoveCandidates());
+	}
+
+	private static void write(Path file, String contents) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, contents);
+	}
+}
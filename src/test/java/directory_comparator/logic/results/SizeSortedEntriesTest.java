@@ -0,0 +1,66 @@
+package directory_comparator.logic.results;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import directory_comparator.exceptions.FileException;
+import directory_comparator.logic.models.FileEntry;
+import directory_comparator.logic.models.PathIndex;
+
+class SizeSortedEntriesTest {
+
+	@TempDir
+	Path spillDirectory;
+
+	@Test
+	void groupsSpilledFilesBySizeInTheOrderTheyWereAdded() throws IOException, FileException {
+		PathIndex pathIndex = new PathIndex();
+		Path oldRoot = this.spillDirectory.resolve("old");
+		Path newRoot = this.spillDirectory.resolve("new");
+		Random random = new Random(1);
+		int files = 40000;
+		List<Long> sizes = new ArrayList<>();
+		List<Integer> seen = new ArrayList<>();
+		try (SizeSortedEntries entries = new SizeSortedEntries(this.spillDirectory, pathIndex)) {
+			for (int file = 0; file < files; file++) {
+				boolean added = file % 2 == 0;
+				entries.add(added, new FileEntry(
+					added ? newRoot : oldRoot, pathIndex, PathIndex.ROOT, Integer.toString(file), false,
+					1 + random.nextInt(500), 0, null
+				));
+			}
+			entries.forEachSize((size, newEntries, deletedEntries) -> {
+				sizes.add(size);
+				for (List<FileEntry> side : List.of(newEntries, deletedEntries)) {
+					int previous = -1;
+					for (FileEntry entry : side) {
+						int file = Integer.parseInt(entry.getName());
+						assertEquals(size, entry.getSize());
+						assertEquals(file % 2 == 0 ? newRoot : oldRoot, entry.getRoot());
+						assertTrue(file > previous, "Not in the order they were added");
+						previous = file;
+						seen.add(file);
+					}
+				}
+			});
+		}
+		assertEquals(files, seen.size());
+		for (int index = 1; index < sizes.size(); index++) {
+			assertTrue(sizes.get(index - 1) < sizes.get(index));
+		}
+		try (Stream<Path> runFiles = Files.list(this.spillDirectory)) {
+			assertEquals(0, runFiles.count());
+		}
+	}
+}